@@ -38,8 +38,12 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
@@ -94,6 +98,13 @@ import javax.annotation.Nullable;
  * as it would break parsing of the configuration property.
  * </p>
  *
+ * <p>When reading by index, the matching data rows are fetched from the data table with multi-gets of
+ * {@link #INDEX_FETCH_SIZE_CONF_KEY} rows. Optionally, the values of a set of {@link #COVERING_COLUMNS_CONF_KEY
+ * covering columns} can be stored in the index rows as well. Index reads that only request the indexed column and
+ * covering columns are then served from the index table, without reading the data table. The covered values are
+ * kept up to date on every write, hence each write to a covering column also updates the index entries of the row.
+ * </p>
+ *
  * @see #INDEX_COLUMNS_CONF_KEY
  */
 public class IndexedTable extends AbstractDataset implements Table {
@@ -123,10 +134,32 @@ public class IndexedTable extends AbstractDataset implements Table {
    */
   public static final String DYNAMIC_INDEXING_PREFIX = "dynamicIndexingPrefix";
 
+  /**
+   * Configuration key for defining columns whose values are also stored in the index rows of a data row.
+   * Multiple column names should be listed as a comma-separated string, e.g. "column1,column2,etc".
+   * Index reads that only request covering columns and the indexed column are served from the index table alone.
+   */
+  public static final String COVERING_COLUMNS_CONF_KEY = "coveringColumns";
+
+  /**
+   * Configuration key for the number of data rows fetched with a single multi-get when reading by index.
+   * It can be set in the DatasetSpecification properties, and overridden by the runtime arguments.
+   */
+  public static final String INDEX_FETCH_SIZE_CONF_KEY = "indexFetchSize";
+
+  /**
+   * Default number of data rows fetched with a single multi-get when reading by index.
+   */
+  public static final int DEFAULT_INDEX_FETCH_SIZE = 100;
+
   /**
    * Column key used to store the existence of a row in the secondary index.
    */
   private static final byte[] IDX_COL = {'r'};
+  /**
+   * Prefix of the column keys used to store covering column values in the secondary index.
+   */
+  private static final byte[] COVERED_COL_PREFIX = {'c'};
   private static final byte DELIMITER_BYTE = 0;
   private static final byte[] KEY_DELIMITER = new byte[] { DELIMITER_BYTE };
 
@@ -136,6 +169,9 @@ public class IndexedTable extends AbstractDataset implements Table {
   // the secondary index column
   private SortedSet<byte[]> indexedColumns;
   private final byte[] keyPrefix;
+  // the data columns copied into the index rows
+  private final SortedSet<byte[]> coveringColumns;
+  private final int fetchSize;
 
   /**
    * Configuration time constructor.
@@ -146,12 +182,7 @@ public class IndexedTable extends AbstractDataset implements Table {
    * @param columnsToIndex the names of the data columns to index
    */
   public IndexedTable(String name, Table table, Table index, SortedSet<byte[]> columnsToIndex) {
-    super(name, table, index);
-    this.table = table;
-    this.index = index;
-    this.indexedColumns = columnsToIndex;
-    this.hasColumnWithDelimiter = hasDelimiterByte(columnsToIndex);
-    this.keyPrefix = Bytes.EMPTY_BYTE_ARRAY;
+    this(name, table, index, columnsToIndex, Bytes.EMPTY_BYTE_ARRAY);
   }
 
   /**
@@ -164,12 +195,35 @@ public class IndexedTable extends AbstractDataset implements Table {
    * @param keyPrefix the dynamic indexing prefix. See {@link IndexedTable#DYNAMIC_INDEXING_PREFIX}
    */
   public IndexedTable(String name, Table table, Table index, SortedSet<byte[]> columnsToIndex, byte[] keyPrefix) {
+    this(name, table, index, columnsToIndex, keyPrefix,
+         new TreeSet<>(Bytes.BYTES_COMPARATOR), DEFAULT_INDEX_FETCH_SIZE);
+  }
+
+  /**
+   * Configuration time constructor.
+   *
+   * @param name the name of the table
+   * @param table table to use as the table
+   * @param index table to use as the index
+   * @param columnsToIndex the names of the data columns to index
+   * @param keyPrefix the dynamic indexing prefix. See {@link IndexedTable#DYNAMIC_INDEXING_PREFIX}
+   * @param coveringColumns the names of the data columns to store in the index. See
+   *                        {@link IndexedTable#COVERING_COLUMNS_CONF_KEY}
+   * @param fetchSize the number of data rows to fetch at once when reading by index
+   */
+  public IndexedTable(String name, Table table, Table index, SortedSet<byte[]> columnsToIndex, byte[] keyPrefix,
+                      SortedSet<byte[]> coveringColumns, int fetchSize) {
     super(name, table, index);
+    if (fetchSize <= 0) {
+      throw new IllegalArgumentException("Index fetch size must be positive: " + fetchSize);
+    }
     this.table = table;
     this.index = index;
     this.indexedColumns = columnsToIndex;
     this.hasColumnWithDelimiter = hasDelimiterByte(columnsToIndex);
     this.keyPrefix = keyPrefix;
+    this.coveringColumns = coveringColumns;
+    this.fetchSize = fetchSize;
   }
 
   /**
@@ -250,11 +304,28 @@ public class IndexedTable extends AbstractDataset implements Table {
    */
   @ReadOnly
   public Scanner readByIndex(byte[] column, byte[] value) {
+    return readByIndex(column, value, null);
+  }
+
+  /**
+   * Reads the given columns of table rows by the given secondary index key. If all the requested columns are either
+   * the indexed column or covering columns, the rows are read from the index table alone.
+   *
+   * @param column the column to use for the index lookup
+   * @param value the value of the column to lookup
+   * @param columns the columns to return for each row. {@code null} means all columns.
+   * @return a Scanner returning rows from the data table, whose stored value for the given column matches the
+   * given value.
+   * @throws java.lang.IllegalArgumentException if the given column is not configured for indexing.
+   * @see #COVERING_COLUMNS_CONF_KEY
+   */
+  @ReadOnly
+  public Scanner readByIndex(byte[] column, byte[] value, @Nullable byte[][] columns) {
     assertIndexedColumn(column);
     byte[] rowKeyPrefix = Bytes.concat(keyPrefix, column, KEY_DELIMITER, value, KEY_DELIMITER);
     byte[] stopRow = Bytes.stopKeyForPrefix(rowKeyPrefix);
     Scanner indexScan = index.scan(rowKeyPrefix, stopRow);
-    return new IndexScanner(indexScan, column, value);
+    return new IndexScanner(indexScan, column, value, columns);
   }
 
   /**
@@ -272,6 +343,27 @@ public class IndexedTable extends AbstractDataset implements Table {
    */
   @ReadOnly
   public Scanner scanByIndex(byte[] column, @Nullable byte[] startValue, @Nullable byte[] endValue) {
+    return scanByIndex(column, startValue, endValue, null);
+  }
+
+  /**
+   * Reads the given columns of table rows within the given secondary index key range. If all the requested columns
+   * are either the indexed column or covering columns, the rows are read from the index table alone.
+   *
+   * @param column the column to use for the index lookup
+   * @param startValue the inclusive start of the range for which rows must fall within to be returned in the scan.
+   *                   {@code null} means start from first row of the table
+   * @param endValue the exclusive end of the range for which rows must fall within to be returned in the scan
+   *                 {@code null} means end with the last row of the table
+   * @param columns the columns to return for each row. {@code null} means all columns.
+   * @return a Scanner returning rows from the data table, whose stored value for the given column is within the the
+   *         given range.
+   * @throws java.lang.IllegalArgumentException if the given column is not configured for indexing.
+   * @see #COVERING_COLUMNS_CONF_KEY
+   */
+  @ReadOnly
+  public Scanner scanByIndex(byte[] column, @Nullable byte[] startValue, @Nullable byte[] endValue,
+                             @Nullable byte[][] columns) {
     assertIndexedColumn(column);
     // KEY_DELIMITER is not used at the end of the rowKeys, because they are used for a range scan,
     // instead of a fixed-match lookup
@@ -280,7 +372,7 @@ public class IndexedTable extends AbstractDataset implements Table {
     byte[] stopRow = endValue == null ? Bytes.stopKeyForPrefix(Bytes.concat(keyPrefix, column, KEY_DELIMITER)) :
       Bytes.concat(keyPrefix, column, KEY_DELIMITER, endValue);
     Scanner indexScan = index.scan(startRow, stopRow);
-    return new IndexRangeScanner(indexScan, column, startValue, endValue);
+    return new IndexRangeScanner(indexScan, column, startValue, endValue, columns);
   }
 
   private void assertIndexedColumn(byte[] column) {
@@ -298,42 +390,130 @@ public class IndexedTable extends AbstractDataset implements Table {
   @WriteOnly
   @Override
   public void put(Put put) {
-    // if different value exists, remove current index ref
-    // add a new index ref unless same value already exists
     byte[] dataRow = put.getRow();
-    // find which values need to be indexed
     Map<byte[], byte[]> putColumns = put.getValues();
-    Set<byte[]> colsToIndex = new TreeSet<>(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], byte[]> putEntry : putColumns.entrySet()) {
-      if (indexedColumns.contains(putEntry.getKey())) {
-        colsToIndex.add(putEntry.getKey());
+    Set<byte[]> colsToRead = getColumnsForIndexUpdate(putColumns.keySet());
+    if (!colsToRead.isEmpty()) {
+      // first read the existing values to find which index entries have changed and need to be updated
+      Row existingRow = table.get(dataRow, colsToRead.toArray(new byte[colsToRead.size()][]));
+      updateIndex(dataRow, existingRow.getColumns(), putColumns);
+    }
+
+    // store the data row
+    table.put(put);
+  }
+
+  private byte[] createIndexKey(byte[] row, byte[] column, byte[] value) {
+    return Bytes.concat(keyPrefix, column, KEY_DELIMITER, value, KEY_DELIMITER, row);
+  }
+
+  private byte[] createCoveredColumn(byte[] column) {
+    return Bytes.concat(COVERED_COL_PREFIX, column);
+  }
+
+  /**
+   * Returns the columns whose existing values must be read to update the index for a write to the given columns.
+   * An empty set is returned if the write does not affect the index.
+   */
+  private Set<byte[]> getColumnsForIndexUpdate(Collection<byte[]> columns) {
+    Set<byte[]> result = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    boolean coveredChanged = false;
+    for (byte[] column : columns) {
+      if (indexedColumns.contains(column)) {
+        result.add(column);
       }
+      coveredChanged = coveredChanged || coveringColumns.contains(column);
+    }
+    // changes to covering columns are copied to the index entries of all indexed values of the row
+    if (coveredChanged) {
+      result.addAll(indexedColumns);
     }
+    // new index entries carry the values of all covering columns
+    if (!result.isEmpty()) {
+      result.addAll(coveringColumns);
+    }
+    return result;
+  }
 
-    if (!colsToIndex.isEmpty()) {
-      // first read the existing indexed values to find which have changed and need to be updated
-      Row existingRow = table.get(dataRow, colsToIndex.toArray(new byte[colsToIndex.size()][]));
-      for (Map.Entry<byte[], byte[]> entry : existingRow.getColumns().entrySet()) {
-        if (!Arrays.equals(entry.getValue(), putColumns.get(entry.getKey()))) {
-          index.delete(createIndexKey(dataRow, entry.getKey(), entry.getValue()), IDX_COL);
-        } else {
-          // value already indexed
-          colsToIndex.remove(entry.getKey());
-        }
+  /**
+   * Updates the index entries of a data row for a write to the row.
+   *
+   * @param row the data row key
+   * @param existing the existing values of the row, for at least the columns returned by
+   *                 {@link #getColumnsForIndexUpdate(Collection)} for the written columns
+   * @param updates the new values of the written columns, sorted by {@link Bytes#BYTES_COMPARATOR}.
+   *                A {@code null} value means the column is deleted.
+   */
+  private void updateIndex(byte[] row, Map<byte[], byte[]> existing, Map<byte[], byte[]> updates) {
+    // find the covering column values after the update, and which of them have changed
+    Map<byte[], byte[]> covered = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    Set<byte[]> changedCovered = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    for (byte[] column : coveringColumns) {
+      byte[] oldValue = existing.get(column);
+      byte[] newValue = updates.containsKey(column) ? updates.get(column) : oldValue;
+      if (newValue != null) {
+        covered.put(column, newValue);
+      }
+      if (!Arrays.equals(oldValue, newValue)) {
+        changedCovered.add(column);
       }
+    }
 
-      // add new index entries for all values that have changed or did not exist
-      for (byte[] col : colsToIndex) {
-        index.put(createIndexKey(dataRow, col, putColumns.get(col)), IDX_COL, dataRow);
+    for (byte[] column : indexedColumns) {
+      byte[] oldValue = existing.get(column);
+      byte[] newValue = updates.containsKey(column) ? updates.get(column) : oldValue;
+      if (Arrays.equals(oldValue, newValue)) {
+        // value already indexed, only the covered values may need to be updated
+        if (newValue != null && !changedCovered.isEmpty()) {
+          updateCoveredValues(createIndexKey(row, column, newValue), covered, changedCovered);
+        }
+        continue;
+      }
+      // if different value exists, remove current index ref
+      if (oldValue != null) {
+        deleteIndexEntry(createIndexKey(row, column, oldValue));
+      }
+      // add a new index ref for the new value
+      if (newValue != null) {
+        Put indexPut = new Put(createIndexKey(row, column, newValue), IDX_COL, row);
+        for (Map.Entry<byte[], byte[]> entry : covered.entrySet()) {
+          indexPut.add(createCoveredColumn(entry.getKey()), entry.getValue());
+        }
+        index.put(indexPut);
       }
     }
+  }
 
-    // store the data row
-    table.put(put);
+  /**
+   * Deletes an index entry, including the covered values stored in it.
+   */
+  private void deleteIndexEntry(byte[] indexKey) {
+    byte[][] columns = new byte[coveringColumns.size() + 1][];
+    int i = 0;
+    columns[i++] = IDX_COL;
+    for (byte[] column : coveringColumns) {
+      columns[i++] = createCoveredColumn(column);
+    }
+    index.delete(indexKey, columns);
   }
 
-  private byte[] createIndexKey(byte[] row, byte[] column, byte[] value) {
-    return Bytes.concat(keyPrefix, column, KEY_DELIMITER, value, KEY_DELIMITER, row);
+  private void updateCoveredValues(byte[] indexKey, Map<byte[], byte[]> covered, Set<byte[]> changedCovered) {
+    Put indexPut = new Put(indexKey);
+    List<byte[]> deletes = new ArrayList<>();
+    for (byte[] column : changedCovered) {
+      byte[] value = covered.get(column);
+      if (value == null) {
+        deletes.add(createCoveredColumn(column));
+      } else {
+        indexPut.add(createCoveredColumn(column), value);
+      }
+    }
+    if (!indexPut.getValues().isEmpty()) {
+      index.put(indexPut);
+    }
+    if (!deletes.isEmpty()) {
+      index.delete(indexKey, deletes.toArray(new byte[deletes.size()][]));
+    }
   }
 
   @WriteOnly
@@ -395,14 +575,20 @@ public class IndexedTable extends AbstractDataset implements Table {
   @WriteOnly
   @Override
   public void delete(byte[] row, byte[][] columns) {
-    Row existingRow = table.get(row, columns);
+    Set<byte[]> colsToRead = getColumnsForIndexUpdate(Arrays.asList(columns));
+    Map<byte[], byte[]> deletes = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (byte[] column : columns) {
+      colsToRead.add(column);
+      deletes.put(column, null);
+    }
+    Row existingRow = table.get(row, colsToRead.toArray(new byte[colsToRead.size()][]));
     if (existingRow.isEmpty()) {
       // no row to delete
       return;
     }
 
-    // delete all index entries
-    deleteIndexEntries(existingRow);
+    // delete the index entries of the deleted columns, and their values covered by the other index entries
+    updateIndex(row, existingRow.getColumns(), deletes);
 
     // delete the row's columns
     table.delete(row, columns);
@@ -412,7 +598,7 @@ public class IndexedTable extends AbstractDataset implements Table {
     byte[] row = existingRow.getRow();
     for (Map.Entry<byte[], byte[]> entry : existingRow.getColumns().entrySet()) {
       if (indexedColumns.contains(entry.getKey())) {
-        index.delete(createIndexKey(row, entry.getKey(), entry.getValue()), IDX_COL);
+        deleteIndexEntry(createIndexKey(row, entry.getKey(), entry.getValue()));
       }
     }
   }
@@ -427,28 +613,23 @@ public class IndexedTable extends AbstractDataset implements Table {
   @ReadWrite
   @Override
   public boolean compareAndSwap(byte[] row, byte[] column, byte[] expected, byte[] newValue) {
-    // if the swap is on a column other than the column key, then
+    // if the swap is on a column that is neither indexed nor covered, then
     // the index is not affected - just execute the swap.
-    // also, if the swap is on the index column, but the old value
-    // is the same as the new value, then the index is not affected either.
-    if (!indexedColumns.contains(column) ||
-        Arrays.equals(expected, newValue)) {
+    // also, if the old value is the same as the new value, then the index is not affected either.
+    Set<byte[]> colsToRead = getColumnsForIndexUpdate(Collections.singleton(column));
+    if (colsToRead.isEmpty() || Arrays.equals(expected, newValue)) {
       return table.compareAndSwap(row, column, expected, newValue);
     }
 
-    // the swap is on the index column. it will only succeed if the current
-    // value matches the expected value of the swap. if that value is not null,
-    // then we must remove the row key from the index for that value.
-    Delete idxDelete = null;
-    if (expected != null) {
-      idxDelete = new Delete(createIndexKey(row, column, expected), IDX_COL);
+    // the swap will only succeed if the current value matches the expected value of the swap,
+    // hence only the other columns affecting the index need to be read.
+    colsToRead.remove(column);
+    Map<byte[], byte[]> existing = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    if (!colsToRead.isEmpty()) {
+      existing.putAll(table.get(row, colsToRead.toArray(new byte[colsToRead.size()][])).getColumns());
     }
-
-    // if the new value is not null, then we must add the rowkey to the index
-    // for that value.
-    Put idxPut = null;
-    if (newValue != null) {
-      idxPut = new Put(createIndexKey(row, column, newValue), IDX_COL, row);
+    if (expected != null) {
+      existing.put(column, expected);
     }
 
     // apply all operations to both tables
@@ -457,13 +638,9 @@ public class IndexedTable extends AbstractDataset implements Table {
       // do nothing: no changes
       return false;
     }
-    if (idxDelete != null) {
-      index.delete(idxDelete);
-    }
-    if (idxPut != null) {
-      index.put(idxPut);
-    }
-
+    Map<byte[], byte[]> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    updates.put(column, newValue);
+    updateIndex(row, existing, updates);
     return true;
   }
 
@@ -497,7 +674,9 @@ public class IndexedTable extends AbstractDataset implements Table {
       throw new IllegalArgumentException("Size of columns and amounts arguments must match");
     }
 
-    Row existingRow = table.get(row, columns);
+    Set<byte[]> colsToRead = getColumnsForIndexUpdate(Arrays.asList(columns));
+    colsToRead.addAll(Arrays.asList(columns));
+    Row existingRow = table.get(row, colsToRead.toArray(new byte[colsToRead.size()][]));
     byte[][] updatedValues = new byte[columns.length][];
     NavigableMap<byte[], byte[]> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
 
@@ -511,17 +690,12 @@ public class IndexedTable extends AbstractDataset implements Table {
                                             " column: " + Bytes.toStringBinary(columns[i]));
         }
         existingValue = Bytes.toLong(existingBytes);
-        if (indexedColumns.contains(columns[i])) {
-          index.delete(createIndexKey(row, columns[i], existingBytes), IDX_COL);
-        }
       }
       updatedValues[i] = Bytes.toBytes(existingValue + amounts[i]);
       result.put(columns[i], updatedValues[i]);
-      if (indexedColumns.contains(columns[i])) {
-        index.put(createIndexKey(row, columns[i], updatedValues[i]), IDX_COL, row);
-      }
     }
 
+    updateIndex(row, existingRow.getColumns(), result);
     table.put(row, columns, updatedValues);
     return new Result(row, result);
   }
@@ -552,7 +726,8 @@ public class IndexedTable extends AbstractDataset implements Table {
 
   /**
    * Increments (atomically) the specified row and column by the specified amount, without returning the new value.
-   * Note that performing this operation on an indexed column throws {@link java.lang.IllegalArgumentException}.
+   * Note that performing this operation on an indexed or covering column throws
+   * {@link java.lang.IllegalArgumentException}.
    *
    * @see Table#increment(byte[], byte[], long)
    */
@@ -560,16 +735,14 @@ public class IndexedTable extends AbstractDataset implements Table {
   @Override
   public void increment(byte[] row, byte[] column, long amount) {
     // read-less increments should not be used on indexed columns
-    if (indexedColumns.contains(column)) {
-      throw new IllegalArgumentException("Read-less increment is not supported on indexed column '"
-                                           + Bytes.toStringBinary(column) + "'");
-    }
+    checkReadlessIncrement(column);
     table.increment(row, column, amount);
   }
 
   /**
    * Increments (atomically) the specified row and columns by the specified amounts, without returning the new values.
-   * Note that performing this operation on an indexed column throws {@link java.lang.IllegalArgumentException}.
+   * Note that performing this operation on an indexed or covering column throws
+   * {@link java.lang.IllegalArgumentException}.
    *
    * @see Table#increment(byte[], byte[][], long[])
    */
@@ -578,17 +751,15 @@ public class IndexedTable extends AbstractDataset implements Table {
   public void increment(byte[] row, byte[][] columns, long[] amounts) {
     // read-less increments should not be used on indexed columns
     for (byte[] col : columns) {
-      if (indexedColumns.contains(col)) {
-        throw new IllegalArgumentException("Read-less increment is not supported on indexed column '"
-                                             + Bytes.toStringBinary(col) + "'");
-      }
+      checkReadlessIncrement(col);
     }
     table.increment(row, columns, amounts);
   }
 
   /**
    * Increments (atomically) the specified row and columns by the specified amounts, without returning the new values.
-   * Note that performing this operation on an indexed column throws {@link java.lang.IllegalArgumentException}.
+   * Note that performing this operation on an indexed or covering column throws
+   * {@link java.lang.IllegalArgumentException}.
    *
    * @see Table#increment(Increment)
    */
@@ -596,14 +767,22 @@ public class IndexedTable extends AbstractDataset implements Table {
   @Override
   public void increment(Increment increment) {
     for (byte[] col : increment.getValues().keySet()) {
-      if (indexedColumns.contains(col)) {
-        throw new IllegalArgumentException("Read-less increment is not supported on indexed column '"
-                                             + Bytes.toStringBinary(col) + "'");
-      }
+      checkReadlessIncrement(col);
     }
     table.increment(increment);
   }
 
+  private void checkReadlessIncrement(byte[] column) {
+    if (indexedColumns.contains(column)) {
+      throw new IllegalArgumentException("Read-less increment is not supported on indexed column '"
+                                           + Bytes.toStringBinary(column) + "'");
+    }
+    if (coveringColumns.contains(column)) {
+      throw new IllegalArgumentException("Read-less increment is not supported on covering column '"
+                                           + Bytes.toStringBinary(column) + "'");
+    }
+  }
+
   @ReadOnly
   @Override
   public Scanner scan(@Nullable byte[] startRow, @Nullable byte[] stopRow) {
@@ -659,14 +838,30 @@ public class IndexedTable extends AbstractDataset implements Table {
     put(put);
   }
 
+  /**
+   * Base class for scanners over the index table. The data rows referenced by the matching index entries
+   * are fetched from the data table in batches of {@link #fetchSize} rows. If the requested columns are all
+   * covered by the index, the rows are built from the index entries without reading the data table.
+   */
   private abstract class AbstractIndexScanner implements Scanner {
     // scanner over index table
     private final Scanner baseScanner;
     private final byte[] column;
-
-    AbstractIndexScanner(Scanner baseScanner, byte[] column) {
+    // the columns to return, null for all columns
+    private final byte[][] columns;
+    // the columns to fetch from the data table, null for all columns
+    private final byte[][] fetchColumns;
+    private final boolean covered;
+    private final Deque<Row> buffer;
+    private boolean exhausted;
+
+    AbstractIndexScanner(Scanner baseScanner, byte[] column, @Nullable byte[][] columns) {
       this.baseScanner = baseScanner;
       this.column = column;
+      this.columns = columns;
+      this.covered = isCovered(column, columns);
+      this.fetchColumns = getFetchColumns(column, columns);
+      this.buffer = new ArrayDeque<>();
     }
 
     /**
@@ -680,9 +875,31 @@ public class IndexedTable extends AbstractDataset implements Table {
     @Nullable
     @Override
     public Row next() {
-      // TODO: retrieve results in batches to minimize RPC overhead (requires multi-get support in table)
-      // keep going until we hit a non-null, non-empty data row, or we exhaust the index
-      for (Row indexRow = baseScanner.next(); indexRow != null; indexRow = baseScanner.next()) {
+      // keep going until we hit a data row, or we exhaust the index
+      while (buffer.isEmpty() && !exhausted) {
+        fetchNext();
+      }
+      return buffer.poll();
+    }
+
+    @Override
+    public void close() {
+      baseScanner.close();
+    }
+
+    /**
+     * Reads up to {@link #fetchSize} matching index entries and buffers the rows they reference.
+     */
+    private void fetchNext() {
+      List<Get> gets = new ArrayList<>();
+      List<byte[]> columnValues = new ArrayList<>();
+      while (gets.size() < fetchSize) {
+        Row indexRow = baseScanner.next();
+        if (indexRow == null) {
+          // end of index
+          exhausted = true;
+          break;
+        }
         byte[] rowkey = indexRow.get(IDX_COL);
         if (rowkey == null) {
           LOG.warn("Row of Indexed table '{}' is missing index column. Row key: {}", getName(), indexRow.getRow());
@@ -693,33 +910,99 @@ public class IndexedTable extends AbstractDataset implements Table {
                                                 indexRow.getRow().length - rowkey.length - 1);
         // Verify that datarow matches the expected row key to avoid issues with column name or value
         // containing the delimiter used. This is a sufficient check, as long as columns don't contain the null byte.
-        if (matches(columnValue)) {
-          Row row = table.get(rowkey);
-          // If a column has null byte (the key delimiter) in it, then we need to check against the data row's column
-          // to be sure this row isn't a false positive in the scan.
-          // For reference, take a look at IndexedTableTest#testIndexKeyDelimiterAmbiguity
-          if (hasColumnWithDelimiter && !Bytes.equals(row.get(column), columnValue)) {
-            continue;
+        if (!matches(columnValue)) {
+          continue;
+        }
+        if (covered) {
+          buffer.add(createCoveredRow(rowkey, columnValue, indexRow));
+          if (buffer.size() >= fetchSize) {
+            break;
           }
-          return row;
+          continue;
         }
+        gets.add(fetchColumns == null ? new Get(rowkey) : new Get(rowkey, fetchColumns));
+        columnValues.add(columnValue);
+      }
+
+      if (gets.isEmpty()) {
+        return;
+      }
+      List<Row> rows = table.get(gets);
+      for (int i = 0; i < rows.size(); i++) {
+        Row row = rows.get(i);
+        // If a column has null byte (the key delimiter) in it, then we need to check against the data row's column
+        // to be sure this row isn't a false positive in the scan.
+        // For reference, take a look at IndexedTableTest#testIndexKeyDelimiterAmbiguity
+        if (hasColumnWithDelimiter && !Bytes.equals(row.get(column), columnValues.get(i))) {
+          continue;
+        }
+        buffer.add(fetchColumns == columns ? row : selectColumns(row));
       }
-      // end of index
-      return null;
     }
 
-    @Override
-    public void close() {
-      baseScanner.close();
+    private Row createCoveredRow(byte[] rowkey, byte[] columnValue, Row indexRow) {
+      NavigableMap<byte[], byte[]> values = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      for (byte[] col : columns) {
+        byte[] value = Bytes.equals(col, column) ? columnValue : indexRow.get(createCoveredColumn(col));
+        if (value != null) {
+          values.put(col, value);
+        }
+      }
+      return new Result(rowkey, values);
+    }
+
+    /**
+     * Removes the indexed column from a row if it was only fetched to verify the match.
+     */
+    private Row selectColumns(Row row) {
+      NavigableMap<byte[], byte[]> values = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      values.putAll(row.getColumns());
+      values.remove(column);
+      return new Result(row.getRow(), values);
+    }
+  }
+
+  /**
+   * Returns whether all the given columns can be read from the index entries of the given indexed column.
+   */
+  private boolean isCovered(byte[] column, @Nullable byte[][] columns) {
+    // if a column has the key delimiter in it, then the data row must be read to check for false positives
+    if (columns == null || hasColumnWithDelimiter) {
+      return false;
+    }
+    for (byte[] col : columns) {
+      if (!Bytes.equals(col, column) && !coveringColumns.contains(col)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the columns to read from the data table for an index read of the given columns.
+   */
+  @Nullable
+  private byte[][] getFetchColumns(byte[] column, @Nullable byte[][] columns) {
+    if (columns == null || !hasColumnWithDelimiter) {
+      return columns;
+    }
+    // the indexed column is needed to check for false positives
+    for (byte[] col : columns) {
+      if (Bytes.equals(col, column)) {
+        return columns;
+      }
     }
+    byte[][] fetchColumns = Arrays.copyOf(columns, columns.length + 1);
+    fetchColumns[columns.length] = column;
+    return fetchColumns;
   }
 
   // scanner that matches column values based upon exact match
   private class IndexScanner extends AbstractIndexScanner {
     private final byte[] value;
 
-    IndexScanner(Scanner baseScanner, byte[] column, byte[] value) {
-      super(baseScanner, column);
+    IndexScanner(Scanner baseScanner, byte[] column, byte[] value, @Nullable byte[][] columns) {
+      super(baseScanner, column, columns);
       this.value = value;
     }
 
@@ -734,8 +1017,9 @@ public class IndexedTable extends AbstractDataset implements Table {
     private final byte[] start;
     private final byte[] end;
 
-    IndexRangeScanner(Scanner baseScanner, byte[] column, @Nullable byte[] start, @Nullable byte[] end) {
-      super(baseScanner, column);
+    IndexRangeScanner(Scanner baseScanner, byte[] column, @Nullable byte[] start, @Nullable byte[] end,
+                      @Nullable byte[][] columns) {
+      super(baseScanner, column, columns);
       this.start = start;
       this.end = end;
     }
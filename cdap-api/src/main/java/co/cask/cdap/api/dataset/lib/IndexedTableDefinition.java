@@ -30,6 +30,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import javax.annotation.Nullable;
 
 /**
  * DatasetDefinition for {@link IndexedTable}.
@@ -82,6 +83,13 @@ public class IndexedTableDefinition
         }
       }
     }
+    // existing index entries do not contain the values of newly covered columns
+    String coveringColumns = newProperties.getProperties().get(IndexedTable.COVERING_COLUMNS_CONF_KEY);
+    String oldCoveringColumns = currentSpec.getProperty(IndexedTable.COVERING_COLUMNS_CONF_KEY);
+    if (!parseOptionalColumns(coveringColumns).equals(parseOptionalColumns(oldCoveringColumns))) {
+      throw new IncompatibleUpdateException(String.format("Attempt to change covering columns from '%s' to '%s'",
+                                                          oldCoveringColumns, coveringColumns));
+    }
     return super.reconfigure(instanceName, newProperties, currentSpec);
   }
 
@@ -110,11 +118,40 @@ public class IndexedTableDefinition
       columnsToIndex = parseColumns(spec.getProperty(IndexedTable.INDEX_COLUMNS_CONF_KEY));
     }
 
+    SortedSet<byte[]> coveringColumns =
+      parseOptionalColumns(spec.getProperty(IndexedTable.COVERING_COLUMNS_CONF_KEY));
+    String fetchSize = arguments.get(IndexedTable.INDEX_FETCH_SIZE_CONF_KEY);
+    if (fetchSize == null) {
+      fetchSize = spec.getProperty(IndexedTable.INDEX_FETCH_SIZE_CONF_KEY);
+    }
+
     Table table = getDataset(datasetContext, "d", spec, arguments, classLoader);
     Table index = getDataset(datasetContext, "i", spec, arguments, classLoader);
 
     return new IndexedTable(spec.getName(), table, index, columnsToIndex,
-                            keyPrefix == null ? Bytes.EMPTY_BYTE_ARRAY : Bytes.toBytes(keyPrefix));
+                            keyPrefix == null ? Bytes.EMPTY_BYTE_ARRAY : Bytes.toBytes(keyPrefix), coveringColumns,
+                            parseFetchSize(fetchSize));
+  }
+
+  /**
+   * Helper method to parse the optional index fetch size.
+   */
+  private int parseFetchSize(@Nullable String value) {
+    if (value == null) {
+      return IndexedTable.DEFAULT_INDEX_FETCH_SIZE;
+    }
+    int fetchSize;
+    try {
+      fetchSize = Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(String.format("Invalid value '%s' for %s, it must be a positive integer",
+                                                       value, IndexedTable.INDEX_FETCH_SIZE_CONF_KEY), e);
+    }
+    if (fetchSize <= 0) {
+      throw new IllegalArgumentException(String.format("Invalid value '%s' for %s, it must be a positive integer",
+                                                       value, IndexedTable.INDEX_FETCH_SIZE_CONF_KEY));
+    }
+    return fetchSize;
   }
 
   /**
@@ -128,4 +165,14 @@ public class IndexedTableDefinition
     }
     return columnsToIndex;
   }
+
+  /**
+   * Helper method to parse an optional list of column names, comma-separated.
+   */
+  private SortedSet<byte[]> parseOptionalColumns(@Nullable String value) {
+    if (value == null || value.isEmpty()) {
+      return new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    }
+    return parseColumns(value);
+  }
 }
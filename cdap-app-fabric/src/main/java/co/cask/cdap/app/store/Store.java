@@ -265,6 +265,15 @@ public interface Store {
    */
   Map<ProgramRunId, RunRecordMeta> getActiveRuns(ProgramId programId);
 
+  /**
+   * Fetches the active (i.e STARTING or RUNNING or SUSPENDED) run records of multiple programs in a single
+   * transaction.
+   *
+   * @param programs the programs to get the active run records for
+   * @return the active runs for each program, or the exception if the application or program does not exist
+   */
+  List<ProgramHistory> getActiveRuns(Collection<ProgramId> programs);
+
   /**
    * Fetches the historical (i.e COMPLETED or FAILED or KILLED) run records from a given set of namespaces
    * which matches both the earliestStopTime and latestStartTime conditions.
@@ -476,6 +485,14 @@ public interface Store {
    */
   Set<RunId> getRunningInRange(long startTimeInSecs, long endTimeInSecs);
 
+  /**
+   * Adds all existing run records to the time index used by {@link #getRunningInRange(long, long)}. The run records
+   * are indexed in batches, one transaction per batch. It is a no-op if the index was already backfilled.
+   *
+   * @param batchSize maximum number of run records to index in each transaction
+   */
+  void backfillRunRecordTimeIndex(int batchSize);
+
   /**
    * Get the run count of the given program.
    *
@@ -66,6 +66,7 @@ import co.cask.cdap.proto.ProgramHistory;
 import co.cask.cdap.proto.ProgramLiveInfo;
 import co.cask.cdap.proto.ProgramRunStatus;
 import co.cask.cdap.proto.ProgramStatus;
+import co.cask.cdap.proto.ProgramStatusResult;
 import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.proto.ProtoTrigger;
 import co.cask.cdap.proto.RunCountResult;
@@ -999,17 +1000,29 @@ public class ProgramLifecycleHttpHandler extends AbstractAppFabricHttpHandler {
 
     List<BatchProgram> programs = validateAndGetBatchInput(request, BATCH_PROGRAMS_TYPE);
 
+    List<ProgramId> programIds =
+      programs.stream().map(batchProgram -> new ProgramId(namespaceId, batchProgram.getAppId(),
+                                                          batchProgram.getProgramType(),
+                                                          batchProgram.getProgramId())).collect(Collectors.toList());
+
     List<BatchProgramStatus> statuses = new ArrayList<>(programs.size());
-    for (BatchProgram program : programs) {
-      ProgramId programId = new ProgramId(namespaceId, program.getAppId(), program.getProgramType(),
-                                          program.getProgramId());
-      try {
-        ProgramStatus programStatus = lifecycleService.getProgramStatus(programId);
+    List<ProgramStatusResult> results = lifecycleService.getProgramStatuses(programIds);
+    for (int i = 0; i < programs.size(); i++) {
+      BatchProgram program = programs.get(i);
+      ProgramStatusResult result = results.get(i);
+      Exception exception = result.getException();
+      if (exception == null) {
         statuses.add(new BatchProgramStatus(
-          program, HttpResponseStatus.OK.code(), null, programStatus.name()));
-      } catch (NotFoundException e) {
+          program, HttpResponseStatus.OK.code(), null, result.getStatus().name()));
+      } else if (exception instanceof NotFoundException) {
+        statuses.add(new BatchProgramStatus(
+          program, HttpResponseStatus.NOT_FOUND.code(), exception.getMessage(), null));
+      } else if (exception instanceof UnauthorizedException) {
+        statuses.add(new BatchProgramStatus(
+          program, HttpResponseStatus.FORBIDDEN.code(), exception.getMessage(), null));
+      } else {
         statuses.add(new BatchProgramStatus(
-          program, HttpResponseStatus.NOT_FOUND.code(), e.getMessage(), null));
+          program, HttpResponseStatus.INTERNAL_SERVER_ERROR.code(), exception.getMessage(), null));
       }
     }
     responder.sendJson(HttpResponseStatus.OK, GSON.toJson(statuses));
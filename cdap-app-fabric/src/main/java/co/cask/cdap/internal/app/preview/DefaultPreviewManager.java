@@ -16,6 +16,8 @@
 
 package co.cask.cdap.internal.app.preview;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.api.security.store.SecureStore;
 import co.cask.cdap.app.guice.AppFabricServiceRuntimeModule;
 import co.cask.cdap.app.guice.ProgramRunnerRuntimeModule;
@@ -49,8 +51,8 @@ import co.cask.cdap.logging.read.LogReader;
 import co.cask.cdap.messaging.guice.MessagingServerRuntimeModule;
 import co.cask.cdap.metadata.MetadataReaderWriterModules;
 import co.cask.cdap.metrics.guice.MetricsClientRuntimeModule;
-import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.proto.artifact.AppRequest;
+import co.cask.cdap.proto.artifact.preview.PreviewConfig;
 import co.cask.cdap.proto.id.ApplicationId;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.ProgramId;
@@ -64,6 +66,8 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.common.util.concurrent.Service;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
@@ -77,6 +81,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
 import org.apache.hadoop.mapreduce.MRConfig;
 import org.apache.tephra.TransactionSystemClient;
+import org.apache.twill.common.Threads;
 import org.apache.twill.discovery.DiscoveryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -87,12 +92,25 @@ import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 /**
  * Class responsible for creating the injector for preview and starting it.
+ *
+ * Creating and starting the injector of a preview takes a few seconds, hence a pool of idle preview runners is
+ * created and started in the background, from which the preview requests take their runner. A runner is never
+ * reused by another preview. Instead, it is stopped and its data is deleted when the preview is evicted, and
+ * a new runner is added to the pool. The pool is first filled by the first preview request, so that a preview
+ * service that is never used doesn't keep idle runners. Every runner is stopped and its data is deleted when this
+ * service stops.
  */
-public class DefaultPreviewManager implements PreviewManager {
+public class DefaultPreviewManager extends AbstractIdleService implements PreviewManager {
 
   private static final Logger LOG = LoggerFactory.getLogger(DefaultPreviewManager.class);
   private static final String PREFIX = "preview-";
@@ -111,6 +129,12 @@ public class DefaultPreviewManager implements PreviewManager {
   private final AuthorizationEnforcer authorizationEnforcer;
   private final Cache<ApplicationId, Injector> appInjectors;
   private final Path previewDataDir;
+  private final MetricsContext metricsContext;
+  private final int poolCapacity;
+  private final Queue<IdleRunner> idleRunners;
+  private final ExecutorService poolExecutor;
+  private final AtomicLong lastPreviewId;
+  private int pendingRunners;
 
   @Inject
   DefaultPreviewManager(final CConfiguration cConf, Configuration hConf, DiscoveryService discoveryService,
@@ -118,7 +142,8 @@ public class DefaultPreviewManager implements PreviewManager {
                         PreferencesService preferencesService, SecureStore secureStore,
                         TransactionSystemClient transactionSystemClient, ArtifactRepository artifactRepository,
                         ArtifactStore artifactStore, AuthorizerInstantiator authorizerInstantiator,
-                        PrivilegesManager privilegesManager, AuthorizationEnforcer authorizationEnforcer) {
+                        PrivilegesManager privilegesManager, AuthorizationEnforcer authorizationEnforcer,
+                        MetricsCollectionService metricsCollectionService) {
     this.cConf = cConf;
     this.hConf = hConf;
     this.datasetFramework = datasetFramework;
@@ -132,6 +157,16 @@ public class DefaultPreviewManager implements PreviewManager {
     this.privilegesManager = privilegesManager;
     this.authorizationEnforcer = authorizationEnforcer;
     this.previewDataDir = Paths.get(cConf.get(Constants.CFG_LOCAL_DATA_DIR), "preview").toAbsolutePath();
+    this.metricsContext = metricsCollectionService.getContext(ImmutableMap.of(
+      Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+      Constants.Metrics.Tag.COMPONENT, Constants.Service.PREVIEW_HTTP));
+    // The memory of the pool is limited by the estimated memory of a runner, since it cannot be measured
+    this.poolCapacity = Math.min(cConf.getInt(Constants.Preview.RUNNER_POOL_SIZE),
+                                 cConf.getInt(Constants.Preview.RUNNER_POOL_MAX_MEMORY_MB)
+                                   / Math.max(1, cConf.getInt(Constants.Preview.RUNNER_MEMORY_MB)));
+    this.idleRunners = new ConcurrentLinkedQueue<>();
+    this.poolExecutor = Executors.newSingleThreadExecutor(Threads.createDaemonThreadFactory("preview-runner-pool"));
+    this.lastPreviewId = new AtomicLong();
 
     this.appInjectors = CacheBuilder.newBuilder()
       .maximumSize(cConf.getInt(Constants.Preview.PREVIEW_CACHE_SIZE, 10))
@@ -139,6 +174,7 @@ public class DefaultPreviewManager implements PreviewManager {
         @Override
         @ParametersAreNonnullByDefault
         public void onRemoval(RemovalNotification<ApplicationId, Injector> notification) {
+          long startTime = System.currentTimeMillis();
           Injector injector = notification.getValue();
           if (injector != null) {
             PreviewRunner runner = injector.getInstance(PreviewRunner.class);
@@ -151,21 +187,59 @@ public class DefaultPreviewManager implements PreviewManager {
             return;
           }
           removePreviewDir(application);
+          metricsContext.gauge(Constants.Metrics.Preview.RUNNER_RESET_MILLIS, System.currentTimeMillis() - startTime);
         }
       })
       .build();
   }
 
+  @Override
+  protected void startUp() throws Exception {
+    // The pool is filled by the first preview request
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    synchronized (this) {
+      poolExecutor.shutdown();
+    }
+    // Runners being created are added to the pool, hence wait for them before stopping the pool
+    poolExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    IdleRunner idleRunner = idleRunners.poll();
+    while (idleRunner != null) {
+      PreviewRunner runner = idleRunner.injector.getInstance(PreviewRunner.class);
+      if (runner instanceof Service) {
+        stopQuietly((Service) runner);
+      }
+      removePreviewDir(NamespaceId.DEFAULT.app(idleRunner.name));
+      idleRunner = idleRunners.poll();
+    }
+    // Stops the runners of the previews and deletes their data
+    appInjectors.invalidateAll();
+  }
+
   @Override
   public ApplicationId start(NamespaceId namespace, AppRequest<?> appRequest) throws Exception {
-    ApplicationId previewApp = namespace.app(PREFIX + System.currentTimeMillis());
-    Injector injector = createPreviewInjector(previewApp);
-    PreviewRunner runner = injector.getInstance(PreviewRunner.class);
-    if (runner instanceof Service) {
-      ((Service) runner).startAndWait();
+    // Validate the request before taking a runner, which cannot be used by another preview afterwards
+    PreviewConfig previewConfig = getPreviewConfig(appRequest);
+    IdleRunner idleRunner = idleRunners.poll();
+    if (poolCapacity > 0) {
+      metricsContext.increment(idleRunner == null ? Constants.Metrics.Preview.RUNNER_POOL_MISSES
+                                 : Constants.Metrics.Preview.RUNNER_POOL_HITS, 1);
     }
+    replenishPool();
+    if (idleRunner == null) {
+      idleRunner = createIdleRunner();
+    }
+
+    // The injector of a runner only depends on the application name, hence it can be created before the namespace
+    // of the preview is known
+    ApplicationId previewApp = namespace.app(idleRunner.name);
+    Injector injector = idleRunner.injector;
+    PreviewRunner runner = injector.getInstance(PreviewRunner.class);
     try {
-      runner.startPreview(new PreviewRequest<>(getProgramIdFromRequest(previewApp, appRequest), appRequest));
+      ProgramId programId = previewApp.program(previewConfig.getProgramType(), previewConfig.getProgramName());
+      runner.startPreview(new PreviewRequest<>(programId, appRequest));
     } catch (Exception e) {
       if (runner instanceof Service) {
         stopQuietly((Service) runner);
@@ -197,6 +271,57 @@ public class DefaultPreviewManager implements PreviewManager {
     return injector.getInstance(LogReader.class);
   }
 
+  /**
+   * Adds runners to the pool in the background, until the pool is full.
+   */
+  @VisibleForTesting
+  synchronized void replenishPool() {
+    if (poolExecutor.isShutdown()) {
+      return;
+    }
+    for (int i = idleRunners.size() + pendingRunners; i < poolCapacity; i++) {
+      pendingRunners++;
+      poolExecutor.execute(() -> {
+        try {
+          idleRunners.add(createIdleRunner());
+        } catch (Exception e) {
+          LOG.warn("Failed to create preview runner for the pool", e);
+        } finally {
+          synchronized (this) {
+            pendingRunners--;
+          }
+        }
+      });
+    }
+  }
+
+  @VisibleForTesting
+  int getIdleRunnerCount() {
+    return idleRunners.size();
+  }
+
+  /**
+   * Creates and starts a runner with a new unique application name.
+   */
+  private IdleRunner createIdleRunner() throws Exception {
+    long startTime = System.currentTimeMillis();
+    // Runners can be created in the same millisecond by the pool and by a preview request
+    String name = PREFIX + lastPreviewId.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+    ApplicationId applicationId = NamespaceId.DEFAULT.app(name);
+    Injector injector = createPreviewInjector(applicationId);
+    PreviewRunner runner = injector.getInstance(PreviewRunner.class);
+    if (runner instanceof Service) {
+      try {
+        ((Service) runner).startAndWait();
+      } catch (Exception e) {
+        removePreviewDir(applicationId);
+        throw e;
+      }
+    }
+    metricsContext.gauge(Constants.Metrics.Preview.RUNNER_CREATE_MILLIS, System.currentTimeMillis() - startTime);
+    return new IdleRunner(name, injector);
+  }
+
   /**
    * Create injector for the given application id.
    */
@@ -259,19 +384,17 @@ public class DefaultPreviewManager implements PreviewManager {
     );
   }
 
-  private ProgramId getProgramIdFromRequest(ApplicationId preview, AppRequest request) throws BadRequestException {
-    if (request.getPreview() == null) {
+  private PreviewConfig getPreviewConfig(AppRequest request) throws BadRequestException {
+    PreviewConfig previewConfig = request.getPreview();
+    if (previewConfig == null) {
       throw new BadRequestException("Preview config cannot be null");
     }
 
-    String programName = request.getPreview().getProgramName();
-    ProgramType programType = request.getPreview().getProgramType();
-
-    if (programName == null || programType == null) {
+    if (previewConfig.getProgramName() == null || previewConfig.getProgramType() == null) {
       throw new IllegalArgumentException("ProgramName or ProgramType cannot be null.");
     }
 
-    return preview.program(programType, programName);
+    return previewConfig;
   }
 
   private void stopQuietly(Service service) {
@@ -292,4 +415,17 @@ public class DefaultPreviewManager implements PreviewManager {
       LOG.debug("Error deleting the preview directory {}", previewDirPath, e);
     }
   }
+
+  /**
+   * A started preview runner that is not used by any preview yet.
+   */
+  private static final class IdleRunner {
+    private final String name;
+    private final Injector injector;
+
+    private IdleRunner(String name, Injector injector) {
+      this.name = name;
+      this.injector = injector;
+    }
+  }
 }
@@ -32,7 +32,6 @@ import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.id.Id;
 import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.common.namespace.NamespacePathLocator;
-import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.internal.app.runtime.plugin.PluginNotExistsException;
 import co.cask.cdap.internal.io.SchemaTypeAdapter;
 import co.cask.cdap.proto.artifact.ArtifactSortOrder;
@@ -74,6 +73,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -84,6 +84,9 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.Spliterators;
 import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -168,7 +171,15 @@ import javax.annotation.Nullable;
  * artifact, and a scan to look up artifacts.
  *
  * In order to prevent deadlock if the storage backend is SQL, if a transaction needs to use multiple tables, the order
- * to use the table will be: artifact_data -> app_data -> plugin_data -> universal_plugin_data
+ * to use the table will be: artifact_data -> app_data -> plugin_data -> universal_plugin_data ->
+ * artifact_change_marker
+ *
+ * Plugin lookups are served from a {@link PluginCatalog}, which is an in-memory copy of the plugin_data and
+ * universal_plugin_data tables. Every write of an artifact sets a new random change id for that artifact in the
+ * artifact_change_marker table, and the delete of an artifact removes its change id. Since each transaction only
+ * touches the marker of its own artifact, writes of different artifacts never conflict. The catalog is updated
+ * incrementally by the changes made through this instance, and is rebuilt from the tables only if its change ids
+ * are different from the ones in the table, for example, after a change made by another process.
  */
 public class ArtifactStore {
   private static final String ARTIFACTS_PATH = "artifacts";
@@ -183,6 +194,7 @@ public class ArtifactStore {
   private final Impersonator impersonator;
   private final Set<String> requirementBlacklist;
   private final TransactionRunner transactionRunner;
+  private volatile PluginCatalog pluginCatalog;
 
   @Inject
   ArtifactStore(CConfiguration cConf,
@@ -489,29 +501,18 @@ public class ArtifactStore {
         getPluginsInArtifact(artifactDataTable, parentArtifactId,
                              input -> (type == null || type.equals(input.getType())) && isAllowed(input));
 
-      // Scan plugins
-      StructuredTable pluginTable = getTable(context, StoreDefinition.ArtifactStore.PLUGIN_DATA_TABLE);
-      try (CloseableIterator<StructuredRow> iterator =
-             pluginTable.scan(createPluginScanRange(parentArtifactId, type), Integer.MAX_VALUE)) {
-        while (iterator.hasNext()) {
-          StructuredRow row = iterator.next();
-          addPluginToMap(namespace, parentArtifactId, plugins, row);
-        }
-      }
+      PluginCatalog catalog = getPluginCatalog(context);
 
-      // Scan universal plugins
-      StructuredTable uniPluginTable = getTable(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE);
-      List<Range> ranges = Arrays.asList(
-        createUniversalPluginScanRange(namespace.getNamespace(), type),
-        createUniversalPluginScanRange(NamespaceId.SYSTEM.getNamespace(), type)
-      );
+      // Add plugins
+      for (PluginCatalog.Entry entry : catalog.getPlugins(parentArtifactId.getNamespace().getId(),
+                                                          parentArtifactId.getName(), type)) {
+        addPluginToMap(namespace, parentArtifactId, plugins, entry);
+      }
 
-      for (Range range : ranges) {
-        try (CloseableIterator<StructuredRow> iterator = uniPluginTable.scan(range, Integer.MAX_VALUE)) {
-          while (iterator.hasNext()) {
-            StructuredRow row = iterator.next();
-            addPluginToMap(namespace, parentArtifactId, plugins, row);
-          }
+      // Add universal plugins
+      for (String ns : Arrays.asList(namespace.getNamespace(), NamespaceId.SYSTEM.getNamespace())) {
+        for (PluginCatalog.Entry entry : catalog.getPlugins(ns, null, type)) {
+          addPluginToMap(namespace, parentArtifactId, plugins, entry);
         }
       }
 
@@ -595,22 +596,16 @@ public class ArtifactStore {
       }
 
       // Add all plugins that extends from the given set of parents
-      StructuredTable pluginTable = getTable(context, StoreDefinition.ArtifactStore.PLUGIN_DATA_TABLE);
-      PluginKeyPrefix pluginKey = new PluginKeyPrefix(parentArtifactRange.getNamespace(),
-                                                      parentArtifactRange.getName(), type, name);
-      try (CloseableIterator<StructuredRow> iterator =
-             pluginTable.scan(Range.singleton(pluginKey.keys), Integer.MAX_VALUE)) {
-        addPluginsInRangeToMap(namespace, parentArtifacts, iterator, plugins, pluginRange, limit);
-      }
+      PluginCatalog catalog = getPluginCatalog(context);
+      addPluginsInRangeToMap(namespace, parentArtifacts,
+                             catalog.getPlugins(parentArtifactRange.getNamespace(), parentArtifactRange.getName(),
+                                                type, name),
+                             plugins, pluginRange, limit);
 
       // Add all universal plugins
-      StructuredTable uniPluginTable = getTable(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE);
       for (String ns : Arrays.asList(namespace.getNamespace(), NamespaceId.SYSTEM.getNamespace())) {
-        UniversalPluginKeyPrefix universalPluginKey = new UniversalPluginKeyPrefix(ns, type, name);
-        try (CloseableIterator<StructuredRow> iterator =
-               uniPluginTable.scan(Range.singleton(universalPluginKey.keys), Integer.MAX_VALUE)) {
-          addPluginsInRangeToMap(namespace, parentArtifacts, iterator, plugins, pluginRange, limit);
-        }
+        addPluginsInRangeToMap(namespace, parentArtifacts, catalog.getPlugins(ns, null, type, name),
+                               plugins, pluginRange, limit);
       }
 
       return Collections.unmodifiableSortedMap(plugins);
@@ -694,6 +689,10 @@ public class ArtifactStore {
     }
 
     // now try and write the metadata for the artifact
+    ArtifactData data = new ArtifactData(destination, artifactMeta);
+    AtomicReference<ArtifactData> oldData = new AtomicReference<>();
+    AtomicReference<Long> oldChangeId = new AtomicReference<>();
+    AtomicLong newChangeId = new AtomicLong();
     try {
       transactionRunner.run(context -> {
         // we have to check that the metadata doesn't exist again since somebody else may have written
@@ -707,19 +706,25 @@ public class ArtifactStore {
           throw new ArtifactAlreadyExistsException(artifactId.toEntityId());
         }
 
-        ArtifactData data = new ArtifactData(destination, artifactMeta);
         // cleanup existing metadata if it exists and this is a snapshot
         // if we are overwriting a previous snapshot, need to clean up the old snapshot data
         // this means cleaning up the old jar, and deleting plugin and app rows.
+        oldData.set(null);
         if (optional.isPresent()) {
-          deleteMeta(context, artifactId,
-                     GSON.fromJson(optional.get().getString(StoreDefinition.ArtifactStore.ARTIFACT_DATA_FIELD),
-                                   ArtifactData.class));
+          oldData.set(GSON.fromJson(optional.get().getString(StoreDefinition.ArtifactStore.ARTIFACT_DATA_FIELD),
+                                    ArtifactData.class));
+          deleteMeta(context, artifactId, oldData.get());
         }
         // write artifact metadata
         writeMeta(context, artifactId, data);
+        oldChangeId.set(getChangeId(context, artifactId));
+        newChangeId.set(writeChangeId(context, artifactId));
       });
 
+      updatePluginCatalog(artifactId, oldChangeId.get(), newChangeId.get(),
+                          oldData.get() == null
+                            ? Collections.emptyList() : createPluginCatalogEntries(artifactId, oldData.get()),
+                          createPluginCatalogEntries(artifactId, data));
       return new ArtifactDetail(new ArtifactDescriptor(artifactId.toArtifactId(), destination), artifactMeta);
     } catch (TransactionException e) {
       destination.delete();
@@ -756,6 +761,9 @@ public class ArtifactStore {
   public void delete(final Id.Artifact artifactId) throws ArtifactNotFoundException, IOException {
 
     // delete everything in a transaction
+    AtomicReference<ArtifactData> oldData = new AtomicReference<>();
+    AtomicReference<Long> oldChangeId = new AtomicReference<>();
+    AtomicReference<Long> newChangeId = new AtomicReference<>();
     TransactionRunners.run(transactionRunner, context -> {
       // first look up details to get plugins and apps in the artifact
       StructuredTable artifactDataTable = getTable(context, StoreDefinition.ArtifactStore.ARTIFACT_DATA_TABLE);
@@ -764,10 +772,23 @@ public class ArtifactStore {
       if (!optional.isPresent()) {
         throw new ArtifactNotFoundException(artifactId.toEntityId());
       }
-      deleteMeta(context, artifactId,
-                 GSON.fromJson(optional.get().getString(StoreDefinition.ArtifactStore.ARTIFACT_DATA_FIELD),
-                               ArtifactData.class));
+      oldData.set(GSON.fromJson(optional.get().getString(StoreDefinition.ArtifactStore.ARTIFACT_DATA_FIELD),
+                                ArtifactData.class));
+      deleteMeta(context, artifactId, oldData.get());
+      // Removing the marker is seen as a change by the catalogs that have it. An artifact written before the
+      // markers were introduced has none, so it gets a marker instead, for the other instances to see the change.
+      Long changeId = getChangeId(context, artifactId);
+      oldChangeId.set(changeId);
+      if (changeId == null) {
+        newChangeId.set(writeChangeId(context, artifactId));
+      } else {
+        deleteChangeId(context, artifactId);
+        newChangeId.set(null);
+      }
     }, IOException.class, ArtifactNotFoundException.class);
+
+    updatePluginCatalog(artifactId, oldChangeId.get(), newChangeId.get(),
+                        createPluginCatalogEntries(artifactId, oldData.get()), Collections.emptyList());
   }
 
   /**
@@ -819,7 +840,12 @@ public class ArtifactStore {
           }
         }
       }
+
+      // delete the change markers, so that the plugin catalog is rebuilt by the next plugin lookup
+      StructuredTable changeMarkerTable = getTable(context, StoreDefinition.ArtifactStore.CHANGE_MARKER_TABLE);
+      deleteRangeFromTable(changeMarkerTable, artifactScanRange);
     }, IOException.class);
+    pluginCatalog = null;
   }
 
   private void deleteRangeFromTable(StructuredTable table, Range range) throws IOException {
@@ -1004,45 +1030,21 @@ public class ArtifactStore {
     return result;
   }
 
-  // this method examines the plugin in the given row and checks if they extend the given parent artifact
-  // and are from an artifact in the given namespace.
+  // this method checks if the given plugin extends the given parent artifact and is from an artifact in the
+  // given namespace.
   // if so, information about the plugin artifact and the plugin details are added to the given map.
   private void addPluginToMap(NamespaceId namespace, Id.Artifact parentArtifactId,
                               SortedMap<ArtifactDescriptor, Set<PluginClass>> map,
-                              StructuredRow row) {
-    ImmutablePair<ArtifactDescriptor, PluginClass> pluginEntry = getPluginEntry(namespace, parentArtifactId, row);
-    if (pluginEntry != null && isAllowed(pluginEntry.getSecond())) {
-      map.computeIfAbsent(pluginEntry.getFirst(), k -> new HashSet<>()).add(pluginEntry.getSecond());
+                              PluginCatalog.Entry entry) {
+    NamespaceId namespaceId = entry.getArtifactId().getNamespaceId();
+    if ((NamespaceId.SYSTEM.equals(namespaceId) || namespace.equals(namespaceId))
+      && entry.isUsableBy(parentArtifactId.toEntityId()) && isAllowed(entry.getPluginClass())) {
+      map.computeIfAbsent(entry.getDescriptor(), k -> new HashSet<>()).add(entry.getPluginClass());
     }
   }
 
-  /**
-   * Decode the PluginClass from the table column if it is from an artifact in the given namespace and
-   * extends the given parent artifact. If the plugin's artifact is not in the given namespace, or it does not
-   * extend the given parent artifact, return null.
-   */
-  @Nullable
-  private ImmutablePair<ArtifactDescriptor, PluginClass> getPluginEntry(
-    NamespaceId namespace, Id.Artifact parentArtifactId, StructuredRow row) {
-    ImmutablePair<ArtifactDescriptor, PluginData> pluginPair = getPlugin(row, artifactId -> {
-      NamespaceId namespaceId = artifactId.getNamespaceId();
-      return NamespaceId.SYSTEM.equals(namespaceId) || namespace.equals(namespaceId);
-    });
-
-    if (pluginPair == null) {
-      return null;
-    }
-
-    PluginData pluginData = pluginPair.getSecond();
-    // filter out plugins that don't extend this version of the parent artifact
-    if (pluginData.isUsableBy(parentArtifactId.toEntityId())) {
-      return ImmutablePair.of(pluginPair.getFirst(), pluginData.pluginClass);
-    }
-    return null;
-  }
-
   private void addPluginsInRangeToMap(final NamespaceId namespace, List<Id.Artifact> parentArtifacts,
-                                      Iterator<StructuredRow> iterator,
+                                      Collection<PluginCatalog.Entry> entries,
                                       SortedMap<ArtifactDescriptor, PluginClass> plugins,
                                       @Nullable Predicate<co.cask.cdap.proto.id.ArtifactId> range,
                                       int limit) {
@@ -1052,18 +1054,15 @@ public class ArtifactStore {
       ? range
       : input -> NamespaceId.SYSTEM.equals(input.getParent()) || input.getParent().equals(namespace);
 
-    while (iterator.hasNext()) {
-      StructuredRow row = iterator.next();
-      ImmutablePair<ArtifactDescriptor, PluginData> pluginPair = getPlugin(row, range);
-      if (pluginPair == null) {
+    for (PluginCatalog.Entry entry : entries) {
+      if (!range.test(entry.getArtifactId())) {
         continue;
       }
 
-      PluginData pluginData = pluginPair.getSecond();
       // filter out plugins that don't extend this version of the parent artifact
       for (Id.Artifact parentArtifactId : parentArtifacts) {
-        if (pluginData.isUsableBy(parentArtifactId.toEntityId()) && isAllowed(pluginData.pluginClass)) {
-          plugins.put(pluginPair.getFirst(), pluginData.pluginClass);
+        if (entry.isUsableBy(parentArtifactId.toEntityId()) && isAllowed(entry.getPluginClass())) {
+          plugins.put(entry.getDescriptor(), entry.getPluginClass());
           break;
         }
       }
@@ -1073,25 +1072,124 @@ public class ArtifactStore {
     }
   }
 
+  /**
+   * Returns the {@link PluginCatalog} of the store seen by the given transaction context. The catalog of
+   * this instance is used if it has the same change ids, otherwise it is rebuilt from the plugin tables.
+   */
+  private PluginCatalog getPluginCatalog(StructuredTableContext context) throws IOException {
+    Map<co.cask.cdap.proto.id.ArtifactId, Long> changeIds = new HashMap<>();
+    StructuredTable changeMarkerTable = getTable(context, StoreDefinition.ArtifactStore.CHANGE_MARKER_TABLE);
+    try (CloseableIterator<StructuredRow> iterator = changeMarkerTable.scan(Range.all(), Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        changeIds.put(new NamespaceId(row.getString(StoreDefinition.ArtifactStore.ARTIFACT_NAMESPACE_FIELD))
+                        .artifact(row.getString(StoreDefinition.ArtifactStore.ARTIFACT_NAME_FIELD),
+                                  row.getString(StoreDefinition.ArtifactStore.ARTIFACT_VER_FIELD)),
+                      row.getLong(StoreDefinition.ArtifactStore.CHANGE_ID_FIELD));
+      }
+    }
+    PluginCatalog catalog = pluginCatalog;
+    if (catalog != null && catalog.getChangeIds().equals(changeIds)) {
+      return catalog;
+    }
+
+    List<PluginCatalog.Entry> entries = new ArrayList<>();
+    StructuredTable pluginTable = getTable(context, StoreDefinition.ArtifactStore.PLUGIN_DATA_TABLE);
+    try (CloseableIterator<StructuredRow> iterator = pluginTable.scan(Range.all(), Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        entries.add(createPluginCatalogEntry(row, row.getString(StoreDefinition.ArtifactStore.PARENT_NAMESPACE_FIELD),
+                                             row.getString(StoreDefinition.ArtifactStore.PARENT_NAME_FIELD)));
+      }
+    }
+    StructuredTable uniPluginTable = getTable(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE);
+    try (CloseableIterator<StructuredRow> iterator = uniPluginTable.scan(Range.all(), Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        entries.add(createPluginCatalogEntry(row, row.getString(StoreDefinition.ArtifactStore.NAMESPACE_FIELD), null));
+      }
+    }
+
+    PluginCatalog rebuilt = new PluginCatalog(changeIds, entries);
+    synchronized (this) {
+      // don't replace a catalog that was updated by a concurrent change in the meantime
+      if (pluginCatalog == catalog) {
+        pluginCatalog = rebuilt;
+      }
+    }
+    return rebuilt;
+  }
+
+  /**
+   * Updates the {@link PluginCatalog} of this instance with the change of an artifact made by a transaction
+   * that has committed.
+   */
+  private synchronized void updatePluginCatalog(Id.Artifact artifactId, @Nullable Long oldChangeId,
+                                                @Nullable Long newChangeId,
+                                                Collection<PluginCatalog.Entry> removed,
+                                                Collection<PluginCatalog.Entry> added) {
+    PluginCatalog catalog = pluginCatalog;
+    if (catalog == null) {
+      return;
+    }
+    // If the catalog misses a previous change of the artifact, it cannot be updated incrementally.
+    // It will be rebuilt by the next plugin lookup instead.
+    pluginCatalog = catalog.update(artifactId.toEntityId(), oldChangeId, newChangeId, removed, added);
+  }
+
   @Nullable
-  private ImmutablePair<ArtifactDescriptor, PluginData> getPlugin(StructuredRow row,
-                                                                  Predicate<co.cask.cdap.proto.id.ArtifactId> range) {
+  private Long getChangeId(StructuredTableContext context, Id.Artifact artifactId) throws IOException {
+    StructuredTable table = getTable(context, StoreDefinition.ArtifactStore.CHANGE_MARKER_TABLE);
+    Optional<StructuredRow> row = table.read(new ArtifactCell(artifactId).keys);
+    return row.isPresent() ? row.get().getLong(StoreDefinition.ArtifactStore.CHANGE_ID_FIELD) : null;
+  }
+
+  private long writeChangeId(StructuredTableContext context, Id.Artifact artifactId) throws IOException {
+    long changeId = ThreadLocalRandom.current().nextLong();
+    StructuredTable table = getTable(context, StoreDefinition.ArtifactStore.CHANGE_MARKER_TABLE);
+    table.upsert(concatFields(new ArtifactCell(artifactId).keys, Collections.singleton(
+      Fields.longField(StoreDefinition.ArtifactStore.CHANGE_ID_FIELD, changeId))));
+    return changeId;
+  }
+
+  private void deleteChangeId(StructuredTableContext context, Id.Artifact artifactId) throws IOException {
+    StructuredTable table = getTable(context, StoreDefinition.ArtifactStore.CHANGE_MARKER_TABLE);
+    table.delete(new ArtifactCell(artifactId).keys);
+  }
+
+  private PluginCatalog.Entry createPluginCatalogEntry(StructuredRow row, String parentNamespace,
+                                                       @Nullable String parentName) {
     // column is the artifact namespace, name, and version. value is the serialized PluginData
     Id.Namespace artifactNamespace =
       Id.Namespace.from(row.getString(StoreDefinition.ArtifactStore.ARTIFACT_NAMESPACE_FIELD));
     Id.Artifact artifactId =
       Id.Artifact.from(artifactNamespace, row.getString(StoreDefinition.ArtifactStore.ARTIFACT_NAME_FIELD),
                        row.getString(StoreDefinition.ArtifactStore.ARTIFACT_VER_FIELD));
-
-    if (!range.test(artifactId.toEntityId())) {
-      return null;
-    }
     PluginData pluginData = GSON.fromJson(row.getString(StoreDefinition.ArtifactStore.PLUGIN_DATA_FIELD),
                                           PluginData.class);
-    return ImmutablePair.of(new ArtifactDescriptor(
+    ArtifactDescriptor descriptor = new ArtifactDescriptor(
       artifactId.toArtifactId(),
-      Locations.getLocationFromAbsolutePath(locationFactory, pluginData.getArtifactLocationPath())), pluginData);
+      Locations.getLocationFromAbsolutePath(locationFactory, pluginData.getArtifactLocationPath()));
+    return new PluginCatalog.Entry(parentNamespace, parentName, artifactId.toEntityId(), descriptor,
+                                   pluginData.pluginClass, pluginData.usableBy);
+  }
 
+  // creates the plugin catalog entries for the plugin rows written by writeMeta
+  private List<PluginCatalog.Entry> createPluginCatalogEntries(Id.Artifact artifactId, ArtifactData data) {
+    ArtifactDescriptor descriptor = new ArtifactDescriptor(
+      artifactId.toArtifactId(), Locations.getLocationFromAbsolutePath(locationFactory, data.getLocationPath()));
+    List<PluginCatalog.Entry> entries = new ArrayList<>();
+    for (PluginClass pluginClass : data.meta.getClasses().getPlugins()) {
+      for (ArtifactRange artifactRange : data.meta.getUsableBy()) {
+        entries.add(new PluginCatalog.Entry(artifactRange.getNamespace(), artifactRange.getName(),
+                                            artifactId.toEntityId(), descriptor, pluginClass, artifactRange));
+      }
+      if (data.meta.getUsableBy().isEmpty()) {
+        entries.add(new PluginCatalog.Entry(artifactId.getNamespace().getId(), null,
+                                            artifactId.toEntityId(), descriptor, pluginClass, null));
+      }
+    }
+    return entries;
   }
 
   private Range createArtifactScanRange(NamespaceId namespace) {
@@ -1100,17 +1198,6 @@ public class ArtifactStore {
     return Range.singleton(Collections.singleton(stringField));
   }
 
-  private Range createPluginScanRange(Id.Artifact parentArtifactId, @Nullable String type) {
-    List<Field<?>> keys = new ArrayList<>();
-    keys.add(Fields.stringField(StoreDefinition.ArtifactStore.PARENT_NAMESPACE_FIELD,
-                                parentArtifactId.getNamespace().getId()));
-    keys.add(Fields.stringField(StoreDefinition.ArtifactStore.PARENT_NAME_FIELD, parentArtifactId.getName()));
-    if (type != null) {
-      keys.add(Fields.stringField(StoreDefinition.ArtifactStore.PLUGIN_TYPE_FIELD, type));
-    }
-    return Range.singleton(keys);
-  }
-
   private Range createUniversalPluginScanRange(String namespace, @Nullable String type) {
     List<Field<?>> keys = new ArrayList<>();
     keys.add(Fields.stringField(StoreDefinition.ArtifactStore.NAMESPACE_FIELD, namespace));
@@ -1280,15 +1367,6 @@ public class ArtifactStore {
     String getArtifactLocationPath() {
       return artifactLocationPath == null ? artifactLocationURI.getPath() : artifactLocationPath;
     }
-
-    boolean isUsableBy(co.cask.cdap.proto.id.ArtifactId artifactId) {
-      if (usableBy == null) {
-        return true;
-      }
-      return usableBy.getNamespace().equals(artifactId.getNamespace())
-        && usableBy.getName().equals(artifactId.getArtifact())
-        && usableBy.versionIsInRange(new ArtifactVersion(artifactId.getVersion()));
-    }
   }
 
   // Data that will be stored for an application class.
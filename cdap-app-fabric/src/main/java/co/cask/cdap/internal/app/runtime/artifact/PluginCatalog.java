@@ -0,0 +1,267 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.artifact;
+
+import co.cask.cdap.api.artifact.ArtifactRange;
+import co.cask.cdap.api.artifact.ArtifactVersion;
+import co.cask.cdap.api.plugin.PluginClass;
+import co.cask.cdap.proto.id.ArtifactId;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Table;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * An immutable in-memory copy of the plugin data and the universal plugin data of the {@link ArtifactStore},
+ * indexed by the parent artifact, the plugin type and the plugin name. Universal plugins are indexed by the
+ * namespace of the plugin artifact, without a parent artifact name.
+ *
+ * Each catalog has the change ids of the artifacts in the store it was built from, which identify the last change
+ * made to the plugins of each artifact. A catalog is never modified. Instead,
+ * {@link #update(ArtifactId, Long, long, Collection, Collection)} returns a new catalog that shares the unchanged
+ * parts.
+ */
+final class PluginCatalog {
+
+  private final Map<ArtifactId, Long> changeIds;
+  // parent -> plugin type -> plugin name -> plugins
+  private final Map<Parent, Table<String, String, List<Entry>>> plugins;
+
+  PluginCatalog(Map<ArtifactId, Long> changeIds, Collection<Entry> entries) {
+    this(changeIds, Collections.emptyMap(), Collections.emptyList(), entries);
+  }
+
+  private PluginCatalog(Map<ArtifactId, Long> changeIds, Map<Parent, Table<String, String, List<Entry>>> plugins,
+                        Collection<Entry> removed, Collection<Entry> added) {
+    Map<Parent, Table<String, String, List<Entry>>> updatedTables = new HashMap<>();
+    for (Entry entry : removed) {
+      Table<String, String, List<Entry>> table = getMutableTable(plugins, updatedTables, entry.parent);
+      List<Entry> entries = getMutableList(table, entry);
+      entries.removeIf(e -> e.artifactId.equals(entry.artifactId));
+    }
+    for (Entry entry : added) {
+      Table<String, String, List<Entry>> table = getMutableTable(plugins, updatedTables, entry.parent);
+      List<Entry> entries = getMutableList(table, entry);
+      entries.removeIf(e -> e.artifactId.equals(entry.artifactId));
+      entries.add(entry);
+    }
+
+    Map<Parent, Table<String, String, List<Entry>>> result = new HashMap<>(plugins);
+    for (Map.Entry<Parent, Table<String, String, List<Entry>>> updated : updatedTables.entrySet()) {
+      ImmutableTable.Builder<String, String, List<Entry>> builder = ImmutableTable.builder();
+      for (Table.Cell<String, String, List<Entry>> cell : updated.getValue().cellSet()) {
+        if (!cell.getValue().isEmpty()) {
+          builder.put(cell.getRowKey(), cell.getColumnKey(), ImmutableList.copyOf(cell.getValue()));
+        }
+      }
+      Table<String, String, List<Entry>> table = builder.build();
+      if (table.isEmpty()) {
+        result.remove(updated.getKey());
+      } else {
+        result.put(updated.getKey(), table);
+      }
+    }
+
+    this.changeIds = Collections.unmodifiableMap(new HashMap<>(changeIds));
+    this.plugins = Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * Returns the change id of every artifact in the store this catalog was built from.
+   */
+  Map<ArtifactId, Long> getChangeIds() {
+    return changeIds;
+  }
+
+  /**
+   * Returns a new catalog with a change of the plugins of the given artifact applied, which removed and added the
+   * given entries. An entry replaces the entry of the same artifact that has the same parent, plugin type and
+   * plugin name.
+   *
+   * @param artifactId the artifact that was changed
+   * @param oldChangeId the change id of the artifact before the change, or {@code null} if it had none
+   * @param newChangeId the change id of the artifact after the change, or {@code null} if the change deleted it
+   * @param removed the entries removed by the change
+   * @param added the entries added by the change
+   * @return the updated catalog, this catalog if it already has the change, or {@code null} if this catalog
+   *         misses a previous change of the artifact and therefore cannot be updated
+   */
+  @Nullable
+  PluginCatalog update(ArtifactId artifactId, @Nullable Long oldChangeId, @Nullable Long newChangeId,
+                       Collection<Entry> removed, Collection<Entry> added) {
+    Long changeId = changeIds.get(artifactId);
+    if (Objects.equals(changeId, newChangeId)) {
+      return this;
+    }
+    if (!Objects.equals(changeId, oldChangeId)) {
+      return null;
+    }
+    Map<ArtifactId, Long> updatedChangeIds = new HashMap<>(changeIds);
+    if (newChangeId == null) {
+      updatedChangeIds.remove(artifactId);
+    } else {
+      updatedChangeIds.put(artifactId, newChangeId);
+    }
+    return new PluginCatalog(updatedChangeIds, plugins, removed, added);
+  }
+
+  /**
+   * Returns the plugins that extend the given parent artifact, or the universal plugins in the given namespace if
+   * the parent artifact name is {@code null}.
+   *
+   * @param namespace the namespace of the parent artifact, or of the universal plugins
+   * @param parentName the name of the parent artifact, or {@code null} for universal plugins
+   * @param type the plugin type, or {@code null} for any type
+   */
+  List<Entry> getPlugins(String namespace, @Nullable String parentName, @Nullable String type) {
+    Table<String, String, List<Entry>> table = plugins.get(new Parent(namespace, parentName));
+    if (table == null) {
+      return Collections.emptyList();
+    }
+    Collection<List<Entry>> lists = type == null ? table.values() : table.row(type).values();
+    List<Entry> result = new ArrayList<>();
+    lists.forEach(result::addAll);
+    return result;
+  }
+
+  /**
+   * Returns the plugins of the given type and name that extend the given parent artifact, or the universal plugins
+   * in the given namespace if the parent artifact name is {@code null}.
+   */
+  List<Entry> getPlugins(String namespace, @Nullable String parentName, String type, String name) {
+    Table<String, String, List<Entry>> table = plugins.get(new Parent(namespace, parentName));
+    List<Entry> result = table == null ? null : table.get(type, name);
+    return result == null ? Collections.emptyList() : result;
+  }
+
+  private static Table<String, String, List<Entry>> getMutableTable(
+    Map<Parent, Table<String, String, List<Entry>>> plugins,
+    Map<Parent, Table<String, String, List<Entry>>> updatedTables, Parent parent) {
+    return updatedTables.computeIfAbsent(parent, p -> {
+      Table<String, String, List<Entry>> table = HashBasedTable.create();
+      Table<String, String, List<Entry>> existing = plugins.get(p);
+      if (existing != null) {
+        existing.cellSet().forEach(cell -> table.put(cell.getRowKey(), cell.getColumnKey(), cell.getValue()));
+      }
+      return table;
+    });
+  }
+
+  private static List<Entry> getMutableList(Table<String, String, List<Entry>> table, Entry entry) {
+    String type = entry.pluginClass.getType();
+    String name = entry.pluginClass.getName();
+    List<Entry> entries = table.get(type, name);
+    // lists that are shared with the previous catalog are immutable, hence copy them before the first change
+    if (!(entries instanceof ArrayList)) {
+      entries = entries == null ? new ArrayList<>() : new ArrayList<>(entries);
+      table.put(type, name, entries);
+    }
+    return entries;
+  }
+
+  /**
+   * A plugin class in a plugin artifact, together with the parent artifacts that can use it.
+   */
+  static final class Entry {
+    private final Parent parent;
+    private final ArtifactId artifactId;
+    private final ArtifactDescriptor descriptor;
+    private final PluginClass pluginClass;
+    @Nullable
+    private final ArtifactRange usableBy;
+
+    /**
+     * Creates an entry for a plugin.
+     *
+     * @param parentNamespace the namespace of the parent artifact, or of the plugin artifact for a universal plugin
+     * @param parentName the name of the parent artifact, or {@code null} for a universal plugin
+     * @param artifactId the id of the plugin artifact
+     * @param descriptor the descriptor of the plugin artifact
+     * @param pluginClass the plugin class
+     * @param usableBy the range of parent artifacts that can use the plugin, or {@code null} for any artifact
+     */
+    Entry(String parentNamespace, @Nullable String parentName, ArtifactId artifactId, ArtifactDescriptor descriptor,
+          PluginClass pluginClass, @Nullable ArtifactRange usableBy) {
+      this.parent = new Parent(parentNamespace, parentName);
+      this.artifactId = artifactId;
+      this.descriptor = descriptor;
+      this.pluginClass = pluginClass;
+      this.usableBy = usableBy;
+    }
+
+    ArtifactId getArtifactId() {
+      return artifactId;
+    }
+
+    ArtifactDescriptor getDescriptor() {
+      return descriptor;
+    }
+
+    PluginClass getPluginClass() {
+      return pluginClass;
+    }
+
+    boolean isUsableBy(ArtifactId parentArtifactId) {
+      if (usableBy == null) {
+        return true;
+      }
+      return usableBy.getNamespace().equals(parentArtifactId.getNamespace())
+        && usableBy.getName().equals(parentArtifactId.getArtifact())
+        && usableBy.versionIsInRange(new ArtifactVersion(parentArtifactId.getVersion()));
+    }
+  }
+
+  /**
+   * The parent artifact name and namespace of plugins, or the namespace of universal plugins.
+   */
+  private static final class Parent {
+    private final String namespace;
+    @Nullable
+    private final String name;
+
+    private Parent(String namespace, @Nullable String name) {
+      this.namespace = namespace;
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Parent other = (Parent) o;
+      return namespace.equals(other.namespace) && Objects.equals(name, other.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(namespace, name);
+    }
+  }
+}
@@ -52,6 +52,7 @@ import co.cask.cdap.internal.app.runtime.batch.dataset.output.ProvidedOutput;
 import co.cask.cdap.internal.app.runtime.batch.distributed.ContainerLauncherGenerator;
 import co.cask.cdap.internal.app.runtime.batch.distributed.MapReduceContainerHelper;
 import co.cask.cdap.internal.app.runtime.batch.distributed.MapReduceContainerLauncher;
+import co.cask.cdap.internal.app.runtime.distributed.LaunchResourceCache;
 import co.cask.cdap.internal.app.runtime.distributed.LocalizeResource;
 import co.cask.cdap.internal.app.runtime.workflow.WorkflowProgramInfo;
 import co.cask.cdap.proto.ProgramType;
@@ -240,11 +241,19 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
       Location tempLocation = createTempLocationDirectory();
       cleanupTask = createCleanupTask(tempLocation, cleanupTask);
 
+      // In distributed mode, jars and archives that are identical across runs are reused from the launch cache
+      LaunchResourceCache launchCache = null;
+      if (!MapReduceTaskContextProvider.isLocal(mapredConf)) {
+        launchCache = LaunchResourceCache.create(cConf, injector.getInstance(LocationFactory.class),
+                                                 context.getRunId().getId(), context.getProgramMetrics());
+        cleanupTask = createCleanupTask(launchCache, cleanupTask);
+      }
+
       // For local mode, everything is in the configuration classloader already, hence no need to create new jar
       if (!MapReduceTaskContextProvider.isLocal(mapredConf)) {
         // After calling initialize, we know what plugins are needed for the program, hence construct the proper
         // ClassLoader from here and use it for setting up the job
-        Location pluginArchive = createPluginArchive(tempLocation);
+        Location pluginArchive = createPluginArchive(tempLocation, launchCache);
         if (pluginArchive != null) {
           job.addCacheArchive(pluginArchive.toURI());
           mapredConf.set(Constants.Plugin.ARCHIVE, pluginArchive.getName());
@@ -265,17 +274,17 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
 
       // packaging job jar which includes cdap classes with dependencies
       File jobJar = buildJobJar(job, tempDir);
-      job.setJar(jobJar.toURI().toString());
+      job.setJar(launchCache == null ? jobJar.toURI().toString() : launchCache.cache(jobJar).toURI().toString());
 
       Location programJar = programJarLocation;
       String hbaseDDLExecutorDirectory = null;
       if (!MapReduceTaskContextProvider.isLocal(mapredConf)) {
         // Copy and localize the program jar in distributed mode
-        programJar = copyProgramJar(tempLocation);
+        programJar = copyProgramJar(tempLocation, launchCache);
         job.addCacheFile(programJar.toURI());
 
         // Generate and localize the launcher jar to control the classloader of MapReduce containers processes
-        Location launcherJar = createLauncherJar(tempLocation);
+        Location launcherJar = createLauncherJar(tempDir, tempLocation, launchCache);
         job.addCacheFile(launcherJar.toURI());
 
         // Launcher.jar should be the first one in the classpath
@@ -322,7 +331,7 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
         // Add extra jars set in cConf
         for (URI jarURI : CConfigurationUtil.getExtraJars(cConf)) {
           if ("file".equals(jarURI.getScheme())) {
-            Location extraJarLocation = copyFileToLocation(new File(jarURI.getPath()), tempLocation);
+            Location extraJarLocation = copyFileToLocation(new File(jarURI.getPath()), tempLocation, launchCache);
             job.addCacheFile(extraJarLocation.toURI());
           } else {
             job.addCacheFile(jarURI);
@@ -978,35 +987,45 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
    * Copies a plugin archive jar to the target location.
    *
    * @param targetDir directory where the archive jar should be created
+   * @param launchCache the cache to reuse the archive from, or {@code null} to always copy it
    * @return {@link Location} to the plugin archive or {@code null} if no plugin archive is available from the context.
    */
   @Nullable
-  private Location createPluginArchive(Location targetDir) throws IOException {
+  private Location createPluginArchive(Location targetDir,
+                                       @Nullable LaunchResourceCache launchCache) throws IOException {
     File pluginArchive = context.getPluginArchive();
     if (pluginArchive == null) {
       return null;
     }
-    return copyFileToLocation(pluginArchive, targetDir);
+    return copyFileToLocation(pluginArchive, targetDir, launchCache);
   }
 
   /**
-   * Copies a file to the target location.
+   * Copies a file to the target location, or returns the cached copy of it if there is a launch cache.
    *
    * @param targetDir directory where the file should be copied to.
+   * @param launchCache the cache to reuse the file from, or {@code null} to always copy it
    * @return {@link Location} to the file or {@code null} if given file is {@code null}.
    */
-  private Location copyFileToLocation(File file, Location targetDir) throws IOException {
+  private Location copyFileToLocation(File file, Location targetDir,
+                                      @Nullable LaunchResourceCache launchCache) throws IOException {
+    if (launchCache != null) {
+      return launchCache.cache(file);
+    }
     Location targetLocation = targetDir.append(file.getName()).getTempFile(".jar");
     Files.copy(file, Locations.newOutputSupplier(targetLocation));
     return targetLocation;
   }
 
   /**
-   * Creates a temp copy of the program jar.
+   * Creates a temp copy of the program jar, or returns the cached copy of it if there is a launch cache.
    *
    * @return a new {@link Location} which contains the same content as the program jar
    */
-  private Location copyProgramJar(Location targetDir) throws IOException {
+  private Location copyProgramJar(Location targetDir, @Nullable LaunchResourceCache launchCache) throws IOException {
+    if (launchCache != null) {
+      return launchCache.cache("program.jar", programJarLocation);
+    }
     Location programJarCopy = targetDir.append("program.jar");
 
     ByteStreams.copy(Locations.newInputSupplier(programJarLocation), Locations.newOutputSupplier(programJarCopy));
@@ -1021,14 +1040,20 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
    * @see MapReduceContainerLauncher
    * @see ContainerLauncherGenerator
    */
-  private Location createLauncherJar(Location targetDir) throws IOException {
-    Location launcherJar = targetDir.append("launcher.jar");
+  private Location createLauncherJar(File tempDir, Location targetDir,
+                                     @Nullable LaunchResourceCache launchCache) throws IOException {
+    List<String> mainClassNames = Arrays.asList(
+      "org.apache.hadoop.mapreduce.v2.app.MRAppMaster",
+      "org.apache.hadoop.mapred.YarnChild"
+    );
+    if (launchCache != null) {
+      File launcherJar = new File(tempDir, "launcher.jar");
+      ContainerLauncherGenerator.generateLauncherJar(mainClassNames, MapReduceContainerLauncher.class, launcherJar);
+      return launchCache.cache(launcherJar);
+    }
 
-    ContainerLauncherGenerator.generateLauncherJar(
-      Arrays.asList(
-        "org.apache.hadoop.mapreduce.v2.app.MRAppMaster",
-        "org.apache.hadoop.mapred.YarnChild"
-      ), MapReduceContainerLauncher.class, launcherJar);
+    Location launcherJar = targetDir.append("launcher.jar");
+    ContainerLauncherGenerator.generateLauncherJar(mainClassNames, MapReduceContainerLauncher.class, launcherJar);
     return launcherJar;
   }
 
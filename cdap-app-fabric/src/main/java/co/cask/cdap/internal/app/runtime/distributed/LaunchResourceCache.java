@@ -0,0 +1,346 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.distributed;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.Locations;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.twill.filesystem.Location;
+import org.apache.twill.filesystem.LocationFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of the jars and archives that are localized to the containers of a program run, on the shared
+ * {@link LocationFactory}. Each resource is stored under the hash of its content, so that a resource that is
+ * identical to one of a previous run is reused instead of being copied again.
+ *
+ * <p>
+ * The content of a jar or zip file is hashed by entry name and entry content, independent of the order
+ * and the time stamps of the entries, because most of the jars are regenerated for every run.
+ * </p>
+ *
+ * <p>
+ * Each run holds a lease on the cache entries it uses until it calls {@link #close()}. When the cache grows over
+ * its size budget, the least recently used entries that are not leased are deleted. A lease that is older than
+ * the lease timeout is considered abandoned by a run that did not terminate cleanly.
+ * </p>
+ */
+public final class LaunchResourceCache implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LaunchResourceCache.class);
+  private static final String LEASES = "leases";
+  // entries that were used more recently are never deleted, to avoid racing with runs that are acquiring them
+  private static final long GC_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+  private final Location cacheDir;
+  private final String leaseName;
+  private final long maxSizeBytes;
+  private final long leaseTimeoutMillis;
+  private final MetricsContext metricsContext;
+  private final List<Location> leases;
+
+  /**
+   * Creates a {@link LaunchResourceCache} for a program run, or returns {@code null} if the cache is disabled.
+   * The cache is separate for every user, so that programs running as different users do not share files.
+   *
+   * @param cConf the CDAP configuration
+   * @param locationFactory the {@link LocationFactory} shared by the containers of the run
+   * @param runId the id of the program run, used for leasing entries
+   * @param metricsContext the {@link MetricsContext} for emitting the number of bytes reused and copied
+   */
+  @Nullable
+  public static LaunchResourceCache create(CConfiguration cConf, LocationFactory locationFactory, String runId,
+                                           MetricsContext metricsContext) throws IOException {
+    if (!cConf.getBoolean(Constants.AppFabric.LAUNCH_CACHE_ENABLED)) {
+      return null;
+    }
+    String user = UserGroupInformation.getCurrentUser().getShortUserName();
+    Location cacheDir = locationFactory.create(cConf.get(Constants.AppFabric.LAUNCH_CACHE_DIR)).append(user);
+    return new LaunchResourceCache(cacheDir, runId,
+                                   cConf.getLong(Constants.AppFabric.LAUNCH_CACHE_MAX_SIZE_MB) * 1024 * 1024,
+                                   TimeUnit.SECONDS.toMillis(
+                                     cConf.getLong(Constants.AppFabric.LAUNCH_CACHE_LEASE_TIMEOUT_SECONDS)),
+                                   metricsContext);
+  }
+
+  @VisibleForTesting
+  LaunchResourceCache(Location cacheDir, String leaseName, long maxSizeBytes, long leaseTimeoutMillis,
+                      MetricsContext metricsContext) {
+    this.cacheDir = cacheDir;
+    this.leaseName = leaseName;
+    this.maxSizeBytes = maxSizeBytes;
+    this.leaseTimeoutMillis = leaseTimeoutMillis;
+    this.metricsContext = metricsContext;
+    this.leases = new ArrayList<>();
+  }
+
+  /**
+   * Returns the cached copy of the given file, with the same name as the file.
+   */
+  public Location cache(File file) throws IOException {
+    return cacheContent(file.getName(), () -> new FileInputStream(file));
+  }
+
+  /**
+   * Returns the cached copy of the given location, with the given name.
+   */
+  public Location cache(String name, Location location) throws IOException {
+    return cacheContent(name, location::getInputStream);
+  }
+
+  /**
+   * Returns the cached resource that is identified by the given fingerprint of its inputs, calling the given
+   * {@link ResourceWriter} to create it only if it is not cached yet. This avoids building a resource that is
+   * expensive to build, if its inputs can be identified without building it.
+   *
+   * @param name the name of the resource
+   * @param fingerprint a string that is different for every different content of the resource
+   * @param writer the {@link ResourceWriter} for writing the content of the resource
+   */
+  public Location cache(String name, String fingerprint, ResourceWriter writer) throws IOException {
+    MessageDigest digest = createDigest();
+    digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+    return cacheEntry(toHex(digest.digest()), name, writer);
+  }
+
+  private Location cacheContent(String name, InputStreamProvider source) throws IOException {
+    return cacheEntry(hash(source), name, output -> {
+      try (InputStream is = source.open()) {
+        ByteStreams.copy(is, output);
+      }
+    });
+  }
+
+  private Location cacheEntry(String key, String name, ResourceWriter writer) throws IOException {
+    Location entryDir = cacheDir.append(key);
+    acquireLease(entryDir);
+
+    Location target = entryDir.append(name);
+    if (target.exists()) {
+      long length = target.length();
+      LOG.debug("Reusing cached launch resource {} of {} bytes", target, length);
+      metricsContext.increment(Constants.Metrics.Program.LAUNCH_CACHE_HIT_BYTES, length);
+      return target;
+    }
+
+    // write to a temporary file first, so that a partially written resource is never used
+    Location tempLocation = entryDir.append("." + name).getTempFile(".tmp");
+    try {
+      try (OutputStream output = tempLocation.getOutputStream()) {
+        writer.write(output);
+      }
+      long length = tempLocation.length();
+      if (tempLocation.renameTo(target) == null) {
+        // another run may have cached the same resource concurrently
+        if (!target.exists()) {
+          throw new IOException("Failed to rename " + tempLocation + " to " + target);
+        }
+      }
+      LOG.debug("Cached launch resource {} of {} bytes", target, length);
+      metricsContext.increment(Constants.Metrics.Program.LAUNCH_CACHE_MISS_BYTES, length);
+      return target;
+    } finally {
+      Locations.deleteQuietly(tempLocation);
+    }
+  }
+
+  private void acquireLease(Location entryDir) throws IOException {
+    Location lease = entryDir.append(LEASES).append(leaseName);
+    if (leases.contains(lease)) {
+      return;
+    }
+    // creating the lease also updates the modification time of the leases directory, which is the last use time
+    entryDir.append(LEASES).mkdirs();
+    lease.createNew();
+    leases.add(lease);
+  }
+
+  /**
+   * Releases the leases held by this run, and deletes least recently used entries if the cache is over budget.
+   */
+  @Override
+  public void close() {
+    for (Location lease : leases) {
+      Locations.deleteQuietly(lease);
+    }
+    leases.clear();
+    try {
+      collectGarbage(System.currentTimeMillis());
+    } catch (IOException e) {
+      LOG.warn("Failed to clean up launch resource cache {}", cacheDir, e);
+    }
+  }
+
+  @VisibleForTesting
+  void collectGarbage(long now) throws IOException {
+    if (!cacheDir.exists()) {
+      return;
+    }
+    List<Entry> entries = new ArrayList<>();
+    long totalSize = 0L;
+    for (Location entryDir : cacheDir.list()) {
+      Entry entry = new Entry(entryDir, now);
+      entries.add(entry);
+      totalSize += entry.size;
+    }
+    if (totalSize <= maxSizeBytes) {
+      return;
+    }
+
+    entries.sort(Comparator.comparingLong(e -> e.lastUsed));
+    for (Entry entry : entries) {
+      if (totalSize <= maxSizeBytes) {
+        break;
+      }
+      if (entry.leased || entry.lastUsed > now - GC_GRACE_MILLIS) {
+        continue;
+      }
+      LOG.debug("Deleting launch resource cache entry {} of {} bytes", entry.location, entry.size);
+      if (entry.location.delete(true)) {
+        totalSize -= entry.size;
+      }
+    }
+  }
+
+  /**
+   * Computes the hash of the content of a resource. For a jar or zip file, the hash is computed from the names and
+   * contents of its entries in name order, so that rebuilding the same jar results in the same hash.
+   */
+  @VisibleForTesting
+  static String hash(InputStreamProvider source) throws IOException {
+    Map<String, byte[]> entryHashes = new TreeMap<>();
+    try (ZipInputStream zipInput = new ZipInputStream(source.open())) {
+      ZipEntry entry = zipInput.getNextEntry();
+      while (entry != null) {
+        entryHashes.put(entry.getName(), hash(zipInput, createDigest()));
+        entry = zipInput.getNextEntry();
+      }
+    } catch (IOException e) {
+      // not a zip file
+      entryHashes.clear();
+    }
+
+    MessageDigest digest = createDigest();
+    if (entryHashes.isEmpty()) {
+      try (InputStream is = source.open()) {
+        return toHex(hash(is, digest));
+      }
+    }
+    for (Map.Entry<String, byte[]> entry : entryHashes.entrySet()) {
+      digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+      digest.update(entry.getValue());
+    }
+    return toHex(digest.digest());
+  }
+
+  private static byte[] hash(InputStream is, MessageDigest digest) throws IOException {
+    byte[] buffer = new byte[64 * 1024];
+    int len = is.read(buffer);
+    while (len >= 0) {
+      digest.update(buffer, 0, len);
+      len = is.read(buffer);
+    }
+    return digest.digest();
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // SHA-256 is always available in the JRE
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      builder.append(String.format("%02x", b));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Writes the content of a resource to be cached.
+   */
+  public interface ResourceWriter {
+    void write(OutputStream output) throws IOException;
+  }
+
+  /**
+   * Opens the content of a resource to be cached.
+   */
+  @VisibleForTesting
+  interface InputStreamProvider {
+    InputStream open() throws IOException;
+  }
+
+  /**
+   * The size and usage of a cache entry.
+   */
+  private final class Entry {
+    private final Location location;
+    private final long size;
+    private final long lastUsed;
+    private final boolean leased;
+
+    private Entry(Location location, long now) throws IOException {
+      long size = 0L;
+      long lastUsed = location.lastModified();
+      boolean leased = false;
+      for (Location child : location.list()) {
+        if (!LEASES.equals(child.getName())) {
+          size += child.length();
+          continue;
+        }
+        lastUsed = Math.max(lastUsed, child.lastModified());
+        for (Location lease : child.list()) {
+          leased = leased || lease.lastModified() > now - leaseTimeoutMillis;
+        }
+      }
+      this.location = location;
+      this.size = size;
+      this.lastUsed = lastUsed;
+      this.leased = leased;
+    }
+  }
+}
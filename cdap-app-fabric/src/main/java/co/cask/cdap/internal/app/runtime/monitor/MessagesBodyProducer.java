@@ -39,17 +39,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 import javax.annotation.Nullable;
 
 /**
  * A {@link BodyProducer} to encode and send back messages.
  * Instead of using GenericDatumWriter, we perform the map and array encoding manually so that we don't have to buffer
- * all messages in memory before sending out.
+ * all messages in memory before sending out. The response can optionally be gzip compressed, in which case each
+ * chunk is sync flushed so that it can be decompressed by the client as soon as it is received.
  */
 final class MessagesBodyProducer extends BodyProducer {
 
@@ -66,6 +69,8 @@ final class MessagesBodyProducer extends BodyProducer {
   private final int messageChunkSize;
   private final Deque<GenericRecord> monitorMessages;
   private final ByteBuf chunk;
+  private final OutputStream chunkOutput;
+  private final GZIPOutputStream gzipOutput;
   private final Encoder encoder;
   private final DatumWriter<GenericRecord> messageWriter;
   private Iterator<Message> iterator;
@@ -73,7 +78,7 @@ final class MessagesBodyProducer extends BodyProducer {
   private boolean mapEnded;
 
   MessagesBodyProducer(CConfiguration cConf, Map<String, GenericRecord> requests,
-                       MessagingContext messagingContext) {
+                       MessagingContext messagingContext, boolean compress) throws IOException {
     this.requestsIterator = requests.entrySet().iterator();
     this.messagingContext = messagingContext;
     this.cConf = cConf;
@@ -81,7 +86,10 @@ final class MessagesBodyProducer extends BodyProducer {
     this.messageChunkSize = cConf.getInt(Constants.RuntimeMonitor.SERVER_CONSUME_CHUNK_SIZE);
     this.monitorMessages = new LinkedList<>();
     this.chunk = Unpooled.buffer(messageChunkSize);
-    this.encoder = EncoderFactory.get().directBinaryEncoder(new ByteBufOutputStream(chunk), null);
+    // The gzip header is written to the chunk right away and will be sent with the first chunk
+    this.gzipOutput = compress ? new GZIPOutputStream(new ByteBufOutputStream(chunk), true) : null;
+    this.chunkOutput = compress ? gzipOutput : new ByteBufOutputStream(chunk);
+    this.encoder = EncoderFactory.get().directBinaryEncoder(chunkOutput, null);
     this.messageWriter = new GenericDatumWriter<GenericRecord>(elementSchema) {
       @Override
       protected void writeBytes(Object datum, Encoder out) throws IOException {
@@ -100,24 +108,36 @@ final class MessagesBodyProducer extends BodyProducer {
     if (mapEnded) {
       return Unpooled.EMPTY_BUFFER;
     }
-    chunk.clear();
 
     iterator = getIterator();
     if (iterator != null && iterator.hasNext()) {
       sendMessages();
     }
 
-    return chunk.copy();
+    if (gzipOutput != null) {
+      // Writes the gzip trailer if this is the last chunk, otherwise flush all the compressed data
+      if (mapEnded) {
+        gzipOutput.finish();
+      } else {
+        gzipOutput.flush();
+      }
+    }
+
+    ByteBuf result = chunk.copy();
+    chunk.clear();
+    return result;
   }
 
   @Override
   public void finished() {
+    closeOutput();
     chunk.release();
   }
 
   @Override
   public void handleError(@Nullable Throwable cause) {
     closeIterator(iterator);
+    closeOutput();
     OUTAGE_LOG.error("Error occurred while sending chunks from Runtime Handler", cause);
   }
 
@@ -238,6 +258,14 @@ final class MessagesBodyProducer extends BodyProducer {
     return prefix == null ? null : prefix + topicConfig.substring(idx + 1);
   }
 
+  private void closeOutput() {
+    try {
+      chunkOutput.close();
+    } catch (IOException e) {
+      LOG.warn("Exception raised when closing output stream", e);
+    }
+  }
+
   private void closeIterator(Iterator<?> iterator) {
     if (iterator instanceof AutoCloseable) {
       try {
@@ -39,6 +39,7 @@ import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.ProgramRunId;
 import co.cask.cdap.spi.data.transaction.TransactionRunner;
 import co.cask.cdap.spi.data.transaction.TransactionRunners;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
 import com.google.gson.Gson;
 import org.slf4j.Logger;
@@ -74,6 +75,7 @@ public class RuntimeMonitor extends AbstractRetryableScheduledService {
   private final Map<String, String> requestKeyToLocalTopic;
 
   private final long pollTimeMillis;
+  private final long maxPollTimeMillis;
   private final long gracefulShutdownMillis;
   private final Deque<MonitorMessage> lastProgramStateMessages;
   private final MessagingContext messagingContext;
@@ -86,6 +88,8 @@ public class RuntimeMonitor extends AbstractRetryableScheduledService {
 
   private Map<String, MonitorConsumeRequest> topicsToRequest;
   private long programFinishTime;
+  // The current poll delay, which backs off while the remote runtime has no new messages
+  private volatile long currentPollTimeMillis;
 
   public RuntimeMonitor(ProgramRunId programRunId, CConfiguration cConf, RuntimeMonitorClient monitorClient,
                         MessagingContext messagingContext, ScheduledExecutorService scheduledExecutorService,
@@ -100,6 +104,8 @@ public class RuntimeMonitor extends AbstractRetryableScheduledService {
     this.monitorClient = monitorClient;
     this.limit = cConf.getInt(Constants.RuntimeMonitor.BATCH_SIZE);
     this.pollTimeMillis = cConf.getLong(Constants.RuntimeMonitor.POLL_TIME_MS);
+    this.maxPollTimeMillis = Math.max(pollTimeMillis, cConf.getLong(Constants.RuntimeMonitor.POLL_TIME_MAX_MS));
+    this.currentPollTimeMillis = pollTimeMillis;
     this.gracefulShutdownMillis = cConf.getLong(Constants.RuntimeMonitor.GRACEFUL_SHUTDOWN_MS);
     this.topicsToRequest = new HashMap<>();
     this.messagingContext = messagingContext;
@@ -149,6 +155,14 @@ public class RuntimeMonitor extends AbstractRetryableScheduledService {
     monitorClient.requestStop();
   }
 
+  /**
+   * Returns the current delay between two polls of the remote runtime.
+   */
+  @VisibleForTesting
+  public long getPollTimeMillis() {
+    return currentPollTimeMillis;
+  }
+
   @Override
   protected boolean shouldRetry(Exception ex) {
     if (!(ex instanceof ServiceUnavailableException)) {
@@ -189,6 +203,8 @@ public class RuntimeMonitor extends AbstractRetryableScheduledService {
       return 0;
     }
 
+    boolean hasMessages = monitorResponses.values().stream().anyMatch(messages -> !messages.isEmpty());
+
     // Update programFinishTime when remote runtime is in terminal state. Also buffer all the program status
     // events. This is done before transactional publishing to avoid re-fetching same remote runtime status
     // messages.
@@ -217,7 +233,14 @@ public class RuntimeMonitor extends AbstractRetryableScheduledService {
       }
     }
 
-    return pollTimeMillis;
+    // Poll less frequently while the remote runtime is idle. Keep polling at the normal rate once the program
+    // finished, so that the remote runtime can be shutdown right after the graceful shutdown period.
+    if (hasMessages || programFinishTime > 0) {
+      currentPollTimeMillis = pollTimeMillis;
+    } else {
+      currentPollTimeMillis = Math.min(maxPollTimeMillis, currentPollTimeMillis * 2);
+    }
+    return currentPollTimeMillis;
   }
 
   /**
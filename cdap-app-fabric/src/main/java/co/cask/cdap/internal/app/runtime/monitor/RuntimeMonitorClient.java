@@ -18,6 +18,7 @@ package co.cask.cdap.internal.app.runtime.monitor;
 
 import co.cask.cdap.common.ServiceUnavailableException;
 import co.cask.cdap.security.tools.HttpsEnabler;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
 import com.google.common.net.HttpHeaders;
@@ -54,6 +55,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
 import javax.net.ssl.HttpsURLConnection;
 
 /**
@@ -67,16 +69,31 @@ public final class RuntimeMonitorClient {
   private final DatumReader<GenericRecord> responseDatumReader;
   private final Supplier<InetSocketAddress> serverAddressSupplier;
   private final Proxy proxy;
+  private final boolean acceptCompression;
   private volatile URI baseURI;
 
   public RuntimeMonitorClient(HttpRequestConfig requestConfig, KeyStore keyStore, KeyStore trustStore,
                               Supplier<InetSocketAddress> serverAddressSupplier, Proxy proxy) {
+    this(requestConfig, keyStore, trustStore, serverAddressSupplier, proxy, true);
+  }
+
+  /**
+   * Creates a client that can optionally ask the server for a gzip compressed response.
+   *
+   * @param acceptCompression {@code true} to accept a gzip compressed response, {@code false} to always get
+   *                          the uncompressed response, as the clients prior to the compression support do
+   */
+  @VisibleForTesting
+  public RuntimeMonitorClient(HttpRequestConfig requestConfig, KeyStore keyStore, KeyStore trustStore,
+                              Supplier<InetSocketAddress> serverAddressSupplier, Proxy proxy,
+                              boolean acceptCompression) {
     this.requestConfig = requestConfig;
     this.httpsEnabler = new HttpsEnabler().setKeyStore(keyStore, ""::toCharArray).setTrustStore(trustStore);
     this.responseDatumReader = new GenericDatumReader<>(
       MonitorSchemas.V1.MonitorResponse.SCHEMA.getValueType().getElementType());
     this.serverAddressSupplier = serverAddressSupplier;
     this.proxy = proxy;
+    this.acceptCompression = acceptCompression;
   }
 
   /**
@@ -95,13 +112,22 @@ public final class RuntimeMonitorClient {
       urlConn.setDoOutput(true);
       urlConn.setRequestMethod("POST");
       urlConn.setRequestProperty(HttpHeaders.CONTENT_TYPE, "avro/binary");
+      if (acceptCompression) {
+        urlConn.setRequestProperty(HttpHeaders.ACCEPT_ENCODING, "gzip");
+      }
 
       try (OutputStream os = urlConn.getOutputStream()) {
         encodeRequest(request, os);
       }
 
       throwIfNotOK(urlConn.getResponseCode(), urlConn);
-      return decodeResponse(urlConn.getInputStream());
+
+      // The server only compresses the response if it supports and has compression enabled
+      InputStream is = urlConn.getInputStream();
+      if ("gzip".equalsIgnoreCase(urlConn.getContentEncoding())) {
+        is = new GZIPInputStream(is);
+      }
+      return decodeResponse(is);
     } catch (ConnectException e) {
       throw new ServiceUnavailableException("runtime.monitor", e);
     } finally {
@@ -41,6 +41,8 @@ import io.netty.buffer.ByteBufInputStream;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import org.apache.avro.generic.GenericDatumReader;
@@ -170,9 +172,16 @@ public class RuntimeMonitorServer extends AbstractIdleService {
     @Path("/metadata")
     public void metadata(FullHttpRequest request, HttpResponder responder) throws Exception {
       Map<String, GenericRecord> consumeRequests = decodeConsumeRequest(request);
-      MessagesBodyProducer messagesBodyProducer = new MessagesBodyProducer(cConf, consumeRequests, messagingContext);
-      responder.sendContent(HttpResponseStatus.OK, messagesBodyProducer,
-                            new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+      boolean compress = cConf.getBoolean(Constants.RuntimeMonitor.SERVER_COMPRESSION_ENABLED)
+        && request.headers().containsValue(HttpHeaderNames.ACCEPT_ENCODING, HttpHeaderValues.GZIP, true);
+
+      HttpHeaders headers = new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary");
+      if (compress) {
+        headers.set(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.GZIP);
+      }
+      MessagesBodyProducer messagesBodyProducer = new MessagesBodyProducer(cConf, consumeRequests,
+                                                                           messagingContext, compress);
+      responder.sendContent(HttpResponseStatus.OK, messagesBodyProducer, headers);
     }
 
     /**
@@ -39,9 +39,27 @@ public class BasicWorkflowStateWriter implements WorkflowStateWriter {
 
   @Override
   public void setWorkflowToken(ProgramRunId workflowRunId, WorkflowToken token) {
-    TransactionRunners.run(transactionRunner, context -> {
-      AppMetadataStore.create(context).setWorkflowToken(workflowRunId, token);
-    });
+    if (!(token instanceof BasicWorkflowToken)) {
+      TransactionRunners.run(transactionRunner, context -> {
+        AppMetadataStore.create(context).setWorkflowToken(workflowRunId, token);
+      });
+      return;
+    }
+
+    BasicWorkflowToken basicToken = (BasicWorkflowToken) token;
+    BasicWorkflowToken changes = basicToken.getChanges();
+    if (changes == null) {
+      return;
+    }
+    try {
+      TransactionRunners.run(transactionRunner, context -> {
+        AppMetadataStore.create(context).addWorkflowTokenChanges(workflowRunId, changes);
+      });
+    } catch (RuntimeException e) {
+      // write the whole token next time, since these changes are lost
+      basicToken.setAllChanged();
+      throw e;
+    }
   }
 
   @Override
@@ -35,8 +35,11 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -53,6 +56,10 @@ public class BasicWorkflowToken implements WorkflowToken, Serializable {
   private String nodeName;
   private boolean putAllowed = true;
   private int bytesLeft;
+  // The keys changed since the last call to getChanges(), or null if the whole token is considered changed.
+  // It is transient so that it is not part of the serialized token.
+  private transient Map<Scope, Set<String>> changedKeys;
+  private transient boolean countersChanged;
 
   /**
    * Creates a {@link BasicWorkflowToken} with the specified maximum size.
@@ -68,10 +75,19 @@ public class BasicWorkflowToken implements WorkflowToken, Serializable {
   }
 
   private BasicWorkflowToken(BasicWorkflowToken other) {
+    this(other, null);
+  }
+
+  /**
+   * Copies the given token. If the set of keys is given, only the values of those keys are copied.
+   */
+  private BasicWorkflowToken(BasicWorkflowToken other, @Nullable Map<Scope, Set<String>> keys) {
     for (Map.Entry<Scope, Map<String, List<NodeValue>>> entry : other.tokenValueMap.entrySet()) {
       Map<String, List<NodeValue>> tokenValueMapForScope = new HashMap<>();
       for (Map.Entry<String, List<NodeValue>> valueEntry : entry.getValue().entrySet()) {
-        tokenValueMapForScope.put(valueEntry.getKey(), Lists.newArrayList(valueEntry.getValue()));
+        if (keys == null || keys.get(entry.getKey()).contains(valueEntry.getKey())) {
+          tokenValueMapForScope.put(valueEntry.getKey(), Lists.newArrayList(valueEntry.getValue()));
+        }
       }
 
       this.tokenValueMap.put(entry.getKey(), tokenValueMapForScope);
@@ -125,6 +141,7 @@ public class BasicWorkflowToken implements WorkflowToken, Serializable {
           }
           if (!otherNodeValueExist) {
             addOrUpdate(otherKey, otherNodeValue, thisTokenValueMapForScope.get(otherKey), -1);
+            markChanged(scope, otherKey);
           }
         }
       }
@@ -160,6 +177,7 @@ public class BasicWorkflowToken implements WorkflowToken, Serializable {
     }
 
     NodeValue nodeValueToAddUpdate = new NodeValue(nodeName, value);
+    markChanged(scope, key);
     // Check if the current node already added the key to the token.
     // In that case replace that entry with the new one
     for (int i = 0; i < nodeValueList.size(); i++) {
@@ -277,6 +295,57 @@ public class BasicWorkflowToken implements WorkflowToken, Serializable {
     }
 
     this.mapReduceCounters = countersBuilder.build();
+    this.countersChanged = true;
+  }
+
+  /**
+   * Returns a token that only contains the values of the keys changed since the last call to this method, or
+   * all values if this method was never called on this token instance. The returned token can be applied to a copy
+   * of this token as it was on the last call with {@link #applyChanges(BasicWorkflowToken)}.
+   *
+   * @return a token with the changes, or {@code null} if nothing changed
+   */
+  @Nullable
+  public synchronized BasicWorkflowToken getChanges() {
+    BasicWorkflowToken changes;
+    if (changedKeys == null) {
+      changes = new BasicWorkflowToken(this);
+    } else if (changedKeys.values().stream().allMatch(Set::isEmpty) && !countersChanged) {
+      return null;
+    } else {
+      changes = new BasicWorkflowToken(this, changedKeys);
+      if (!countersChanged) {
+        changes.mapReduceCounters = null;
+      }
+    }
+    clearChanges();
+    return changes;
+  }
+
+  /**
+   * Considers the whole token as changed, so that the next call to {@link #getChanges()} returns all values.
+   * This is used when the last changes could not be persisted.
+   */
+  public synchronized void setAllChanged() {
+    changedKeys = null;
+  }
+
+  /**
+   * Applies the changes returned by {@link #getChanges()} to this token.
+   *
+   * @param changes the changes to apply
+   */
+  public synchronized void applyChanges(BasicWorkflowToken changes) {
+    for (Map.Entry<Scope, Map<String, List<NodeValue>>> entry : changes.tokenValueMap.entrySet()) {
+      for (Map.Entry<String, List<NodeValue>> valueEntry : entry.getValue().entrySet()) {
+        tokenValueMap.get(entry.getKey()).put(valueEntry.getKey(), Lists.newArrayList(valueEntry.getValue()));
+      }
+    }
+    if (changes.mapReduceCounters != null) {
+      mapReduceCounters = copyHadoopCounters(changes.mapReduceCounters);
+    }
+    nodeName = changes.nodeName;
+    bytesLeft = changes.bytesLeft;
   }
 
   /**
@@ -284,7 +353,24 @@ public class BasicWorkflowToken implements WorkflowToken, Serializable {
    * @return copied WorkflowToken
    */
   public synchronized WorkflowToken deepCopy() {
-    return new BasicWorkflowToken(this);
+    BasicWorkflowToken copy = new BasicWorkflowToken(this);
+    // Only track the changes made to the copy. The changes made to this token are persisted through this token.
+    copy.clearChanges();
+    return copy;
+  }
+
+  private void clearChanges() {
+    changedKeys = new EnumMap<>(Scope.class);
+    for (Scope scope : Scope.values()) {
+      changedKeys.put(scope, new HashSet<>());
+    }
+    countersChanged = false;
+  }
+
+  private void markChanged(Scope scope, String key) {
+    if (changedKeys != null) {
+      changedKeys.get(scope).add(key);
+    }
   }
 
   private Map<String, Map<String, Long>> copyHadoopCounters(Map<String, Map<String, Long>> input) {
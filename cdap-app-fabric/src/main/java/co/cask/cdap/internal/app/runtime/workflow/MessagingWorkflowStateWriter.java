@@ -53,12 +53,26 @@ public class MessagingWorkflowStateWriter implements WorkflowStateWriter {
 
   @Override
   public void setWorkflowToken(ProgramRunId workflowRunId, WorkflowToken token) {
-    MetadataMessage message = new MetadataMessage(MetadataMessage.Type.WORKFLOW_TOKEN,
-                                                  workflowRunId, GSON.toJsonTree(token));
+    MetadataMessage message;
+    BasicWorkflowToken basicToken = token instanceof BasicWorkflowToken ? (BasicWorkflowToken) token : null;
+    if (basicToken == null) {
+      message = new MetadataMessage(MetadataMessage.Type.WORKFLOW_TOKEN, workflowRunId, GSON.toJsonTree(token));
+    } else {
+      BasicWorkflowToken changes = basicToken.getChanges();
+      if (changes == null) {
+        return;
+      }
+      message = new MetadataMessage(MetadataMessage.Type.WORKFLOW_TOKEN_CHANGES, workflowRunId,
+                                    GSON.toJsonTree(changes));
+    }
     StoreRequest request = StoreRequestBuilder.of(topic).addPayload(GSON.toJson(message)).build();
     try {
       Retries.callWithRetries(() -> messagingService.publish(request), retryStrategy, Retries.ALWAYS_TRUE);
     } catch (Exception e) {
+      if (basicToken != null) {
+        // publish the whole token next time, since these changes are lost
+        basicToken.setAllChanged();
+      }
       // Don't log the workflow token, as it can be large and may contain sensitive data
       throw new RuntimeException("Failed to publish workflow token for workflow run " + workflowRunId, e);
     }
@@ -27,7 +27,8 @@ import co.cask.cdap.proto.id.ProgramRunId;
 public interface WorkflowStateWriter {
 
   /**
-   * Sets the {@link WorkflowToken} for a specified run of a workflow.
+   * Sets the {@link WorkflowToken} for a specified run of a workflow. For a {@link BasicWorkflowToken}, only the
+   * changes made since the last call with the same token are written.
    *
    * @param workflowRunId workflow run for which the {@link WorkflowToken} is to be set
    * @param token the {@link WorkflowToken} to set to
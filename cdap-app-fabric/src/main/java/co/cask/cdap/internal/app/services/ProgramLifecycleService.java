@@ -56,6 +56,7 @@ import co.cask.cdap.proto.ProgramHistory;
 import co.cask.cdap.proto.ProgramRecord;
 import co.cask.cdap.proto.ProgramRunStatus;
 import co.cask.cdap.proto.ProgramStatus;
+import co.cask.cdap.proto.ProgramStatusResult;
 import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.proto.RunCountResult;
 import co.cask.cdap.proto.RunRecord;
@@ -112,6 +113,8 @@ import javax.annotation.Nullable;
  */
 public class ProgramLifecycleService {
   private static final Logger LOG = LoggerFactory.getLogger(ProgramLifecycleService.class);
+  // the number of programs to read the runs of in a single transaction
+  private static final int RUNS_BATCH_SIZE = 100;
 
   private static final Gson GSON = ApplicationSpecificationAdapter
     .addTypeAdapters(new GsonBuilder())
@@ -168,6 +171,33 @@ public class ProgramLifecycleService {
     return getExistingAppProgramStatus(appSpec, programId);
   }
 
+  /**
+   * Returns the statuses of the given programs. The statuses are computed in a single transaction, hence this is
+   * preferred over calling {@link #getProgramStatus(ProgramId)} for each program.
+   *
+   * @param programIds the ids of the programs to get the statuses for
+   * @return the status of each given program, or the exception if the program does not exist or the principal
+   *         does not have access to it
+   * @throws Exception if there was some exception performing authorization checks
+   */
+  public List<ProgramStatusResult> getProgramStatuses(Collection<ProgramId> programIds) throws Exception {
+    Set<? extends EntityId> visibleEntities = authorizationEnforcer.isVisible(new HashSet<>(programIds),
+                                                                              authenticationContext.getPrincipal());
+    List<ProgramStatusResult> result = new ArrayList<>(programIds.size());
+    for (ProgramHistory activeRuns : store.getActiveRuns(programIds)) {
+      ProgramId programId = activeRuns.getProgramId();
+      if (!visibleEntities.contains(programId)) {
+        result.add(new ProgramStatusResult(programId, null,
+                                           new UnauthorizedException(authenticationContext.getPrincipal(), programId)));
+      } else if (activeRuns.getException() != null) {
+        result.add(new ProgramStatusResult(programId, null, activeRuns.getException()));
+      } else {
+        result.add(new ProgramStatusResult(programId, getProgramStatus(activeRuns.getRuns()), null));
+      }
+    }
+    return result;
+  }
+
   /**
    * Returns the program run count of the given program.
    *
@@ -248,13 +278,13 @@ public class ProgramLifecycleService {
                                       long start, long end, int limit) throws Exception {
     List<ProgramHistory> result = new ArrayList<>();
 
-    // do this in batches to avoid transaction timeouts.
-    List<ProgramId> batch = new ArrayList<>(20);
+    // do this in batches to avoid transaction timeouts. Each batch is read in a single transaction.
+    List<ProgramId> batch = new ArrayList<>(RUNS_BATCH_SIZE);
 
     for (ProgramId program : programs) {
       batch.add(program);
 
-      if (batch.size() >= 20) {
+      if (batch.size() >= RUNS_BATCH_SIZE) {
         addProgramHistory(result, batch, programRunStatus, start, end, limit);
         batch.clear();
       }
@@ -309,9 +339,9 @@ public class ProgramLifecycleService {
    * @return the program status
    */
   @VisibleForTesting
-  static ProgramStatus getProgramStatus(Collection<RunRecordMeta> runRecords) {
+  static ProgramStatus getProgramStatus(Collection<? extends RunRecord> runRecords) {
     boolean hasStarting = false;
-    for (RunRecordMeta runRecord : runRecords) {
+    for (RunRecord runRecord : runRecords) {
       ProgramRunStatus runStatus = runRecord.getStatus();
       if (runStatus == ProgramRunStatus.RUNNING || runStatus == ProgramRunStatus.SUSPENDED) {
         return ProgramStatus.RUNNING;
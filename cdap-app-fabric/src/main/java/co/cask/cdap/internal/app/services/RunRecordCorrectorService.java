@@ -172,6 +172,16 @@ public abstract class RunRecordCorrectorService extends AbstractIdleService {
 
     Runnable runnable = new LocalDatasetDeleterRunnable(namespaceAdmin, store, datasetFramework);
     localDatasetDeleterService.scheduleWithFixedDelay(runnable, initialDelay, interval, TimeUnit.SECONDS);
+
+    // Index the run records written before the run records time index was introduced.
+    // This only needs to run once and it is a no-op once completed.
+    localDatasetDeleterService.execute(() -> {
+      try {
+        store.backfillRunRecordTimeIndex(txBatchSize);
+      } catch (Exception e) {
+        LOG.warn("Failed to backfill the run records time index. It will be retried on the next restart.", e);
+      }
+    });
   }
 
   @Override
@@ -64,7 +64,9 @@ import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -75,6 +77,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import javax.annotation.Nullable;
 
 /**
@@ -96,6 +99,15 @@ import javax.annotation.Nullable;
  *
  * Workflow node state is updated whenever program state is updated
  * and we notice that the program belongs to a workflow.
+ *
+ * The workflow token of a workflow run is stored as a full token, followed by the changes made to it since then:
+ *
+ * namespace|app|version|programtype|program|runid
+ * namespace|app|version|programtype|program|runid|sequence
+ *
+ * The row of the full token also keeps the number of changes, so that adding a change doesn't need to read the
+ * full token or the other changes. The changes are merged into the full token once there are
+ * {@code WORKFLOW_TOKEN_MAX_DELTAS} of them.
  */
 public class AppMetadataStore {
 
@@ -112,6 +124,19 @@ public class AppMetadataStore {
   private static final String TYPE_COUNT = "runRecordCount";
   private static final String TYPE_RUN_RECORD_UPGRADE_COUNT = "runRecordUpgradeCount";
   private static final String SMALLEST_POSSIBLE_STRING = "";
+  // Maximum number of workflow token changes to keep before merging them into the full workflow token
+  private static final int WORKFLOW_TOKEN_MAX_DELTAS = 16;
+
+  // Size of the time buckets in the run records time index. A completed run is indexed in every bucket that
+  // overlaps with its start and stop time, while an active run is only indexed in the bucket of its start time.
+  private static final long RUN_RECORD_TIME_BUCKET_SECS = TimeUnit.HOURS.toSeconds(1);
+  // Completed runs that span over more buckets than this are indexed in a single bucket that is always scanned
+  private static final int RUN_RECORD_MAX_TIME_BUCKETS = 24;
+  private static final long RUN_RECORD_LONG_RUN_TIME_BUCKET = -1L;
+  // Progress of backfilling the time index for run records written before the index exists
+  private static final String RUN_RECORD_TIME_INDEX_STATE = "run.record.time.index";
+  private static final String RUN_RECORD_TIME_INDEX_BACKFILL = "backfill";
+  private static final String RUN_RECORD_TIME_INDEX_BACKFILL_COMPLETED = "completed";
 
   private static final Map<ProgramRunStatus, String> STATUS_TYPE_MAP = ImmutableMap.<ProgramRunStatus, String>builder()
     .put(ProgramRunStatus.PENDING, TYPE_RUN_RECORD_ACTIVE)
@@ -129,7 +154,9 @@ public class AppMetadataStore {
   private StructuredTable applicationSpecificationTable;
   private StructuredTable workflowNodeStateTable;
   private StructuredTable runRecordsTable;
+  private StructuredTable runRecordsTimeIndexTable;
   private StructuredTable workflowsTable;
+  private StructuredTable workflowTokenDeltasTable;
   private StructuredTable programCountsTable;
   private StructuredTable subscriberStateTable;
 
@@ -177,6 +204,17 @@ public class AppMetadataStore {
     return runRecordsTable;
   }
 
+  private StructuredTable getRunRecordsTimeIndexTable() {
+    try {
+      if (runRecordsTimeIndexTable == null) {
+        runRecordsTimeIndexTable = context.getTable(StoreDefinition.AppMetadataStore.RUN_RECORDS_TIME_INDEX);
+      }
+    } catch (TableNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+    return runRecordsTimeIndexTable;
+  }
+
   private StructuredTable getWorkflowsTable() {
     try {
       if (workflowsTable == null) {
@@ -188,6 +226,17 @@ public class AppMetadataStore {
     return workflowsTable;
   }
 
+  private StructuredTable getWorkflowTokenDeltasTable() {
+    try {
+      if (workflowTokenDeltasTable == null) {
+        workflowTokenDeltasTable = context.getTable(StoreDefinition.AppMetadataStore.WORKFLOW_TOKEN_DELTAS);
+      }
+    } catch (TableNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+    return workflowTokenDeltasTable;
+  }
+
   private StructuredTable getProgramCountsTable() {
     try {
       if (programCountsTable == null) {
@@ -266,10 +315,11 @@ public class AppMetadataStore {
   public Map<ApplicationId, ApplicationMeta> getApplicationsForAppIds(Collection<ApplicationId> appIds)
     throws IOException {
     Map<ApplicationId, ApplicationMeta> result = new HashMap<>();
-    for (ApplicationId appId: appIds) {
+    // the same application is usually given many times, once for each of its programs, so only read it once
+    for (ApplicationId appId: new HashSet<>(appIds)) {
       ApplicationMeta applicationMeta = getApplication(appId);
       if (applicationMeta != null) {
-        result.put(appId, getApplication(appId));
+        result.put(appId, applicationMeta);
       }
     }
     return result;
@@ -362,9 +412,8 @@ public class AppMetadataStore {
       // Update the parent Workflow run record by adding node id and program run id in the properties
       Map<String, String> properties = new HashMap<>(record.getProperties());
       properties.put(workflowNodeId, programRunId.getRun());
-      writeToStructuredTableWithPrimaryKeys(
-        runRecordFields, RunRecordMeta.builder(record).setProperties(properties).setSourceId(sourceId).build(),
-        getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+      writeRunRecord(runRecordFields,
+                     RunRecordMeta.builder(record).setProperties(properties).setSourceId(sourceId).build());
     }
   }
 
@@ -425,8 +474,8 @@ public class AppMetadataStore {
       .setPrincipal(systemArgs.get(ProgramOptionConstants.PRINCIPAL))
       .build();
     List<Field<?>> fields = getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_ACTIVE, programRunId, startTs);
-    writeToStructuredTableWithPrimaryKeys(
-      fields, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(fields, meta);
+    writeRunRecordTimeIndex(TYPE_RUN_RECORD_ACTIVE, meta);
     List<Field<?>> countKey = getProgramCountPrimaryKeys(TYPE_COUNT, programRunId.getParent());
     getProgramCountsTable().increment(countKey, StoreDefinition.AppMetadataStore.COUNTS, 1L);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.PROVISIONING, programRunId);
@@ -480,8 +529,7 @@ public class AppMetadataStore {
       .setCluster(cluster)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(key, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.PROVISIONED, programRunId);
     return meta;
   }
@@ -520,8 +568,7 @@ public class AppMetadataStore {
       .setCluster(cluster)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(key, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.DEPROVISIONING, programRunId);
     return meta;
   }
@@ -561,8 +608,7 @@ public class AppMetadataStore {
       .setCluster(cluster)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(key, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.DEPROVISIONED, programRunId);
     return meta;
   }
@@ -601,8 +647,7 @@ public class AppMetadataStore {
       .setCluster(cluster)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(key, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.ORPHANED, programRunId);
     return meta;
   }
@@ -643,8 +688,8 @@ public class AppMetadataStore {
       .build();
 
     List<Field<?>> fields = getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_COMPLETED, programRunId, startTs);
-    writeToStructuredTableWithPrimaryKeys(
-      fields, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(fields, meta);
+    writeRunRecordTimeIndex(TYPE_RUN_RECORD_COMPLETED, meta);
     List<Field<?>> countKey = getProgramCountPrimaryKeys(TYPE_COUNT, programRunId.getParent());
     getProgramCountsTable().increment(countKey, StoreDefinition.AppMetadataStore.COUNTS, 1L);
     LOG.trace("Recorded {} for program {}", ProgramRunStatus.REJECTED, programRunId);
@@ -690,8 +735,7 @@ public class AppMetadataStore {
       .setTwillRunId(twillRunId)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(key, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunStatus.STARTING, programRunId);
     return meta;
   }
@@ -737,8 +781,7 @@ public class AppMetadataStore {
       .setTwillRunId(twillRunId)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(key, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunStatus.RUNNING, programRunId);
     return meta;
   }
@@ -813,8 +856,7 @@ public class AppMetadataStore {
       }
     }
     RunRecordMeta meta = builder.build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(key, meta);
     LOG.trace("Recorded {} for program {}", toStatus, programRunId);
     return meta;
   }
@@ -847,6 +889,7 @@ public class AppMetadataStore {
     }
     // Delete the old run record
     delete(existing);
+    deleteRunRecordTimeIndex(STATUS_TYPE_MAP.get(existing.getStatus()), existing);
 
     // Record in the workflow
     Map<String, String> systemArgs = existing.getSystemArgs();
@@ -860,8 +903,8 @@ public class AppMetadataStore {
       .setStatus(runStatus)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(key, meta);
+    writeRunRecordTimeIndex(TYPE_RUN_RECORD_COMPLETED, meta);
     LOG.trace("Recorded {} for program {}", runStatus, programRunId);
     return meta;
   }
@@ -1009,6 +1052,40 @@ public class AppMetadataStore {
     return getProgramRunIdMap(Range.singleton(prefix), timePredicate);
   }
 
+  /**
+   * Get active runs of the given programs, active runs means program run with status STARTING, PENDING,
+   * RUNNING or SUSPENDED. The active runs of the programs in the same application are read with a single scan.
+   *
+   * @param programIds the programs to get the active runs for
+   * @return map of program id to the active runs of the program, which has an entry for each of the given programs
+   */
+  public Map<ProgramId, Map<ProgramRunId, RunRecordMeta>> getActiveRuns(Collection<ProgramId> programIds)
+    throws IOException {
+    Map<ProgramId, Map<ProgramRunId, RunRecordMeta>> result = new LinkedHashMap<>();
+    Map<ApplicationId, List<ProgramId>> appPrograms = new LinkedHashMap<>();
+    for (ProgramId programId : programIds) {
+      if (result.put(programId, new LinkedHashMap<>()) == null) {
+        appPrograms.computeIfAbsent(programId.getParent(), appId -> new ArrayList<>()).add(programId);
+      }
+    }
+
+    Predicate<RunRecordMeta> timePredicate = getTimeRangePredicate(0, Long.MAX_VALUE);
+    for (Map.Entry<ApplicationId, List<ProgramId>> entry : appPrograms.entrySet()) {
+      List<ProgramId> programs = entry.getValue();
+      List<Field<?>> prefix = programs.size() == 1
+        ? getRunRecordProgramPrefix(TYPE_RUN_RECORD_ACTIVE, programs.get(0))
+        : getRunRecordApplicationPrefix(TYPE_RUN_RECORD_ACTIVE, entry.getKey());
+      enumerateProgramRuns(Range.singleton(prefix), timePredicate, null, Integer.MAX_VALUE, meta -> {
+        Map<ProgramRunId, RunRecordMeta> runs = result.get(meta.getProgramRunId().getParent());
+        // runs of the programs in the application that are not requested are ignored
+        if (runs != null) {
+          runs.put(meta.getProgramRunId(), meta);
+        }
+      });
+    }
+    return result;
+  }
+
   public Map<ProgramRunId, RunRecordMeta> getRuns(@Nullable ProgramId programId, final ProgramRunStatus status,
                                                   long startTime, long endTime, int limit,
                                                   @Nullable Predicate<RunRecordMeta> filter)
@@ -1240,6 +1317,9 @@ public class AppMetadataStore {
   public void deleteProgramHistory(String namespaceId, String appId, String versionId)
     throws IOException {
     ApplicationId applicationId = new ApplicationId(namespaceId, appId, versionId);
+    deleteRunRecordTimeIndex(Range.singleton(getRunRecordApplicationPrefix(TYPE_RUN_RECORD_ACTIVE, applicationId)));
+    deleteRunRecordTimeIndex(Range.singleton(getRunRecordApplicationPrefix(TYPE_RUN_RECORD_COMPLETED,
+                                                                           applicationId)));
     getRunRecordsTable()
       .deleteAll(Range.singleton(getRunRecordApplicationPrefix(TYPE_RUN_RECORD_ACTIVE, applicationId)));
     getRunRecordsTable()
@@ -1250,6 +1330,10 @@ public class AppMetadataStore {
   }
 
   public void deleteProgramHistory(String namespaceId) throws IOException {
+    deleteRunRecordTimeIndex(
+      Range.singleton(getRunRecordNamespacePrefixWithString(TYPE_RUN_RECORD_ACTIVE, namespaceId)));
+    deleteRunRecordTimeIndex(
+      Range.singleton(getRunRecordNamespacePrefixWithString(TYPE_RUN_RECORD_COMPLETED, namespaceId)));
     getRunRecordsTable().deleteAll(
       Range.singleton(getRunRecordNamespacePrefixWithString(TYPE_RUN_RECORD_ACTIVE, namespaceId)));
     getRunRecordsTable().deleteAll(Range.singleton(
@@ -1272,23 +1356,106 @@ public class AppMetadataStore {
     }
 
     List<Field<?>> keys = getWorkflowPrimaryKeysWithoutNode(workflowRunId);
+    // the full token replaces all the changes
+    getWorkflowTokenDeltasTable().deleteAll(Range.singleton(keys));
     keys.add(Fields.stringField(StoreDefinition.AppMetadataStore.WORKFLOW_DATA, GSON.toJson(workflowToken)));
+    keys.add(Fields.longField(StoreDefinition.AppMetadataStore.WORKFLOW_TOKEN_DELTA_COUNT, 0L));
+    getWorkflowsTable().upsert(keys);
+  }
+
+  /**
+   * Adds the changes of the {@link WorkflowToken} for the given workflow run, as returned by
+   * {@link BasicWorkflowToken#getChanges()}. The changes are stored separately from the full token, hence the cost
+   * doesn't grow with the size of the token, until the changes are merged into the full token.
+   *
+   * @param workflowRunId the {@link ProgramRunId} representing the workflow run
+   * @param changes the changes of the {@link WorkflowToken} since the last time it was set or changed
+   */
+  public void addWorkflowTokenChanges(ProgramRunId workflowRunId, BasicWorkflowToken changes) throws IOException {
+    if (workflowRunId.getType() != ProgramType.WORKFLOW) {
+      throw new IllegalArgumentException("WorkflowToken can only be set for workflow execution: " + workflowRunId);
+    }
+
+    List<Field<?>> keys = getWorkflowPrimaryKeysWithoutNode(workflowRunId);
+    Long deltaCount = getWorkflowsTable()
+      .read(keys, Collections.singleton(StoreDefinition.AppMetadataStore.WORKFLOW_TOKEN_DELTA_COUNT))
+      .map(row -> row.getLong(StoreDefinition.AppMetadataStore.WORKFLOW_TOKEN_DELTA_COUNT))
+      .orElse(null);
+    if (deltaCount == null) {
+      // Either there is no token yet, or the token was written without the count of changes
+      if (!getWorkflowsTable().read(keys).isPresent()) {
+        // the first changes of a token contain the whole token
+        setWorkflowToken(workflowRunId, changes);
+        return;
+      }
+      deltaCount = (long) getWorkflowTokenDeltas(keys).size();
+    }
+
+    if (deltaCount + 1 >= WORKFLOW_TOKEN_MAX_DELTAS) {
+      BasicWorkflowToken token = readWorkflowToken(keys);
+      token.applyChanges(changes);
+      setWorkflowToken(workflowRunId, token);
+      return;
+    }
+
+    List<Field<?>> deltaKeys = new ArrayList<>(keys);
+    deltaKeys.add(Fields.longField(StoreDefinition.AppMetadataStore.WORKFLOW_TOKEN_DELTA_SEQ, deltaCount));
+    deltaKeys.add(Fields.stringField(StoreDefinition.AppMetadataStore.WORKFLOW_DATA, GSON.toJson(changes)));
+    getWorkflowTokenDeltasTable().upsert(deltaKeys);
+
+    keys.add(Fields.longField(StoreDefinition.AppMetadataStore.WORKFLOW_TOKEN_DELTA_COUNT, deltaCount + 1));
     getWorkflowsTable().upsert(keys);
   }
 
   public WorkflowToken getWorkflowToken(ProgramId workflowId, String workflowRunId)
     throws IOException {
     Preconditions.checkArgument(ProgramType.WORKFLOW == workflowId.getType());
-    List<Field<?>> keys = getWorkflowPrimaryKeysWithoutNode(workflowId.run(workflowRunId));
-    Optional<StructuredRow> row = getWorkflowsTable().read(keys);
+    BasicWorkflowToken token = readWorkflowToken(getWorkflowPrimaryKeysWithoutNode(workflowId.run(workflowRunId)));
 
-    if (!row.isPresent()) {
+    if (token == null) {
       LOG.debug("No workflow token available for workflow: {}, runId: {}", workflowId, workflowRunId);
       // Its ok to not allow any updates by returning a 0 size token.
       return new BasicWorkflowToken(0);
     }
+    return token;
+  }
+
+  /**
+   * Reads the full workflow token of a workflow run and applies the changes made to it since then.
+   *
+   * @return the workflow token or {@code null} if there is no token for the workflow run
+   */
+  @Nullable
+  private BasicWorkflowToken readWorkflowToken(List<Field<?>> workflowKeys) throws IOException {
+    Optional<StructuredRow> row = getWorkflowsTable().read(workflowKeys);
+    if (!row.isPresent()) {
+      return null;
+    }
 
-    return GSON.fromJson(row.get().getString(StoreDefinition.AppMetadataStore.WORKFLOW_DATA), BasicWorkflowToken.class);
+    BasicWorkflowToken token = GSON.fromJson(row.get().getString(StoreDefinition.AppMetadataStore.WORKFLOW_DATA),
+                                             BasicWorkflowToken.class);
+    for (String delta : getWorkflowTokenDeltas(workflowKeys)) {
+      token.applyChanges(GSON.fromJson(delta, BasicWorkflowToken.class));
+    }
+    return token;
+  }
+
+  /**
+   * Returns the serialized workflow token changes of a workflow run, in the order they were added.
+   */
+  private List<String> getWorkflowTokenDeltas(List<Field<?>> workflowKeys) throws IOException {
+    List<String> deltas = new ArrayList<>();
+    try (CloseableIterator<StructuredRow> iterator =
+           getWorkflowTokenDeltasTable().scan(Range.singleton(workflowKeys), Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        String delta = iterator.next().getString(StoreDefinition.AppMetadataStore.WORKFLOW_DATA);
+        // rows deleted in the current transaction can still be returned by the scan, without any value
+        if (delta != null) {
+          deltas.add(delta);
+        }
+      }
+    }
+    return deltas;
   }
 
   /**
@@ -1296,10 +1463,8 @@ public class AppMetadataStore {
    */
   public Set<RunId> getRunningInRangeCompleted(long startTimeInSecs, long endTimeInSecs)
     throws IOException {
-    // This method scans a large amount of data and may timeout. However, the previous implementation would
-    // simply return incomplete data. We have doubled the amount of time each transaction can take by using two
-    // transactions - and can further get all namespaces from the smaller app spec table and do one transaction per
-    // namespace if necessary.
+    // Only the time buckets overlapping with the given range are read from the run records time index.
+    // Until the index is backfilled, this falls back to scanning all completed run records.
     return getRunningInRangeForStatus(TYPE_RUN_RECORD_COMPLETED, startTimeInSecs, endTimeInSecs);
   }
 
@@ -1308,10 +1473,8 @@ public class AppMetadataStore {
    */
   public Set<RunId> getRunningInRangeActive(long startTimeInSecs, long endTimeInSecs)
     throws IOException {
-    // This method scans a large amount of data and may timeout. However, the previous implementation would
-    // simply return incomplete data. We have doubled the amount of time each transaction can take by using two
-    // transactions - and can further get all namespaces from the smaller app spec table and do one transaction per
-    // namespace if necessary.
+    // Only the time buckets up to the end of the given range are read from the run records time index.
+    // Until the index is backfilled, this falls back to scanning all active run records.
     return getRunningInRangeForStatus(TYPE_RUN_RECORD_ACTIVE, startTimeInSecs, endTimeInSecs);
   }
 
@@ -1393,6 +1556,10 @@ public class AppMetadataStore {
   @VisibleForTesting
   Set<RunId> getRunningInRangeForStatus(String statusKey, final long startTimeInSecs,
                                         final long endTimeInSecs) throws IOException {
+    if (isRunRecordTimeIndexed()) {
+      return getRunningInRangeFromTimeIndex(statusKey, startTimeInSecs, endTimeInSecs);
+    }
+
     // Create time filter to get running programs between start and end time
     Predicate<RunRecordMeta> timeFilter = (runRecordMeta) ->
       runRecordMeta.getStartTs() < endTimeInSecs &&
@@ -1406,13 +1573,178 @@ public class AppMetadataStore {
         .collect(Collectors.toSet());
   }
 
+  /**
+   * Adds the next batch of run records to the run records time index. This is for indexing run records that were
+   * written before the index was introduced. The progress is persisted, so that the backfill can be done
+   * incrementally over multiple transactions. Once all existing run records are indexed, queries for runs in
+   * a time range are served from the index.
+   *
+   * @param batchSize maximum number of run records to index in this call
+   * @return {@code true} if there are more run records to be indexed, {@code false} if the backfill is completed
+   */
+  public boolean backfillRunRecordTimeIndex(int batchSize) throws IOException {
+    String state = retrieveSubscriberState(RUN_RECORD_TIME_INDEX_STATE, RUN_RECORD_TIME_INDEX_BACKFILL);
+    if (RUN_RECORD_TIME_INDEX_BACKFILL_COMPLETED.equals(state)) {
+      return false;
+    }
+
+    Range range = Range.all();
+    if (state != null) {
+      RunRecordKey lastKey = GSON.fromJson(state, RunRecordKey.class);
+      range = Range.from(getProgramRunInvertedTimeKey(lastKey.recordType, ProgramRunId.fromString(lastKey.runId),
+                                                      lastKey.startTs), Range.Bound.EXCLUSIVE);
+    }
+
+    int count = 0;
+    RunRecordKey lastKey = null;
+    try (CloseableIterator<StructuredRow> iterator = getRunRecordsTable().scan(range, batchSize)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        String recordType = row.getString(StoreDefinition.AppMetadataStore.RUN_STATUS);
+        RunRecordMeta meta = deserializeRunRecordMeta(row);
+        writeRunRecordTimeIndex(recordType, meta);
+        lastKey = new RunRecordKey(recordType, meta.getProgramRunId().toString(), meta.getStartTs());
+        count++;
+      }
+    }
+
+    if (count < batchSize) {
+      persistSubscriberState(RUN_RECORD_TIME_INDEX_STATE, RUN_RECORD_TIME_INDEX_BACKFILL,
+                             RUN_RECORD_TIME_INDEX_BACKFILL_COMPLETED);
+      LOG.debug("Completed backfilling the run records time index");
+      return false;
+    }
+    persistSubscriberState(RUN_RECORD_TIME_INDEX_STATE, RUN_RECORD_TIME_INDEX_BACKFILL, GSON.toJson(lastKey));
+    return true;
+  }
+
+  /**
+   * Returns whether all run records are in the run records time index.
+   */
+  private boolean isRunRecordTimeIndexed() throws IOException {
+    return RUN_RECORD_TIME_INDEX_BACKFILL_COMPLETED.equals(
+      retrieveSubscriberState(RUN_RECORD_TIME_INDEX_STATE, RUN_RECORD_TIME_INDEX_BACKFILL));
+  }
+
+  private Set<RunId> getRunningInRangeFromTimeIndex(String recordType, long startTimeInSecs,
+                                                    long endTimeInSecs) throws IOException {
+    Set<RunId> result = new HashSet<>();
+    long endBucket = endTimeInSecs / RUN_RECORD_TIME_BUCKET_SECS;
+
+    // An active run can have started at any time before the end of the range
+    if (TYPE_RUN_RECORD_ACTIVE.equals(recordType)) {
+      scanRunRecordTimeIndex(recordType, null, endBucket, startTimeInSecs, endTimeInSecs, result);
+      return result;
+    }
+
+    // A completed run that overlaps with the range is indexed in the bucket of the range start if it started
+    // before the range, or in the bucket of its start time otherwise, unless it is a long run
+    scanRunRecordTimeIndex(recordType, startTimeInSecs / RUN_RECORD_TIME_BUCKET_SECS, endBucket,
+                           startTimeInSecs, endTimeInSecs, result);
+    scanRunRecordTimeIndex(recordType, RUN_RECORD_LONG_RUN_TIME_BUCKET, RUN_RECORD_LONG_RUN_TIME_BUCKET,
+                           startTimeInSecs, endTimeInSecs, result);
+    return result;
+  }
+
+  /**
+   * Scans the given bucket range of the run records time index and adds the runs that were running
+   * between the given start and end time to the result.
+   */
+  private void scanRunRecordTimeIndex(String recordType, @Nullable Long beginBucket, long endBucket,
+                                      long startTimeInSecs, long endTimeInSecs,
+                                      Set<RunId> result) throws IOException {
+    List<Field<?>> begin = getRunRecordStatusPrefix(recordType);
+    if (beginBucket != null) {
+      begin.add(Fields.longField(StoreDefinition.AppMetadataStore.TIME_BUCKET, beginBucket));
+    }
+    List<Field<?>> end = getRunRecordStatusPrefix(recordType);
+    end.add(Fields.longField(StoreDefinition.AppMetadataStore.TIME_BUCKET, endBucket));
+
+    Range range = Range.create(begin, Range.Bound.INCLUSIVE, end, Range.Bound.INCLUSIVE);
+    try (CloseableIterator<StructuredRow> iterator = getRunRecordsTimeIndexTable().scan(range, Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        Long startTs = row.getLong(StoreDefinition.AppMetadataStore.RUN_START_TIME);
+        Long stopTs = row.getLong(StoreDefinition.AppMetadataStore.RUN_STOP_TIME);
+        // Rows deleted earlier in the same transaction can still be returned by the scan without any value
+        if (startTs == null) {
+          continue;
+        }
+        if (startTs < endTimeInSecs && (stopTs == null || stopTs >= startTimeInSecs)) {
+          result.add(RunIds.fromString(row.getString(StoreDefinition.AppMetadataStore.RUN_FIELD)));
+        }
+      }
+    }
+  }
+
+  private void writeRunRecordTimeIndex(String recordType, RunRecordMeta meta) throws IOException {
+    for (long bucket : getRunRecordTimeBuckets(recordType, meta)) {
+      List<Field<?>> fields = getRunRecordTimeIndexKey(recordType, bucket, meta.getProgramRunId());
+      fields.add(Fields.longField(StoreDefinition.AppMetadataStore.RUN_START_TIME, meta.getStartTs()));
+      if (meta.getStopTs() != null) {
+        fields.add(Fields.longField(StoreDefinition.AppMetadataStore.RUN_STOP_TIME, meta.getStopTs()));
+      }
+      getRunRecordsTimeIndexTable().upsert(fields);
+    }
+  }
+
+  private void deleteRunRecordTimeIndex(String recordType, RunRecordMeta meta) throws IOException {
+    for (long bucket : getRunRecordTimeBuckets(recordType, meta)) {
+      getRunRecordsTimeIndexTable().delete(getRunRecordTimeIndexKey(recordType, bucket, meta.getProgramRunId()));
+    }
+  }
+
+  /**
+   * Deletes the time index entries of all run records in the given range of the run records table.
+   */
+  private void deleteRunRecordTimeIndex(Range runRecordsRange) throws IOException {
+    try (CloseableIterator<StructuredRow> iterator = getRunRecordsTable().scan(runRecordsRange, Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        if (row.getString(StoreDefinition.AppMetadataStore.RUN_RECORD_DATA) == null) {
+          continue;
+        }
+        deleteRunRecordTimeIndex(row.getString(StoreDefinition.AppMetadataStore.RUN_STATUS),
+                                 deserializeRunRecordMeta(row));
+      }
+    }
+  }
+
+  private long[] getRunRecordTimeBuckets(String recordType, RunRecordMeta meta) {
+    long firstBucket = meta.getStartTs() / RUN_RECORD_TIME_BUCKET_SECS;
+    Long stopTs = meta.getStopTs();
+    if (TYPE_RUN_RECORD_ACTIVE.equals(recordType) || stopTs == null) {
+      return new long[] { firstBucket };
+    }
+    long lastBucket = Math.max(firstBucket, stopTs / RUN_RECORD_TIME_BUCKET_SECS);
+    if (lastBucket - firstBucket >= RUN_RECORD_MAX_TIME_BUCKETS) {
+      return new long[] { RUN_RECORD_LONG_RUN_TIME_BUCKET };
+    }
+    return LongStream.rangeClosed(firstBucket, lastBucket).toArray();
+  }
+
+  private List<Field<?>> getRunRecordTimeIndexKey(String recordType, long bucket, ProgramRunId runId) {
+    List<Field<?>> fields = getRunRecordStatusPrefix(recordType);
+    fields.add(Fields.longField(StoreDefinition.AppMetadataStore.TIME_BUCKET, bucket));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.NAMESPACE_FIELD, runId.getNamespace()));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.APPLICATION_FIELD, runId.getApplication()));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.VERSION_FIELD, runId.getVersion()));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROGRAM_TYPE_FIELD, runId.getType().name()));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROGRAM_FIELD, runId.getProgram()));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.RUN_FIELD, runId.getRun()));
+    return fields;
+  }
+
+
   @VisibleForTesting
   // USE ONLY IN TESTS: WILL DELETE ALL METADATA STORE INFO
   public void deleteAllAppMetadataTables() throws IOException {
     deleteTable(getApplicationSpecificationTable(), StoreDefinition.AppMetadataStore.NAMESPACE_FIELD);
     deleteTable(getWorkflowNodeStateTable(), StoreDefinition.AppMetadataStore.NAMESPACE_FIELD);
     deleteTable(getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_STATUS);
+    deleteTable(getRunRecordsTimeIndexTable(), StoreDefinition.AppMetadataStore.RUN_STATUS);
     deleteTable(getWorkflowsTable(), StoreDefinition.AppMetadataStore.NAMESPACE_FIELD);
+    deleteTable(getWorkflowTokenDeltasTable(), StoreDefinition.AppMetadataStore.NAMESPACE_FIELD);
     deleteTable(getProgramCountsTable(), StoreDefinition.AppMetadataStore.COUNT_TYPE);
     deleteTable(getSubscriberStateTable(), StoreDefinition.AppMetadataStore.SUBSCRIBER_TOPIC);
   }
@@ -1578,14 +1910,17 @@ public class AppMetadataStore {
     return deserializeRunRecordMeta(row.get());
   }
 
-  private static RunRecordMeta deserializeRunRecordMeta(StructuredRow row) {
-    RunRecordMeta existing =
-      GSON.fromJson(row.getString(StoreDefinition.AppMetadataStore.RUN_RECORD_DATA), RunRecordMeta.class);
-    RunRecordMeta newMeta = RunRecordMeta.builder(existing)
-      .setProgramRunId(
-        getProgramIdFromRunRecordsPrimaryKeys(new ArrayList(row.getPrimaryKeys())).run(existing.getPid()))
-      .build();
-    return newMeta;
+  /**
+   * Writes the run record with the binary encoding of {@link RunRecordMetaCodec}.
+   */
+  private void writeRunRecord(List<Field<?>> keys, RunRecordMeta meta) throws IOException {
+    keys.add(Fields.stringField(StoreDefinition.AppMetadataStore.RUN_RECORD_DATA, RunRecordMetaCodec.encode(meta)));
+    getRunRecordsTable().upsert(keys);
+  }
+
+  private static RunRecordMeta deserializeRunRecordMeta(StructuredRow row) throws IOException {
+    return RunRecordMetaCodec.decode(getProgramIdFromRunRecordsPrimaryKeys(new ArrayList(row.getPrimaryKeys())),
+                                     row.getString(StoreDefinition.AppMetadataStore.RUN_RECORD_DATA));
   }
 
   private static ProgramId getProgramIdFromRunRecordsPrimaryKeys(List<Field<?>> primaryKeys) {
@@ -1609,4 +1944,19 @@ public class AppMetadataStore {
     fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROGRAM_FIELD, programId.getProgram()));
     return fields;
   }
+
+  /**
+   * The key of a run record, used for tracking the progress of backfilling the run records time index.
+   */
+  private static final class RunRecordKey {
+    private final String recordType;
+    private final String runId;
+    private final long startTs;
+
+    RunRecordKey(String recordType, String runId, long startTs) {
+      this.recordType = recordType;
+      this.runId = runId;
+      this.startTs = startTs;
+    }
+  }
 }
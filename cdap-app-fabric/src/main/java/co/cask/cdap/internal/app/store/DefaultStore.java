@@ -368,6 +368,39 @@ public class DefaultStore implements Store {
     });
   }
 
+  @Override
+  public List<ProgramHistory> getActiveRuns(Collection<ProgramId> programs) {
+    return TransactionRunners.run(transactionRunner, context -> {
+      List<ProgramHistory> result = new ArrayList<>(programs.size());
+      AppMetadataStore appMetadataStore = getAppMetadataStore(context);
+
+      Collection<ApplicationId> appIds = programs.stream().map(ProgramId::getParent).collect(Collectors.toList());
+      Map<ApplicationId, ApplicationMeta> apps = appMetadataStore.getApplicationsForAppIds(appIds);
+
+      List<ProgramId> existingPrograms = new ArrayList<>();
+      for (ProgramId program : programs) {
+        ApplicationMeta appMeta = apps.get(program.getParent());
+        if (appMeta != null && getExistingAppProgramSpecification(appMeta.getSpec(), program) != null) {
+          existingPrograms.add(program);
+        }
+      }
+      Map<ProgramId, Map<ProgramRunId, RunRecordMeta>> activeRuns = appMetadataStore.getActiveRuns(existingPrograms);
+
+      for (ProgramId program : programs) {
+        Map<ProgramRunId, RunRecordMeta> runs = activeRuns.get(program);
+        if (runs != null) {
+          result.add(new ProgramHistory(program, new ArrayList<>(runs.values()), null));
+        } else if (apps.containsKey(program.getParent())) {
+          result.add(new ProgramHistory(program, Collections.emptyList(), new ProgramNotFoundException(program)));
+        } else {
+          result.add(new ProgramHistory(program, Collections.emptyList(),
+                                        new ApplicationNotFoundException(program.getParent())));
+        }
+      }
+      return result;
+    });
+  }
+
   @Override
   public Map<ProgramRunId, RunRecordMeta> getHistoricalRuns(Set<NamespaceId> namespaces,
                                                             long earliestStopTime, long latestStartTime, int limit) {
@@ -723,6 +756,16 @@ public class DefaultStore implements Store {
     return runs;
   }
 
+  @Override
+  public void backfillRunRecordTimeIndex(int batchSize) {
+    boolean hasMore = true;
+    while (hasMore) {
+      hasMore = TransactionRunners.run(transactionRunner, context -> {
+        return getAppMetadataStore(context).backfillRunRecordTimeIndex(batchSize);
+      });
+    }
+  }
+
   @Override
   public long getProgramRunCount(ProgramId programId) throws NotFoundException {
     return TransactionRunners.run(transactionRunner, context -> {
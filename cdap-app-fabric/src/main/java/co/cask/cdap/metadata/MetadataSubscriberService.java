@@ -202,6 +202,7 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
           case USAGE:
             return new UsageProcessor();
           case WORKFLOW_TOKEN:
+          case WORKFLOW_TOKEN_CHANGES:
           case WORKFLOW_STATE:
             return new WorkflowProcessor();
           case METADATA_OPERATION:
@@ -336,6 +337,10 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
           AppMetadataStore.create(context)
             .setWorkflowToken(programRunId, message.getPayload(GSON, BasicWorkflowToken.class));
           break;
+        case WORKFLOW_TOKEN_CHANGES:
+          AppMetadataStore.create(context)
+            .addWorkflowTokenChanges(programRunId, message.getPayload(GSON, BasicWorkflowToken.class));
+          break;
         case WORKFLOW_STATE:
           AppMetadataStore.create(context)
             .addWorkflowNodeState(programRunId, message.getPayload(GSON, WorkflowNodeStateDetail.class));
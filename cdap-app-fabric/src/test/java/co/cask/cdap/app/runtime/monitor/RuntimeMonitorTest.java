@@ -129,6 +129,7 @@ public class RuntimeMonitorTest {
     cConf.set(Constants.RuntimeMonitor.SERVER_INFO_FILE, new File(TMP_FOLDER.newFolder(), "info").getAbsolutePath());
     cConf.set(Constants.RuntimeMonitor.BATCH_SIZE, "2");
     cConf.set(Constants.RuntimeMonitor.POLL_TIME_MS, "200");
+    cConf.set(Constants.RuntimeMonitor.POLL_TIME_MAX_MS, "800");
     cConf.set(Constants.RuntimeMonitor.GRACEFUL_SHUTDOWN_MS, "1000");
 
     serverKeyStore = KeyStores.generatedCertKeyStore(1, "");
@@ -274,6 +275,105 @@ public class RuntimeMonitorTest {
     Tasks.waitFor(Service.State.TERMINATED, runtimeMonitor::state, 10, TimeUnit.SECONDS);
   }
 
+  @Test
+  public void testPollBackoff() throws Exception {
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(5, Threads.createDaemonThreadFactory("test"));
+
+    RunId runId = RunIds.generate();
+    ProgramRunId programRunId = NamespaceId.DEFAULT.app("app1").workflow("testPollBackoff").run(runId);
+    ProfileId profileId = NamespaceId.DEFAULT.profile("myProfile");
+    publishProgramStatus(programRunId, ProgramStatus.INITIALIZING);
+    publishProgramStatus(programRunId, ProgramStatus.RUNNING);
+
+    // change topic name because cdap config is different than runtime config
+    CConfiguration monitorCConf = CConfiguration.copy(cConf);
+    monitorCConf.set(Constants.AppFabric.PROGRAM_STATUS_EVENT_TOPIC, "cdap-programStatus");
+    messagingService.createTopic(new TopicMetadata(NamespaceId.SYSTEM.topic("cdap-programStatus")));
+
+    RuntimeMonitorClient monitorClient = new RuntimeMonitorClient(HttpRequestConfig.DEFAULT,
+                                                                  clientKeyStore, serverKeyStore,
+                                                                  runtimeServer::getBindAddress, Proxy.NO_PROXY);
+    ProfileMetricService profileMetricService =
+      new ProfileMetricService(metricsCollectionService, programRunId, profileId, 1, scheduler);
+
+    RuntimeMonitor runtimeMonitor = new RuntimeMonitor(programRunId, monitorCConf, monitorClient,
+                                                       messagingContext, scheduler,
+                                                       monitorMessage -> { }, profileMetricService,
+                                                       new MockRemoteProcessController(), new NoOpProgramStateWriter(),
+                                                       transactionRunner);
+    runtimeMonitor.startAndWait();
+    String lastProcessed = verifyPublishedMessages(monitorCConf, 2, null);
+
+    // The poll delay grows up to the maximum while there is no new message
+    long maxPollTime = cConf.getLong(Constants.RuntimeMonitor.POLL_TIME_MAX_MS);
+    Tasks.waitFor(maxPollTime, runtimeMonitor::getPollTimeMillis, 10, TimeUnit.SECONDS, 10, TimeUnit.MILLISECONDS);
+
+    // It is reset once there are new messages, and then grows again
+    publishProgramStatus(programRunId, ProgramStatus.RUNNING);
+    Tasks.waitFor(true, () -> runtimeMonitor.getPollTimeMillis() < maxPollTime,
+                  10, TimeUnit.SECONDS, 10, TimeUnit.MILLISECONDS);
+    verifyPublishedMessages(monitorCConf, 1, lastProcessed);
+    Tasks.waitFor(maxPollTime, runtimeMonitor::getPollTimeMillis, 10, TimeUnit.SECONDS, 10, TimeUnit.MILLISECONDS);
+
+    // publish completed status to shutdown the runtime server and the runtime monitor
+    publishProgramStatus(programRunId, ProgramStatus.COMPLETED);
+    Tasks.waitFor(Service.State.TERMINATED, runtimeServer::state, 10, TimeUnit.SECONDS);
+    Tasks.waitFor(Service.State.TERMINATED, runtimeMonitor::state, 10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testCompression() throws Exception {
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(5, Threads.createDaemonThreadFactory("test"));
+
+    RunId runId = RunIds.generate();
+    ProgramRunId programRunId = NamespaceId.DEFAULT.app("app1").workflow("testCompression").run(runId);
+    ProfileId profileId = NamespaceId.DEFAULT.profile("myProfile");
+    publishProgramStatus(programRunId, ProgramStatus.INITIALIZING);
+    publishProgramStatus(programRunId, ProgramStatus.RUNNING);
+
+    // change topic name because cdap config is different than runtime config
+    CConfiguration monitorCConf = CConfiguration.copy(cConf);
+    monitorCConf.set(Constants.AppFabric.PROGRAM_STATUS_EVENT_TOPIC, "cdap-programStatus");
+    messagingService.createTopic(new TopicMetadata(NamespaceId.SYSTEM.topic("cdap-programStatus")));
+
+    ProfileMetricService profileMetricService =
+      new ProfileMetricService(metricsCollectionService, programRunId, profileId, 1, scheduler);
+
+    // Clients that accept gzip and clients that don't can both read the response, whether the server
+    // compresses it or not
+    String lastProcessed = null;
+    RuntimeMonitor runtimeMonitor = null;
+    for (boolean serverCompression : new boolean[] { true, false }) {
+      cConf.setBoolean(Constants.RuntimeMonitor.SERVER_COMPRESSION_ENABLED, serverCompression);
+
+      for (boolean clientCompression : new boolean[] { true, false }) {
+        if (runtimeMonitor != null) {
+          runtimeMonitor.stopAndWait();
+          // publish more messages for the next client
+          publishProgramStatus(programRunId, ProgramStatus.RUNNING);
+          publishProgramStatus(programRunId, ProgramStatus.RUNNING);
+        }
+
+        RuntimeMonitorClient monitorClient = new RuntimeMonitorClient(HttpRequestConfig.DEFAULT,
+                                                                      clientKeyStore, serverKeyStore,
+                                                                      runtimeServer::getBindAddress, Proxy.NO_PROXY,
+                                                                      clientCompression);
+        runtimeMonitor = new RuntimeMonitor(programRunId, monitorCConf, monitorClient,
+                                            messagingContext, scheduler,
+                                            monitorMessage -> { }, profileMetricService,
+                                            new MockRemoteProcessController(), new NoOpProgramStateWriter(),
+                                            transactionRunner);
+        runtimeMonitor.startAndWait();
+        lastProcessed = verifyPublishedMessages(monitorCConf, 2, lastProcessed);
+      }
+    }
+
+    // publish completed status to shutdown the runtime server and the runtime monitor
+    publishProgramStatus(programRunId, ProgramStatus.COMPLETED);
+    Tasks.waitFor(Service.State.TERMINATED, runtimeServer::state, 10, TimeUnit.SECONDS);
+    Tasks.waitFor(Service.State.TERMINATED, runtimeMonitor::state, 10, TimeUnit.SECONDS);
+  }
+
   @Test
   public void testTopicExpansion() throws Exception {
     ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(5, Threads.createDaemonThreadFactory("test"));
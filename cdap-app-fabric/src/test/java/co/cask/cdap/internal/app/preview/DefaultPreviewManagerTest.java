@@ -16,50 +16,78 @@
 
 package co.cask.cdap.internal.app.preview;
 
+import co.cask.cdap.OneActionWorkflowApp;
+import co.cask.cdap.api.artifact.ArtifactSummary;
 import co.cask.cdap.app.guice.AppFabricServiceRuntimeModule;
 import co.cask.cdap.app.guice.AuthorizationModule;
 import co.cask.cdap.app.guice.ProgramRunnerRuntimeModule;
 import co.cask.cdap.app.preview.PreviewHttpModule;
 import co.cask.cdap.app.preview.PreviewManager;
 import co.cask.cdap.app.preview.PreviewRunner;
+import co.cask.cdap.app.preview.PreviewStatus;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.guice.ConfigModule;
 import co.cask.cdap.common.guice.IOModule;
 import co.cask.cdap.common.guice.InMemoryDiscoveryModule;
 import co.cask.cdap.common.guice.NonCustomLocationUnitTestModule;
+import co.cask.cdap.common.id.Id;
+import co.cask.cdap.common.test.AppJarHelper;
+import co.cask.cdap.common.utils.Tasks;
 import co.cask.cdap.config.guice.ConfigStoreModule;
 import co.cask.cdap.data.runtime.DataFabricModules;
 import co.cask.cdap.data.runtime.DataSetServiceModules;
 import co.cask.cdap.data.runtime.DataSetsModules;
 import co.cask.cdap.data.runtime.TransactionExecutorModule;
 import co.cask.cdap.explore.guice.ExploreClientModule;
+import co.cask.cdap.internal.app.runtime.artifact.ArtifactRepository;
 import co.cask.cdap.internal.provision.ProvisionerModule;
 import co.cask.cdap.logging.guice.LocalLogAppenderModule;
 import co.cask.cdap.logging.guice.LogReaderRuntimeModules;
 import co.cask.cdap.logging.read.LogReader;
+import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.messaging.guice.MessagingServerRuntimeModule;
 import co.cask.cdap.metadata.MetadataReaderWriterModules;
 import co.cask.cdap.metadata.MetadataServiceModule;
 import co.cask.cdap.metrics.guice.MetricsClientRuntimeModule;
+import co.cask.cdap.proto.ProgramType;
+import co.cask.cdap.proto.artifact.AppRequest;
+import co.cask.cdap.proto.artifact.preview.PreviewConfig;
 import co.cask.cdap.proto.id.ApplicationId;
+import co.cask.cdap.proto.id.ArtifactId;
+import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
 import co.cask.cdap.security.guice.SecureStoreServerModule;
 import co.cask.cdap.security.impersonation.DefaultOwnerAdmin;
 import co.cask.cdap.security.impersonation.OwnerAdmin;
 import co.cask.cdap.security.impersonation.UGIProvider;
 import co.cask.cdap.security.impersonation.UnsupportedUGIProvider;
+import co.cask.cdap.spi.data.StructuredTableAdmin;
+import co.cask.cdap.spi.data.table.StructuredTableRegistry;
+import co.cask.cdap.store.StoreDefinition;
+import com.google.common.util.concurrent.Service;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.tephra.TransactionManager;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
-import java.io.IOException;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Tests for {@link DefaultPreviewManager}.
@@ -70,11 +98,17 @@ public class DefaultPreviewManagerTest {
   public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
 
   private static Injector injector;
+  private static TransactionManager txManager;
+  private static MessagingService messagingService;
 
   @BeforeClass
-  public static void beforeClass() throws IOException {
+  public static void beforeClass() throws Exception {
     CConfiguration cConf = CConfiguration.create();
     cConf.set(Constants.CFG_LOCAL_DATA_DIR, TEMP_FOLDER.newFolder().getAbsolutePath());
+    // The memory limits the pool to two runners
+    cConf.setInt(Constants.Preview.RUNNER_POOL_SIZE, 3);
+    cConf.setInt(Constants.Preview.RUNNER_POOL_MAX_MEMORY_MB, 512);
+    cConf.setInt(Constants.Preview.RUNNER_MEMORY_MB, 256);
 
     injector = Guice.createInjector(
       new ConfigModule(cConf, new Configuration()),
@@ -108,6 +142,23 @@ public class DefaultPreviewManagerTest {
         }
       }
     );
+    txManager = injector.getInstance(TransactionManager.class);
+    txManager.startAndWait();
+    StructuredTableRegistry structuredTableRegistry = injector.getInstance(StructuredTableRegistry.class);
+    structuredTableRegistry.initialize();
+    StoreDefinition.createAllTables(injector.getInstance(StructuredTableAdmin.class), structuredTableRegistry);
+    messagingService = injector.getInstance(MessagingService.class);
+    if (messagingService instanceof Service) {
+      ((Service) messagingService).startAndWait();
+    }
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    if (messagingService instanceof Service) {
+      ((Service) messagingService).stopAndWait();
+    }
+    txManager.stopAndWait();
   }
 
   private Injector getInjector() {
@@ -135,4 +186,54 @@ public class DefaultPreviewManagerTest {
     Assert.assertNotEquals(previewInjector.getInstance(PreviewRunner.class),
                            anotherPreviewInjector.getInstance(PreviewRunner.class));
   }
+
+  @Test
+  public void testRunnerPool() throws Exception {
+    DefaultPreviewManager previewManager = (DefaultPreviewManager) getInjector().getInstance(PreviewManager.class);
+    Path previewDataDir = Paths.get(getInjector().getInstance(CConfiguration.class).get(Constants.CFG_LOCAL_DATA_DIR),
+                                    "preview");
+
+    // The pool is only filled by the first preview request
+    previewManager.startAndWait();
+    try {
+      TimeUnit.SECONDS.sleep(1);
+      Assert.assertEquals(0, previewManager.getIdleRunnerCount());
+
+      ArtifactId artifactId = NamespaceId.DEFAULT.artifact(OneActionWorkflowApp.class.getSimpleName(), "1.0.0");
+      Location appJar = AppJarHelper.createDeploymentJar(new LocalLocationFactory(TEMP_FOLDER.newFolder()),
+                                                         OneActionWorkflowApp.class);
+      getInjector().getInstance(ArtifactRepository.class).addArtifact(Id.Artifact.fromEntityId(artifactId),
+                                                                      new File(appJar.toURI()));
+      PreviewConfig previewConfig = new PreviewConfig("OneActionWorkflow", ProgramType.WORKFLOW,
+                                                      Collections.emptyMap(), 2);
+      AppRequest<?> appRequest = new AppRequest<>(new ArtifactSummary(artifactId.getArtifact(),
+                                                                      artifactId.getVersion()),
+                                                  null, previewConfig);
+      ApplicationId firstPreview = previewManager.start(NamespaceId.DEFAULT, appRequest);
+      Tasks.waitFor(2, previewManager::getIdleRunnerCount, 2, TimeUnit.MINUTES);
+
+      // The pool is full already
+      previewManager.replenishPool();
+      TimeUnit.SECONDS.sleep(1);
+      Assert.assertEquals(2, previewManager.getIdleRunnerCount());
+      Assert.assertTrue(Files.exists(previewDataDir.resolve(firstPreview.getApplication())));
+
+      // A preview is run by a runner taken from the pool, which is then filled again
+      ApplicationId preview = previewManager.start(NamespaceId.DEFAULT, appRequest);
+      PreviewRunner runner = previewManager.getRunner(preview);
+      Tasks.waitFor(PreviewStatus.Status.COMPLETED, () -> runner.getStatus().getStatus(), 2, TimeUnit.MINUTES);
+      Tasks.waitFor(2, previewManager::getIdleRunnerCount, 2, TimeUnit.MINUTES);
+      Assert.assertTrue(Files.exists(previewDataDir.resolve(preview.getApplication())));
+    } finally {
+      previewManager.stopAndWait();
+    }
+
+    // Stopping the manager stops every runner and deletes its data
+    Assert.assertEquals(0, previewManager.getIdleRunnerCount());
+    try (Stream<Path> previewDirs = Files.list(previewDataDir)) {
+      Assert.assertEquals(Collections.emptyList(),
+                          previewDirs.filter(dir -> dir.getFileName().toString().startsWith("preview-"))
+                            .collect(Collectors.toList()));
+    }
+  }
 }
@@ -25,6 +25,7 @@ import co.cask.cdap.api.artifact.ArtifactVersion;
 import co.cask.cdap.api.artifact.ArtifactVersionRange;
 import co.cask.cdap.api.artifact.InvalidArtifactRangeException;
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.api.dataset.lib.KeyValueTable;
 import co.cask.cdap.api.dataset.lib.cube.Cube;
 import co.cask.cdap.api.dataset.table.Table;
@@ -44,6 +45,12 @@ import co.cask.cdap.proto.id.Ids;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.impersonation.DefaultImpersonator;
 import co.cask.cdap.security.impersonation.EntityImpersonator;
+import co.cask.cdap.spi.data.StructuredRow;
+import co.cask.cdap.spi.data.StructuredTable;
+import co.cask.cdap.spi.data.table.field.Range;
+import co.cask.cdap.spi.data.transaction.TransactionRunner;
+import co.cask.cdap.spi.data.transaction.TransactionRunners;
+import co.cask.cdap.store.StoreDefinition;
 import co.cask.cdap.test.SlowTests;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
@@ -93,6 +100,9 @@ public abstract class ArtifactStoreTest {
   public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
 
   protected static ArtifactStore artifactStore;
+  // another instance of the store, for changes that are made by another process
+  protected static ArtifactStore otherArtifactStore;
+  protected static TransactionRunner transactionRunner;
 
   @After
   public void cleanup() throws IOException {
@@ -294,6 +304,13 @@ public abstract class ArtifactStoreTest {
     Assert.assertTrue(artifactStore.getArtifacts(parentId.getNamespace().toEntityId()).isEmpty());
     // shouldn't be able to see app class either
     Assert.assertTrue(artifactStore.getApplicationClasses(NamespaceId.DEFAULT, appClass.getClassName()).isEmpty());
+    // the change markers of the deleted artifacts are removed as well
+    TransactionRunners.run(transactionRunner, context -> {
+      StructuredTable table = context.getTable(StoreDefinition.ArtifactStore.CHANGE_MARKER_TABLE);
+      try (CloseableIterator<StructuredRow> iterator = table.scan(Range.all(), Integer.MAX_VALUE)) {
+        Assert.assertFalse(iterator.hasNext());
+      }
+    });
   }
 
   @Test(expected = ArtifactAlreadyExistsException.class)
@@ -1075,6 +1092,47 @@ public abstract class ArtifactStoreTest {
     Assert.assertEquals(expected, actual);
   }
 
+  @Test
+  public void testPluginChangesByOtherInstance() throws Exception {
+    Id.Artifact parentArtifactId = Id.Artifact.from(Id.Namespace.DEFAULT, "parent", "1.0.0");
+    writeArtifact(parentArtifactId, new ArtifactMeta(ArtifactClasses.builder().build()), "content");
+    Assert.assertTrue(artifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId).isEmpty());
+
+    // add a plugin through the other instance, which must be seen by plugin lookups of the first instance
+    ArtifactRange parentArtifacts = new ArtifactRange(
+      NamespaceId.DEFAULT.getNamespace(), "parent", new ArtifactVersion("1.0.0"), new ArtifactVersion("2.0.0"));
+    PluginClass pluginClass =
+      new PluginClass("atype", "plugin1", "", "c.c.c.plugin1", "cfg", ImmutableMap.<String, PluginPropertyField>of());
+    Id.Artifact pluginArtifactId = Id.Artifact.from(Id.Namespace.DEFAULT, "plugins", "1.0.0");
+    writeArtifact(otherArtifactStore, pluginArtifactId,
+                  new ArtifactMeta(ArtifactClasses.builder().addPlugin(pluginClass).build(),
+                                   ImmutableSet.of(parentArtifacts)), "something");
+    ArtifactDescriptor pluginArtifactInfo = artifactStore.getArtifact(pluginArtifactId).getDescriptor();
+
+    Assert.assertEquals(ImmutableMap.of(pluginArtifactInfo, ImmutableSet.of(pluginClass)),
+                        artifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId));
+    Assert.assertEquals(ImmutableMap.of(pluginArtifactInfo, pluginClass),
+                        artifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId, "atype", "plugin1",
+                                                       null, Integer.MAX_VALUE, ArtifactSortOrder.UNORDERED));
+
+    // a change made by the first instance after that updates its plugin lookups as well
+    Id.Artifact pluginArtifactId2 = Id.Artifact.from(Id.Namespace.DEFAULT, "plugins2", "1.0.0");
+    writeArtifact(pluginArtifactId2, new ArtifactMeta(ArtifactClasses.builder().addPlugin(pluginClass).build(),
+                                                      ImmutableSet.of(parentArtifacts)), "something");
+    Assert.assertEquals(2, artifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId).size());
+
+    // delete the plugin through the other instance
+    otherArtifactStore.delete(pluginArtifactId);
+    Assert.assertEquals(ImmutableSet.of(artifactStore.getArtifact(pluginArtifactId2).getDescriptor()),
+                        artifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId).keySet());
+
+    // delete the other plugin through the first instance, which must be seen by the other instance
+    Assert.assertEquals(1, otherArtifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId).size());
+    artifactStore.delete(pluginArtifactId2);
+    Assert.assertTrue(otherArtifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId).isEmpty());
+    Assert.assertTrue(artifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId).isEmpty());
+  }
+
   @Test
   public void testPluginParentInclusiveExclusiveVersions() throws Exception {
     // write artifacts that extend:
@@ -1399,6 +1457,66 @@ public abstract class ArtifactStoreTest {
     Assert.assertEquals(expected, pluginMap);
   }
 
+  @Category(SlowTests.class)
+  @Test
+  public void testConcurrentWriteOfDifferentArtifacts() throws Exception {
+    // write parent
+    Id.Artifact parentArtifactId = Id.Artifact.from(Id.Namespace.DEFAULT, "parent", "1.0.0");
+    ArtifactMeta parentMeta = new ArtifactMeta(ArtifactClasses.builder().build());
+    writeArtifact(parentArtifactId, parentMeta, "content");
+
+    ArtifactRange parentArtifacts = new ArtifactRange(
+      NamespaceId.DEFAULT.getNamespace(), "parent", new ArtifactVersion("1.0.0"), new ArtifactVersion("2.0.0"));
+    // load the plugin catalog of both instances before the writes
+    Assert.assertTrue(artifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId).isEmpty());
+    Assert.assertTrue(otherArtifactStore.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId).isEmpty());
+
+    // start up a bunch of threads that write different plugin artifacts at the same time
+    // none of them should conflict with the others
+    int numThreads = 10;
+    CyclicBarrier barrier = new CyclicBarrier(numThreads);
+    ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < numThreads; i++) {
+        Id.Artifact artifactId = Id.Artifact.from(Id.Namespace.DEFAULT, "plugins" + i, "1.0.0");
+        ArtifactMeta meta = new ArtifactMeta(
+          ArtifactClasses.builder()
+            .addPlugin(new PluginClass("plugin-type", "plugin" + i, "", "classname", "cfg",
+                                       ImmutableMap.of()))
+            .build(),
+          ImmutableSet.of(parentArtifacts));
+        ArtifactStore store = i % 2 == 0 ? artifactStore : otherArtifactStore;
+        futures.add(executorService.submit(() -> {
+          barrier.await();
+          writeArtifact(store, artifactId, meta, artifactId.getName());
+          return null;
+        }));
+      }
+      // all writes must succeed
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    // both instances must see all plugins
+    for (ArtifactStore store : Arrays.asList(artifactStore, otherArtifactStore)) {
+      Map<ArtifactDescriptor, Set<PluginClass>> pluginMap =
+        store.getPluginClasses(NamespaceId.DEFAULT, parentArtifactId, "plugin-type");
+      Set<String> pluginNames = pluginMap.values().stream()
+        .flatMap(Set::stream)
+        .map(PluginClass::getName)
+        .collect(Collectors.toSet());
+      Set<String> expected = new HashSet<>();
+      for (int i = 0; i < numThreads; i++) {
+        expected.add("plugin" + i);
+      }
+      Assert.assertEquals(expected, pluginNames);
+    }
+  }
+
   @Test
   public void testUniversalPlugin() throws Exception {
     // First, deploy an artifact in the SYSTEM scope that doesn't have any plugin inside.
@@ -1488,6 +1606,11 @@ public abstract class ArtifactStoreTest {
 
   private void writeArtifact(Id.Artifact artifactId, ArtifactMeta meta, String contents)
     throws ArtifactAlreadyExistsException, IOException, WriteConflictException {
+    writeArtifact(artifactStore, artifactId, meta, contents);
+  }
+
+  private void writeArtifact(ArtifactStore artifactStore, Id.Artifact artifactId, ArtifactMeta meta, String contents)
+    throws ArtifactAlreadyExistsException, IOException, WriteConflictException {
 
     File artifactFile = TEMP_FOLDER.newFile();
     Files.write(artifactFile.toPath(), Bytes.toBytes(contents));
@@ -39,13 +39,18 @@ public class NoSqlArtifactStoreTest extends ArtifactStoreTest {
     cConf.set(Constants.REQUIREMENTS_DATASET_TYPE_EXCLUDE, Joiner.on(",").join(Table.TYPE, KeyValueTable.TYPE));
     cConf.set(Constants.Dataset.DATA_STORAGE_IMPLEMENTATION, Constants.Dataset.DATA_STORAGE_NOSQL);
     Injector injector = AppFabricTestHelper.getInjector(cConf);
-    TransactionRunner transactionRunner = injector.getInstance(TransactionRunner.class);
+    transactionRunner = injector.getInstance(TransactionRunner.class);
     artifactStore = new ArtifactStore(cConf,
                                       injector.getInstance(NamespacePathLocator.class),
                                       injector.getInstance(LocationFactory.class),
                                       injector.getInstance(Impersonator.class),
                                       transactionRunner
     );
+    otherArtifactStore = new ArtifactStore(cConf,
+                                           injector.getInstance(NamespacePathLocator.class),
+                                           injector.getInstance(LocationFactory.class),
+                                           injector.getInstance(Impersonator.class),
+                                           transactionRunner);
   }
 
   @AfterClass
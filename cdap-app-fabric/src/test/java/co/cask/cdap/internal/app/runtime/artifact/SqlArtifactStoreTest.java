@@ -56,12 +56,17 @@ public class SqlArtifactStoreTest extends ArtifactStoreTest {
     registry.initialize();
     StructuredTableAdmin structuredTableAdmin =
       new PostgresSqlStructuredTableAdmin(registry, dataSource);
-    TransactionRunner transactionRunner = new SqlTransactionRunner(structuredTableAdmin, dataSource);
+    transactionRunner = new SqlTransactionRunner(structuredTableAdmin, dataSource);
     artifactStore = new ArtifactStore(cConf,
                                       injector.getInstance(NamespacePathLocator.class),
                                       injector.getInstance(LocationFactory.class),
                                       injector.getInstance(Impersonator.class),
                                       transactionRunner);
+    otherArtifactStore = new ArtifactStore(cConf,
+                                           injector.getInstance(NamespacePathLocator.class),
+                                           injector.getInstance(LocationFactory.class),
+                                           injector.getInstance(Impersonator.class),
+                                           transactionRunner);
     StoreDefinition.ArtifactStore.createTables(structuredTableAdmin, false);
   }
 
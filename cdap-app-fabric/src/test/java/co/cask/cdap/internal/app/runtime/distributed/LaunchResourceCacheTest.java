@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.distributed;
+
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.common.io.Locations;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Unit tests for {@link LaunchResourceCache}.
+ */
+public class LaunchResourceCacheTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testReuse() throws IOException {
+    Location cacheDir = new LocalLocationFactory(TEMP_FOLDER.newFolder()).create("cache");
+    File file = TEMP_FOLDER.newFile("test.txt");
+    Files.write("content", file, Charsets.UTF_8);
+
+    Location location1;
+    try (LaunchResourceCache cache = createCache(cacheDir, "run1", Long.MAX_VALUE)) {
+      location1 = cache.cache(file);
+      Assert.assertEquals("test.txt", location1.getName());
+    }
+    try (LaunchResourceCache cache = createCache(cacheDir, "run2", Long.MAX_VALUE)) {
+      // the same content is reused, even from a different source
+      Assert.assertEquals(location1, cache.cache("test.txt", Locations.toLocation(file)));
+      try (InputStream is = location1.getInputStream()) {
+        Assert.assertEquals("content", new String(ByteStreams.toByteArray(is), Charsets.UTF_8));
+      }
+
+      // a different content is cached separately
+      Files.write("other", file, Charsets.UTF_8);
+      Assert.assertNotEquals(location1, cache.cache(file));
+    }
+  }
+
+  @Test
+  public void testJarHash() throws Exception {
+    File jar1 = createJar("a.jar", 1000L, "x", "y");
+    File jar2 = createJar("b.jar", 2000L, "y", "x");
+    File jar3 = createJar("c.jar", 1000L, "x", "z");
+
+    // the hash of a jar is independent of the order and time of the entries
+    Assert.assertEquals(LaunchResourceCache.hash(() -> new FileInputStream(jar1)),
+                        LaunchResourceCache.hash(() -> new FileInputStream(jar2)));
+    Assert.assertNotEquals(LaunchResourceCache.hash(() -> new FileInputStream(jar1)),
+                           LaunchResourceCache.hash(() -> new FileInputStream(jar3)));
+  }
+
+  @Test
+  public void testFingerprint() throws IOException {
+    Location cacheDir = new LocalLocationFactory(TEMP_FOLDER.newFolder()).create("cache");
+    AtomicInteger writes = new AtomicInteger();
+    LaunchResourceCache.ResourceWriter writer = output -> {
+      writes.incrementAndGet();
+      output.write(1);
+    };
+
+    try (LaunchResourceCache cache = createCache(cacheDir, "run1", Long.MAX_VALUE)) {
+      Location location = cache.cache("spark.jar", "fingerprint", writer);
+      Assert.assertEquals(location, cache.cache("spark.jar", "fingerprint", writer));
+      Assert.assertEquals(1, location.length());
+      Assert.assertEquals(1, writes.get());
+
+      cache.cache("spark.jar", "other", writer);
+      Assert.assertEquals(2, writes.get());
+    }
+  }
+
+  @Test
+  public void testGarbageCollection() throws IOException {
+    Location cacheDir = new LocalLocationFactory(TEMP_FOLDER.newFolder()).create("cache");
+    long later = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+
+    Location location1;
+    try (LaunchResourceCache cache = createCache(cacheDir, "run1", 10)) {
+      location1 = cache.cache("f1", "1", output -> output.write(new byte[8]));
+    }
+    LaunchResourceCache cache2 = createCache(cacheDir, "run2", 10);
+    Location location2 = cache2.cache("f2", "2", output -> output.write(new byte[8]));
+
+    // the entry of the running run is leased, hence only the other entry is deleted
+    cache2.collectGarbage(later);
+    Assert.assertFalse(location1.exists());
+    Assert.assertTrue(location2.exists());
+
+    // when the run completes, its entry can be deleted if the cache is over budget
+    try (LaunchResourceCache cache3 = createCache(cacheDir, "run3", 10)) {
+      cache3.cache("f3", "3", output -> output.write(new byte[8]));
+    }
+    cache2.close();
+    cache2.collectGarbage(later);
+    Assert.assertFalse(location2.exists());
+  }
+
+  private LaunchResourceCache createCache(Location cacheDir, String runId, long maxSize) {
+    return new LaunchResourceCache(cacheDir, runId, maxSize, TimeUnit.DAYS.toMillis(1), new NoopMetricsContext());
+  }
+
+  private File createJar(String name, long time, String... entries) throws IOException {
+    File file = TEMP_FOLDER.newFile(name);
+    try (JarOutputStream jarOut = new JarOutputStream(new FileOutputStream(file))) {
+      for (String entry : entries) {
+        JarEntry jarEntry = new JarEntry(entry);
+        jarEntry.setTime(time);
+        jarOut.putNextEntry(jarEntry);
+        jarOut.write(entry.getBytes(Charsets.UTF_8));
+        jarOut.closeEntry();
+      }
+    }
+    return file;
+  }
+}
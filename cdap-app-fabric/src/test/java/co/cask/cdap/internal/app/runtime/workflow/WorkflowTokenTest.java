@@ -17,9 +17,12 @@
 package co.cask.cdap.internal.app.runtime.workflow;
 
 import co.cask.cdap.api.workflow.WorkflowToken;
+import org.apache.hadoop.mapreduce.Counters;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Collections;
+
 /**
  * Tests for {@link WorkflowToken}
  */
@@ -96,6 +99,54 @@ public class WorkflowTokenTest {
     }
   }
 
+  @Test
+  public void testChanges() {
+    BasicWorkflowToken token = new BasicWorkflowToken(1);
+    token.setCurrentNode("node1");
+    token.put("k1", "v1");
+    token.put("k2", "v2");
+
+    // the first changes contain the whole token
+    BasicWorkflowToken stored = token.getChanges();
+    Assert.assertNotNull(stored);
+    Assert.assertEquals(token.getAll(), stored.getAll());
+    Assert.assertNull(token.getChanges());
+
+    // only the changed keys are in the changes
+    token.setCurrentNode("node2");
+    token.put("k2", "v22");
+    Counters counters = new Counters();
+    counters.findCounter("group", "counter").increment(1L);
+    token.setMapReduceCounters(counters);
+    BasicWorkflowToken changes = token.getChanges();
+    Assert.assertNotNull(changes);
+    Assert.assertEquals(Collections.singleton("k2"), changes.getAll().keySet());
+    Assert.assertEquals(Collections.singleton("group.counter"), changes.getAll(WorkflowToken.Scope.SYSTEM).keySet());
+
+    stored.applyChanges(changes);
+    for (WorkflowToken.Scope scope : WorkflowToken.Scope.values()) {
+      Assert.assertEquals(token.getAll(scope), stored.getAll(scope));
+    }
+
+    // a copy only has its own changes, which are merged back as changes of the original token
+    BasicWorkflowToken copy = (BasicWorkflowToken) token.deepCopy();
+    copy.setCurrentNode("node3");
+    copy.put("k4", "v4");
+    changes = copy.getChanges();
+    Assert.assertNotNull(changes);
+    Assert.assertEquals(Collections.singleton("k4"), changes.getAll().keySet());
+    token.mergeToken(copy);
+    changes = token.getChanges();
+    Assert.assertNotNull(changes);
+    Assert.assertEquals(Collections.singleton("k4"), changes.getAll().keySet());
+
+    // after a failed write, the next changes contain the whole token
+    token.setAllChanged();
+    changes = token.getChanges();
+    Assert.assertNotNull(changes);
+    Assert.assertEquals(token.getAll(), changes.getAll());
+  }
+
   private String generateDataInKb(int kb) {
     int bytes = kb * 1024;
     StringBuilder sb = new StringBuilder(kb);
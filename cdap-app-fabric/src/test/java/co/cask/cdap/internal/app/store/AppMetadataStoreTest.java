@@ -17,9 +17,12 @@
 package co.cask.cdap.internal.app.store;
 
 import co.cask.cdap.api.artifact.ArtifactId;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.api.workflow.WorkflowToken;
 import co.cask.cdap.common.app.RunIds;
 import co.cask.cdap.internal.AppFabricTestHelper;
 import co.cask.cdap.internal.app.runtime.SystemArguments;
+import co.cask.cdap.internal.app.runtime.workflow.BasicWorkflowToken;
 import co.cask.cdap.proto.ProgramRunStatus;
 import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.proto.id.ApplicationId;
@@ -27,12 +30,19 @@ import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.ProfileId;
 import co.cask.cdap.proto.id.ProgramId;
 import co.cask.cdap.proto.id.ProgramRunId;
+import co.cask.cdap.spi.data.StructuredRow;
+import co.cask.cdap.spi.data.StructuredTable;
+import co.cask.cdap.spi.data.table.field.Field;
+import co.cask.cdap.spi.data.table.field.Fields;
+import co.cask.cdap.spi.data.table.field.Range;
 import co.cask.cdap.spi.data.transaction.TransactionRunner;
 import co.cask.cdap.spi.data.transaction.TransactionRunners;
+import co.cask.cdap.store.StoreDefinition;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.gson.Gson;
 import org.apache.twill.api.RunId;
 import org.junit.Assert;
 import org.junit.Before;
@@ -91,6 +101,38 @@ public abstract class AppMetadataStoreTest {
                                             AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
   }
 
+  @Test
+  public void testWorkflowTokenChanges() {
+    ProgramRunId workflowRunId = NamespaceId.DEFAULT.app("app").workflow("workflow").run(RunIds.generate());
+    BasicWorkflowToken token = new BasicWorkflowToken(1);
+
+    // add enough changes for them to be merged into the full token a few times
+    for (int i = 0; i < 50; i++) {
+      token.setCurrentNode("node" + i);
+      token.put("key" + (i % 7), "value" + i);
+      BasicWorkflowToken changes = token.getChanges();
+      TransactionRunners.run(transactionRunner, context -> {
+        AppMetadataStore store = AppMetadataStore.create(context);
+        store.addWorkflowTokenChanges(workflowRunId, changes);
+        WorkflowToken storedToken = store.getWorkflowToken(workflowRunId.getParent(), workflowRunId.getRun());
+        for (WorkflowToken.Scope scope : WorkflowToken.Scope.values()) {
+          Assert.assertEquals(token.getAll(scope), storedToken.getAll(scope));
+        }
+      });
+    }
+
+    // setting the full token replaces the changes
+    BasicWorkflowToken fullToken = new BasicWorkflowToken(1);
+    fullToken.setCurrentNode("node");
+    fullToken.put("key", "value");
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      store.setWorkflowToken(workflowRunId, fullToken);
+      Assert.assertEquals(fullToken.getAll(),
+                          store.getWorkflowToken(workflowRunId.getParent(), workflowRunId.getRun()).getAll());
+    });
+  }
+
   @Test
   public void testSmallerSourceIdRecords() throws Exception {
     // STARTING status is persisted with the largest sourceId
@@ -318,6 +360,127 @@ public abstract class AppMetadataStoreTest {
             TimeUnit.MILLISECONDS.toSeconds(1000), TimeUnit.MILLISECONDS.toSeconds(10000));
   }
 
+  @Test
+  public void testReadJsonRunRecord() throws Exception {
+    ProgramRunId programRunId = NamespaceId.DEFAULT.app("app").workflow("program").run(RunIds.generate());
+
+    AtomicReference<RunRecordMeta> expected = new AtomicReference<>();
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      recordProvisionAndStart(programRunId, store);
+      expected.set(store.getRun(programRunId));
+    });
+
+    // Rewrite the run record in the JSON format used before the binary encoding was introduced
+    TransactionRunners.run(transactionRunner, context -> {
+      StructuredTable table = context.getTable(StoreDefinition.AppMetadataStore.RUN_RECORDS);
+      List<Field<?>> fields = new ArrayList<>();
+      try (CloseableIterator<StructuredRow> iterator = table.scan(Range.all(), Integer.MAX_VALUE)) {
+        StructuredRow row = iterator.next();
+        Assert.assertFalse(row.getString(StoreDefinition.AppMetadataStore.RUN_RECORD_DATA).startsWith("{"));
+        Assert.assertFalse(iterator.hasNext());
+        fields.addAll(row.getPrimaryKeys());
+      }
+      fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.RUN_RECORD_DATA,
+                                    new Gson().toJson(expected.get())));
+      table.upsert(fields);
+    });
+
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      Assert.assertEquals(expected.get(), store.getRun(programRunId));
+
+      // Updating the run record should write it with the binary encoding again
+      store.recordProgramRunning(programRunId, RunIds.getTime(programRunId.getRun(), TimeUnit.SECONDS) + 10,
+                                 null, AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+      RunRecordMeta meta = store.getRun(programRunId);
+      Assert.assertEquals(ProgramRunStatus.RUNNING, meta.getStatus());
+      Assert.assertEquals(expected.get().getArtifactId(), meta.getArtifactId());
+      Assert.assertEquals(expected.get().getSystemArgs(), meta.getSystemArgs());
+    });
+  }
+
+  @Test
+  public void testRunningInRangeWithTimeIndex() throws Exception {
+    // Add completed runs that span over multiple time index buckets, plus some active runs
+    long hourSecs = TimeUnit.HOURS.toSeconds(1);
+    for (int i = 0; i < 20; ++i) {
+      ProgramId program = NamespaceId.DEFAULT.app("app" + (i % 3)).program(ProgramType.WORKFLOW, "program" + i);
+      RunId runId = RunIds.generate(TimeUnit.SECONDS.toMillis(i * hourSecs + (i % 2) * hourSecs / 2));
+      ProgramRunId programRunId = program.run(runId);
+      int j = i;
+      TransactionRunners.run(transactionRunner, context -> {
+        AppMetadataStore metadataStoreDataset = AppMetadataStore.create(context);
+        recordProvisionAndStart(programRunId, metadataStoreDataset);
+        if (j % 4 != 0) {
+          metadataStoreDataset.recordProgramStop(programRunId,
+                                                 RunIds.getTime(runId, TimeUnit.SECONDS) + (j % 5) * hourSecs,
+                                                 STOP_STATUSES.get(j % STOP_STATUSES.size()), null,
+                                                 AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+        }
+      });
+    }
+
+    // Compute the expected results by scanning all run records, before the time index is backfilled
+    List<long[]> ranges = ImmutableList.of(new long[] { 0, Long.MAX_VALUE }, new long[] { 0, hourSecs },
+                                           new long[] { hourSecs / 2, 3 * hourSecs },
+                                           new long[] { 5 * hourSecs, 5 * hourSecs },
+                                           new long[] { 5 * hourSecs + 1, 9 * hourSecs },
+                                           new long[] { 19 * hourSecs, Long.MAX_VALUE },
+                                           new long[] { 100 * hourSecs, Long.MAX_VALUE });
+    Map<Integer, Set<RunId>> expected = new HashMap<>();
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore metadataStoreDataset = AppMetadataStore.create(context);
+      for (int i = 0; i < ranges.size(); i++) {
+        expected.put(i, getRunningInRange(metadataStoreDataset, ranges.get(i)[0], ranges.get(i)[1]));
+      }
+      // Clear the index to simulate run records written before the index exists
+      context.getTable(StoreDefinition.AppMetadataStore.RUN_RECORDS_TIME_INDEX).deleteAll(Range.all());
+    });
+
+    // Backfill in small batches
+    AtomicInteger batches = new AtomicInteger();
+    while (TransactionRunners.run(transactionRunner, context -> {
+      return AppMetadataStore.create(context).backfillRunRecordTimeIndex(3);
+    })) {
+      batches.incrementAndGet();
+    }
+    Assert.assertEquals(20 / 3, batches.get());
+
+    // Queries served from the index should give the same results as the full scan
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore metadataStoreDataset = AppMetadataStore.create(context);
+      Assert.assertFalse(metadataStoreDataset.backfillRunRecordTimeIndex(3));
+      for (int i = 0; i < ranges.size(); i++) {
+        Assert.assertEquals(expected.get(i),
+                            getRunningInRange(metadataStoreDataset, ranges.get(i)[0], ranges.get(i)[1]));
+      }
+    });
+
+    // Deleting the program history should remove the runs from the index as well
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore metadataStoreDataset = AppMetadataStore.create(context);
+      Set<RunId> remaining = new HashSet<>();
+      for (RunRecordMeta meta : metadataStoreDataset.getRuns(null, ProgramRunStatus.ALL, 0, Long.MAX_VALUE,
+                                                             Integer.MAX_VALUE, null).values()) {
+        if (!"app0".equals(meta.getProgramRunId().getApplication())) {
+          remaining.add(RunIds.fromString(meta.getPid()));
+        }
+      }
+      metadataStoreDataset.deleteProgramHistory(NamespaceId.DEFAULT.getNamespace(), "app0",
+                                                ApplicationId.DEFAULT_VERSION);
+      Assert.assertEquals(remaining, getRunningInRange(metadataStoreDataset, 0, Long.MAX_VALUE));
+    });
+  }
+
+  private Set<RunId> getRunningInRange(AppMetadataStore metadataStoreDataset,
+                                       long startTime, long stopTime) throws IOException {
+    Set<RunId> result = new HashSet<>();
+    result.addAll(metadataStoreDataset.getRunningInRangeActive(startTime, stopTime));
+    result.addAll(metadataStoreDataset.getRunningInRangeCompleted(startTime, stopTime));
+    return result;
+  }
+
   private void runScan(final Set<Long> expected, final long startTime, final long stopTime) {
     TransactionRunners.run(transactionRunner, context -> {
       AppMetadataStore metadataStoreDataset = AppMetadataStore.create(context);
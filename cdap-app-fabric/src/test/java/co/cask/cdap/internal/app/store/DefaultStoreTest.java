@@ -46,6 +46,7 @@ import co.cask.cdap.internal.app.runtime.ProgramOptionConstants;
 import co.cask.cdap.internal.app.runtime.SystemArguments;
 import co.cask.cdap.proto.BasicThrowable;
 import co.cask.cdap.proto.NamespaceMeta;
+import co.cask.cdap.proto.ProgramHistory;
 import co.cask.cdap.proto.ProgramRunCluster;
 import co.cask.cdap.proto.ProgramRunClusterStatus;
 import co.cask.cdap.proto.ProgramRunStatus;
@@ -70,9 +71,11 @@ import org.apache.twill.api.RunId;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Ignore;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -682,6 +685,95 @@ public abstract class DefaultStoreTest {
     }
   }
 
+  @Test
+  public void testActiveRunsOfPrograms() {
+    ApplicationSpecification spec = Specifications.from(new AllProgramsApp());
+    ApplicationId appId = NamespaceId.DEFAULT.app(spec.getName());
+    ArtifactId testArtifact = NamespaceId.DEFAULT.artifact("testArtifact", "1.0").toApiArtifactId();
+    ProgramId workflowId = appId.workflow(AllProgramsApp.NoOpWorkflow.NAME);
+    ProgramId serviceId = appId.service(AllProgramsApp.NoOpService.NAME);
+    ProgramId mapReduceId = appId.mr(AllProgramsApp.NoOpMR.NAME);
+    ProgramId nonExistingAppProgramId = NamespaceId.DEFAULT.app("nonExisting").workflow("test");
+    ProgramId nonExistingProgramId = appId.workflow("nonExisting");
+
+    store.addApplication(appId, spec);
+
+    // two active runs of the workflow, one completed and one active run of the service and no run of the mapreduce
+    ProgramRunId workflowRun1 = workflowId.run(RunIds.generate());
+    ProgramRunId workflowRun2 = workflowId.run(RunIds.generate());
+    ProgramRunId serviceRun1 = serviceId.run(RunIds.generate());
+    ProgramRunId serviceRun2 = serviceId.run(RunIds.generate());
+    setStartAndRunning(workflowRun1, testArtifact);
+    setStart(workflowRun2, Collections.emptyMap(), Collections.emptyMap(), testArtifact);
+    setStartAndRunning(serviceRun1, testArtifact);
+    setStartAndRunning(serviceRun2, testArtifact);
+    store.setStop(serviceRun1, RunIds.getTime(serviceRun1.getRun(), TimeUnit.SECONDS) + 10, ProgramRunStatus.COMPLETED,
+                  AppFabricTestHelper.createSourceId(++sourceId));
+
+    List<ProgramId> programIds = ImmutableList.of(workflowId, nonExistingAppProgramId, serviceId,
+                                                  nonExistingProgramId, mapReduceId);
+    List<ProgramHistory> result = store.getActiveRuns(programIds);
+
+    // the result is in the order of the given programs
+    Assert.assertEquals(programIds, result.stream().map(ProgramHistory::getProgramId).collect(Collectors.toList()));
+    Assert.assertEquals(ImmutableSet.of(workflowRun1, workflowRun2), getRunIds(result.get(0)));
+    Assert.assertTrue(result.get(1).getException() instanceof NotFoundException);
+    Assert.assertEquals(ImmutableSet.of(serviceRun2), getRunIds(result.get(2)));
+    Assert.assertTrue(result.get(3).getException() instanceof NotFoundException);
+    Assert.assertTrue(getRunIds(result.get(4)).isEmpty());
+
+    // the result is the same as the active runs of each program
+    for (ProgramId programId : ImmutableList.of(workflowId, serviceId, mapReduceId)) {
+      Assert.assertEquals(store.getActiveRuns(programId).keySet(),
+                          getRunIds(store.getActiveRuns(Collections.singleton(programId)).get(0)));
+    }
+  }
+
+  /**
+   * Compares getting the active runs of 500 programs with a single call to getting them one program at a time, which
+   * is what the batch status endpoint used to do.
+   */
+  @Ignore
+  @Test
+  public void testActiveRunsSpeed() {
+    ApplicationSpecification spec = Specifications.from(new AllProgramsApp());
+    ArtifactId testArtifact = NamespaceId.DEFAULT.artifact("testArtifact", "1.0").toApiArtifactId();
+    List<ProgramId> programIds = new ArrayList<>();
+    for (int i = 0; programIds.size() < 500; i++) {
+      ApplicationId appId = NamespaceId.DEFAULT.app("app" + i);
+      store.addApplication(appId, spec);
+      for (ProgramId programId : ImmutableList.of(appId.workflow(AllProgramsApp.NoOpWorkflow.NAME),
+                                                  appId.service(AllProgramsApp.NoOpService.NAME),
+                                                  appId.mr(AllProgramsApp.NoOpMR.NAME),
+                                                  appId.spark(AllProgramsApp.NoOpSpark.NAME),
+                                                  appId.worker(AllProgramsApp.NoOpWorker.NAME))) {
+        programIds.add(programId);
+        setStartAndRunning(programId.run(RunIds.generate()), testArtifact);
+      }
+    }
+
+    for (int i = 0; i < 3; i++) {
+      long startTime = System.nanoTime();
+      for (ProgramId programId : programIds) {
+        store.getApplication(programId.getParent());
+        store.getActiveRuns(programId);
+      }
+      long singleTime = System.nanoTime() - startTime;
+
+      startTime = System.nanoTime();
+      store.getActiveRuns(programIds);
+      long batchTime = System.nanoTime() - startTime;
+
+      System.out.printf("Active runs of %d programs: one at a time %d ms, batch %d ms%n", programIds.size(),
+                        TimeUnit.NANOSECONDS.toMillis(singleTime), TimeUnit.NANOSECONDS.toMillis(batchTime));
+    }
+  }
+
+  private Set<ProgramRunId> getRunIds(ProgramHistory history) {
+    Assert.assertNull(history.getException());
+    return history.getRuns().stream().map(run -> history.getProgramId().run(run.getPid())).collect(Collectors.toSet());
+  }
+
   @Test
   public void testRuntimeArgsDeletion() {
     ApplicationSpecification spec = Specifications.from(new AllProgramsApp());
@@ -29,7 +29,6 @@ import co.cask.cdap.etl.api.JoinElement;
 import co.cask.cdap.etl.api.Joiner;
 import co.cask.cdap.etl.api.SplitterTransform;
 import co.cask.cdap.etl.api.StageLifecycle;
-import co.cask.cdap.etl.api.StageMetrics;
 import co.cask.cdap.etl.api.TransformContext;
 import co.cask.cdap.etl.api.Transformation;
 import co.cask.cdap.etl.api.batch.BatchAggregator;
@@ -57,6 +56,7 @@ import co.cask.cdap.etl.common.NoopStageStatisticsCollector;
 import co.cask.cdap.etl.common.PipelinePhase;
 import co.cask.cdap.etl.common.PipelineRuntime;
 import co.cask.cdap.etl.common.RecordInfo;
+import co.cask.cdap.etl.common.StageMetricsBuffer;
 import co.cask.cdap.etl.common.StageStatisticsCollector;
 import co.cask.cdap.etl.common.TrackedMultiOutputTransform;
 import co.cask.cdap.etl.common.TrackedTransform;
@@ -137,11 +137,11 @@ public class MapReduceTransformExecutorFactory<T> {
     TransformContext transformContext = createRuntimeContext(stageSpec);
     splitterTransform.initialize(transformContext);
 
-    StageMetrics stageMetrics = new DefaultStageMetrics(metrics, stageName);
+    StageMetricsBuffer metricsBuffer = createMetricsBuffer(stageSpec);
     TaskAttemptContext taskAttemptContext = (TaskAttemptContext) taskContext.getHadoopContext();
     StageStatisticsCollector collector = isPipelineContainsCondition
       ? new MapReduceStageStatisticsCollector(stageName, taskAttemptContext) : new NoopStageStatisticsCollector();
-    return new TrackedMultiOutputTransform<>(splitterTransform, stageMetrics, taskContext.getDataTracer(stageName),
+    return new TrackedMultiOutputTransform<>(splitterTransform, metricsBuffer, taskContext.getDataTracer(stageName),
                                              collector);
   }
 
@@ -152,7 +152,7 @@ public class MapReduceTransformExecutorFactory<T> {
       new DefaultMacroEvaluator(arguments, taskContext.getLogicalStartTime(), taskContext, taskContext.getNamespace());
     String stageName = stageSpec.getName();
     String pluginType = stageSpec.getPluginType();
-    StageMetrics stageMetrics = new DefaultStageMetrics(metrics, stageName);
+    StageMetricsBuffer metricsBuffer = createMetricsBuffer(stageSpec);
     TaskAttemptContext taskAttemptContext = (TaskAttemptContext) taskContext.getHadoopContext();
     StageStatisticsCollector collector = isPipelineContainsCondition ?
       new MapReduceStageStatisticsCollector(stageName, taskAttemptContext) : new NoopStageStatisticsCollector();
@@ -163,12 +163,12 @@ public class MapReduceTransformExecutorFactory<T> {
       if (isMapPhase) {
         return getTrackedEmitKeyStep(new MapperAggregatorTransformation(batchAggregator, mapOutputKeyClassName,
                                                                         mapOutputValClassName),
-                                     stageMetrics, taskContext.getDataTracer(stageName), collector);
+                                     metricsBuffer, taskContext.getDataTracer(stageName), collector);
       } else {
         return getTrackedAggregateStep(new ReducerAggregatorTransformation(batchAggregator,
                                                                            mapOutputKeyClassName,
                                                                            mapOutputValClassName),
-                                       stageMetrics, taskContext.getDataTracer(stageName), collector);
+                                       metricsBuffer, taskContext.getDataTracer(stageName), collector);
       }
     } else if (BatchJoiner.PLUGIN_TYPE.equals(pluginType)) {
       BatchJoiner<?, ?, ?> batchJoiner = pluginInstantiator.newPluginInstance(stageName, macroEvaluator);
@@ -176,12 +176,12 @@ public class MapReduceTransformExecutorFactory<T> {
       batchJoiner.initialize(runtimeContext);
       if (isMapPhase) {
         return getTrackedEmitKeyStep(
-          new MapperJoinerTransformation(batchJoiner, mapOutputKeyClassName, mapOutputValClassName), stageMetrics,
+          new MapperJoinerTransformation(batchJoiner, mapOutputKeyClassName, mapOutputValClassName), metricsBuffer,
           taskContext.getDataTracer(stageName), collector);
       } else {
         return getTrackedMergeStep(
           new ReducerJoinerTransformation(batchJoiner, mapOutputKeyClassName, mapOutputValClassName,
-                                          runtimeContext.getInputSchemas().size()), stageMetrics,
+                                          runtimeContext.getInputSchemas().size()), metricsBuffer,
           taskContext.getDataTracer(stageName), collector);
       }
     }
@@ -193,10 +193,17 @@ public class MapReduceTransformExecutorFactory<T> {
     // we emit metrics for records into alert publishers when the actual alerts are published,
     // not when we write the alerts to the temporary dataset
     String recordsInMetric = AlertPublisher.PLUGIN_TYPE.equals(pluginType) ? null : Constants.Metrics.RECORDS_IN;
-    return new TrackedTransform<>(transformation, stageMetrics, recordsInMetric, Constants.Metrics.RECORDS_OUT,
+    return new TrackedTransform<>(transformation, metricsBuffer, recordsInMetric, Constants.Metrics.RECORDS_OUT,
                                   taskContext.getDataTracer(stageName), collector);
   }
 
+  private StageMetricsBuffer createMetricsBuffer(StageSpec stageSpec) {
+    // Metrics are buffered and flushed when the transform is destroyed at the end of the task
+    return new StageMetricsBuffer(new DefaultStageMetrics(metrics, stageSpec.getName()),
+                                  StageMetricsBuffer.DEFAULT_FLUSH_SIZE,
+                                  StageMetricsBuffer.getLatencySampleRate(stageSpec, arguments));
+  }
+
   /**
    * Create a transform executor for the specified pipeline. Will instantiate and initialize all sources,
    * transforms, and sinks in the pipeline.
@@ -321,26 +328,26 @@ public class MapReduceTransformExecutorFactory<T> {
   }
 
   private static <IN, OUT> TrackedTransform<IN, OUT> getTrackedEmitKeyStep(Transformation<IN, OUT> transform,
-                                                                           StageMetrics stageMetrics,
+                                                                           StageMetricsBuffer metricsBuffer,
                                                                            DataTracer dataTracer,
                                                                            StageStatisticsCollector collector) {
-    return new TrackedTransform<>(transform, stageMetrics, Constants.Metrics.RECORDS_IN, null, dataTracer, collector);
+    return new TrackedTransform<>(transform, metricsBuffer, Constants.Metrics.RECORDS_IN, null, dataTracer, collector);
   }
 
   private static <IN, OUT> TrackedTransform<IN, OUT> getTrackedAggregateStep(Transformation<IN, OUT> transform,
-                                                                             StageMetrics stageMetrics,
+                                                                             StageMetricsBuffer metricsBuffer,
                                                                              DataTracer dataTracer,
                                                                              StageStatisticsCollector collector) {
     // 'aggregator.groups' is the number of groups output by the aggregator
-    return new TrackedTransform<>(transform, stageMetrics, Constants.Metrics.AGG_GROUPS, Constants.Metrics.RECORDS_OUT,
+    return new TrackedTransform<>(transform, metricsBuffer, Constants.Metrics.AGG_GROUPS, Constants.Metrics.RECORDS_OUT,
                                   dataTracer, collector);
   }
 
   private static <IN, OUT> TrackedTransform<IN, OUT> getTrackedMergeStep(Transformation<IN, OUT> transform,
-                                                                         StageMetrics stageMetrics,
+                                                                         StageMetricsBuffer metricsBuffer,
                                                                          DataTracer dataTracer,
                                                                          StageStatisticsCollector collector) {
-    return new TrackedTransform<>(transform, stageMetrics, null, Constants.Metrics.RECORDS_OUT, dataTracer, collector);
+    return new TrackedTransform<>(transform, metricsBuffer, null, Constants.Metrics.RECORDS_OUT, dataTracer, collector);
   }
 
   /**
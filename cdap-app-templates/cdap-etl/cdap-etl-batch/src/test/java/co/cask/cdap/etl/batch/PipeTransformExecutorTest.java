@@ -0,0 +1,232 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.batch;
+
+import co.cask.cdap.api.metrics.MetricValues;
+import co.cask.cdap.api.metrics.Metrics;
+import co.cask.cdap.app.metrics.ProgramUserMetrics;
+import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.api.InvalidEntry;
+import co.cask.cdap.etl.common.Constants;
+import co.cask.cdap.etl.common.DefaultEmitter;
+import co.cask.cdap.etl.common.DefaultStageMetrics;
+import co.cask.cdap.etl.common.NoopStageStatisticsCollector;
+import co.cask.cdap.etl.common.RecordInfo;
+import co.cask.cdap.etl.common.StageMetricsBuffer;
+import co.cask.cdap.etl.common.TrackedTransform;
+import co.cask.cdap.internal.app.preview.NoopDataTracerFactory;
+import co.cask.cdap.metrics.collect.AggregatedMetricsCollectionService;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link PipeTransformExecutor}.
+ */
+public class PipeTransformExecutorTest {
+
+  private static final int NUM_STAGES = 5;
+
+  @Test
+  public void testBufferedMetrics() {
+    CountingMetrics metrics = new CountingMetrics();
+    CountingEmitter sink = new CountingEmitter();
+    PipeTransformExecutor<Integer> executor = createExecutor(metrics, 100, 0, sink);
+
+    for (int i = 0; i < 1070; i++) {
+      executor.runOneIteration(i);
+    }
+    Assert.assertEquals(1070, sink.count);
+    // Counts of the last records are only flushed when the executor is destroyed
+    Assert.assertTrue(metrics.getCount("stage1." + Constants.Metrics.RECORDS_IN) < 1070);
+
+    executor.destroy();
+    for (int i = 1; i <= NUM_STAGES; i++) {
+      Assert.assertEquals(1070, metrics.getCount("stage" + i + "." + Constants.Metrics.RECORDS_IN));
+      Assert.assertEquals(1070, metrics.getCount("stage" + i + "." + Constants.Metrics.RECORDS_OUT));
+    }
+  }
+
+  @Ignore
+  @Test
+  public void testPerformance() throws Exception {
+    int records = 5000000;
+    Metrics metrics = createProgramMetrics();
+
+    // Warm up both, then measure
+    for (int round = 0; round < 2; round++) {
+      // flush size and latency sample rate
+      for (int[] config : new int[][] { { 1, 0 }, { StageMetricsBuffer.DEFAULT_FLUSH_SIZE, 0 },
+                                        { StageMetricsBuffer.DEFAULT_FLUSH_SIZE, 100 } }) {
+        CountingEmitter sink = new CountingEmitter();
+        PipeTransformExecutor<Integer> executor = createExecutor(metrics, config[0], config[1], sink);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+          executor.runOneIteration(i);
+        }
+        executor.destroy();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        Assert.assertEquals(records, sink.count);
+        if (round > 0) {
+          System.out.println("Metrics flush size " + config[0] + ", latency sample rate " + config[1] + ": "
+                               + records + " records through " + NUM_STAGES + " stages in " + elapsed + " ms");
+        }
+      }
+    }
+  }
+
+  @Ignore
+  @Test
+  public void testTransformFunctionPerformance() throws Exception {
+    // Runs the stages the way the Spark TransformFunction does, with one TrackedTransform per stage that is called
+    // for every record with a reset emitter. A Spark task flushes the buffered metrics when it completes.
+    int records = 5000000;
+    Metrics metrics = createProgramMetrics();
+
+    // Warm up both, then measure
+    for (int round = 0; round < 2; round++) {
+      for (int flushSize : new int[] { 1, StageMetricsBuffer.DEFAULT_FLUSH_SIZE }) {
+        List<TrackedTransform<Object, Object>> transforms = new ArrayList<>();
+        List<StageMetricsBuffer> metricsBuffers = new ArrayList<>();
+        for (int i = 1; i <= NUM_STAGES; i++) {
+          String stageName = "stage" + i;
+          StageMetricsBuffer metricsBuffer =
+            new StageMetricsBuffer(new DefaultStageMetrics(metrics, stageName), flushSize, 0);
+          metricsBuffers.add(metricsBuffer);
+          transforms.add(new TrackedTransform<>((input, output) -> output.emit(input), metricsBuffer,
+                                                Constants.Metrics.RECORDS_IN, Constants.Metrics.RECORDS_OUT,
+                                                new NoopDataTracerFactory().getDataTracer(null, stageName),
+                                                new NoopStageStatisticsCollector()));
+        }
+        DefaultEmitter<Object> emitter = new DefaultEmitter<>();
+        int count = 0;
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+          Object record = i;
+          for (TrackedTransform<Object, Object> transform : transforms) {
+            emitter.reset();
+            transform.transform(record, emitter);
+            record = emitter.getEntries().iterator().next();
+          }
+          count++;
+        }
+        for (StageMetricsBuffer metricsBuffer : metricsBuffers) {
+          metricsBuffer.flush();
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        Assert.assertEquals(records, count);
+        if (round > 0) {
+          System.out.println("Transform function metrics flush size " + flushSize + ": "
+                               + records + " records through " + NUM_STAGES + " stages in " + elapsed + " ms");
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates a {@link Metrics} that aggregates the metrics like in a program, without publishing them.
+   */
+  private Metrics createProgramMetrics() {
+    AggregatedMetricsCollectionService metricsCollectionService = new AggregatedMetricsCollectionService(1000L) {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        // no-op
+      }
+    };
+    return new ProgramUserMetrics(metricsCollectionService.getContext(
+      ImmutableMap.of("ns", "default", "app", "pipeline", "run", "run1")));
+  }
+
+  /**
+   * Creates a chain of identity transforms, stage1 to stage5, that writes to the given sink.
+   */
+  @SuppressWarnings("unchecked")
+  private PipeTransformExecutor<Integer> createExecutor(Metrics metrics, int flushSize, int latencySampleRate,
+                                                        Emitter<Object> sink) {
+    Map<String, PipeStage> pipeStages = new HashMap<>();
+    PipeStage<RecordInfo> next = null;
+    for (int i = NUM_STAGES; i > 0; i--) {
+      String stageName = "stage" + i;
+      Emitter<Object> emitter = next == null ? sink : PipeEmitter.builder(stageName).addOutputConsumer(next).build();
+      TrackedTransform<Object, Object> transform =
+        new TrackedTransform<>((input, output) -> output.emit(input),
+                               new StageMetricsBuffer(new DefaultStageMetrics(metrics, stageName), flushSize,
+                                                      latencySampleRate),
+                               Constants.Metrics.RECORDS_IN, Constants.Metrics.RECORDS_OUT,
+                               new NoopDataTracerFactory().getDataTracer(null, stageName),
+                               new NoopStageStatisticsCollector());
+      next = (PipeStage) new UnwrapPipeStage<>(stageName, transform, emitter);
+      pipeStages.put(stageName, next);
+    }
+    return new PipeTransformExecutor<>(pipeStages, ImmutableSet.of("stage1"));
+  }
+
+  /**
+   * A {@link Metrics} that keeps the counts in memory.
+   */
+  private static final class CountingMetrics implements Metrics {
+
+    private final Map<String, Integer> counts = new HashMap<>();
+
+    @Override
+    public void count(String metricName, int delta) {
+      counts.merge(metricName, delta, Integer::sum);
+    }
+
+    @Override
+    public void gauge(String metricName, long value) {
+      // no-op
+    }
+
+    int getCount(String metricName) {
+      return counts.getOrDefault(metricName, 0);
+    }
+  }
+
+  /**
+   * An {@link Emitter} that counts the emitted records.
+   */
+  private static final class CountingEmitter implements Emitter<Object> {
+
+    private int count;
+
+    @Override
+    public void emit(Object value) {
+      count++;
+    }
+
+    @Override
+    public void emitError(InvalidEntry<Object> invalidEntry) {
+      // no-op
+    }
+
+    @Override
+    public void emitAlert(Map<String, String> payload) {
+      // no-op
+    }
+  }
+}
@@ -31,6 +31,9 @@ public final class Constants {
   public static final String MDC_STAGE_KEY = "pipeline.stage";
   public static final String FIELD_OPERATION_KEY_IN_WORKFLOW_TOKEN = "field.operations";
   public static final String SPARK_PIPELINE_AUTOCACHE_ENABLE_FLAG = "spark.cdap.pipeline.autocache.enable";
+  // runtime argument for the number of records per sampled record when measuring stage latency, 0 to disable
+  public static final String LATENCY_SAMPLE_RATE = "pipeline.latency.sample.rate";
+  public static final int DEFAULT_LATENCY_SAMPLE_RATE = 100;
 
   private Constants() {
     throw new AssertionError("Suppress default constructor for noninstantiability");
@@ -57,6 +60,11 @@ public final class Constants {
     public static final String MAX_TIME = "process.time.max";
     public static final String STD_DEV_TIME = "process.time.stddev";
     public static final String AVG_TIME = "process.time.avg";
+    // latencies of sampled records, in nanoseconds
+    public static final String LATENCY_SAMPLES = "process.latency.samples";
+    public static final String LATENCY_TOTAL = "process.latency.total";
+    // followed by the index of a LatencyHistogram bucket, counts the samples in that bucket
+    public static final String LATENCY_BUCKET_PREFIX = "process.latency.bucket.";
     public static final String RECORDS_IN = "records.in";
     public static final String RECORDS_OUT = "records.out";
     public static final String RECORDS_ERROR = "records.error";
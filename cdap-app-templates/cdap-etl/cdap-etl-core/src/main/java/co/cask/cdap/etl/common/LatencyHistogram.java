@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.common;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A histogram of latencies in nanoseconds with a small, fixed set of buckets, so that it can be published as
+ * one counter per bucket. Bucket {@code i} counts the latencies below 4<sup>i</sup> microseconds, that are not
+ * counted by a lower bucket. The last bucket counts everything above about four and a half minutes.
+ *
+ * Since the buckets are fixed, the histograms of all tasks of a stage are merged by adding up the counts of
+ * each bucket, which the metrics system does for counters. {@link #getValueAtPercentile(Map, double)}
+ * computes a percentile of a stage from the merged bucket counters.
+ *
+ * This class is not thread safe.
+ */
+public final class LatencyHistogram {
+
+  /**
+   * The number of buckets of a histogram.
+   */
+  public static final int NUM_BUCKETS = 16;
+
+  private static final long NANOS_PER_MICRO = 1000L;
+
+  private final long[] counts = new long[NUM_BUCKETS];
+  private long count;
+  private long total;
+
+  /**
+   * Records the given latency. Negative values are recorded as zero.
+   */
+  public void record(long nanos) {
+    long value = Math.max(0L, nanos);
+    counts[getBucket(value)]++;
+    count++;
+    total += value;
+  }
+
+  /**
+   * Returns the number of recorded values.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the sum of the recorded values.
+   */
+  public long getTotal() {
+    return total;
+  }
+
+  /**
+   * Returns the number of recorded values in the given bucket.
+   */
+  public long getBucketCount(int bucket) {
+    return counts[bucket];
+  }
+
+  /**
+   * Removes all recorded values.
+   */
+  public void reset() {
+    if (count == 0) {
+      return;
+    }
+    Arrays.fill(counts, 0L);
+    count = 0;
+    total = 0;
+  }
+
+  /**
+   * Returns the name of the counter for the given bucket.
+   */
+  public static String getBucketMetricName(int bucket) {
+    return Constants.Metrics.LATENCY_BUCKET_PREFIX + bucket;
+  }
+
+  /**
+   * Returns the latency in nanoseconds that the given percentage of latencies are less than or equal to,
+   * from the bucket counters of a stage. The value is interpolated linearly within the bucket that contains
+   * the percentile. Returns 0 if there are no bucket counters.
+   *
+   * @param bucketMetrics the values of the bucket counters, keyed by metric name. Metric names are matched by
+   *                      their {@link Constants.Metrics#LATENCY_BUCKET_PREFIX} suffix, so they may carry the stage
+   *                      and scope prefixes that the metrics system adds. Other metrics are ignored.
+   * @param percentile the percentile, between 0 and 100
+   */
+  public static long getValueAtPercentile(Map<String, Long> bucketMetrics, double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+    }
+    long[] bucketCounts = new long[NUM_BUCKETS];
+    long count = 0;
+    for (Map.Entry<String, Long> entry : bucketMetrics.entrySet()) {
+      String name = entry.getKey();
+      int idx = name.lastIndexOf(Constants.Metrics.LATENCY_BUCKET_PREFIX);
+      if (idx < 0) {
+        continue;
+      }
+      int bucket = Integer.parseInt(name.substring(idx + Constants.Metrics.LATENCY_BUCKET_PREFIX.length()));
+      bucketCounts[bucket] += entry.getValue();
+      count += entry.getValue();
+    }
+    if (count == 0) {
+      return 0L;
+    }
+
+    double rank = Math.max(1d, Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      if (seen + bucketCounts[i] >= rank) {
+        long lowest = getLowestValue(i);
+        // The last bucket has no upper bound
+        if (i == NUM_BUCKETS - 1) {
+          return lowest;
+        }
+        return lowest + (long) ((getLowestValue(i + 1) - lowest) * (rank - seen) / bucketCounts[i]);
+      }
+      seen += bucketCounts[i];
+    }
+    return getLowestValue(NUM_BUCKETS - 1);
+  }
+
+  private static int getBucket(long nanos) {
+    // the number of bits of the micros value, rounded up to an even number, divided by two
+    long micros = nanos / NANOS_PER_MICRO;
+    return Math.min(NUM_BUCKETS - 1, (Long.SIZE - Long.numberOfLeadingZeros(micros) + 1) / 2);
+  }
+
+  private static long getLowestValue(int bucket) {
+    return bucket == 0 ? 0L : (1L << (2 * (bucket - 1))) * NANOS_PER_MICRO;
+  }
+}
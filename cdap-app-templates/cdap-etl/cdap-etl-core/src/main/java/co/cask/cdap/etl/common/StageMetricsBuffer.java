@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.common;
+
+import co.cask.cdap.etl.api.Arguments;
+import co.cask.cdap.etl.api.StageMetrics;
+import co.cask.cdap.etl.proto.v2.spec.StageSpec;
+
+import java.util.Arrays;
+
+/**
+ * Counts metrics of a stage in primitive counters and adds them to the {@link StageMetrics} in batches,
+ * instead of calling {@link StageMetrics#count(String, int)} for every record.
+ *
+ * If latency sampling is enabled, the processing time of every n-th record is also recorded in a
+ * {@link LatencyHistogram}, which is published by {@link #flushLatency()}. The histogram is published as
+ * one counter per non-empty bucket, out of a fixed set of {@link LatencyHistogram#NUM_BUCKETS}, so that the
+ * counters of all tasks of a stage add up to the histogram of the stage. The percentiles of the stage are
+ * computed from those counters with {@link LatencyHistogram#getValueAtPercentile(java.util.Map, double)}.
+ *
+ * This class is not thread safe. Each thread processing records for a stage uses its own instance,
+ * and must call {@link #flush()} and {@link #flushLatency()} when it is done.
+ */
+public final class StageMetricsBuffer {
+
+  /**
+   * Number of counts to buffer before adding them to the {@link StageMetrics}, when buffering is enabled.
+   */
+  public static final int DEFAULT_FLUSH_SIZE = 1000;
+
+  private final StageMetrics metrics;
+  private final int flushSize;
+  private final int latencySampleRate;
+  private final LatencyHistogram latencyHistogram;
+  private String[] names;
+  private int[] counts;
+  private int size;
+  private int pending;
+  private int unsampled;
+  private boolean sampling;
+  private long excludedNanos;
+
+  /**
+   * Creates a buffer that adds counts to the {@link StageMetrics} right away.
+   */
+  public StageMetricsBuffer(StageMetrics metrics) {
+    this(metrics, 1);
+  }
+
+  /**
+   * Creates a buffer that adds counts to the {@link StageMetrics} once the given number of counts are buffered.
+   */
+  public StageMetricsBuffer(StageMetrics metrics, int flushSize) {
+    this(metrics, flushSize, 0);
+  }
+
+  /**
+   * Creates a buffer that adds counts to the {@link StageMetrics} once the given number of counts are buffered,
+   * and that records the latency of one out of every {@code latencySampleRate} records.
+   *
+   * @param latencySampleRate the number of records per sampled record, or 0 to not record latencies
+   */
+  public StageMetricsBuffer(StageMetrics metrics, int flushSize, int latencySampleRate) {
+    if (flushSize <= 0) {
+      throw new IllegalArgumentException("Flush size must be positive: " + flushSize);
+    }
+    if (latencySampleRate < 0) {
+      throw new IllegalArgumentException("Latency sample rate must not be negative: " + latencySampleRate);
+    }
+    this.metrics = metrics;
+    this.flushSize = flushSize;
+    this.latencySampleRate = latencySampleRate;
+    this.latencyHistogram = latencySampleRate == 0 ? null : new LatencyHistogram();
+    this.names = new String[4];
+    this.counts = new int[4];
+  }
+
+  /**
+   * Returns the id of the counter for the given metric name, adding the counter if it doesn't exist.
+   */
+  public int getCounter(String metricName) {
+    for (int i = 0; i < size; i++) {
+      if (names[i].equals(metricName)) {
+        return i;
+      }
+    }
+    if (size == names.length) {
+      names = Arrays.copyOf(names, size * 2);
+      counts = Arrays.copyOf(counts, size * 2);
+    }
+    names[size] = metricName;
+    return size++;
+  }
+
+  /**
+   * Returns the metric name of the given counter.
+   */
+  public String getMetricName(int counter) {
+    return names[counter];
+  }
+
+  /**
+   * Increments the given counter by one.
+   */
+  public void increment(int counter) {
+    counts[counter]++;
+    if (++pending >= flushSize) {
+      flush();
+    }
+  }
+
+  /**
+   * Adds all buffered counts to the {@link StageMetrics}.
+   */
+  public void flush() {
+    for (int i = 0; i < size; i++) {
+      if (counts[i] != 0) {
+        metrics.count(names[i], counts[i]);
+        counts[i] = 0;
+      }
+    }
+    pending = 0;
+  }
+
+  /**
+   * Returns whether the latency of the next record should be recorded. If this returns {@code true},
+   * the caller must call {@link #recordLatency(long)} once the record is processed.
+   */
+  public boolean startSample() {
+    if (latencyHistogram == null || ++unsampled < latencySampleRate) {
+      return false;
+    }
+    unsampled = 0;
+    sampling = true;
+    excludedNanos = 0L;
+    return true;
+  }
+
+  /**
+   * Returns whether the latency of the record being processed is being recorded.
+   */
+  public boolean isSampling() {
+    return sampling;
+  }
+
+  /**
+   * Excludes the given time from the latency of the sampled record. This is used for time spent
+   * in the stages that a record is emitted to.
+   */
+  public void excludeLatency(long nanos) {
+    excludedNanos += nanos;
+  }
+
+  /**
+   * Records the latency of the sampled record, minus the excluded time.
+   */
+  public void recordLatency(long nanos) {
+    sampling = false;
+    latencyHistogram.record(nanos - excludedNanos);
+  }
+
+  /**
+   * Adds the sample count, total and bucket counts of the recorded latencies to the {@link StageMetrics}
+   * and resets the recorded latencies.
+   */
+  public void flushLatency() {
+    if (latencyHistogram == null || latencyHistogram.getCount() == 0) {
+      return;
+    }
+    count(Constants.Metrics.LATENCY_SAMPLES, latencyHistogram.getCount());
+    count(Constants.Metrics.LATENCY_TOTAL, latencyHistogram.getTotal());
+    for (int i = 0; i < LatencyHistogram.NUM_BUCKETS; i++) {
+      long bucketCount = latencyHistogram.getBucketCount(i);
+      if (bucketCount != 0) {
+        count(LatencyHistogram.getBucketMetricName(i), bucketCount);
+      }
+    }
+    latencyHistogram.reset();
+  }
+
+  /**
+   * Returns the latency sample rate for the given stage, from the {@link Constants#LATENCY_SAMPLE_RATE}
+   * argument. Latencies are only sampled if process timing is enabled for the stage.
+   */
+  public static int getLatencySampleRate(StageSpec stageSpec, Arguments arguments) {
+    if (!stageSpec.isProcessTimingEnabled()) {
+      return 0;
+    }
+    String sampleRate = arguments.get(Constants.LATENCY_SAMPLE_RATE);
+    return sampleRate == null ? Constants.DEFAULT_LATENCY_SAMPLE_RATE : Integer.parseInt(sampleRate);
+  }
+
+  private void count(String metricName, long value) {
+    // StageMetrics only takes int deltas
+    while (value > Integer.MAX_VALUE) {
+      metrics.count(metricName, Integer.MAX_VALUE);
+      value -= Integer.MAX_VALUE;
+    }
+    metrics.count(metricName, (int) value);
+  }
+}
@@ -31,48 +31,87 @@ import javax.annotation.Nullable;
  */
 public class TrackedEmitter<T> implements Emitter<T> {
   private final Emitter<T> delegate;
-  private final StageMetrics stageMetrics;
+  private final StageMetricsBuffer metricsBuffer;
   private final String emitMetricName;
   private final DataTracer dataTracer;
   private final StageStatisticsCollector collector;
+  private final boolean isRecordsOut;
+  private final int emitCounter;
+  private final int errorCounter;
+  private final int alertCounter;
 
   public TrackedEmitter(Emitter<T> delegate, StageMetrics stageMetrics, String emitMetricName, DataTracer dataTracer,
                         StageStatisticsCollector collector) {
+    this(delegate, new StageMetricsBuffer(stageMetrics), emitMetricName, dataTracer, collector);
+  }
+
+  public TrackedEmitter(Emitter<T> delegate, StageMetricsBuffer metricsBuffer, String emitMetricName,
+                        DataTracer dataTracer, StageStatisticsCollector collector) {
     this.delegate = delegate;
-    this.stageMetrics = stageMetrics;
+    this.metricsBuffer = metricsBuffer;
     this.emitMetricName = emitMetricName;
     this.dataTracer = dataTracer;
     this.collector = collector;
+    this.isRecordsOut = emitMetricName.equals(Constants.Metrics.RECORDS_OUT);
+    this.emitCounter = metricsBuffer.getCounter(emitMetricName);
+    this.errorCounter = metricsBuffer.getCounter(Constants.Metrics.RECORDS_ERROR);
+    this.alertCounter = metricsBuffer.getCounter(Constants.Metrics.RECORDS_ALERT);
+  }
+
+  /**
+   * Returns the emitter that this emitter delegates to.
+   */
+  Emitter<T> getDelegate() {
+    return delegate;
   }
 
   @Override
   public void emit(T value) {
-    stageMetrics.count(emitMetricName, 1);
-    if (emitMetricName.equals(Constants.Metrics.RECORDS_OUT)) {
+    metricsBuffer.increment(emitCounter);
+    if (isRecordsOut) {
       collector.incrementOutputRecordCount();
     }
     if (dataTracer.isEnabled()) {
       dataTracer.info(emitMetricName, value);
     }
-    delegate.emit(value);
+    if (metricsBuffer.isSampling()) {
+      // time spent in the stages that the record is emitted to is not part of the latency of this stage
+      long startTime = System.nanoTime();
+      delegate.emit(value);
+      metricsBuffer.excludeLatency(System.nanoTime() - startTime);
+    } else {
+      delegate.emit(value);
+    }
   }
 
   @Override
   public void emitError(InvalidEntry<T> value) {
-    stageMetrics.count(Constants.Metrics.RECORDS_ERROR, 1);
+    metricsBuffer.increment(errorCounter);
     collector.incrementErrorRecordCount();
     if (dataTracer.isEnabled()) {
       dataTracer.info(Constants.Metrics.RECORDS_ERROR, value);
     }
-    delegate.emitError(value);
+    if (metricsBuffer.isSampling()) {
+      long startTime = System.nanoTime();
+      delegate.emitError(value);
+      metricsBuffer.excludeLatency(System.nanoTime() - startTime);
+    } else {
+      delegate.emitError(value);
+    }
   }
 
   @Override
   public void emitAlert(Map<String, String> payload) {
-    stageMetrics.count(Constants.Metrics.RECORDS_ALERT, 1);
+    metricsBuffer.increment(alertCounter);
     if (dataTracer.isEnabled()) {
       dataTracer.info(Constants.Metrics.RECORDS_ALERT, payload);
     }
-    delegate.emitAlert(payload);
+    if (metricsBuffer.isSampling()) {
+      long startTime = System.nanoTime();
+      delegate.emitAlert(payload);
+      metricsBuffer.excludeLatency(System.nanoTime() - startTime);
+    } else {
+      delegate.emitAlert(payload);
+    }
   }
 }
@@ -21,6 +21,7 @@ import co.cask.cdap.etl.api.InvalidEntry;
 import co.cask.cdap.etl.api.MultiOutputEmitter;
 import co.cask.cdap.etl.api.StageMetrics;
 
+import java.util.HashMap;
 import java.util.Map;
 import javax.annotation.Nullable;
 
@@ -31,45 +32,87 @@ import javax.annotation.Nullable;
  */
 public class TrackedMultiOutputEmitter<E> implements MultiOutputEmitter<E> {
   private final MultiOutputEmitter<E> delegate;
-  private final StageMetrics stageMetrics;
+  private final StageMetricsBuffer metricsBuffer;
   private final DataTracer dataTracer;
   private final StageStatisticsCollector collector;
+  private final int errorCounter;
+  private final int alertCounter;
+  // port -> counter id of the records out metric for that port
+  private final Map<String, Integer> portCounters;
 
   public TrackedMultiOutputEmitter(MultiOutputEmitter<E> delegate, StageMetrics stageMetrics, DataTracer dataTracer,
                                    StageStatisticsCollector collector) {
+    this(delegate, new StageMetricsBuffer(stageMetrics), dataTracer, collector);
+  }
+
+  public TrackedMultiOutputEmitter(MultiOutputEmitter<E> delegate, StageMetricsBuffer metricsBuffer,
+                                   DataTracer dataTracer, StageStatisticsCollector collector) {
     this.delegate = delegate;
-    this.stageMetrics = stageMetrics;
+    this.metricsBuffer = metricsBuffer;
     this.dataTracer = dataTracer;
     this.collector = collector;
+    this.errorCounter = metricsBuffer.getCounter(Constants.Metrics.RECORDS_ERROR);
+    this.alertCounter = metricsBuffer.getCounter(Constants.Metrics.RECORDS_ALERT);
+    this.portCounters = new HashMap<>();
+  }
+
+  /**
+   * Returns the emitter that this emitter delegates to.
+   */
+  MultiOutputEmitter<E> getDelegate() {
+    return delegate;
   }
 
   @Override
   public void emit(String port, Object value) {
-    String metricName = Constants.Metrics.RECORDS_OUT + "." + port;
-    stageMetrics.count(metricName, 1);
+    Integer counter = portCounters.get(port);
+    if (counter == null) {
+      counter = metricsBuffer.getCounter(Constants.Metrics.RECORDS_OUT + "." + port);
+      portCounters.put(port, counter);
+    }
+    metricsBuffer.increment(counter);
     collector.incrementOutputRecordCount();
     if (dataTracer.isEnabled()) {
-      dataTracer.info(metricName, value);
+      dataTracer.info(metricsBuffer.getMetricName(counter), value);
+    }
+    if (metricsBuffer.isSampling()) {
+      // time spent in the stages that the record is emitted to is not part of the latency of this stage
+      long startTime = System.nanoTime();
+      delegate.emit(port, value);
+      metricsBuffer.excludeLatency(System.nanoTime() - startTime);
+    } else {
+      delegate.emit(port, value);
     }
-    delegate.emit(port, value);
   }
 
   @Override
   public void emitError(InvalidEntry<E> value) {
-    stageMetrics.count(Constants.Metrics.RECORDS_ERROR, 1);
+    metricsBuffer.increment(errorCounter);
     collector.incrementErrorRecordCount();
     if (dataTracer.isEnabled()) {
       dataTracer.info(Constants.Metrics.RECORDS_ERROR, value);
     }
-    delegate.emitError(value);
+    if (metricsBuffer.isSampling()) {
+      long startTime = System.nanoTime();
+      delegate.emitError(value);
+      metricsBuffer.excludeLatency(System.nanoTime() - startTime);
+    } else {
+      delegate.emitError(value);
+    }
   }
 
   @Override
   public void emitAlert(Map<String, String> payload) {
-    stageMetrics.count(Constants.Metrics.RECORDS_ALERT, 1);
+    metricsBuffer.increment(alertCounter);
     if (dataTracer.isEnabled()) {
       dataTracer.info(Constants.Metrics.RECORDS_ALERT, payload);
     }
-    delegate.emitAlert(payload);
+    if (metricsBuffer.isSampling()) {
+      long startTime = System.nanoTime();
+      delegate.emitAlert(payload);
+      metricsBuffer.excludeLatency(System.nanoTime() - startTime);
+    } else {
+      delegate.emitAlert(payload);
+    }
   }
 }
@@ -33,9 +33,12 @@ import co.cask.cdap.etl.api.Transformation;
  */
 public class TrackedMultiOutputTransform<IN, ERROR> implements MultiOutputTransformation<IN, ERROR>, Destroyable {
   private final MultiOutputTransformation<IN, ERROR> transform;
-  private final StageMetrics metrics;
+  private final StageMetricsBuffer metricsBuffer;
   private final DataTracer dataTracer;
   private final StageStatisticsCollector collector;
+  private final int inCounter;
+  // Reused as long as the transform is called with the same emitter
+  private TrackedMultiOutputEmitter<ERROR> trackedEmitter;
 
   public TrackedMultiOutputTransform(MultiOutputTransformation<IN, ERROR> transform, StageMetrics metrics,
                                      DataTracer dataTracer) {
@@ -44,23 +47,52 @@ public class TrackedMultiOutputTransform<IN, ERROR> implements MultiOutputTransf
 
   public TrackedMultiOutputTransform(MultiOutputTransformation<IN, ERROR> transform, StageMetrics metrics,
                                      DataTracer dataTracer, StageStatisticsCollector collector) {
+    this(transform, new StageMetricsBuffer(metrics), dataTracer, collector);
+  }
+
+  /**
+   * Creates a TrackedMultiOutputTransform that counts metrics and samples latencies with the given
+   * {@link StageMetricsBuffer}.
+   * Buffered metrics are flushed when this transform is destroyed.
+   */
+  public TrackedMultiOutputTransform(MultiOutputTransformation<IN, ERROR> transform,
+                                     StageMetricsBuffer metricsBuffer, DataTracer dataTracer,
+                                     StageStatisticsCollector collector) {
     this.transform = transform;
-    this.metrics = metrics;
+    this.metricsBuffer = metricsBuffer;
     this.dataTracer = dataTracer;
     this.collector = collector;
+    this.inCounter = metricsBuffer.getCounter(Constants.Metrics.RECORDS_IN);
   }
 
   @Override
   public void transform(IN input, MultiOutputEmitter<ERROR> emitter) throws Exception {
-    metrics.count(Constants.Metrics.RECORDS_IN, 1);
+    metricsBuffer.increment(inCounter);
     collector.incrementInputRecordCount();
-    transform.transform(input, new TrackedMultiOutputEmitter<>(emitter, metrics, dataTracer, collector));
+    if (trackedEmitter == null || trackedEmitter.getDelegate() != emitter) {
+      trackedEmitter = new TrackedMultiOutputEmitter<>(emitter, metricsBuffer, dataTracer, collector);
+    }
+    if (metricsBuffer.startSample()) {
+      long startTime = System.nanoTime();
+      try {
+        transform.transform(input, trackedEmitter);
+      } finally {
+        metricsBuffer.recordLatency(System.nanoTime() - startTime);
+      }
+    } else {
+      transform.transform(input, trackedEmitter);
+    }
   }
 
   @Override
   public void destroy() {
-    if (transform instanceof Destroyable) {
-      ((Destroyable) transform).destroy();
+    try {
+      metricsBuffer.flush();
+      metricsBuffer.flushLatency();
+    } finally {
+      if (transform instanceof Destroyable) {
+        ((Destroyable) transform).destroy();
+      }
     }
   }
 }
@@ -33,11 +33,14 @@ import javax.annotation.Nullable;
  */
 public class TrackedTransform<IN, OUT> implements Transformation<IN, OUT>, Destroyable {
   private final Transformation<IN, OUT> transform;
-  private final StageMetrics metrics;
-  private final String metricInName;
+  private final StageMetricsBuffer metricsBuffer;
   private final String metricOutName;
   private final DataTracer dataTracer;
   private final StageStatisticsCollector collector;
+  private final boolean isRecordsIn;
+  private final int inCounter;
+  // Reused as long as the transform is called with the same emitter
+  private TrackedEmitter<OUT> trackedEmitter;
 
   public TrackedTransform(Transformation<IN, OUT> transform, StageMetrics metrics, DataTracer dataTracer) {
     this(transform, metrics, dataTracer, new NoopStageStatisticsCollector());
@@ -55,30 +58,62 @@ public class TrackedTransform<IN, OUT> implements Transformation<IN, OUT>, Destr
 
   public TrackedTransform(Transformation<IN, OUT> transform, StageMetrics metrics, @Nullable String metricInName,
                           @Nullable String metricOutName, DataTracer dataTracer, StageStatisticsCollector collector) {
+    this(transform, new StageMetricsBuffer(metrics), metricInName, metricOutName, dataTracer, collector);
+  }
+
+  /**
+   * Creates a TrackedTransform that counts metrics and samples latencies with the given {@link StageMetricsBuffer}.
+   * Buffered metrics are flushed when this transform is destroyed.
+   */
+  public TrackedTransform(Transformation<IN, OUT> transform, StageMetricsBuffer metricsBuffer,
+                          @Nullable String metricInName, @Nullable String metricOutName, DataTracer dataTracer,
+                          StageStatisticsCollector collector) {
     this.transform = transform;
-    this.metrics = metrics;
-    this.metricInName = metricInName;
+    this.metricsBuffer = metricsBuffer;
     this.metricOutName = metricOutName;
     this.dataTracer = dataTracer;
     this.collector = collector;
+    this.isRecordsIn = Constants.Metrics.RECORDS_IN.equals(metricInName);
+    this.inCounter = metricInName == null ? -1 : metricsBuffer.getCounter(metricInName);
   }
 
   @Override
   public void transform(IN input, Emitter<OUT> emitter) throws Exception {
-    if (metricInName != null) {
-      metrics.count(metricInName, 1);
-      if (metricInName.equals(Constants.Metrics.RECORDS_IN)) {
+    if (inCounter >= 0) {
+      metricsBuffer.increment(inCounter);
+      if (isRecordsIn) {
         collector.incrementInputRecordCount();
       }
     }
-    transform.transform(input, metricOutName == null ? emitter :
-      new TrackedEmitter<>(emitter, metrics, metricOutName, dataTracer, collector));
+    Emitter<OUT> outputEmitter = metricOutName == null ? emitter : getTrackedEmitter(emitter);
+    if (metricsBuffer.startSample()) {
+      long startTime = System.nanoTime();
+      try {
+        transform.transform(input, outputEmitter);
+      } finally {
+        metricsBuffer.recordLatency(System.nanoTime() - startTime);
+      }
+    } else {
+      transform.transform(input, outputEmitter);
+    }
   }
 
   @Override
   public void destroy() {
-    if (transform instanceof Destroyable) {
-      ((Destroyable) transform).destroy();
+    try {
+      metricsBuffer.flush();
+      metricsBuffer.flushLatency();
+    } finally {
+      if (transform instanceof Destroyable) {
+        ((Destroyable) transform).destroy();
+      }
+    }
+  }
+
+  private Emitter<OUT> getTrackedEmitter(Emitter<OUT> emitter) {
+    if (trackedEmitter == null || trackedEmitter.getDelegate() != emitter) {
+      trackedEmitter = new TrackedEmitter<>(emitter, metricsBuffer, metricOutName, dataTracer, collector);
     }
+    return trackedEmitter;
   }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.common;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBuckets() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    // Bucket i counts latencies below 4^i microseconds
+    long[] values = { -5L, 999L, 1000L, 3999L, 4000L, TimeUnit.MILLISECONDS.toNanos(1),
+      TimeUnit.SECONDS.toNanos(1), TimeUnit.MINUTES.toNanos(10), Long.MAX_VALUE };
+    int[] buckets = { 0, 0, 1, 1, 2, 5, 10, 15, 15 };
+    for (long value : values) {
+      histogram.record(value);
+    }
+    Assert.assertEquals(values.length, histogram.getCount());
+
+    long[] expected = new long[LatencyHistogram.NUM_BUCKETS];
+    for (int bucket : buckets) {
+      expected[bucket]++;
+    }
+    for (int i = 0; i < LatencyHistogram.NUM_BUCKETS; i++) {
+      Assert.assertEquals("Bucket " + i, expected[i], histogram.getBucketCount(i));
+    }
+
+    histogram.reset();
+    Assert.assertEquals(0, histogram.getCount());
+    Assert.assertEquals(0, histogram.getTotal());
+    Assert.assertEquals(0, histogram.getBucketCount(15));
+  }
+
+  @Test
+  public void testPercentiles() {
+    Assert.assertEquals(0L, LatencyHistogram.getValueAtPercentile(ImmutableMap.<String, Long>of(), 50));
+
+    // 100 values in [1ms, 4ms), 100 values in [4ms, 16ms) and 1 value above 268s
+    Map<String, Long> metrics = new HashMap<>();
+    metrics.put("user.stage." + LatencyHistogram.getBucketMetricName(6), 100L);
+    metrics.put("user.stage." + LatencyHistogram.getBucketMetricName(7), 100L);
+    metrics.put("user.stage." + LatencyHistogram.getBucketMetricName(15), 1L);
+    metrics.put("user.stage." + Constants.Metrics.LATENCY_SAMPLES, 201L);
+
+    // Percentiles are interpolated within the bucket
+    Assert.assertEquals(1024000L + 3072000L / 100, LatencyHistogram.getValueAtPercentile(metrics, 0));
+    Assert.assertEquals(4096000L, LatencyHistogram.getValueAtPercentile(metrics, 49.75));
+    Assert.assertEquals(4096000L + 12288000L / 2, LatencyHistogram.getValueAtPercentile(metrics, 74.6));
+    Assert.assertEquals(16384000L, LatencyHistogram.getValueAtPercentile(metrics, 99.5));
+    // The last bucket has no upper bound
+    Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(1L << 28), LatencyHistogram.getValueAtPercentile(metrics, 100));
+  }
+}
@@ -17,6 +17,7 @@
 package co.cask.cdap.etl.common;
 
 import co.cask.cdap.api.metrics.Metrics;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
 import java.util.Map;
@@ -47,6 +48,10 @@ public class MockMetrics implements Metrics {
     return count == null ? 0 : count;
   }
 
+  public Map<String, Integer> getCounts() {
+    return ImmutableMap.copyOf(counts);
+  }
+
   public long getGauge(String metric) {
     Long val = gauges.get(metric);
     return val == null ? 0 : val;
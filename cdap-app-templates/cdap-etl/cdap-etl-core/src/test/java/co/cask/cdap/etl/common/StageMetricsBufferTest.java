@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link StageMetricsBuffer}.
+ */
+public class StageMetricsBufferTest {
+
+  @Test
+  public void testLatencyOfTasksAddsUp() {
+    MockMetrics metrics = new MockMetrics();
+    StageMetricsBuffer fastTask = new StageMetricsBuffer(new DefaultStageMetrics(metrics, "stage"), 1, 1);
+    StageMetricsBuffer slowTask = new StageMetricsBuffer(new DefaultStageMetrics(metrics, "stage"), 1, 1);
+    for (int i = 0; i < 90; i++) {
+      Assert.assertTrue(fastTask.startSample());
+      fastTask.recordLatency(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    for (int i = 0; i < 10; i++) {
+      Assert.assertTrue(slowTask.startSample());
+      slowTask.recordLatency(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+    fastTask.flushLatency();
+    slowTask.flushLatency();
+    // flushing again doesn't publish anything
+    fastTask.flushLatency();
+
+    Assert.assertEquals(100, metrics.getCount("stage.process.latency.samples"));
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(1090), metrics.getCount("stage.process.latency.total"));
+
+    // Metrics of other stages are not part of the percentiles
+    StageMetricsBuffer otherStage = new StageMetricsBuffer(new DefaultStageMetrics(metrics, "other"), 1, 1);
+    Assert.assertTrue(otherStage.startSample());
+    otherStage.recordLatency(TimeUnit.SECONDS.toNanos(10));
+    otherStage.flushLatency();
+
+    // The percentiles of the stage are computed from the bucket counts of both tasks
+    assertBetween(TimeUnit.MICROSECONDS.toNanos(256), TimeUnit.MICROSECONDS.toNanos(1024),
+                  getLatencyPercentile(metrics, "stage", 50));
+    assertBetween(TimeUnit.MICROSECONDS.toNanos(256), TimeUnit.MICROSECONDS.toNanos(1024),
+                  getLatencyPercentile(metrics, "stage", 90));
+    assertBetween(TimeUnit.MICROSECONDS.toNanos(65536), TimeUnit.MICROSECONDS.toNanos(262144),
+                  getLatencyPercentile(metrics, "stage", 95));
+    assertBetween(TimeUnit.MICROSECONDS.toNanos(65536), TimeUnit.MICROSECONDS.toNanos(262144),
+                  getLatencyPercentile(metrics, "stage", 99));
+  }
+
+  /**
+   * Returns the latency percentile of the given stage, computed from the bucket counters in the given metrics.
+   */
+  static long getLatencyPercentile(MockMetrics metrics, String stageName, double percentile) {
+    Map<String, Long> bucketMetrics = new HashMap<>();
+    for (Map.Entry<String, Integer> entry : metrics.getCounts().entrySet()) {
+      if (entry.getKey().startsWith(stageName + ".")) {
+        bucketMetrics.put(entry.getKey(), (long) entry.getValue());
+      }
+    }
+    return LatencyHistogram.getValueAtPercentile(bucketMetrics, percentile);
+  }
+
+  private void assertBetween(long lowest, long highest, long actual) {
+    Assert.assertTrue("Expected between " + lowest + " and " + highest + " but got " + actual,
+                      actual >= lowest && actual <= highest);
+  }
+}
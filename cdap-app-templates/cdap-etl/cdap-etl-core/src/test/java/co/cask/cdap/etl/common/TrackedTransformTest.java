@@ -0,0 +1,186 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.common;
+
+import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.api.InvalidEntry;
+import co.cask.cdap.etl.api.MultiOutputEmitter;
+import co.cask.cdap.etl.api.MultiOutputTransformation;
+import co.cask.cdap.etl.api.Transformation;
+import co.cask.cdap.internal.app.preview.NoopDataTracerFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the metrics emitted by {@link TrackedTransform} and {@link TrackedMultiOutputTransform}.
+ */
+public class TrackedTransformTest {
+
+  @Test
+  public void testBufferedMetrics() throws Exception {
+    MockMetrics metrics = new MockMetrics();
+    Set<Emitter<Integer>> emitters = Collections.newSetFromMap(new IdentityHashMap<>());
+    Transformation<Integer, Integer> transformation = (input, emitter) -> {
+      emitters.add(emitter);
+      if (input % 10 == 0) {
+        emitter.emitError(new InvalidEntry<>(1, "error", input));
+      } else {
+        emitter.emit(input);
+      }
+    };
+    TrackedTransform<Integer, Integer> transform =
+      new TrackedTransform<>(transformation, new StageMetricsBuffer(new DefaultStageMetrics(metrics, "stage"), 50),
+                             Constants.Metrics.RECORDS_IN, Constants.Metrics.RECORDS_OUT,
+                             new NoopDataTracerFactory().getDataTracer(null, "stage"),
+                             new NoopStageStatisticsCollector());
+
+    DefaultEmitter<Integer> emitter = new DefaultEmitter<>();
+    // Each record counts as one in and one out or error, so nothing is flushed until the 25th record
+    for (int i = 1; i <= 20; i++) {
+      transform.transform(i, emitter);
+    }
+    Assert.assertEquals(0, metrics.getCount("stage.records.in"));
+
+    for (int i = 21; i <= 45; i++) {
+      transform.transform(i, emitter);
+    }
+    Assert.assertEquals(25, metrics.getCount("stage.records.in"));
+    Assert.assertEquals(23, metrics.getCount("stage.records.out"));
+    Assert.assertEquals(2, metrics.getCount("stage.records.error"));
+
+    // Remaining counts are flushed on destroy
+    transform.destroy();
+    Assert.assertEquals(45, metrics.getCount("stage.records.in"));
+    Assert.assertEquals(41, metrics.getCount("stage.records.out"));
+    Assert.assertEquals(4, metrics.getCount("stage.records.error"));
+    Assert.assertEquals(41, emitter.getEntries().size());
+    Assert.assertEquals(4, emitter.getErrors().size());
+
+    // The same tracked emitter is used as long as the transform is called with the same emitter
+    Assert.assertEquals(1, emitters.size());
+    transform.transform(1, new DefaultEmitter<>());
+    Assert.assertEquals(2, emitters.size());
+  }
+
+  @Test
+  public void testUnbufferedMetrics() throws Exception {
+    MockMetrics metrics = new MockMetrics();
+    TrackedTransform<Integer, Integer> transform =
+      new TrackedTransform<>((input, emitter) -> emitter.emit(input), new DefaultStageMetrics(metrics, "stage"),
+                             new NoopDataTracerFactory().getDataTracer(null, "stage"));
+
+    DefaultEmitter<Integer> emitter = new DefaultEmitter<>();
+    for (int i = 0; i < 5; i++) {
+      transform.transform(i, emitter);
+      Assert.assertEquals(i + 1, metrics.getCount("stage.records.in"));
+      Assert.assertEquals(i + 1, metrics.getCount("stage.records.out"));
+    }
+  }
+
+  @Test
+  public void testLatencySampling() throws Exception {
+    MockMetrics metrics = new MockMetrics();
+    Transformation<Integer, Integer> transformation = (input, emitter) -> {
+      TimeUnit.MILLISECONDS.sleep(5);
+      emitter.emit(input);
+    };
+    TrackedTransform<Integer, Integer> transform =
+      new TrackedTransform<>(transformation, new StageMetricsBuffer(new DefaultStageMetrics(metrics, "stage"), 1, 2),
+                             Constants.Metrics.RECORDS_IN, Constants.Metrics.RECORDS_OUT,
+                             new NoopDataTracerFactory().getDataTracer(null, "stage"),
+                             new NoopStageStatisticsCollector());
+
+    // The next stage is slow, but its time is not part of the latency of this stage
+    Emitter<Integer> emitter = new DefaultEmitter<Integer>() {
+      @Override
+      public void emit(Integer value) {
+        try {
+          TimeUnit.MILLISECONDS.sleep(50);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    for (int i = 0; i < 10; i++) {
+      transform.transform(i, emitter);
+    }
+    Assert.assertEquals(0, metrics.getCount("stage.process.latency.samples"));
+
+    transform.destroy();
+    Assert.assertEquals(10, metrics.getCount("stage.records.in"));
+    Assert.assertEquals(5, metrics.getCount("stage.process.latency.samples"));
+    long p50 = StageMetricsBufferTest.getLatencyPercentile(metrics, "stage", 50);
+    long p99 = StageMetricsBufferTest.getLatencyPercentile(metrics, "stage", 99);
+    Assert.assertTrue(p50 >= TimeUnit.MILLISECONDS.toNanos(5));
+    Assert.assertTrue(p99 >= p50);
+    Assert.assertTrue(p99 < TimeUnit.MILLISECONDS.toNanos(50));
+    Assert.assertTrue(metrics.getCount("stage.process.latency.total") >= 5 * TimeUnit.MILLISECONDS.toNanos(5));
+  }
+
+  @Test
+  public void testMultiOutputMetrics() throws Exception {
+    MockMetrics metrics = new MockMetrics();
+    MultiOutputTransformation<Integer, Integer> transformation =
+      (input, emitter) -> emitter.emit(input % 2 == 0 ? "even" : "odd", input);
+    TrackedMultiOutputTransform<Integer, Integer> transform =
+      new TrackedMultiOutputTransform<>(transformation,
+                                        new StageMetricsBuffer(new DefaultStageMetrics(metrics, "stage"), 1000),
+                                        new NoopDataTracerFactory().getDataTracer(null, "stage"),
+                                        new NoopStageStatisticsCollector());
+
+    CountingMultiOutputEmitter emitter = new CountingMultiOutputEmitter();
+    for (int i = 0; i < 7; i++) {
+      transform.transform(i, emitter);
+    }
+    Assert.assertEquals(0, metrics.getCount("stage.records.in"));
+
+    transform.destroy();
+    Assert.assertEquals(7, metrics.getCount("stage.records.in"));
+    Assert.assertEquals(4, metrics.getCount("stage.records.out.even"));
+    Assert.assertEquals(3, metrics.getCount("stage.records.out.odd"));
+    Assert.assertEquals(7, emitter.count);
+  }
+
+  /**
+   * A {@link MultiOutputEmitter} that counts the emitted records.
+   */
+  private static final class CountingMultiOutputEmitter implements MultiOutputEmitter<Integer> {
+
+    private int count;
+
+    @Override
+    public void emit(String port, Object value) {
+      count++;
+    }
+
+    @Override
+    public void emitError(InvalidEntry<Integer> invalidEntry) {
+      // no-op
+    }
+
+    @Override
+    public void emitAlert(Map<String, String> payload) {
+      // no-op
+    }
+  }
+}
@@ -18,6 +18,7 @@ package co.cask.cdap.etl.spark.function;
 
 import co.cask.cdap.etl.api.SplitterTransform;
 import co.cask.cdap.etl.api.Transform;
+import co.cask.cdap.etl.common.NoopStageStatisticsCollector;
 import co.cask.cdap.etl.common.RecordInfo;
 import co.cask.cdap.etl.common.TrackedMultiOutputTransform;
 import co.cask.cdap.etl.common.TrackedTransform;
@@ -43,8 +44,9 @@ public class MultiOutputTransformFunction<T> implements FlatMapFunc<T, RecordInf
     if (transform == null) {
       SplitterTransform<T, Object> plugin = pluginFunctionContext.createPlugin();
       plugin.initialize(pluginFunctionContext.createBatchRuntimeContext());
-      transform = new TrackedMultiOutputTransform<>(plugin, pluginFunctionContext.createStageMetrics(),
-                                                    pluginFunctionContext.getDataTracer());
+      transform = new TrackedMultiOutputTransform<>(plugin, pluginFunctionContext.createStageMetricsBuffer(),
+                                                    pluginFunctionContext.getDataTracer(),
+                                                    new NoopStageStatisticsCollector());
       emitter = new CombinedEmitter<>(pluginFunctionContext.getStageName());
     }
     emitter.reset();
@@ -31,11 +31,14 @@ import co.cask.cdap.etl.common.Constants;
 import co.cask.cdap.etl.common.DefaultMacroEvaluator;
 import co.cask.cdap.etl.common.DefaultStageMetrics;
 import co.cask.cdap.etl.common.PipelineRuntime;
+import co.cask.cdap.etl.common.StageMetricsBuffer;
 import co.cask.cdap.etl.common.StageStatisticsCollector;
 import co.cask.cdap.etl.common.plugin.PipelinePluginContext;
 import co.cask.cdap.etl.proto.v2.spec.StageSpec;
 import co.cask.cdap.etl.spark.batch.SparkBatchRuntimeContext;
 import co.cask.cdap.etl.spark.plugin.SparkPipelinePluginContext;
+import org.apache.spark.TaskContext;
+import org.apache.spark.util.TaskCompletionListener;
 
 import java.io.Serializable;
 import java.util.Map;
@@ -106,6 +109,30 @@ public class PluginFunctionContext implements Serializable {
     return new DefaultStageMetrics(metrics, stageSpec.getName());
   }
 
+  /**
+   * Creates a {@link StageMetricsBuffer} for the current Spark task, which buffers counts and sampled latencies
+   * and publishes them when the task completes. Outside of a Spark task, counts are added to the stage metrics
+   * right away.
+   */
+  public StageMetricsBuffer createStageMetricsBuffer() {
+    int latencySampleRate = StageMetricsBuffer.getLatencySampleRate(stageSpec, arguments);
+    TaskContext taskContext = TaskContext.get();
+    if (taskContext == null) {
+      return new StageMetricsBuffer(createStageMetrics(), 1, latencySampleRate);
+    }
+    StageMetricsBuffer metricsBuffer = new StageMetricsBuffer(createStageMetrics(),
+                                                              StageMetricsBuffer.DEFAULT_FLUSH_SIZE,
+                                                              latencySampleRate);
+    taskContext.addTaskCompletionListener(new TaskCompletionListener() {
+      @Override
+      public void onTaskCompletion(TaskContext context) {
+        metricsBuffer.flush();
+        metricsBuffer.flushLatency();
+      }
+    });
+    return metricsBuffer;
+  }
+
   public StageStatisticsCollector getStageStatisticsCollector() {
     return collector;
   }
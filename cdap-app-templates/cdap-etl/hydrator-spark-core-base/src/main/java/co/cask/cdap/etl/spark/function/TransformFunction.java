@@ -17,6 +17,7 @@
 package co.cask.cdap.etl.spark.function;
 
 import co.cask.cdap.etl.api.Transform;
+import co.cask.cdap.etl.common.Constants;
 import co.cask.cdap.etl.common.RecordInfo;
 import co.cask.cdap.etl.common.TrackedTransform;
 import co.cask.cdap.etl.spark.CombinedEmitter;
@@ -41,7 +42,8 @@ public class TransformFunction<T> implements FlatMapFunc<T, RecordInfo<Object>>
     if (transform == null) {
       Transform<T, Object> plugin = pluginFunctionContext.createPlugin();
       plugin.initialize(pluginFunctionContext.createBatchRuntimeContext());
-      transform = new TrackedTransform<>(plugin, pluginFunctionContext.createStageMetrics(),
+      transform = new TrackedTransform<>(plugin, pluginFunctionContext.createStageMetricsBuffer(),
+                                         Constants.Metrics.RECORDS_IN, Constants.Metrics.RECORDS_OUT,
                                          pluginFunctionContext.getDataTracer(),
                                          pluginFunctionContext.getStageStatisticsCollector());
       emitter = new CombinedEmitter<>(pluginFunctionContext.getStageName());
@@ -84,6 +84,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
@@ -919,34 +920,51 @@ public class ReportGenerationSpark extends AbstractExtendedSpark {
       nsLocations = baseLocation.list();
       // Get the namespace filter from the request if it exists
       final ValueFilter<String> nsFilter = getNamespaceFilterIfExists(reportRequest);
-      Stream<Location> filteredNsLocations = nsLocations.stream();
       // If the namespace filter exists, apply the filter to get filtered namespace directories
+      List<Location> filteredNsLocations = nsLocations;
       if (nsFilter != null) {
-        filteredNsLocations = nsLocations.stream().filter(nsLocation -> nsFilter.apply(nsLocation.getName()));
+        filteredNsLocations = nsLocations.stream()
+          .filter(nsLocation -> nsFilter.apply(nsLocation.getName()))
+          .collect(Collectors.toList());
       }
-      // Iterate through all qualified namespaces directories to get program run meta files
-      Stream<Location> metaFiles = filteredNsLocations.flatMap(nsLocation -> {
-        try {
-          List<Location> metaFileLocations = nsLocation.list();
-          LOG.debug("Files under namespace {}: {}", nsLocation.getName(), metaFileLocations);
-          return metaFileLocations.stream();
-        } catch (IOException e) {
-          throw new RuntimeException(e);
+      // Prevent the files from being replaced by compaction until the report is generated
+      Lock runMetaLock = RunMetaFileCompactor.getReadLock();
+      runMetaLock.lock();
+      try {
+        // Iterate through all qualified namespaces directories to get program run meta files
+        Stream<Location> metaFiles = filteredNsLocations.stream().flatMap(nsLocation -> {
+          try {
+            List<Location> metaFileLocations = nsLocation.list();
+            LOG.debug("Files under namespace {}: {}", nsLocation.getName(), metaFileLocations);
+            return metaFileLocations.stream();
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        });
+        // Program run meta files are in avro format. Each file is named by the earliest program run meta record
+        // in the file, so exclude the files with no record earlier than the end of query time range.
+        List<String> metaFilePaths = metaFiles.filter(metaFile -> {
+          String fileName = metaFile.getName();
+          return fileName.endsWith(".avro")
+            //file name is of the format <event-time-millis>-<creation-time-millis>.avro
+            && TimeUnit.MILLISECONDS.toSeconds(Long.parseLong(fileName.substring(0, fileName.indexOf("-")))) <
+            reportRequest.getEnd();
+        }).map(location -> location.toURI().toString()).collect(Collectors.toList());
+        LOG.debug("Filtered meta files {}", metaFilePaths);
+        // Compacted program run meta files are partitioned by day, so only include the partitions
+        // with program runs in the query time range
+        List<String> compactedPaths = new ArrayList<>();
+        for (Location nsLocation : filteredNsLocations) {
+          compactedPaths.addAll(RunMetaCompaction.getCompactedInputs(nsLocation, reportRequest.getStart(),
+                                                                     reportRequest.getEnd()));
         }
-      });
-      // Program run meta files are in avro format. Each file is named by the earliest program run meta record
-      // in the file, so exclude the files with no record earlier than the end of query time range.
-      List<String> metaFilePaths = metaFiles.filter(metaFile -> {
-        String fileName = metaFile.getName();
-        return fileName.endsWith(".avro")
-          //file name is of the format <event-time-millis>-<creation-time-millis>.avro
-          && TimeUnit.MILLISECONDS.toSeconds(Long.parseLong(fileName.substring(0, fileName.indexOf("-")))) <
-          reportRequest.getEnd();
-      }).map(location -> location.toURI().toString()).collect(Collectors.toList());
-      LOG.debug("Filtered meta files {}", metaFilePaths);
-      // Generate the report with the request and program run meta files
-      ReportGenerationHelper.generateReport(sqlContext, reportRequest,
-                                            metaFilePaths, reportIdDir, reportsExpiryTimeMillis);
+        LOG.debug("Filtered compacted meta files {}", compactedPaths);
+        // Generate the report with the request and program run meta files
+        ReportGenerationHelper.generateReport(sqlContext, reportRequest, metaFilePaths, compactedPaths,
+                                              reportIdDir, reportsExpiryTimeMillis);
+      } finally {
+        runMetaLock.unlock();
+      }
     }
 
     /**
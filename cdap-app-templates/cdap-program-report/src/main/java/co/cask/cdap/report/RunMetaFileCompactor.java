@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.report;
+
+import org.apache.spark.sql.SQLContext;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Compacts the closed program run meta files of every namespace into Parquet files partitioned by day,
+ * so that report generation doesn't have to read all program run meta files. The latest file of each namespace
+ * may still be written to, and the file before it is kept for the TMS subscriber to find the last processed
+ * message in case the latest file is empty, hence they are never compacted.
+ */
+public final class RunMetaFileCompactor implements Runnable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RunMetaFileCompactor.class);
+  private static final int UNCOMPACTED_FILES = 2;
+
+  // Guards the program run meta files from being replaced by compaction while reports are generated from them
+  private static final ReadWriteLock RUN_META_LOCK = new ReentrantReadWriteLock();
+
+  private final SQLContext sqlContext;
+  private final Location baseLocation;
+
+  /**
+   * @param sqlContext the SQL context to run the compaction with
+   * @param baseLocation the base location of the program run meta fileset
+   */
+  public RunMetaFileCompactor(SQLContext sqlContext, Location baseLocation) {
+    this.sqlContext = sqlContext;
+    this.baseLocation = baseLocation;
+  }
+
+  /**
+   * Returns the lock to hold while reading program run meta files, which prevents them from being replaced
+   * by compaction.
+   */
+  static Lock getReadLock() {
+    return RUN_META_LOCK.readLock();
+  }
+
+  @Override
+  public void run() {
+    List<Location> nsLocations;
+    try {
+      nsLocations = baseLocation.list();
+    } catch (Exception e) {
+      LOG.warn("Failed to list program run meta files for compaction", e);
+      return;
+    }
+    for (Location nsLocation : nsLocations) {
+      try {
+        // file name is of the format <event-time-millis>-<creation-time-millis>.avro
+        List<Location> metaFiles = nsLocation.list().stream()
+          .filter(location -> location.getName().endsWith(".avro"))
+          .sorted(Comparator.comparing((Location location) -> getFileTime(location, 1))
+                    .thenComparing(location -> getFileTime(location, 0)))
+          .collect(Collectors.toList());
+        if (metaFiles.size() > UNCOMPACTED_FILES) {
+          RunMetaCompaction.compact(sqlContext, nsLocation,
+                                    metaFiles.subList(0, metaFiles.size() - UNCOMPACTED_FILES),
+                                    RUN_META_LOCK.writeLock());
+        }
+      } catch (Exception e) {
+        LOG.warn("Failed to compact program run meta files in {}", nsLocation, e);
+      }
+    }
+  }
+
+  /**
+   * Returns the event time if {@code index} is 0, or the creation time if {@code index} is 1, from the name of
+   * a program run meta file.
+   */
+  private static long getFileTime(Location metaFile, int index) {
+    String fileName = metaFile.getName();
+    return Long.parseLong(fileName.substring(0, fileName.length() - ".avro".length()).split("-")[index]);
+  }
+}
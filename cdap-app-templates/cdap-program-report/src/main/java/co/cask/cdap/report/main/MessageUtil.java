@@ -233,7 +233,10 @@ public final class MessageUtil {
   @Nullable
   private static List<Location> getLocationsSorted(Location namespaceLocation) throws InterruptedException {
     List<Location> nsLocations = new ArrayList();
-    nsLocations.addAll(listLocationsWithRetry(namespaceLocation));
+    // skip the directory of compacted files
+    listLocationsWithRetry(namespaceLocation).stream()
+      .filter(location -> location.getName().endsWith(".avro"))
+      .forEach(nsLocations::add);
     nsLocations.sort((Location o1, Location o2) -> {
       String fileName1 = o1.getName();
       // format is <event-ts>-<creation-ts>.avro, we parse and get the creation-ts
@@ -24,8 +24,11 @@ import co.cask.cdap.api.dataset.lib.FileSetProperties;
 import co.cask.cdap.api.spark.JavaSparkExecutionContext;
 import co.cask.cdap.api.spark.JavaSparkMain;
 import co.cask.cdap.report.ReportGenerationApp;
+import co.cask.cdap.report.RunMetaFileCompactor;
 import co.cask.cdap.report.util.Constants;
 import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.sql.SQLContext;
+import org.apache.twill.common.Threads;
 import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,7 +37,10 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import javax.crypto.KeyGenerator;
 
 /**
@@ -55,20 +61,56 @@ public class SparkPersistRunRecordMain implements JavaSparkMain {
     }
     Location reportFileSetLocation = getDatasetBaseLocationWithRetry(sec, ReportGenerationApp.REPORT_FILESET);
     createSecurityKeyFile(reportFileSetLocation);
-    // enabled by default, configuration to help disable this thread in unit tests
-    if (!Boolean.parseBoolean(
-      sec.getRuntimeArguments().getOrDefault(Constants.DISABLE_TMS_SUBSCRIBER_THREAD, "false"))) {
-      tmsSubscriber = new TMSSubscriber(sec.getMessagingContext().getMessageFetcher(),
-                                        getDatasetBaseLocationWithRetry(sec, ReportGenerationApp.RUN_META_FILESET),
-                                        sec.getRuntimeArguments(), sec.getMetrics());
-      tmsSubscriber.start();
-      try {
-        tmsSubscriber.join();
-      } catch (InterruptedException ie) {
-        tmsSubscriber.requestStop();
-        tmsSubscriber.interrupt();
+    Location runMetaFileSetLocation = getDatasetBaseLocationWithRetry(sec, ReportGenerationApp.RUN_META_FILESET);
+    // The compaction runs for as long as the program, independent of the http handler instances
+    ScheduledExecutorService compactionExecutor = startCompaction(sec, jsc, runMetaFileSetLocation);
+    try {
+      // enabled by default, configuration to help disable this thread in unit tests
+      if (!Boolean.parseBoolean(
+        sec.getRuntimeArguments().getOrDefault(Constants.DISABLE_TMS_SUBSCRIBER_THREAD, "false"))) {
+        tmsSubscriber = new TMSSubscriber(sec.getMessagingContext().getMessageFetcher(), runMetaFileSetLocation,
+                                          sec.getRuntimeArguments(), sec.getMetrics());
+        tmsSubscriber.start();
+        try {
+          tmsSubscriber.join();
+        } catch (InterruptedException ie) {
+          tmsSubscriber.requestStop();
+          tmsSubscriber.interrupt();
+        }
+      } else if (compactionExecutor != null) {
+        // keep running the compaction until the program is stopped
+        try {
+          compactionExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ie) {
+          // the program is being stopped
+        }
       }
+    } finally {
+      if (compactionExecutor != null) {
+        compactionExecutor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Schedules the compaction of the program run meta files, unless it is disabled by a non-positive interval.
+   *
+   * @return the executor running the compaction or {@code null} if compaction is disabled
+   */
+  @Nullable
+  private ScheduledExecutorService startCompaction(JavaSparkExecutionContext sec, JavaSparkContext jsc,
+                                                   Location runMetaFileSetLocation) {
+    long intervalSeconds = Long.parseLong(
+      sec.getRuntimeArguments().getOrDefault(Constants.Report.COMPACTION_INTERVAL_SECONDS,
+                                             Constants.Report.DEFAULT_COMPACTION_INTERVAL_SECONDS));
+    if (intervalSeconds <= 0) {
+      return null;
     }
+    ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(Threads.createDaemonThreadFactory("run-meta-compaction"));
+    executor.scheduleWithFixedDelay(new RunMetaFileCompactor(new SQLContext(jsc), runMetaFileSetLocation),
+                                    intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    return executor;
   }
 
   /**
@@ -114,6 +114,9 @@ public final class Constants {
     // report files will expire after 48 hours after they are generated
     public static final String DEFAULT_REPORT_EXPIRY_TIME_SECONDS = String.valueOf(TimeUnit.DAYS.toSeconds(2));
     public static final String REPORT_EXPIRY_TIME_SECONDS = "report.expiry.duration.seconds";
+    // closed program run meta files are compacted every hour by default, a non-positive interval disables compaction
+    public static final String DEFAULT_COMPACTION_INTERVAL_SECONDS = String.valueOf(TimeUnit.HOURS.toSeconds(1));
+    public static final String COMPACTION_INTERVAL_SECONDS = "report.compaction.interval.seconds";
   }
 
   public static final String DISABLE_TMS_SUBSCRIBER_THREAD = "disable.tms.subscriber.thread";
@@ -53,7 +53,8 @@ object ReportGenerationHelper {
 
   /**
     * Generates a report file according to the given request from the given program run meta files.
-    * The given program run meta files are first read into a single [[org.apache.spark.sql.DataFrame]].
+    * The given program run meta files and compacted program run meta files are first read into a single
+    * [[org.apache.spark.sql.DataFrame]].
     * The [[org.apache.spark.sql.DataFrame]] is then grouped by program run ID and aggregated to form
     * a new aggregated [[org.apache.spark.sql.DataFrame]] with a column "run" containing program run ID and a column
     * "record" containing fields as shown below:
@@ -88,18 +89,20 @@ object ReportGenerationHelper {
     * @param sql the SQL context to run report generation with
     * @param request the report generation request
     * @param inputURIs URIs of the avro files containing program run meta records
+    * @param compactedURIs URIs of the Parquet directories containing compacted program run meta records
     * @param reportIdDir location of the directory where the report files directory, COUNT file,
     *                    and _SUCCESS file will be created.
     * @throws java.io.IOException when fails to write to the COUNT or _SUCCESS file
     */
   @throws(classOf[IOException])
   def generateReport(sql: SQLContext, request: ReportGenerationRequest, inputURIs: java.util.List[String],
-                     reportIdDir: Location, reportExpiryDurationMillis : Long): Unit = {
-    if (inputURIs.isEmpty) {
+                     compactedURIs: java.util.List[String], reportIdDir: Location,
+                     reportExpiryDurationMillis : Long): Unit = {
+    if (inputURIs.isEmpty && compactedURIs.isEmpty) {
       writeEmptySummaryFile(request, reportIdDir, reportExpiryDurationMillis);
       return
     }
-    val df = SparkCompat.readAvroFiles(sql, inputURIs)
+    val df = RunMetaCompaction.readInputs(sql, inputURIs, compactedURIs)
     // Get the fields to be included in the final report and additional fields required for filtering and sorting
     val (reportFields: Set[String], additionalFields: Set[String]) = getReportAndAdditionalFields(request)
 
@@ -0,0 +1,254 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.report
+
+import java.io.{IOException, InputStreamReader, OutputStreamWriter}
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.locks.Lock
+
+import co.cask.cdap.report.util.Constants
+import com.google.gson.Gson
+import com.google.gson.reflect.TypeToken
+import org.apache.spark.sql.functions.{coalesce, col, from_unixtime, max, min, when}
+import org.apache.spark.sql.types.LongType
+import org.apache.spark.sql.{DataFrame, SQLContext}
+import org.apache.twill.filesystem.Location
+import org.slf4j.LoggerFactory
+
+import scala.collection.JavaConversions._
+import scala.collection.mutable.ArrayBuffer
+
+/**
+  * Compacts the closed row-oriented avro program run meta files of a namespace into Parquet files, so that
+  * report generation only reads the program runs that can be in the time range of the report.
+  *
+  * The program run meta records of the runs that have ended are written to Parquet files partitioned by the day
+  * the run started, under a batch directory in the [[COMPACTED_DIR]] of the namespace directory:
+  * <pre>
+  * namespace/_compacted/batch-id/day=yyyy-MM-dd/part-*.parquet
+  * namespace/_compacted/batch-id/_STATS
+  * </pre>
+  * The [[STATS_FILE]] contains the minimum and maximum start time and the maximum end time of the runs in each
+  * day partition, so that partitions without any run in the time range of a report are not read.
+  * Records of the runs that haven't ended yet are kept in the [[PENDING_DIR]], which is always read and
+  * is merged into the next compaction.
+  */
+object RunMetaCompaction {
+
+  val LOG = LoggerFactory.getLogger(RunMetaCompaction.getClass)
+  val GSON = new Gson()
+  val COMPACTED_DIR = "_compacted"
+  val PENDING_DIR = "_pending"
+  val STATS_FILE = "_STATS"
+  val DAY_COL = "day"
+  // prefix of the directories being written by a compaction, which are ignored by report generation
+  val TMP_PREFIX = "."
+  val RUN_START_COL = "_runStart"
+  val RUN_END_COL = "_runEnd"
+  val DAY_STATS_TYPE = new TypeToken[java.util.Map[String, DayStats]]() {}.getType
+
+  /**
+    * Compacts the given closed program run meta files of a namespace, together with the records pending from
+    * the previous compaction. The new files are written first and made visible while holding the given lock,
+    * which is also when the compacted files are deleted. Directories left behind by a previous compaction that failed
+    * are deleted first.
+    *
+    * @param sql the SQL context to run the compaction with
+    * @param nsLocation the namespace directory containing the program run meta files
+    * @param closedFiles the program run meta files that won't be written anymore
+    * @param commitLock the lock to hold while replacing the compacted files with the new files
+    * @throws java.io.IOException if failed to write or rename the compacted files
+    */
+  @throws(classOf[IOException])
+  def compact(sql: SQLContext, nsLocation: Location, closedFiles: java.util.List[Location], commitLock: Lock): Unit = {
+    if (closedFiles.isEmpty) {
+      return
+    }
+    val compactedDir = nsLocation.append(COMPACTED_DIR)
+    deleteTmpDirs(compactedDir)
+    val pendingDir = compactedDir.append(PENDING_DIR)
+    val pendingBatches = listBatches(pendingDir)
+    val avroDf = SparkCompat.readAvroFiles(sql, closedFiles.map(_.toURI.toString))
+    val columns = avroDf.columns.map(col)
+    val df = if (pendingBatches.isEmpty) avroDf else
+      avroDf.union(sql.read.parquet(pendingBatches.map(_.toURI.toString): _*).select(columns: _*))
+
+    // Find the time in seconds when each run started and ended
+    val timeSecs = (df(Constants.TIME) / 1000).cast(LongType)
+    val status = df(Constants.STATUS)
+    val runTimes = df.groupBy(Constants.RUN).agg(
+      min(when(status === Constants.Notification.Status.STARTING, timeSecs)).as(RUN_START_COL),
+      min(when(status.isin(RecordBuilder.END_STATUSES.toSeq: _*), timeSecs)).as(RUN_END_COL))
+    val joinedDf = df.join(runTimes, Constants.RUN).persist()
+    val batchId = System.currentTimeMillis().toString
+    val tmpBatchDir = compactedDir.append(TMP_PREFIX + batchId)
+    val tmpPendingDir = compactedDir.append(TMP_PREFIX + PENDING_DIR + batchId)
+
+    try {
+      // A run that has ended but has no start record is kept with the ended runs, using the end time as start time,
+      // since no record will come for it anymore
+      val endedDf = joinedDf.filter(joinedDf(RUN_END_COL).isNotNull)
+        .withColumn(RUN_START_COL, coalesce(col(RUN_START_COL), col(RUN_END_COL)))
+        .withColumn(DAY_COL, from_unixtime(col(RUN_START_COL), "yyyy-MM-dd"))
+      val stats = new java.util.HashMap[String, DayStats]()
+      endedDf.groupBy(DAY_COL).agg(min(RUN_START_COL).as("minStart"), max(RUN_START_COL).as("maxStart"),
+        max(RUN_END_COL).as("maxEnd")).collect.foreach(r => stats.put(r.getAs[String](DAY_COL),
+        DayStats(r.getAs[Long]("minStart"), r.getAs[Long]("maxStart"), r.getAs[Long]("maxEnd"))))
+      val pendingDf = joinedDf.filter(joinedDf(RUN_END_COL).isNull).select(columns: _*)
+      val hasPending = pendingDf.head(1).nonEmpty
+
+      if (!stats.isEmpty) {
+        endedDf.select(columns :+ col(DAY_COL): _*).write.partitionBy(DAY_COL).parquet(tmpBatchDir.toURI.toString)
+        writeStats(stats, tmpBatchDir.append(STATS_FILE))
+      }
+      if (hasPending) {
+        pendingDf.write.parquet(tmpPendingDir.toURI.toString)
+      }
+
+      commitLock.lock()
+      try {
+        if (!stats.isEmpty) {
+          rename(tmpBatchDir, compactedDir.append(batchId))
+        }
+        if (hasPending) {
+          pendingDir.mkdirs()
+          rename(tmpPendingDir, pendingDir.append(batchId))
+        }
+        // The records in the old files are now in the new files. Duplicate records are merged by report generation
+        // in case the deletion fails.
+        (pendingBatches ++ closedFiles).foreach(location => {
+          if (!location.delete(true)) {
+            LOG.warn("Failed to delete compacted program run meta location {}", location)
+          }
+        })
+      } finally {
+        commitLock.unlock()
+      }
+      LOG.debug("Compacted {} program run meta files in {} into days {}", closedFiles.size: Integer,
+        nsLocation, stats.keySet)
+    } finally {
+      joinedDf.unpersist()
+      // The directories only still exist if the compaction failed before they were renamed
+      Seq(tmpBatchDir, tmpPendingDir).foreach(deleteIfExists)
+    }
+  }
+
+  /**
+    * Gets the URIs of the compacted program run meta directories of a namespace that can contain program runs
+    * that started before the end and ended at or after the start of the given time range.
+    *
+    * @param nsLocation the namespace directory containing the program run meta files
+    * @param startSecs the start of the time range in seconds, inclusive
+    * @param endSecs the end of the time range in seconds, exclusive
+    * @return the URIs of the Parquet directories to read
+    * @throws java.io.IOException if failed to list the directories or read the statistics
+    */
+  @throws(classOf[IOException])
+  def getCompactedInputs(nsLocation: Location, startSecs: Long, endSecs: Long): java.util.List[String] = {
+    val compactedDir = nsLocation.append(COMPACTED_DIR)
+    val inputs = ArrayBuffer[String]()
+    listBatches(compactedDir).foreach(batchDir => {
+      if (batchDir.getName == PENDING_DIR) {
+        inputs ++= listBatches(batchDir).map(_.toURI.toString)
+      } else {
+        val reader = new InputStreamReader(batchDir.append(STATS_FILE).getInputStream, StandardCharsets.UTF_8)
+        val stats: java.util.Map[String, DayStats] = try {
+          GSON.fromJson(reader, DAY_STATS_TYPE)
+        } finally {
+          reader.close()
+        }
+        stats.filter(_._2.overlaps(startSecs, endSecs))
+          .foreach(day => inputs += batchDir.append(s"$DAY_COL=${day._1}").toURI.toString)
+      }
+    })
+    inputs
+  }
+
+  /**
+    * Reads the given avro and compacted Parquet program run meta files into a single [[DataFrame]].
+    */
+  def readInputs(sql: SQLContext, avroURIs: Seq[String], parquetURIs: Seq[String]): DataFrame = {
+    if (parquetURIs.isEmpty) {
+      return SparkCompat.readAvroFiles(sql, avroURIs)
+    }
+    val parquetDf = sql.read.parquet(parquetURIs: _*)
+    if (avroURIs.isEmpty) {
+      return parquetDf
+    }
+    val avroDf = SparkCompat.readAvroFiles(sql, avroURIs)
+    avroDf.union(parquetDf.select(avroDf.columns.map(col): _*))
+  }
+
+  /**
+    * Lists the directories of the completed compaction batches under the given directory.
+    */
+  private def listBatches(dir: Location): Seq[Location] = {
+    if (!dir.exists) {
+      return Seq.empty
+    }
+    dir.list.filter(l => l.isDirectory && !l.getName.startsWith(TMP_PREFIX))
+  }
+
+  /**
+    * Deletes the directories being written by a compaction under the given directory.
+    */
+  private def deleteTmpDirs(dir: Location): Unit = {
+    if (dir.exists) {
+      dir.list.filter(_.getName.startsWith(TMP_PREFIX)).foreach(deleteIfExists)
+    }
+  }
+
+  private def deleteIfExists(location: Location): Unit = {
+    try {
+      if (location.exists && !location.delete(true)) {
+        LOG.warn("Failed to delete temporary program run meta location {}", location)
+      }
+    } catch {
+      case e: IOException => LOG.warn(s"Failed to delete temporary program run meta location $location", e)
+    }
+  }
+
+  private def writeStats(stats: java.util.Map[String, DayStats], location: Location): Unit = {
+    val writer = new OutputStreamWriter(location.getOutputStream, StandardCharsets.UTF_8)
+    try {
+      GSON.toJson(stats, DAY_STATS_TYPE, writer)
+    } finally {
+      writer.close()
+    }
+  }
+
+  private def rename(from: Location, to: Location): Unit = {
+    if (from.renameTo(to) == null) {
+      throw new IOException(s"Failed to rename $from to $to")
+    }
+  }
+}
+
+/**
+  * The statistics of the program runs in a day partition of compacted program run meta files.
+  *
+  * @param minStart the earliest start time in seconds
+  * @param maxStart the latest start time in seconds
+  * @param maxEnd the latest end time in seconds
+  */
+case class DayStats(minStart: Long, maxStart: Long, maxEnd: Long) {
+
+  /**
+    * @return whether any of the program runs can have started before the end and ended at or after the start
+    *         of the given time range
+    */
+  def overlaps(startSecs: Long, endSecs: Long): Boolean = minStart < endSecs && maxEnd >= startSecs
+}
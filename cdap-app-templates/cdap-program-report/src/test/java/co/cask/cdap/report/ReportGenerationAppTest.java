@@ -364,6 +364,64 @@ public class ReportGenerationAppTest extends TestBase {
     getNamespaceAdmin().delete(testNamespace);
   }
 
+  @Test
+  public void testGenerateReportWithCompaction() throws Exception {
+    NamespaceId testNamespace = new NamespaceId("compaction");
+    getNamespaceAdmin().create(new NamespaceMeta.Builder()
+                                 .setName(testNamespace)
+                                 .setDescription("Reporting namespace used to test run meta file compaction")
+                                 .build());
+    long currentTimeMillis = System.currentTimeMillis();
+    DatasetId datasetId = createAndInitializeDataset(testNamespace, currentTimeMillis);
+    Location nsLocation = this.<FileSet>getDataset(datasetId).get().getBaseLocation().append("ns1");
+    // a directory left behind by a failed compaction
+    Location tmpBatchDir = nsLocation.append(RunMetaCompaction.COMPACTED_DIR())
+      .append(RunMetaCompaction.TMP_PREFIX() + "0");
+    Assert.assertTrue(tmpBatchDir.mkdirs());
+    Map<String, String> runTimeArguments = new HashMap<>();
+    runTimeArguments.put(Constants.Report.COMPACTION_INTERVAL_SECONDS, "1");
+    runTimeArguments.put(Constants.DISABLE_TMS_SUBSCRIBER_THREAD, "true");
+    SparkManager sparkManager = deployAndStartReportingApplication(testNamespace, runTimeArguments);
+
+    // wait for all except the latest two files of a namespace to be compacted
+    Tasks.waitFor(2L, () -> nsLocation.list().stream().filter(l -> l.getName().endsWith(".avro")).count(),
+                  5, TimeUnit.MINUTES, 1, TimeUnit.SECONDS);
+    Assert.assertTrue(nsLocation.append(RunMetaCompaction.COMPACTED_DIR()).exists());
+    Assert.assertFalse(tmpBatchDir.exists());
+
+    // the report generated from the compacted files should be the same as the one from the original files
+    URL url = sparkManager.getServiceURL(1, TimeUnit.MINUTES);
+    Assert.assertNotNull(url);
+    URL reportURL = url.toURI().resolve("reports/").toURL();
+    List<Filter> filters =
+      ImmutableList.of(
+        new ValueFilter<>(Constants.NAMESPACE, ImmutableSet.of("ns1", "ns2"), null),
+        new RangeFilter<>(Constants.DURATION, new RangeFilter.Range<>(null, 500L)),
+        new ValueFilter<>(Constants.ARTIFACT_NAME, null, ImmutableSet.of("cdap-data-streams", "cdap-data-pipeline")));
+    long startSecs = TimeUnit.MILLISECONDS.toSeconds(currentTimeMillis);
+    ReportGenerationRequest request =
+      new ReportGenerationRequest("ns1_ns2_report", startSecs, startSecs + 30,
+                                  new ArrayList<>(ReportField.FIELD_NAME_MAP.keySet()),
+                                  ImmutableList.of(new Sort(Constants.DURATION, Sort.Order.DESCENDING)), filters);
+    HttpURLConnection urlConn = (HttpURLConnection) reportURL.openConnection();
+    urlConn.setDoOutput(true);
+    urlConn.setRequestMethod("POST");
+    urlConn.getOutputStream().write(GSON.toJson(request).getBytes(StandardCharsets.UTF_8));
+    if (urlConn.getErrorStream() != null) {
+      Assert.fail(Bytes.toString(ByteStreams.toByteArray(urlConn.getErrorStream())));
+    }
+    Assert.assertEquals(200, urlConn.getResponseCode());
+    String reportId = getResponseObject(urlConn, STRING_STRING_MAP).get("id");
+    Assert.assertNotNull(reportId);
+    validateReportSummary(reportURL.toURI().resolve("info?report-id=" + reportId).toURL(), startSecs);
+    validateReportContent(reportURL.toURI().resolve("download?report-id=" + reportId).toURL());
+
+    sparkManager.stop();
+    sparkManager.waitForStopped(2, TimeUnit.MINUTES);
+    deleteDatasetInstance(datasetId);
+    getNamespaceAdmin().delete(testNamespace);
+  }
+
   private int getReportsList(URL url) throws IOException, URISyntaxException {
     URL reportURL = url.toURI().resolve("reports/").toURL();
     HttpURLConnection reportsUrl = (HttpURLConnection) reportURL.openConnection();
@@ -55,6 +55,7 @@ public final class Constants {
   public static final String COLLECT_APP_CONTAINER_LOG_LEVEL = "master.collect.app.containers.log.level";
   public static final String HTTP_CLIENT_CONNECTION_TIMEOUT_MS = "http.client.connection.timeout.ms";
   public static final String HTTP_CLIENT_READ_TIMEOUT_MS = "http.client.read.timeout.ms";
+  public static final String HTTP_CLIENT_ASYNC_ENABLED = "http.client.async.enabled";
   /** Uniquely identifies a CDAP instance */
   public static final String INSTANCE_NAME = "instance.name";
   // Environment variable name for spark home
@@ -203,6 +204,10 @@ public final class Constants {
     public static final String PROGRAM_MAX_STOP_SECONDS = "app.program.max.stop.seconds";
     public static final String YARN_ATTEMPT_FAILURES_VALIDITY_INTERVAL =
       "app.program.yarn.attempt.failures.validity.interval";
+    public static final String LAUNCH_CACHE_ENABLED = "app.program.launch.cache.enabled";
+    public static final String LAUNCH_CACHE_DIR = "app.program.launch.cache.dir";
+    public static final String LAUNCH_CACHE_MAX_SIZE_MB = "app.program.launch.cache.max.size.mb";
+    public static final String LAUNCH_CACHE_LEASE_TIMEOUT_SECONDS = "app.program.launch.cache.lease.timeout.seconds";
 
     public static final String PROGRAM_TRANSACTION_CONTROL = "app.program.transaction.control";
     public static final String MAX_CONCURRENT_RUNS = "app.max.concurrent.runs";
@@ -336,6 +341,10 @@ public final class Constants {
     public static final String WORKER_THREADS = "preview.worker.threads";
 
     public static final String PREVIEW_CACHE_SIZE = "preview.cache.size";
+
+    public static final String RUNNER_POOL_SIZE = "preview.runner.pool.size";
+    public static final String RUNNER_POOL_MAX_MEMORY_MB = "preview.runner.pool.max.memory.mb";
+    public static final String RUNNER_MEMORY_MB = "preview.runner.memory.mb";
   }
 
   /**
@@ -443,6 +452,10 @@ public final class Constants {
 
     public static final String DATA_EVENT_TOPIC = "data.event.topic";
 
+    // Expiration and size of the dataset instance metadata cached by RemoteDatasetFramework
+    public static final String CLIENT_CACHE_EXPIRATION_SECONDS = "dataset.client.cache.expiration.seconds";
+    public static final String CLIENT_CACHE_SIZE = "dataset.client.cache.size";
+
     public static final String DATA_STORAGE_IMPLEMENTATION = "data.storage.implementation";
     public static final String DATA_STORAGE_NOSQL = "nosql";
     public static final String DATA_STORAGE_SQL = "postgresql";
@@ -559,6 +572,10 @@ public final class Constants {
     public static final String CONNECTION_TIMEOUT_SECS = "router.connection.idle.timeout.secs";
     public static final String ROUTER_AUDIT_PATH_CHECK_ENABLED = "router.audit.path.check.enabled";
     public static final String ROUTER_AUDIT_LOG_ENABLED = "router.audit.log.enabled";
+    public static final String NATIVE_TRANSPORT_ENABLED = "router.native.transport.enabled";
+    public static final String CLIENT_MAX_CONNECTIONS_PER_HOST = "router.client.max.connections.per.host";
+    public static final String CLIENT_MAX_PENDING_ACQUIRES = "router.client.max.pending.acquires";
+    public static final String CLIENT_ACQUIRE_TIMEOUT_MILLIS = "router.client.acquire.timeout.millis";
 
     /**
      * Defaults.
@@ -588,6 +605,7 @@ public final class Constants {
     public static final String SERVICE_DESCRIPTION = "Service to handle metrics requests.";
     public static final String PROCESSOR_MAX_DELAY_MS = "metrics.processor.max.delay.ms";
     public static final String QUEUE_SIZE = "metrics.processor.queue.size";
+    public static final String PROCESSOR_AGGREGATION_WINDOW_MS = "metrics.processor.aggregation.window.ms";
 
     public static final String ENTITY_TABLE_NAME = "metrics.data.entity.tableName";
     public static final String METRICS_TABLE_PREFIX = "metrics.data.table.prefix";
@@ -733,6 +751,9 @@ public final class Constants {
         public static final String PROCESS_MIN_DELAY = "log.process.min.delay";
         public static final String PROCESS_MAX_DELAY = "log.process.max.delay";
         public static final String PROCESS_MESSAGES_COUNT = "log.process.message.count";
+        public static final String APPENDER_PUBLISHED = "log.appender.published";
+        public static final String APPENDER_DROPPED = "log.appender.dropped";
+        public static final String APPENDER_SPILLED = "log.appender.spilled";
       }
     }
 
@@ -755,6 +776,8 @@ public final class Constants {
       public static final String PROGRAM_KILLED_RUNS = "program.killed.runs";
       public static final String PROGRAM_REJECTED_RUNS = "program.rejected.runs";
       public static final String PROGRAM_NODE_MINUTES = "program.node.minutes";
+      public static final String LAUNCH_CACHE_HIT_BYTES = "program.launch.cache.hit.bytes";
+      public static final String LAUNCH_CACHE_MISS_BYTES = "program.launch.cache.miss.bytes";
     }
 
     /**
@@ -776,6 +799,28 @@ public final class Constants {
     public static final class MetadataStorage {
       public static final String METRICS_PREFIX = "metadata.storage.";
     }
+
+    /**
+     * Router metrics
+     */
+    public static final class Router {
+      public static final String POOL_HITS = "router.pool.hits";
+      public static final String POOL_CONNECTS = "router.pool.connects";
+      public static final String POOL_QUEUED = "router.pool.queued";
+      public static final String TOKEN_CACHE_HITS = "router.token.cache.hits";
+      public static final String TOKEN_CACHE_MISSES = "router.token.cache.misses";
+      public static final String TOKEN_VALIDATION_SAVED_MICROS = "router.token.validation.saved.micros";
+    }
+
+    /**
+     * Preview metrics
+     */
+    public static final class Preview {
+      public static final String RUNNER_POOL_HITS = "preview.runner.pool.hits";
+      public static final String RUNNER_POOL_MISSES = "preview.runner.pool.misses";
+      public static final String RUNNER_CREATE_MILLIS = "preview.runner.create.ms";
+      public static final String RUNNER_RESET_MILLIS = "preview.runner.reset.ms";
+    }
   }
 
   /**
@@ -850,6 +895,7 @@ public final class Constants {
    */
   public static final class RuntimeMonitor {
     public static final String POLL_TIME_MS = "app.program.runtime.monitor.polltime.ms";
+    public static final String POLL_TIME_MAX_MS = "app.program.runtime.monitor.polltime.max.ms";
     public static final String BATCH_SIZE = "app.program.runtime.monitor.batch.size";
     public static final String TOPICS_CONFIGS = "app.program.runtime.monitor.topics.configs";
     public static final String GRACEFUL_SHUTDOWN_MS = "app.program.runtime.monitor.graceful.shutdown.ms";
@@ -859,6 +905,7 @@ public final class Constants {
     // Configuration keys for the runtime monitor server
     public static final String SERVER_CONSUME_CHUNK_SIZE = "app.program.runtime.monitor.server.consume.chunk.size";
     public static final String SERVER_INFO_FILE = "app.program.runtime.monitor.server.info.file";
+    public static final String SERVER_COMPRESSION_ENABLED = "app.program.runtime.monitor.server.compression.enabled";
 
     // Constants for secure connections
     public static final String SSH_USER = "ssh.user";
@@ -878,6 +925,11 @@ public final class Constants {
     public static final String KAFKA_TOPIC = "log.kafka.topic";
     public static final String TMS_TOPIC_PREFIX = "log.tms.topic.prefix";
     public static final String APPENDER_QUEUE_SIZE = "log.queue.size";
+    public static final String APPENDER_OVERFLOW_POLICY = "log.queue.overflow.policy";
+    public static final String APPENDER_OVERFLOW_RETAIN_LEVEL = "log.queue.overflow.retain.level";
+    public static final String APPENDER_OVERFLOW_SAMPLE_RATE = "log.queue.overflow.sample.rate";
+    public static final String APPENDER_SPILL_DIR = "log.queue.spill.dir";
+    public static final String APPENDER_SPILL_MAX_BYTES = "log.queue.spill.max.bytes";
     public static final String NUM_PARTITIONS = "log.publish.num.partitions";
     public static final String LOG_PUBLISH_PARTITION_KEY = "log.publish.partition.key";
 
@@ -1063,6 +1115,8 @@ public final class Constants {
       public static final String SSL_KEYSTORE_PASSWORD = "router.ssl.keystore.password";
       /** Paths to exclude from authentication, given by a single regular expression */
       public static final String BYPASS_AUTHENTICATION_REGEX = "router.bypass.auth.regex";
+      /** Maximum number of validated access tokens to cache */
+      public static final String ACCESS_TOKEN_CACHE_SIZE = "router.access.token.cache.size";
     }
 
     /**
@@ -1299,6 +1353,9 @@ public final class Constants {
   public static final class MessagingSystem {
     public static final String LOCAL_DATA_DIR = "messaging.local.data.dir";
     public static final String LOCAL_DATA_CLEANUP_FREQUENCY = "messaging.local.data.cleanup.frequency.secs";
+    public static final String LOCAL_TABLE_STORE = "messaging.local.table.store";
+    public static final String LOCAL_LOG_SEGMENT_SIZE_BYTES = "messaging.local.log.segment.size.bytes";
+    public static final String LOCAL_LOG_INDEX_INTERVAL_BYTES = "messaging.local.log.index.interval.bytes";
 
     public static final String CACHE_SIZE_MB = "messaging.cache.size.mb";
 
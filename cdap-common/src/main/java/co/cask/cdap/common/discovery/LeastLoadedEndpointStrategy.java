@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.common.discovery;
+
+import org.apache.twill.discovery.Discoverable;
+import org.apache.twill.discovery.ServiceDiscovered;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import javax.annotation.Nullable;
+
+/**
+ * Picks the endpoint with the lowest load from the list of available endpoints, as given by a load function.
+ * Endpoints with the same load are picked randomly.
+ */
+public final class LeastLoadedEndpointStrategy extends AbstractEndpointStrategy {
+
+  private final ToIntFunction<Discoverable> loadFunction;
+
+  /**
+   * Constructs a least loaded endpoint strategy with the given {@link ServiceDiscovered}.
+   *
+   * @param serviceDiscoveredSupplier the supplier of the {@link ServiceDiscovered} to pick endpoints from
+   * @param loadFunction the function returning the current load of an endpoint
+   */
+  public LeastLoadedEndpointStrategy(Supplier<ServiceDiscovered> serviceDiscoveredSupplier,
+                                     ToIntFunction<Discoverable> loadFunction) {
+    super(serviceDiscoveredSupplier);
+    this.loadFunction = loadFunction;
+  }
+
+  @Nullable
+  @Override
+  protected Discoverable pick(ServiceDiscovered serviceDiscovered) {
+    Discoverable result = null;
+    int minLoad = Integer.MAX_VALUE;
+    int count = 0;
+    for (Discoverable discoverable : serviceDiscovered) {
+      int load = loadFunction.applyAsInt(discoverable);
+      if (result == null || load < minLoad) {
+        result = discoverable;
+        minLoad = load;
+        count = 1;
+      } else if (load == minLoad && ThreadLocalRandom.current().nextInt(++count) == 0) {
+        // Reservoir sampling among the endpoints with the same load
+        result = discoverable;
+      }
+    }
+    return result;
+  }
+}
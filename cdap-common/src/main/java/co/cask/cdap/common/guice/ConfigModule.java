@@ -20,6 +20,7 @@ import co.cask.cdap.common.conf.CConfigurationUtil;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.conf.SConfiguration;
 import co.cask.cdap.common.http.DefaultHttpRequestConfig;
+import co.cask.cdap.common.internal.remote.RemoteClient;
 import com.google.inject.AbstractModule;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
@@ -80,6 +81,11 @@ public final class ConfigModule extends AbstractModule {
       LOG.warn("Configuration for {} not found. Falling back to default value of {}",
                Constants.HTTP_CLIENT_READ_TIMEOUT_MS, DefaultHttpRequestConfig.DEFAULT_TIMEOUT);
     }
+
+    String asyncEnabled = cConf.get(Constants.HTTP_CLIENT_ASYNC_ENABLED);
+    if (asyncEnabled != null) {
+      System.setProperty(RemoteClient.ASYNC_ENABLED_PROPERTY_NAME, asyncEnabled);
+    }
   }
 
   @Override
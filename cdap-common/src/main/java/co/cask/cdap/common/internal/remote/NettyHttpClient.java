@@ -0,0 +1,495 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.internal.remote;
+
+import co.cask.cdap.common.conf.Constants;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.io.ByteStreams;
+import io.cdap.common.http.HttpRequest;
+import io.cdap.common.http.HttpRequestConfig;
+import io.cdap.common.http.HttpResponse;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.apache.twill.common.Threads;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+
+/**
+ * A non-blocking HTTP client that keeps a pool of keep-alive connections to each endpoint. All requests of the
+ * process share the same event loop threads and connection pools. The pool of an endpoint is closed once it has
+ * not been used for {@link #POOL_IDLE_TIMEOUT_MILLIS}, so that pools of endpoints that went away, for example
+ * after a restart, don't accumulate.
+ *
+ * The request body is sent as a whole, and the response is returned once it is fully received. The read timeout
+ * of the {@link HttpRequestConfig} applies to the time between sending the request and receiving the whole response.
+ */
+final class NettyHttpClient {
+
+  private static final int MAX_CONNECTIONS_PER_ENDPOINT = 64;
+  private static final long POOL_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+  private static final AttributeKey<Boolean> REUSED = AttributeKey.valueOf("reused");
+  private static final Constructor<HttpResponse> RESPONSE_CONSTRUCTOR;
+
+  static {
+    // HttpResponse doesn't have a public constructor, since it is only meant to be created by HttpRequests
+    try {
+      RESPONSE_CONSTRUCTOR = HttpResponse.class.getDeclaredConstructor(int.class, String.class,
+                                                                       byte[].class, Multimap.class);
+      RESPONSE_CONSTRUCTOR.setAccessible(true);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException("Failed to find the constructor of " + HttpResponse.class, e);
+    }
+  }
+
+  private static volatile NettyHttpClient instance;
+
+  private final EventLoopGroup eventLoopGroup;
+  private final ConcurrentMap<PoolKey, EndpointPool> pools;
+
+  /**
+   * Returns the {@link NettyHttpClient} shared by the process. The event loop threads are daemon threads that are
+   * only created when the client is first used.
+   */
+  static NettyHttpClient getInstance() {
+    NettyHttpClient client = instance;
+    if (client != null) {
+      return client;
+    }
+    synchronized (NettyHttpClient.class) {
+      if (instance == null) {
+        instance = new NettyHttpClient();
+      }
+      return instance;
+    }
+  }
+
+  private NettyHttpClient() {
+    this.eventLoopGroup = new NioEventLoopGroup(0, Threads.createDaemonThreadFactory("remote-client-%d"));
+    this.pools = new ConcurrentHashMap<>();
+    eventLoopGroup.scheduleWithFixedDelay(() -> closeIdlePools(POOL_IDLE_TIMEOUT_MILLIS),
+                                          POOL_IDLE_TIMEOUT_MILLIS / 5, POOL_IDLE_TIMEOUT_MILLIS / 5,
+                                          TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns {@code true} if the current thread is one of the event loop threads of this client, in which case
+   * it must not block on the result of a request.
+   */
+  boolean inEventLoop() {
+    for (EventExecutor executor : eventLoopGroup) {
+      if (executor.inEventLoop()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Executes the given request. The body of the request is read in the calling thread.
+   *
+   * @param request the request to execute
+   * @param config the connect and read timeouts and the SSL configuration of the request
+   * @return a {@link CompletableFuture} that completes with the response, or with the failure of the request
+   */
+  CompletableFuture<HttpResponse> execute(HttpRequest request, HttpRequestConfig config) {
+    CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+    FullHttpRequest nettyRequest;
+    try {
+      nettyRequest = createRequest(request);
+    } catch (Exception e) {
+      result.completeExceptionally(e);
+      return result;
+    }
+    PoolKey key = new PoolKey(request.getURL(), config);
+    EndpointPool pool;
+    try {
+      // The pool cannot be closed while it has outstanding exchanges
+      pool = pools.compute(key, (k, p) -> {
+        EndpointPool endpointPool = p == null ? new EndpointPool(createPool(k)) : p;
+        endpointPool.exchanges++;
+        return endpointPool;
+      });
+    } catch (Exception e) {
+      nettyRequest.release();
+      result.completeExceptionally(e);
+      return result;
+    }
+    // The exchange is finished before the result is completed, so that the caller sees the pool as idle
+    CompletableFuture<HttpResponse> exchangeResult = new CompletableFuture<>();
+    exchangeResult.whenComplete((response, failure) -> {
+      nettyRequest.release();
+      pools.computeIfPresent(key, (k, p) -> {
+        p.exchanges--;
+        p.lastUsed = System.currentTimeMillis();
+        return p;
+      });
+      if (failure != null) {
+        result.completeExceptionally(failure);
+      } else {
+        result.complete(response);
+      }
+    });
+
+    Exchange exchange = new Exchange(pool.channelPool, nettyRequest, config.getReadTimeout(), exchangeResult);
+    exchange.send(true);
+    return result;
+  }
+
+  /**
+   * Closes the connection pools that have no outstanding exchanges and have not been used for the given time.
+   */
+  @VisibleForTesting
+  void closeIdlePools(long idleTimeoutMillis) {
+    long now = System.currentTimeMillis();
+    for (PoolKey key : pools.keySet()) {
+      pools.computeIfPresent(key, (k, p) -> {
+        if (p.exchanges > 0 || now - p.lastUsed < idleTimeoutMillis) {
+          return p;
+        }
+        // Closing a pool only closes its idle connections, and doesn't block
+        p.channelPool.close();
+        return null;
+      });
+    }
+  }
+
+  /**
+   * Returns the number of open connection pools.
+   */
+  @VisibleForTesting
+  int getPoolCount() {
+    return pools.size();
+  }
+
+  private ChannelPool createPool(PoolKey key) {
+    SslContext sslContext = null;
+    if (key.ssl) {
+      try {
+        SslContextBuilder builder = SslContextBuilder.forClient();
+        if (!key.verifySSLCert) {
+          builder.trustManager(InsecureTrustManagerFactory.INSTANCE);
+        }
+        sslContext = builder.build();
+      } catch (SSLException e) {
+        throw new IllegalStateException("Failed to create SSL context for connecting to " + key, e);
+      }
+    }
+    SslContext finalSslContext = sslContext;
+
+    Bootstrap bootstrap = new Bootstrap()
+      .group(eventLoopGroup)
+      .channel(NioSocketChannel.class)
+      .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, key.connectTimeout)
+      .remoteAddress(key.host, key.port);
+
+    return new FixedChannelPool(bootstrap, new AbstractChannelPoolHandler() {
+      @Override
+      public void channelCreated(Channel channel) {
+        ChannelPipeline pipeline = channel.pipeline();
+        if (finalSslContext != null) {
+          SslHandler sslHandler = finalSslContext.newHandler(channel.alloc(), key.host, key.port);
+          if (key.verifySSLCert) {
+            SSLEngine engine = sslHandler.engine();
+            SSLParameters parameters = engine.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            engine.setSSLParameters(parameters);
+          }
+          pipeline.addLast("ssl", sslHandler);
+        }
+        pipeline.addLast("codec", new HttpClientCodec());
+        pipeline.addLast("aggregator", new HttpObjectAggregator(Integer.MAX_VALUE));
+        pipeline.addLast("handler", new ResponseHandler());
+      }
+    }, MAX_CONNECTIONS_PER_ENDPOINT);
+  }
+
+  private static FullHttpRequest createRequest(HttpRequest request) throws IOException {
+    ByteBuf content = Unpooled.EMPTY_BUFFER;
+    if (request.getBody() != null) {
+      try (InputStream input = request.getBody().getInput()) {
+        content = Unpooled.wrappedBuffer(ByteStreams.toByteArray(input));
+      }
+    }
+
+    URL url = request.getURL();
+    String uri = url.getFile().isEmpty() ? "/" : url.getFile();
+    FullHttpRequest nettyRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1,
+                                                              HttpMethod.valueOf(request.getMethod().name()),
+                                                              uri, content);
+    if (request.getHeaders() != null) {
+      for (Map.Entry<String, String> header : request.getHeaders().entries()) {
+        nettyRequest.headers().add(header.getKey(), header.getValue());
+      }
+    }
+    nettyRequest.headers().set(HttpHeaderNames.HOST, url.getPort() < 0 ? url.getHost()
+                                                                        : url.getHost() + ":" + url.getPort());
+    if (request.getBody() != null) {
+      HttpUtil.setContentLength(nettyRequest, content.readableBytes());
+    }
+    return nettyRequest;
+  }
+
+  private static HttpResponse createResponse(FullHttpResponse response) throws Exception {
+    Multimap<String, String> headers = LinkedListMultimap.create();
+    for (Map.Entry<String, String> header : response.headers()) {
+      headers.put(header.getKey(), header.getValue());
+    }
+    return RESPONSE_CONSTRUCTOR.newInstance(response.status().code(), response.status().reasonPhrase(),
+                                            ByteBufUtil.getBytes(response.content()), headers);
+  }
+
+  /**
+   * The connection pool of an endpoint, and its number of outstanding exchanges. The fields other than the pool
+   * are only accessed while computing the entry of the pool in the pools map.
+   */
+  private static final class EndpointPool {
+    private final ChannelPool channelPool;
+    private int exchanges;
+    private long lastUsed;
+
+    EndpointPool(ChannelPool channelPool) {
+      this.channelPool = channelPool;
+      this.lastUsed = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * A request to send over a pooled connection, and the future to complete with its response.
+   */
+  private static final class Exchange {
+    private final ChannelPool pool;
+    private final FullHttpRequest request;
+    private final int readTimeout;
+    private final CompletableFuture<HttpResponse> result;
+    private Channel channel;
+    private boolean retry;
+    private ScheduledFuture<?> timeout;
+
+    Exchange(ChannelPool pool, FullHttpRequest request, int readTimeout, CompletableFuture<HttpResponse> result) {
+      this.pool = pool;
+      this.request = request;
+      this.readTimeout = readTimeout;
+      this.result = result;
+    }
+
+    /**
+     * Acquires a connection and sends the request over it.
+     *
+     * @param retry whether to send the request again if a reused connection fails before there is any response
+     */
+    void send(boolean retry) {
+      pool.acquire().addListener(future -> {
+        if (!future.isSuccess()) {
+          result.completeExceptionally(future.cause());
+          return;
+        }
+        Channel channel = (Channel) future.getNow();
+        channel.eventLoop().execute(() -> {
+          this.channel = channel;
+          // A connection kept alive can be closed by the server at any time, in which case the request is
+          // sent again over another connection
+          this.retry = retry && Boolean.TRUE.equals(channel.attr(REUSED).getAndSet(true));
+          channel.pipeline().get(ResponseHandler.class).exchange = this;
+          if (readTimeout > 0) {
+            timeout = channel.eventLoop().schedule(
+              () -> failed(new SocketTimeoutException("Read timed out after " + readTimeout + " ms")),
+              readTimeout, TimeUnit.MILLISECONDS);
+          }
+          channel.writeAndFlush(request.retainedDuplicate()).addListener(written -> {
+            if (!written.isSuccess()) {
+              failed(written.cause());
+            }
+          });
+        });
+      });
+    }
+
+    /**
+     * Completes the request with the given response, and returns the connection to the pool if it can be reused.
+     */
+    void completed(FullHttpResponse response) {
+      if (!finish()) {
+        return;
+      }
+      if (!HttpUtil.isKeepAlive(response)) {
+        channel.close();
+      }
+      pool.release(channel);
+      try {
+        result.complete(createResponse(response));
+      } catch (Exception e) {
+        result.completeExceptionally(e);
+      }
+    }
+
+    /**
+     * Fails the request with the given cause, unless it can be sent again, and closes the connection.
+     */
+    void failed(Throwable cause) {
+      if (!finish()) {
+        return;
+      }
+      channel.close();
+      pool.release(channel);
+      if (retry && !(cause instanceof SocketTimeoutException)) {
+        send(false);
+      } else {
+        result.completeExceptionally(cause);
+      }
+    }
+
+    /**
+     * Detaches this exchange from the connection.
+     *
+     * @return {@code false} if it was already detached
+     */
+    private boolean finish() {
+      ResponseHandler handler = channel.pipeline().get(ResponseHandler.class);
+      if (handler == null || handler.exchange != this) {
+        return false;
+      }
+      handler.exchange = null;
+      if (timeout != null) {
+        timeout.cancel(false);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Handler to pass the response or the failure of a connection to the current {@link Exchange}.
+   */
+  private static final class ResponseHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+    // Only accessed from the event loop thread of the channel
+    private Exchange exchange;
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse response) {
+      if (exchange != null) {
+        exchange.completed(response);
+      } else {
+        ctx.close();
+      }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      if (exchange != null) {
+        exchange.failed(new IOException("Connection closed by " + ctx.channel().remoteAddress()
+                                          + " before receiving the response"));
+      }
+      super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      if (exchange != null) {
+        exchange.failed(cause);
+      } else {
+        ctx.close();
+      }
+    }
+  }
+
+  /**
+   * The endpoint and connection settings of a connection pool.
+   */
+  private static final class PoolKey {
+    private final String host;
+    private final int port;
+    private final boolean ssl;
+    private final boolean verifySSLCert;
+    private final int connectTimeout;
+
+    PoolKey(URL url, HttpRequestConfig config) {
+      this.host = url.getHost();
+      this.port = url.getPort() < 0 ? url.getDefaultPort() : url.getPort();
+      this.ssl = "https".equalsIgnoreCase(url.getProtocol());
+      this.verifySSLCert = config.isVerifySSLCert();
+      this.connectTimeout = config.getConnectTimeout();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      PoolKey other = (PoolKey) o;
+      return port == other.port && ssl == other.ssl && verifySSLCert == other.verifySSLCert
+        && connectTimeout == other.connectTimeout && host.equals(other.host);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(host, port, ssl, verifySSLCert, connectTimeout);
+    }
+
+    @Override
+    public String toString() {
+      return (ssl ? Constants.Security.SSL_URI_SCHEME : Constants.Security.URI_SCHEME) + host + ":" + port;
+    }
+  }
+}
@@ -19,11 +19,16 @@ package co.cask.cdap.common.internal.remote;
 import co.cask.cdap.common.ServiceUnavailableException;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.discovery.EndpointStrategy;
-import co.cask.cdap.common.discovery.RandomEndpointStrategy;
+import co.cask.cdap.common.discovery.LeastLoadedEndpointStrategy;
 import co.cask.cdap.security.spi.authorization.UnauthorizedException;
 import com.google.common.base.Joiner;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.common.http.HttpMethod;
 import io.cdap.common.http.HttpRequest;
 import io.cdap.common.http.HttpRequestConfig;
@@ -39,17 +44,46 @@ import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 
 /**
  * Discovers a remote service and resolves URLs to that service.
+ *
+ * Requests are made over a pool of keep-alive connections shared by the process, unless the
+ * {@link #ASYNC_ENABLED_PROPERTY_NAME} system property is set to {@code false}. URLs are resolved to the endpoint
+ * with the fewest outstanding requests made by the process. An endpoint that failed
+ * {@link #CIRCUIT_BREAKER_FAILURES} requests in a row, because it couldn't be connected to, or the connection failed
+ * or timed out, is only picked if all other endpoints failed too, until {@link #CIRCUIT_BREAKER_OPEN_MILLIS}
+ * have passed. Any response, including a 503, counts as a success of the endpoint, since it is an answer of the
+ * service rather than a failure of the endpoint.
  */
 public class RemoteClient {
+
+  public static final String ASYNC_ENABLED_PROPERTY_NAME = "cdap." + Constants.HTTP_CLIENT_ASYNC_ENABLED;
+
+  private static final int CIRCUIT_BREAKER_FAILURES = 5;
+  private static final long CIRCUIT_BREAKER_OPEN_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+  // The state of each endpoint, shared by all clients of the process
+  private static final LoadingCache<String, EndpointState> ENDPOINT_STATES = CacheBuilder.newBuilder()
+    .expireAfterAccess(1, TimeUnit.HOURS)
+    .build(new CacheLoader<String, EndpointState>() {
+      @Override
+      public EndpointState load(String endpoint) {
+        return new EndpointState();
+      }
+    });
+
   private final Supplier<EndpointStrategy> endpointStrategySupplier;
   private final HttpRequestConfig httpRequestConfig;
   private final String discoverableServiceName;
   private final String basePath;
+  private final boolean asyncEnabled;
 
   public RemoteClient(final DiscoveryServiceClient discoveryClient, final String discoverableServiceName,
                       HttpRequestConfig httpRequestConfig, String basePath) {
@@ -57,9 +91,12 @@ public class RemoteClient {
     this.httpRequestConfig = httpRequestConfig;
     // Use a supplier to delay the discovery until the first time it is being used.
     this.endpointStrategySupplier = Suppliers.memoize(
-      () -> new RandomEndpointStrategy(() -> discoveryClient.discover(discoverableServiceName)));
+      () -> new LeastLoadedEndpointStrategy(() -> discoveryClient.discover(discoverableServiceName),
+                                            discoverable -> getEndpointState(discoverable.getSocketAddress())
+                                              .getLoad()));
     String cleanBasePath = basePath.startsWith("/") ? basePath : "/" + basePath;
     this.basePath = cleanBasePath.endsWith("/") ? cleanBasePath : cleanBasePath + "/";
+    this.asyncEnabled = Boolean.parseBoolean(System.getProperty(ASYNC_ENABLED_PROPERTY_NAME, "true"));
   }
 
   /**
@@ -85,18 +122,69 @@ public class RemoteClient {
    *                                     was a 503
    */
   public HttpResponse execute(HttpRequest request) throws IOException {
+    // Request bodies of unknown length are streamed over a new connection, instead of being read in memory
+    if (!asyncEnabled || (request.getBody() != null && request.getBodyLength() == null)
+      || NettyHttpClient.getInstance().inEventLoop()) {
+      return executeBlocking(request);
+    }
     try {
-      HttpResponse response = HttpRequests.execute(request, httpRequestConfig);
-      switch (response.getResponseCode()) {
-        case HttpURLConnection.HTTP_UNAVAILABLE:
-          throw new ServiceUnavailableException(discoverableServiceName, response.getResponseBodyAsString());
-        case HttpURLConnection.HTTP_FORBIDDEN:
-          throw new UnauthorizedException(response.getResponseBodyAsString());
-        default:
-          return response;
+      return Uninterruptibles.getUninterruptibly(executeAsync(request));
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      Throwables.propagateIfPossible(cause, IOException.class);
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Perform the request without blocking the calling thread, except for reading the request body.
+   *
+   * @param request the request to perform
+   * @return a {@link CompletableFuture} that completes with the response, or fails with an IOException if there
+   *         was an IOException while performing the request, or with a ServiceUnavailableException if there was a
+   *         ConnectException while making the request, or if the response was a 503
+   */
+  public CompletableFuture<HttpResponse> executeAsync(HttpRequest request) {
+    EndpointState state = getEndpointState(request.getURL());
+    state.requestStarted();
+    return NettyHttpClient.getInstance().execute(request, httpRequestConfig).handle((response, failure) -> {
+      Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+      state.requestFinished(!(cause instanceof IOException));
+      if (cause instanceof ConnectException) {
+        throw new ServiceUnavailableException(discoverableServiceName, cause);
       }
+      if (cause != null) {
+        throw new CompletionException(cause);
+      }
+      return checkResponse(response);
+    });
+  }
+
+  private HttpResponse executeBlocking(HttpRequest request) throws IOException {
+    EndpointState state = getEndpointState(request.getURL());
+    state.requestStarted();
+    boolean succeeded = true;
+    try {
+      return checkResponse(HttpRequests.execute(request, httpRequestConfig));
     } catch (ConnectException e) {
+      succeeded = false;
       throw new ServiceUnavailableException(discoverableServiceName, e);
+    } catch (IOException e) {
+      succeeded = false;
+      throw e;
+    } finally {
+      state.requestFinished(succeeded);
+    }
+  }
+
+  private HttpResponse checkResponse(HttpResponse response) {
+    switch (response.getResponseCode()) {
+      case HttpURLConnection.HTTP_UNAVAILABLE:
+        throw new ServiceUnavailableException(discoverableServiceName, response.getResponseBodyAsString());
+      case HttpURLConnection.HTTP_FORBIDDEN:
+        throw new UnauthorizedException(response.getResponseBodyAsString());
+      default:
+        return response;
     }
   }
 
@@ -125,6 +213,14 @@ public class RemoteClient {
     }
   }
 
+  private static EndpointState getEndpointState(InetSocketAddress address) {
+    return ENDPOINT_STATES.getUnchecked(address.getHostName() + ":" + address.getPort());
+  }
+
+  private static EndpointState getEndpointState(URL url) {
+    return ENDPOINT_STATES.getUnchecked(url.getHost() + ":" + url.getPort());
+  }
+
   /**
    * Create a generic error message about a failure to make a specified request.
    *
@@ -139,4 +235,36 @@ public class RemoteClient {
                          discoverableServiceName, request.getURL(), request.getMethod(),
                          headers, body == null ? "" : " and body " + body);
   }
+
+  /**
+   * The number of outstanding requests to an endpoint and the state of its circuit breaker.
+   */
+  private static final class EndpointState {
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private int failures;
+    private volatile long openUntil;
+
+    /**
+     * Returns the number of outstanding requests, or {@link Integer#MAX_VALUE} if the circuit breaker is open.
+     */
+    int getLoad() {
+      return System.currentTimeMillis() < openUntil ? Integer.MAX_VALUE : outstanding.get();
+    }
+
+    void requestStarted() {
+      outstanding.incrementAndGet();
+    }
+
+    synchronized void requestFinished(boolean succeeded) {
+      outstanding.decrementAndGet();
+      if (succeeded) {
+        failures = 0;
+        openUntil = 0L;
+      } else if (++failures >= CIRCUIT_BREAKER_FAILURES) {
+        // Stays at the threshold, so that a failure after the breaker closes again opens it immediately
+        failures = CIRCUIT_BREAKER_FAILURES;
+        openUntil = System.currentTimeMillis() + CIRCUIT_BREAKER_OPEN_MILLIS;
+      }
+    }
+  }
 }
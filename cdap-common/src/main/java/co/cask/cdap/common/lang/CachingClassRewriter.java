@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.lang;
+
+import co.cask.cdap.common.utils.ProjectInfo;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link ClassRewriter} that keeps the result of another {@link ClassRewriter} in a directory on the local
+ * file system, so that the same class doesn't have to be rewritten again by later processes. Each result is
+ * keyed by the class name, the checksum of the original bytecode, the rewriter name and the CDAP version
+ * (which includes the build time), hence a cached result is never used for a different original class or
+ * a different version of the rewriter.
+ *
+ * The cache directory is given by the {@link #CACHE_DIR_PROPERTY} system property, and must only be accessible by
+ * the current user. The cache is disabled if the property is not set. The cache only pays off if the directory is
+ * shared by the processes on a node. For example, it shouldn't be under the {@code java.io.tmpdir} of a YARN
+ * container, which is removed with the container, since every process would then write a new entry for each class
+ * without ever reading it back.
+ */
+public final class CachingClassRewriter implements ClassRewriter {
+
+  public static final String CACHE_DIR_PROPERTY = "cdap.class.rewrite.cache.dir";
+
+  private static final Logger LOG = LoggerFactory.getLogger(CachingClassRewriter.class);
+  // The first byte of a cache file tells whether the class doesn't need rewriting, is unchanged by the rewriting,
+  // or is followed by the rewritten bytecode
+  private static final byte NO_REWRITE = 0;
+  private static final byte UNCHANGED = 1;
+  private static final byte REWRITTEN = 2;
+
+  private final ClassRewriter delegate;
+  private final File cacheDir;
+
+  /**
+   * Returns a {@link ClassRewriter} that caches the result of the given {@link ClassRewriter} in the directory given
+   * by the {@link #CACHE_DIR_PROPERTY} system property, or the given {@link ClassRewriter} itself if the property
+   * is not set or the cache directory cannot be used.
+   *
+   * @param delegate the {@link ClassRewriter} to cache the result for
+   * @param rewriterName the name of the rewriter, which must be different for rewriters or rewriter configurations
+   *                     that produce different results for the same class
+   */
+  public static ClassRewriter wrap(ClassRewriter delegate, String rewriterName) {
+    String dir = System.getProperty(CACHE_DIR_PROPERTY);
+    if (Strings.isNullOrEmpty(dir)) {
+      return delegate;
+    }
+    File cacheDir = new File(new File(dir, String.valueOf(ProjectInfo.getVersion())), rewriterName);
+    try {
+      createPrivateDirectory(new File(dir).getAbsoluteFile().toPath());
+      Files.createDirectories(cacheDir.toPath());
+    } catch (IOException e) {
+      LOG.debug("Not caching rewritten classes because the cache directory {} cannot be used", cacheDir, e);
+      return delegate;
+    }
+    return new CachingClassRewriter(delegate, cacheDir);
+  }
+
+  @VisibleForTesting
+  CachingClassRewriter(ClassRewriter delegate, File cacheDir) {
+    this.delegate = delegate;
+    this.cacheDir = cacheDir;
+  }
+
+  @Nullable
+  @Override
+  public byte[] rewriteClass(String className, InputStream input) throws IOException {
+    byte[] original = ByteStreams.toByteArray(input);
+    File cacheFile = new File(cacheDir, className + "-" + Hashing.sha256().hashBytes(original) + ".class");
+
+    if (cacheFile.isFile()) {
+      try {
+        byte[] content = Files.readAllBytes(cacheFile.toPath());
+        if (content.length > 0) {
+          switch (content[0]) {
+            case NO_REWRITE:
+              return null;
+            case UNCHANGED:
+              return original;
+            case REWRITTEN:
+              return Arrays.copyOfRange(content, 1, content.length);
+            default:
+              break;
+          }
+        }
+        LOG.debug("Ignoring invalid cached rewritten class {} in {}", className, cacheFile);
+      } catch (IOException e) {
+        LOG.debug("Failed to read cached rewritten class {} from {}. Rewriting it again.", className, cacheFile, e);
+      }
+    }
+
+    byte[] bytecode = delegate.rewriteClass(className, new ByteArrayInputStream(original));
+    try {
+      // Write to a temporary file and move it, so that other processes never see a partially written file
+      Path tmpFile = Files.createTempFile(cacheDir.toPath(), className, ".tmp");
+      try {
+        try (OutputStream output = Files.newOutputStream(tmpFile)) {
+          if (bytecode == null) {
+            output.write(NO_REWRITE);
+          } else if (Arrays.equals(original, bytecode)) {
+            output.write(UNCHANGED);
+          } else {
+            output.write(REWRITTEN);
+            output.write(bytecode);
+          }
+        }
+        Files.move(tmpFile, cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tmpFile);
+      }
+    } catch (IOException e) {
+      LOG.debug("Failed to cache rewritten class {} to {}", className, cacheFile, e);
+    }
+    return bytecode;
+  }
+
+  /**
+   * Creates the given directory if it doesn't exist, and verifies that it is only accessible by the current user,
+   * since classes are defined from the files in it.
+   */
+  private static void createPrivateDirectory(Path dir) throws IOException {
+    if (dir.getParent() != null) {
+      Files.createDirectories(dir.getParent());
+    }
+    try {
+      Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+    } catch (FileAlreadyExistsException e) {
+      // Ignore
+    } catch (UnsupportedOperationException e) {
+      throw new IOException("Cannot set permissions of " + dir, e);
+    }
+    String user = System.getProperty("user.name");
+    if (!Files.getOwner(dir).getName().equals(user)
+      || !PosixFilePermissions.toString(Files.getPosixFilePermissions(dir)).endsWith("------")) {
+      throw new IOException("Directory " + dir + " is not private to user " + user);
+    }
+  }
+}
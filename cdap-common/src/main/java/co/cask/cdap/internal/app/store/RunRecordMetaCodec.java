@@ -0,0 +1,232 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.store;
+
+import co.cask.cdap.api.artifact.ArtifactId;
+import co.cask.cdap.api.artifact.ArtifactScope;
+import co.cask.cdap.api.artifact.ArtifactVersion;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.io.Encoder;
+import co.cask.cdap.proto.ProgramRunCluster;
+import co.cask.cdap.proto.ProgramRunClusterStatus;
+import co.cask.cdap.proto.ProgramRunStatus;
+import co.cask.cdap.proto.id.ProfileId;
+import co.cask.cdap.proto.id.ProgramId;
+import com.google.gson.Gson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Encodes and decodes {@link RunRecordMeta} in a compact, versioned binary format. The {@link ProgramId} of the run
+ * is not part of the encoding, since it is already part of the key the run record is stored with.
+ *
+ * The encoding is stored as a Base64 string in the existing run record data column, so that tables created by
+ * earlier versions don't need to be migrated. Run records written as JSON by earlier versions are still decoded.
+ */
+public final class RunRecordMetaCodec {
+
+  private static final Gson GSON = new Gson();
+  private static final int VERSION = 1;
+
+  private RunRecordMetaCodec() {
+    // no-op
+  }
+
+  /**
+   * Encodes the given {@link RunRecordMeta} to a string.
+   */
+  public static String encode(RunRecordMeta meta) throws IOException {
+    return Base64.getEncoder().encodeToString(encodeBinary(meta));
+  }
+
+  /**
+   * Decodes a {@link RunRecordMeta} that was encoded by {@link #encode(RunRecordMeta)}, or that was serialized
+   * as JSON by an earlier version.
+   *
+   * @param programId the program the run record belongs to
+   * @param data the encoded run record
+   * @return the decoded {@link RunRecordMeta}
+   * @throws IOException if the data cannot be decoded
+   */
+  public static RunRecordMeta decode(ProgramId programId, String data) throws IOException {
+    // A JSON object always starts with '{', which is not a Base64 character
+    if (data.startsWith("{")) {
+      RunRecordMeta existing = GSON.fromJson(data, RunRecordMeta.class);
+      return RunRecordMeta.builder(existing).setProgramRunId(programId.run(existing.getPid())).build();
+    }
+    byte[] bytes;
+    try {
+      bytes = Base64.getDecoder().decode(data);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid run record encoding", e);
+    }
+    return decodeBinary(programId, bytes);
+  }
+
+  private static byte[] encodeBinary(RunRecordMeta meta) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+    Encoder encoder = new BinaryEncoder(bos);
+
+    encoder.writeInt(VERSION);
+    encoder.writeString(meta.getPid());
+    encoder.writeLong(meta.getStartTs());
+    writeNullableLong(encoder, meta.getRunTs());
+    writeNullableLong(encoder, meta.getStopTs());
+    writeNullableLong(encoder, meta.getSuspendTs());
+    writeNullableLong(encoder, meta.getResumeTs());
+    encoder.writeString(meta.getStatus().name());
+    writeMap(encoder, meta.getProperties());
+
+    ProgramRunCluster cluster = meta.getCluster();
+    encoder.writeBool(cluster != null);
+    if (cluster != null) {
+      encoder.writeString(cluster.getStatus().name());
+      writeNullableLong(encoder, cluster.getEnd());
+      encoder.writeBool(cluster.getNumNodes() != null);
+      if (cluster.getNumNodes() != null) {
+        encoder.writeInt(cluster.getNumNodes());
+      }
+    }
+
+    ProfileId profileId = meta.getProfileId();
+    encoder.writeBool(profileId != null);
+    if (profileId != null) {
+      encoder.writeString(profileId.getNamespace());
+      encoder.writeString(profileId.getProfile());
+    }
+
+    writeMap(encoder, meta.getSystemArgs());
+    writeNullableString(encoder, meta.getTwillRunId());
+
+    byte[] sourceId = meta.getSourceId();
+    encoder.writeBool(sourceId != null);
+    if (sourceId != null) {
+      encoder.writeBytes(sourceId);
+    }
+
+    ArtifactId artifactId = meta.getArtifactId();
+    encoder.writeBool(artifactId != null);
+    if (artifactId != null) {
+      encoder.writeString(artifactId.getName());
+      encoder.writeString(artifactId.getVersion().getVersion());
+      encoder.writeString(artifactId.getScope().name());
+    }
+
+    writeNullableString(encoder, meta.getPrincipal());
+    return bos.toByteArray();
+  }
+
+  private static RunRecordMeta decodeBinary(ProgramId programId, byte[] data) throws IOException {
+    Decoder decoder = new BinaryDecoder(new ByteArrayInputStream(data));
+
+    int version = decoder.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported run record encoding version " + version);
+    }
+
+    String pid = decoder.readString();
+    RunRecordMeta.Builder builder = RunRecordMeta.builder()
+      .setProgramRunId(programId.run(pid))
+      .setRunId(pid)
+      .setStartTime(decoder.readLong())
+      .setRunTime(readNullableLong(decoder))
+      .setStopTime(readNullableLong(decoder))
+      .setSuspendTime(readNullableLong(decoder))
+      .setResumeTime(readNullableLong(decoder))
+      .setStatus(ProgramRunStatus.valueOf(decoder.readString()))
+      .setProperties(readMap(decoder));
+
+    if (decoder.readBool()) {
+      ProgramRunClusterStatus clusterStatus = ProgramRunClusterStatus.valueOf(decoder.readString());
+      Long end = readNullableLong(decoder);
+      Integer numNodes = decoder.readBool() ? decoder.readInt() : null;
+      builder.setCluster(new ProgramRunCluster(clusterStatus, end, numNodes));
+    }
+    if (decoder.readBool()) {
+      builder.setProfileId(new ProfileId(decoder.readString(), decoder.readString()));
+    }
+
+    builder.setSystemArgs(readMap(decoder));
+    builder.setTwillRunId(readNullableString(decoder));
+    if (decoder.readBool()) {
+      ByteBuffer buffer = decoder.readBytes();
+      byte[] sourceId = new byte[buffer.remaining()];
+      buffer.get(sourceId);
+      builder.setSourceId(sourceId);
+    }
+    if (decoder.readBool()) {
+      builder.setArtifactId(new ArtifactId(decoder.readString(), new ArtifactVersion(decoder.readString()),
+                                           ArtifactScope.valueOf(decoder.readString())));
+    }
+    builder.setPrincipal(readNullableString(decoder));
+    return builder.build();
+  }
+
+  private static void writeNullableLong(Encoder encoder, @Nullable Long value) throws IOException {
+    encoder.writeBool(value != null);
+    if (value != null) {
+      encoder.writeLong(value);
+    }
+  }
+
+  @Nullable
+  private static Long readNullableLong(Decoder decoder) throws IOException {
+    return decoder.readBool() ? decoder.readLong() : null;
+  }
+
+  private static void writeNullableString(Encoder encoder, @Nullable String value) throws IOException {
+    encoder.writeBool(value != null);
+    if (value != null) {
+      encoder.writeString(value);
+    }
+  }
+
+  @Nullable
+  private static String readNullableString(Decoder decoder) throws IOException {
+    return decoder.readBool() ? decoder.readString() : null;
+  }
+
+  private static void writeMap(Encoder encoder, @Nullable Map<String, String> map) throws IOException {
+    if (map == null) {
+      encoder.writeInt(0);
+      return;
+    }
+    encoder.writeInt(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      encoder.writeString(entry.getKey());
+      writeNullableString(encoder, entry.getValue());
+    }
+  }
+
+  private static Map<String, String> readMap(Decoder decoder) throws IOException {
+    int size = decoder.readInt();
+    Map<String, String> map = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      map.put(decoder.readString(), readNullableString(decoder));
+    }
+    return map;
+  }
+}
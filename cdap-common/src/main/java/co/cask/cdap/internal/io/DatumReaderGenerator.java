@@ -0,0 +1,1181 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.DatumReader;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.lang.Instantiator;
+import co.cask.cdap.common.lang.InstantiatorFactory;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import co.cask.cdap.internal.asm.Methods;
+import co.cask.cdap.internal.asm.Signatures;
+import co.cask.cdap.internal.lang.Fields;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.primitives.Primitives;
+import com.google.common.reflect.TypeParameter;
+import com.google.common.reflect.TypeToken;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.net.URI;
+import java.net.URL;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Class for generating {@link DatumReader} bytecodes using ASM. A generated class decodes data encoded with a given
+ * source schema into a given type with a given target schema. Schema resolution, including field projection,
+ * type promotion, enum value mapping and union branch selection, is done when the class is generated, so that the
+ * generated code only contains the decoding calls needed for the given pair of schemas.
+ * The class generated will have a skeleton looks like the following:
+ * <pre>
+ * {@code
+ *
+ *  public final class generatedClassName implements DatumReader<InputType> {
+ *    // One for each record field being decoded
+ *    private final FieldAccessor recordType$fieldName;
+ *    // One for each record, collection and map type being created
+ *    private final Instantiator instantiator$type;
+ *
+ *    public generatedClassName(FieldAccessorFactory accessorFactory, InstantiatorFactory instantiatorFactory) {
+ *      this.recordType$fieldName
+ *        = accessorFactory.getFieldAccessor(TypeToken.of(Class.forName("recordType")), "fieldName");
+ *      this.instantiator$type = instantiatorFactory.get(TypeToken.of(Class.forName("type")));
+ *    }
+ *
+ *    @Override
+ *    public InputType read(Decoder decoder, Schema sourceSchema) throws IOException {
+ *      return generatedDecodeMethod(decoder);
+ *    }
+ *
+ *    private InputType generatedDecodeMethod(Decoder decoder) throws IOException {
+ *      // Do actual decoding by calling methods on decoder based on the source schema and the type.
+ *    }
+ *
+ *    // Could have more generatedDecodeMethods and generatedSkipMethods...
+ *  }
+ * }
+ * </pre>
+ *
+ * For example, to decode a record with fields {@code int i} and {@code String s}, from data encoded with
+ * an extra {@code long l} field in between, the generated decode method will looks like this after decompile.
+ * <pre>
+ * {@code
+ *
+ *   private Object decodeRecordE1A5...(Decoder paramDecoder) throws IOException {
+ *     Object localObject = this.instantiator$Record.create();
+ *     this.Record$i.setInt(localObject, decodeint6A3B...(paramDecoder));
+ *     skip3F8A...(paramDecoder);
+ *     this.Record$s.set(localObject, decodejavalangString9C1D...(paramDecoder));
+ *     return localObject;
+ *   }
+ * }
+ * </pre>
+ */
+@NotThreadSafe
+final class DatumReaderGenerator {
+
+  private final Map<String, Method> decodeMethods = Maps.newHashMap();
+  private final Map<String, Method> skipMethods = Maps.newHashMap();
+  private final Multimap<TypeToken<?>, String> fieldAccessorRequests = HashMultimap.create();
+  private final Map<String, Class<?>> instantiatorRequests = Maps.newHashMap();
+  private final Map<String, Class<?>> classRequests = Maps.newHashMap();
+  private final Map<String, Map.Entry<Class<?>, String[]>> enumRequests = Maps.newHashMap();
+  private ClassWriter classWriter;
+  private Type classType;
+  private List<Class<?>> preservedClasses;
+
+  /**
+   * Generates a {@link DatumReader} class for decoding data of the given input type.
+   *
+   * @param inputType Type information of the input data type.
+   * @param sourceSchema Schema that the data was encoded with.
+   * @param targetSchema Schema of the input data type.
+   * @return A {@link ClassDefinition} that contains generated class information.
+   */
+  ClassDefinition generate(TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    preservedClasses = Lists.newArrayList();
+
+    TypeToken<?> interfaceType = getInterfaceType(inputType);
+
+    // Generate the class
+    String className = getClassName(interfaceType, sourceSchema, targetSchema);
+    classType = Type.getObjectType(className);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL,
+                      className, Signatures.getClassSignature(interfaceType),
+                      Type.getInternalName(Object.class),
+                      new String[]{Type.getInternalName(interfaceType.getRawType())});
+
+    // Read method
+    generateRead(inputType, sourceSchema, targetSchema);
+
+    // Constructor
+    generateConstructor();
+
+    ClassDefinition classDefinition = new ClassDefinition(classWriter.toByteArray(), className, preservedClasses);
+    // DEBUG block. Uncomment for debug
+//    co.cask.cdap.internal.asm.Debugs.debugByteCode(classDefinition, new java.io.PrintWriter(System.out));
+    // End DEBUG block
+    return classDefinition;
+  }
+
+  /**
+   * Generates the constructor. The constructor generated has signature
+   * {@code (FieldAccessorFactory, InstantiatorFactory)}.
+   */
+  private void generateConstructor() {
+    Method constructor = getMethod(void.class, "<init>", FieldAccessorFactory.class, InstantiatorFactory.class);
+
+    // Constructor(FieldAccessorFactory accessorFactory, InstantiatorFactory instantiatorFactory)
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, constructor, null, null, classWriter);
+
+    // super(); // Calling Object constructor
+    mg.loadThis();
+    mg.invokeConstructor(Type.getType(Object.class), getMethod(void.class, "<init>"));
+
+    // For each record field that needs an accessor, get the accessor and store it in field.
+    for (Map.Entry<TypeToken<?>, String> entry : fieldAccessorRequests.entries()) {
+      String fieldAccessorName = getFieldAccessorName(entry.getKey(), entry.getValue());
+
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL,
+                             fieldAccessorName,
+                             Type.getDescriptor(FieldAccessor.class), null, null).visitEnd();
+      // this.fieldAccessorName
+      //  = accessorFactory.getFieldAccessor(TypeToken.of(Class.forName("className")), "fieldName");
+      mg.loadThis();
+      mg.loadArg(0);
+      loadClass(mg, entry.getKey().getRawType());
+      mg.invokeStatic(Type.getType(TypeToken.class), getMethod(TypeToken.class, "of", Class.class));
+      mg.push(entry.getValue());
+      mg.invokeInterface(Type.getType(FieldAccessorFactory.class),
+                         getMethod(FieldAccessor.class, "getFieldAccessor", TypeToken.class, String.class));
+      mg.putField(classType, fieldAccessorName, Type.getType(FieldAccessor.class));
+    }
+
+    // For each type that needs to be created, get the instantiator and store it in field.
+    for (Map.Entry<String, Class<?>> entry : instantiatorRequests.entrySet()) {
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, entry.getKey(),
+                             Type.getDescriptor(Instantiator.class), null, null).visitEnd();
+      // this.instantiatorName = instantiatorFactory.get(TypeToken.of(Class.forName("className")));
+      mg.loadThis();
+      mg.loadArg(1);
+      loadClass(mg, entry.getValue());
+      mg.invokeStatic(Type.getType(TypeToken.class), getMethod(TypeToken.class, "of", Class.class));
+      mg.invokeVirtual(Type.getType(InstantiatorFactory.class),
+                       getMethod(Instantiator.class, "get", TypeToken.class));
+      mg.putField(classType, entry.getKey(), Type.getType(Instantiator.class));
+    }
+
+    // For each array component type, store the component class in field.
+    for (Map.Entry<String, Class<?>> entry : classRequests.entrySet()) {
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, entry.getKey(),
+                             Type.getDescriptor(Class.class), null, null).visitEnd();
+      // this.className = Class.forName("className");
+      mg.loadThis();
+      loadClass(mg, entry.getValue());
+      mg.putField(classType, entry.getKey(), Type.getType(Class.class));
+    }
+
+    // For each enum, store the enum constants, indexed by the source enum index.
+    for (Map.Entry<String, Map.Entry<Class<?>, String[]>> entry : enumRequests.entrySet()) {
+      Class<?> enumClass = entry.getValue().getKey();
+      String[] enumValues = entry.getValue().getValue();
+
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, entry.getKey(),
+                             Type.getDescriptor(Object[].class), null, null).visitEnd();
+      // Object[] values = new Object[n];
+      // values[i] = Enum.valueOf(Class.forName("enumClass"), "name"); // For each source value exists in the target
+      // this.enumName = values;
+      mg.loadThis();
+      mg.push(enumValues.length);
+      mg.newArray(Type.getType(Object.class));
+      for (int i = 0; i < enumValues.length; i++) {
+        if (enumValues[i] == null) {
+          continue;
+        }
+        mg.dup();
+        mg.push(i);
+        loadClass(mg, enumClass);
+        mg.push(enumValues[i]);
+        mg.invokeStatic(Type.getType(Enum.class), getMethod(Enum.class, "valueOf", Class.class, String.class));
+        mg.arrayStore(Type.getType(Object.class));
+      }
+      mg.putField(classType, entry.getKey(), Type.getType(Object[].class));
+    }
+
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Generates the {@link DatumReader#read(Decoder, Schema)} method.
+   */
+  private void generateRead(TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    Method readMethod = getMethod(Object.class, "read", Decoder.class, Schema.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, readMethod, null,
+                                               new Type[] {Type.getType(IOException.class)}, classWriter);
+
+    // Delegate to the actual decode method(decoder)
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, getDecodeMethod(inputType, sourceSchema, targetSchema));
+    if (inputType.getRawType().isPrimitive()) {
+      mg.valueOf(Type.getType(inputType.getRawType()));
+    }
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Returns the decode method for the given type and schemas. The same method will be returned if the same
+   * type and schemas have been passed to the method before. The method returns a primitive value if the type is
+   * primitive and an {@link Object} otherwise.
+   *
+   * @param inputType Type information of the data type to decode to
+   * @param sourceSchema Schema that the data was encoded with
+   * @param targetSchema Schema of the data type to decode to
+   * @return A method for decoding the given type and schemas.
+   */
+  private Method getDecodeMethod(TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    String key = String.format("%s%s%s", normalizeTypeName(inputType),
+                               sourceSchema.getSchemaHash(), targetSchema.getSchemaHash());
+
+    Method method = decodeMethods.get(key);
+    if (method != null) {
+      return method;
+    }
+
+    // Generate the decode method (decoder)
+    Class<?> returnType = inputType.getRawType().isPrimitive() ? inputType.getRawType() : Object.class;
+    method = getMethod(returnType, "decode" + key, Decoder.class);
+
+    // Put the method into map first before generating the body in order to support recursive data type.
+    decodeMethods.put(key, method);
+
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PRIVATE, method, null,
+                                               new Type[]{Type.getType(IOException.class)}, classWriter);
+
+    generateDecodeBody(mg, inputType, sourceSchema, targetSchema);
+    mg.returnValue();
+    mg.endMethod();
+
+    return method;
+  }
+
+  /**
+   * Generates the decode method body, which leaves the decoded value on the stack.
+   */
+  private void generateDecodeBody(GeneratorAdapter mg, TypeToken<?> inputType,
+                                  Schema sourceSchema, Schema targetSchema) {
+    if (sourceSchema.getType() == Schema.Type.UNION) {
+      decodeUnion(mg, inputType, sourceSchema, targetSchema);
+      return;
+    }
+
+    Schema resolvedSchema = targetSchema;
+    if (targetSchema.getType() == Schema.Type.UNION) {
+      resolvedSchema = resolveUnionSchema(sourceSchema, targetSchema, -1);
+    }
+    if (resolvedSchema == null || !isResolvable(sourceSchema, resolvedSchema)) {
+      mg.throwException(Type.getType(IOException.class),
+                        String.format("Fail to resolve %s to %s", sourceSchema, targetSchema));
+      return;
+    }
+
+    Schema.Type sourceType = sourceSchema.getType();
+    switch (sourceType) {
+      case NULL:
+        decodeNull(mg, inputType);
+        break;
+      case BOOLEAN:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case STRING:
+        decodeSimple(mg, inputType, sourceType, resolvedSchema.getType());
+        break;
+      case BYTES:
+        decodeBytes(mg, inputType);
+        break;
+      case ENUM:
+        decodeEnum(mg, inputType, sourceSchema, resolvedSchema);
+        break;
+      case ARRAY:
+        if (Collection.class.isAssignableFrom(inputType.getRawType())) {
+          decodeCollection(mg, inputType, getTypeArgument(inputType, 0),
+                           sourceSchema.getComponentSchema(), resolvedSchema.getComponentSchema());
+        } else {
+          Preconditions.checkArgument(inputType.isArray(),
+                                      "Only array or collection type is supported for array value: %s", inputType);
+          decodeArray(mg, inputType, sourceSchema.getComponentSchema(), resolvedSchema.getComponentSchema());
+        }
+        break;
+      case MAP:
+        Preconditions.checkArgument(Map.class.isAssignableFrom(inputType.getRawType()),
+                                    "Only %s type is supported for map value.", Map.class.getName());
+        decodeMap(mg, inputType, sourceSchema.getMapSchema(), resolvedSchema.getMapSchema());
+        break;
+      case RECORD:
+        decodeRecord(mg, inputType, sourceSchema, resolvedSchema);
+        break;
+    }
+  }
+
+  /**
+   * Generates method body for decoding a null value.
+   */
+  private void decodeNull(GeneratorAdapter mg, TypeToken<?> inputType) {
+    if (inputType.getRawType().isPrimitive()) {
+      mg.throwException(Type.getType(IOException.class), "Fail to resolve null to " + inputType);
+      return;
+    }
+    // decoder.readNull();
+    mg.loadArg(0);
+    mg.invokeInterface(Type.getType(Decoder.class), getMethod(Object.class, "readNull"));
+  }
+
+  /**
+   * Generates method body for decoding simple schema type by calling the corresponding read method in Decoder,
+   * followed by type promotion and conversion to the input type.
+   */
+  private void decodeSimple(GeneratorAdapter mg, TypeToken<?> inputType,
+                            Schema.Type sourceType, Schema.Type targetType) {
+    // value = decoder.readXXX();
+    Class<?> valueType = getSimpleClass(sourceType);
+    String readMethod = sourceType == Schema.Type.BOOLEAN
+      ? "readBool"
+      : "read" + sourceType.name().charAt(0) + sourceType.name().substring(1).toLowerCase();
+    mg.loadArg(0);
+    mg.invokeInterface(Type.getType(Decoder.class), getMethod(valueType, readMethod));
+
+    // Promote to the target schema type
+    if (sourceType != targetType) {
+      Class<?> targetClass = getSimpleClass(targetType);
+      if (targetClass == String.class) {
+        mg.invokeStatic(Type.getType(String.class), getMethod(String.class, "valueOf", valueType));
+      } else {
+        mg.cast(Type.getType(valueType), Type.getType(targetClass));
+      }
+      valueType = targetClass;
+    }
+
+    Class<?> rawType = inputType.getRawType();
+    if (valueType == String.class) {
+      if (URI.class.equals(rawType)) {
+        // URI.create(value);
+        mg.invokeStatic(Type.getType(URI.class), getMethod(URI.class, "create", String.class));
+      } else if (URL.class.equals(rawType)) {
+        // new URL(value);
+        int value = mg.newLocal(Type.getType(String.class));
+        mg.storeLocal(value);
+        mg.newInstance(Type.getType(URL.class));
+        mg.dup();
+        mg.loadLocal(value);
+        mg.invokeConstructor(Type.getType(URL.class), getMethod(void.class, "<init>", String.class));
+      } else {
+        Preconditions.checkArgument(!rawType.isPrimitive(), "Cannot decode string to %s", rawType);
+      }
+      return;
+    }
+
+    // For primitive, only need to narrow or widen the value. For boxed type, also need to box it.
+    Class<?> primitiveType = Primitives.unwrap(rawType);
+    if (primitiveType.isPrimitive()) {
+      Preconditions.checkArgument((primitiveType == boolean.class) == (valueType == boolean.class),
+                                  "Cannot decode %s to %s", valueType, rawType);
+      if (primitiveType != valueType) {
+        mg.cast(Type.getType(valueType), Type.getType(primitiveType));
+      }
+      if (!rawType.isPrimitive()) {
+        mg.valueOf(Type.getType(primitiveType));
+      }
+    } else {
+      mg.valueOf(Type.getType(valueType));
+    }
+  }
+
+  /**
+   * Generates method body for decoding bytes value to either {@code byte[]}, {@link UUID} or {@link ByteBuffer}.
+   */
+  private void decodeBytes(GeneratorAdapter mg, TypeToken<?> inputType) {
+    Class<?> rawType = inputType.getRawType();
+    Type byteBufferType = Type.getType(ByteBuffer.class);
+
+    // ByteBuffer buffer = decoder.readBytes();
+    mg.loadArg(0);
+    mg.invokeInterface(Type.getType(Decoder.class), getMethod(ByteBuffer.class, "readBytes"));
+    if (!byte[].class.equals(rawType) && !UUID.class.equals(rawType)) {
+      return;
+    }
+
+    int buffer = mg.newLocal(byteBufferType);
+    mg.storeLocal(buffer);
+
+    if (byte[].class.equals(rawType)) {
+      // byte[] bytes = new byte[buffer.remaining()];
+      // buffer.get(bytes);
+      int bytes = mg.newLocal(Type.getType(byte[].class));
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(Type.getType(Buffer.class), getMethod(int.class, "remaining"));
+      mg.newArray(Type.BYTE_TYPE);
+      mg.storeLocal(bytes);
+      mg.loadLocal(buffer);
+      mg.loadLocal(bytes);
+      mg.invokeVirtual(byteBufferType, getMethod(ByteBuffer.class, "get", byte[].class));
+      mg.pop();
+      mg.loadLocal(bytes);
+    } else {
+      // new UUID(buffer.getLong(), buffer.getLong());
+      Type uuidType = Type.getType(UUID.class);
+      mg.newInstance(uuidType);
+      mg.dup();
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, getMethod(long.class, "getLong"));
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, getMethod(long.class, "getLong"));
+      mg.invokeConstructor(uuidType, getMethod(void.class, "<init>", long.class, long.class));
+    }
+  }
+
+  /**
+   * Generates method body for decoding enum value. The mapping from source enum index to the enum constant
+   * is computed when the class is generated.
+   *
+   * <pre>
+   * {@code
+   *
+   * Object value = this.enumValues[decoder.readInt()];
+   * if (value == null) {
+   *   throw new IOException(...);
+   * }
+   * }
+   * </pre>
+   */
+  private void decodeEnum(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    Class<?> rawType = inputType.getRawType();
+    Preconditions.checkArgument(rawType.isEnum(), "Only enum type is supported for enum value: %s", inputType);
+
+    // Enum type might be defined by the user, hence need to preserve class loading of it
+    preservedClasses.add(rawType);
+
+    String fieldName = String.format("enum$%s%s%s", normalizeTypeName(inputType),
+                                     sourceSchema.getSchemaHash(), targetSchema.getSchemaHash());
+    if (!enumRequests.containsKey(fieldName)) {
+      List<String> sourceValues = Lists.newArrayList(sourceSchema.getEnumValues());
+      String[] enumValues = new String[sourceValues.size()];
+      for (int i = 0; i < enumValues.length; i++) {
+        String value = sourceValues.get(i);
+        if (targetSchema.getEnumIndex(value) >= 0 && hasEnumConstant(rawType, value)) {
+          enumValues[i] = value;
+        }
+      }
+      enumRequests.put(fieldName, Maps.<Class<?>, String[]>immutableEntry(rawType, enumValues));
+    }
+
+    int value = mg.newLocal(Type.getType(Object.class));
+    mg.loadThis();
+    mg.getField(classType, fieldName, Type.getType(Object[].class));
+    mg.loadArg(0);
+    mg.invokeInterface(Type.getType(Decoder.class), getMethod(int.class, "readInt"));
+    mg.arrayLoad(Type.getType(Object.class));
+    mg.storeLocal(value);
+
+    Label notNull = mg.newLabel();
+    mg.loadLocal(value);
+    mg.ifNonNull(notNull);
+    mg.throwException(Type.getType(IOException.class), "Enum value missing in target " + rawType.getName());
+    mg.mark(notNull);
+    mg.loadLocal(value);
+  }
+
+  /**
+   * Generates method body for decoding array value into a {@link Collection}. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Collection collection = (Collection) this.instantiator.create();
+   * int len = decoder.readInt();
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     collection.add(decodeElement(decoder));
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * }
+   * </pre>
+   */
+  private void decodeCollection(GeneratorAdapter mg, TypeToken<?> inputType, TypeToken<?> componentType,
+                                Schema sourceComponentSchema, Schema targetComponentSchema) {
+    Type collectionType = Type.getType(Collection.class);
+    Method decodeElement = getDecodeMethod(componentType, sourceComponentSchema, targetComponentSchema);
+
+    int collection = mg.newLocal(collectionType);
+    createInstance(mg, inputType);
+    mg.checkCast(collectionType);
+    mg.storeLocal(collection);
+
+    generateBlockLoop(mg, () -> {
+      mg.loadLocal(collection);
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, decodeElement);
+      mg.invokeInterface(collectionType, getMethod(boolean.class, "add", Object.class));
+      mg.pop();
+    });
+
+    mg.loadLocal(collection);
+  }
+
+  /**
+   * Generates method body for decoding array value into a java array. Elements are stored to the array directly,
+   * without boxing for primitive component types. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * int len = decoder.readInt();
+   * int size = 0;
+   * T[] array = new T[len];
+   * while (len != 0) {
+   *   if (size + len > array.length) {
+   *     array = Arrays.copyOf(array, size + len);
+   *   }
+   *   for (int i = 0; i < len; i++) {
+   *     array[size++] = decodeElement(decoder);
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * }
+   * </pre>
+   */
+  private void decodeArray(GeneratorAdapter mg, TypeToken<?> inputType,
+                           Schema sourceComponentSchema, Schema targetComponentSchema) {
+    TypeToken<?> componentType = inputType.getComponentType();
+    Class<?> componentClass = componentType.getRawType();
+    Method decodeElement = getDecodeMethod(componentType, sourceComponentSchema, targetComponentSchema);
+
+    // Non-primitive arrays are created reflectively and operated as Object[]
+    Class<?> arrayClass = componentClass.isPrimitive() ? inputType.getRawType() : Object[].class;
+    Type arrayType = Type.getType(arrayClass);
+    Type elementType = arrayType.getElementType();
+
+    int len = mg.newLocal(Type.INT_TYPE);
+    int size = mg.newLocal(Type.INT_TYPE);
+    int array = mg.newLocal(arrayType);
+    int idx = mg.newLocal(Type.INT_TYPE);
+
+    mg.loadArg(0);
+    mg.invokeInterface(Type.getType(Decoder.class), getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+    mg.push(0);
+    mg.storeLocal(size);
+
+    if (componentClass.isPrimitive()) {
+      mg.loadLocal(len);
+      mg.newArray(elementType);
+    } else {
+      // (Object[]) Array.newInstance(componentClass, len);
+      mg.loadThis();
+      mg.getField(classType, getClassFieldName(componentClass), Type.getType(Class.class));
+      mg.loadLocal(len);
+      mg.invokeStatic(Type.getType(Array.class), getMethod(Object.class, "newInstance", Class.class, int.class));
+      mg.checkCast(arrayType);
+    }
+    mg.storeLocal(array);
+
+    Label beginWhile = mg.mark();
+    Label endWhile = mg.newLabel();
+    mg.loadLocal(len);
+    mg.ifZCmp(GeneratorAdapter.EQ, endWhile);
+
+    // Grow the array if needed
+    Label noGrow = mg.newLabel();
+    mg.loadLocal(size);
+    mg.loadLocal(len);
+    mg.math(GeneratorAdapter.ADD, Type.INT_TYPE);
+    mg.loadLocal(array);
+    mg.arrayLength();
+    mg.ifICmp(GeneratorAdapter.LE, noGrow);
+    mg.loadLocal(array);
+    mg.loadLocal(size);
+    mg.loadLocal(len);
+    mg.math(GeneratorAdapter.ADD, Type.INT_TYPE);
+    mg.invokeStatic(Type.getType(Arrays.class), getMethod(arrayClass, "copyOf", arrayClass, int.class));
+    mg.storeLocal(array);
+    mg.mark(noGrow);
+
+    // for (int idx = 0; idx < len; idx++)
+    mg.push(0);
+    mg.storeLocal(idx);
+    Label beginFor = mg.mark();
+    Label endFor = mg.newLabel();
+    mg.loadLocal(idx);
+    mg.loadLocal(len);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+
+    // array[size++] = decodeElement(decoder);
+    mg.loadLocal(array);
+    mg.loadLocal(size);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, decodeElement);
+    mg.arrayStore(elementType);
+    mg.iinc(size, 1);
+
+    mg.iinc(idx, 1);
+    mg.goTo(beginFor);
+    mg.mark(endFor);
+
+    mg.loadArg(0);
+    mg.invokeInterface(Type.getType(Decoder.class), getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+    mg.goTo(beginWhile);
+    mg.mark(endWhile);
+
+    mg.loadLocal(array);
+  }
+
+  /**
+   * Generates method body for decoding map value. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Map map = (Map) this.instantiator.create();
+   * int len = decoder.readInt();
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     map.put(decodeKey(decoder), decodeValue(decoder));
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * }
+   * </pre>
+   */
+  private void decodeMap(GeneratorAdapter mg, TypeToken<?> inputType,
+                         Map.Entry<Schema, Schema> sourceMapSchema, Map.Entry<Schema, Schema> targetMapSchema) {
+    Type mapType = Type.getType(Map.class);
+    Method decodeKey = getDecodeMethod(getTypeArgument(inputType, 0),
+                                       sourceMapSchema.getKey(), targetMapSchema.getKey());
+    Method decodeValue = getDecodeMethod(getTypeArgument(inputType, 1),
+                                         sourceMapSchema.getValue(), targetMapSchema.getValue());
+
+    int map = mg.newLocal(mapType);
+    createInstance(mg, inputType);
+    mg.checkCast(mapType);
+    mg.storeLocal(map);
+
+    generateBlockLoop(mg, () -> {
+      mg.loadLocal(map);
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, decodeKey);
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.invokeVirtual(classType, decodeValue);
+      mg.invokeInterface(mapType, getMethod(Object.class, "put", Object.class, Object.class));
+      mg.pop();
+    });
+
+    mg.loadLocal(map);
+  }
+
+  /**
+   * Generates method body for decoding record value. Fields in the source schema that are not in the target schema
+   * are skipped. Fields are set through {@link FieldAccessor}, hence the class doesn't need to be public.
+   */
+  private void decodeRecord(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    try {
+      Class<?> rawType = inputType.getRawType();
+
+      // Record type might be defined by the user, hence need to preserve class loading of it
+      preservedClasses.add(rawType);
+
+      int record = mg.newLocal(Type.getType(Object.class));
+      createInstance(mg, inputType);
+      mg.storeLocal(record);
+
+      for (Schema.Field sourceField : sourceSchema.getFields()) {
+        Schema.Field targetField = targetSchema.getField(sourceField.getName());
+        if (targetField == null) {
+          // this.skipField(decoder);
+          mg.loadThis();
+          mg.loadArg(0);
+          mg.invokeVirtual(classType, getSkipMethod(sourceField.getSchema()));
+          continue;
+        }
+
+        // this.fieldAccessor.setXXX(record, this.decodeField(decoder));
+        Field field = Fields.findField(inputType.getType(), targetField.getName());
+        TypeToken<?> fieldType = inputType.resolveType(field.getGenericType());
+        fieldAccessorRequests.put(inputType, targetField.getName());
+
+        mg.loadThis();
+        mg.getField(classType, getFieldAccessorName(inputType, targetField.getName()),
+                    Type.getType(FieldAccessor.class));
+        mg.loadLocal(record);
+        mg.loadThis();
+        mg.loadArg(0);
+        mg.invokeVirtual(classType, getDecodeMethod(fieldType, sourceField.getSchema(), targetField.getSchema()));
+        mg.invokeInterface(Type.getType(FieldAccessor.class), getAccessorMethod(fieldType));
+      }
+
+      mg.loadLocal(record);
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Generates method body for decoding union value. The union branch is decided by the index read from the
+   * decoder and the resolution of each branch is done when the class is generated.
+   *
+   * <pre>
+   * {@code
+   *
+   * int idx = decoder.readInt();
+   * if (idx == 0) {
+   *   return decodeBranch0(decoder);
+   * }
+   * if (idx == 1) {
+   *   return decodeBranch1(decoder);
+   * }
+   * throw new IOException(...);
+   * }
+   * </pre>
+   */
+  private void decodeUnion(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    int idx = mg.newLocal(Type.INT_TYPE);
+    mg.loadArg(0);
+    mg.invokeInterface(Type.getType(Decoder.class), getMethod(int.class, "readInt"));
+    mg.storeLocal(idx);
+
+    List<Schema> unionSchemas = sourceSchema.getUnionSchemas();
+    for (int i = 0; i < unionSchemas.size(); i++) {
+      Schema branchSchema = unionSchemas.get(i);
+      Label nextBranch = mg.newLabel();
+      mg.loadLocal(idx);
+      mg.push(i);
+      mg.ifICmp(GeneratorAdapter.NE, nextBranch);
+
+      Schema resolvedSchema = targetSchema.getType() == Schema.Type.UNION
+        ? resolveUnionSchema(branchSchema, targetSchema, i)
+        : (isResolvable(branchSchema, targetSchema) ? targetSchema : null);
+
+      if (resolvedSchema == null) {
+        mg.throwException(Type.getType(IOException.class),
+                          String.format("Fail to resolve %s to %s", sourceSchema, targetSchema));
+      } else {
+        mg.loadThis();
+        mg.loadArg(0);
+        mg.invokeVirtual(classType, getDecodeMethod(inputType, branchSchema, resolvedSchema));
+        mg.returnValue();
+      }
+      mg.mark(nextBranch);
+    }
+    mg.throwException(Type.getType(IOException.class), "Invalid union index for schema " + sourceSchema);
+  }
+
+  /**
+   * Returns the skip method for the given schema. The same method will be returned if the same
+   * schema has been passed to the method before.
+   */
+  private Method getSkipMethod(Schema schema) {
+    String key = schema.getSchemaHash().toString();
+    Method method = skipMethods.get(key);
+    if (method != null) {
+      return method;
+    }
+
+    method = getMethod(void.class, "skip" + key, Decoder.class);
+
+    // Put the method into map first before generating the body in order to support recursive data type.
+    skipMethods.put(key, method);
+
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PRIVATE, method, null,
+                                               new Type[]{Type.getType(IOException.class)}, classWriter);
+    generateSkipBody(mg, schema);
+    mg.returnValue();
+    mg.endMethod();
+
+    return method;
+  }
+
+  /**
+   * Generates the skip method body, which reads and discards a value of the given schema from the decoder.
+   */
+  private void generateSkipBody(GeneratorAdapter mg, Schema schema) {
+    Type decoderType = Type.getType(Decoder.class);
+
+    switch (schema.getType()) {
+      case NULL:
+        break;
+      case BOOLEAN:
+        mg.loadArg(0);
+        mg.invokeInterface(decoderType, getMethod(boolean.class, "readBool"));
+        mg.pop();
+        break;
+      case INT:
+      case ENUM:
+        mg.loadArg(0);
+        mg.invokeInterface(decoderType, getMethod(int.class, "readInt"));
+        mg.pop();
+        break;
+      case LONG:
+        mg.loadArg(0);
+        mg.invokeInterface(decoderType, getMethod(long.class, "readLong"));
+        mg.pop2();
+        break;
+      case FLOAT:
+      case DOUBLE:
+      case BYTES:
+      case STRING:
+        String skipMethod = "skip" + schema.getType().name().charAt(0)
+          + schema.getType().name().substring(1).toLowerCase();
+        mg.loadArg(0);
+        mg.invokeInterface(decoderType, getMethod(void.class, skipMethod));
+        break;
+      case ARRAY:
+        Method skipComponent = getSkipMethod(schema.getComponentSchema());
+        generateBlockLoop(mg, () -> {
+          mg.loadThis();
+          mg.loadArg(0);
+          mg.invokeVirtual(classType, skipComponent);
+        });
+        break;
+      case MAP:
+        Method skipKey = getSkipMethod(schema.getMapSchema().getKey());
+        Method skipValue = getSkipMethod(schema.getMapSchema().getValue());
+        generateBlockLoop(mg, () -> {
+          mg.loadThis();
+          mg.loadArg(0);
+          mg.invokeVirtual(classType, skipKey);
+          mg.loadThis();
+          mg.loadArg(0);
+          mg.invokeVirtual(classType, skipValue);
+        });
+        break;
+      case RECORD:
+        for (Schema.Field field : schema.getFields()) {
+          mg.loadThis();
+          mg.loadArg(0);
+          mg.invokeVirtual(classType, getSkipMethod(field.getSchema()));
+        }
+        break;
+      case UNION:
+        int idx = mg.newLocal(Type.INT_TYPE);
+        mg.loadArg(0);
+        mg.invokeInterface(decoderType, getMethod(int.class, "readInt"));
+        mg.storeLocal(idx);
+
+        Label end = mg.newLabel();
+        List<Schema> unionSchemas = schema.getUnionSchemas();
+        for (int i = 0; i < unionSchemas.size(); i++) {
+          Label nextBranch = mg.newLabel();
+          mg.loadLocal(idx);
+          mg.push(i);
+          mg.ifICmp(GeneratorAdapter.NE, nextBranch);
+          mg.loadThis();
+          mg.loadArg(0);
+          mg.invokeVirtual(classType, getSkipMethod(unionSchemas.get(i)));
+          mg.goTo(end);
+          mg.mark(nextBranch);
+        }
+        mg.throwException(Type.getType(IOException.class), "Invalid union index for schema " + schema);
+        mg.mark(end);
+        break;
+    }
+  }
+
+  /**
+   * Generates a loop that reads the blocks of an array or map value. The given element generator is called
+   * to generate the code for reading each element. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * int len = decoder.readInt();
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     // Read one element
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * }
+   * </pre>
+   */
+  private void generateBlockLoop(GeneratorAdapter mg, Runnable elementGenerator) {
+    int len = mg.newLocal(Type.INT_TYPE);
+    int idx = mg.newLocal(Type.INT_TYPE);
+
+    mg.loadArg(0);
+    mg.invokeInterface(Type.getType(Decoder.class), getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+
+    Label beginWhile = mg.mark();
+    Label endWhile = mg.newLabel();
+    mg.loadLocal(len);
+    mg.ifZCmp(GeneratorAdapter.EQ, endWhile);
+
+    mg.push(0);
+    mg.storeLocal(idx);
+    Label beginFor = mg.mark();
+    Label endFor = mg.newLabel();
+    mg.loadLocal(idx);
+    mg.loadLocal(len);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+
+    elementGenerator.run();
+
+    mg.iinc(idx, 1);
+    mg.goTo(beginFor);
+    mg.mark(endFor);
+
+    mg.loadArg(0);
+    mg.invokeInterface(Type.getType(Decoder.class), getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+    mg.goTo(beginWhile);
+    mg.mark(endWhile);
+  }
+
+  /**
+   * Generates code to create a new instance of the given type through the {@link Instantiator} of the type.
+   */
+  private void createInstance(GeneratorAdapter mg, TypeToken<?> type) {
+    Class<?> rawType = type.getRawType();
+    String fieldName = "instantiator$" + normalizeTypeName(TypeToken.of(rawType));
+    instantiatorRequests.put(fieldName, rawType);
+    preservedClasses.add(rawType);
+
+    // this.instantiator.create();
+    mg.loadThis();
+    mg.getField(classType, fieldName, Type.getType(Instantiator.class));
+    mg.invokeInterface(Type.getType(Instantiator.class), getMethod(Object.class, "create"));
+  }
+
+  /**
+   * Generates code to load the given class by name through {@link Class#forName(String)}.
+   */
+  private void loadClass(GeneratorAdapter mg, Class<?> cls) {
+    mg.push(cls.getName());
+    mg.invokeStatic(Type.getType(Class.class), getMethod(Class.class, "forName", String.class));
+  }
+
+  /**
+   * Returns the name of the class field for storing the given array component class.
+   */
+  private String getClassFieldName(Class<?> componentClass) {
+    String fieldName = "class$" + normalizeTypeName(TypeToken.of(componentClass));
+    classRequests.put(fieldName, componentClass);
+
+    // Preserve the class loading of the innermost component type, which might be defined by the user
+    Class<?> cls = componentClass;
+    while (cls.isArray()) {
+      cls = cls.getComponentType();
+    }
+    if (!cls.isPrimitive()) {
+      preservedClasses.add(cls);
+    }
+    return fieldName;
+  }
+
+  /**
+   * Returns the union branch in the target schema that the given source schema resolves to.
+   *
+   * @param sourceSchema the source schema, which is not a union
+   * @param targetSchema the target union schema
+   * @param index the union index of the source schema if it is a union branch, or {@code -1} if it is not
+   * @return the resolved target schema or {@code null} if none of the union branches can be resolved
+   */
+  @Nullable
+  private Schema resolveUnionSchema(Schema sourceSchema, Schema targetSchema, int index) {
+    List<Schema> targetSchemas = targetSchema.getUnionSchemas();
+    // A simple optimization to try resolve before resorting to linearly try the union schema.
+    if (index >= 0 && index < targetSchemas.size() && targetSchemas.get(index).getType() == sourceSchema.getType()) {
+      return targetSchemas.get(index);
+    }
+    for (Schema schema : targetSchemas) {
+      if (isResolvable(sourceSchema, schema)) {
+        return schema;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns whether data encoded with the source schema can be decoded with the target schema.
+   * It follows the same type promotion rules as {@link ReflectionReader}.
+   */
+  private boolean isResolvable(Schema sourceSchema, Schema targetSchema) {
+    Schema.Type sourceType = sourceSchema.getType();
+    Schema.Type targetType = targetSchema.getType();
+
+    if (sourceType == Schema.Type.UNION) {
+      return true;
+    }
+    if (targetType == Schema.Type.UNION) {
+      return resolveUnionSchema(sourceSchema, targetSchema, -1) != null;
+    }
+    if (sourceType == targetType) {
+      return true;
+    }
+    switch (sourceType) {
+      case BOOLEAN:
+        return targetType == Schema.Type.STRING;
+      case INT:
+        return targetType == Schema.Type.LONG || targetType == Schema.Type.FLOAT
+          || targetType == Schema.Type.DOUBLE || targetType == Schema.Type.STRING;
+      case LONG:
+        return targetType == Schema.Type.FLOAT || targetType == Schema.Type.DOUBLE
+          || targetType == Schema.Type.STRING;
+      case FLOAT:
+        return targetType == Schema.Type.DOUBLE || targetType == Schema.Type.STRING;
+      case DOUBLE:
+        return targetType == Schema.Type.STRING;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Returns the java class that the decoder returns for the given simple schema type.
+   */
+  private Class<?> getSimpleClass(Schema.Type schemaType) {
+    switch (schemaType) {
+      case BOOLEAN:
+        return boolean.class;
+      case INT:
+        return int.class;
+      case LONG:
+        return long.class;
+      case FLOAT:
+        return float.class;
+      case DOUBLE:
+        return double.class;
+      case STRING:
+        return String.class;
+    }
+    throw new IllegalArgumentException("Not a simple schema type: " + schemaType);
+  }
+
+  private boolean hasEnumConstant(Class<?> enumClass, String name) {
+    for (Object constant : enumClass.getEnumConstants()) {
+      if (((Enum<?>) constant).name().equals(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private TypeToken<?> getTypeArgument(TypeToken<?> type, int idx) {
+    Preconditions.checkArgument(type.getType() instanceof ParameterizedType,
+                                "Only parameterized type is supported: %s", type);
+    return TypeToken.of(((ParameterizedType) type.getType()).getActualTypeArguments()[idx]);
+  }
+
+  private <T> TypeToken<DatumReader<T>> getInterfaceType(TypeToken<T> type) {
+    return new TypeToken<DatumReader<T>>() {
+    }.where(new TypeParameter<T>() {
+    }, type);
+  }
+
+  private String getClassName(TypeToken<?> interfaceType, Schema sourceSchema, Schema targetSchema) {
+    return String.format("%s/%s%s%s%s",
+                         interfaceType.getRawType().getPackage().getName().replace('.', '/'),
+                         normalizeTypeName(TypeToken.of(((ParameterizedType) interfaceType.getType())
+                                                          .getActualTypeArguments()[0])),
+                         interfaceType.getRawType().getSimpleName(),
+                         targetSchema.getSchemaHash(), sourceSchema.getSchemaHash());
+  }
+
+  private String normalizeTypeName(TypeToken<?> type) {
+    String typeName = type.toString();
+    int dimension = 0;
+    while (type.isArray()) {
+      type = type.getComponentType();
+      typeName = type.toString();
+      dimension++;
+    }
+
+    typeName = typeName.replace(".", "")
+                        .replace("<", "Of")
+                        .replace(">", "")
+                        .replace(",", "To")
+                        .replace(" ", "")
+                        .replace("$", "");
+    if (dimension > 0) {
+      typeName = "Array" + dimension + typeName;
+    }
+    return typeName;
+  }
+
+  private Method getMethod(Class<?> returnType, String name, Class<?>...args) {
+    return Methods.getMethod(returnType, name, args);
+  }
+
+  /**
+   * Returns the method for calling {@link FieldAccessor} to set a field value based on the data type.
+   * @param type Data type.
+   * @return A {@link Method} for calling {@link FieldAccessor}.
+   */
+  private Method getAccessorMethod(TypeToken<?> type) {
+    Class<?> rawType = type.getRawType();
+    if (rawType.isPrimitive()) {
+      return getMethod(void.class,
+                       String.format("set%c%s",
+                                     Character.toUpperCase(rawType.getName().charAt(0)),
+                                     rawType.getName().substring(1)),
+                       Object.class, rawType);
+    } else {
+      return getMethod(void.class, "set", Object.class, Object.class);
+    }
+  }
+
+  /**
+   * Generates the name of the class field for storing {@link FieldAccessor} for the given record field.
+   * @param recordType Type of the record.
+   * @param fieldName name of the field.
+   * @return name of the class field.
+   */
+  private String getFieldAccessorName(TypeToken<?> recordType, String fieldName) {
+    return String.format("%s$%s", normalizeTypeName(recordType), fieldName);
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.internal.remote;
+
+import co.cask.cdap.common.ServiceUnavailableException;
+import co.cask.cdap.common.http.DefaultHttpRequestConfig;
+import io.cdap.common.http.HttpMethod;
+import io.cdap.common.http.HttpRequest;
+import io.cdap.common.http.HttpResponse;
+import io.cdap.http.AbstractHttpHandler;
+import io.cdap.http.HttpResponder;
+import io.cdap.http.NettyHttpService;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.discovery.Discoverable;
+import org.apache.twill.discovery.InMemoryDiscoveryService;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+
+/**
+ * Unit tests for {@link RemoteClient}.
+ */
+public class RemoteClientTest {
+
+  private static NettyHttpService httpService;
+  private static InMemoryDiscoveryService discoveryService;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    httpService = NettyHttpService.builder("test").setHttpHandlers(new TestHandler()).build();
+    httpService.start();
+    discoveryService = new InMemoryDiscoveryService();
+  }
+
+  @AfterClass
+  public static void finish() throws Exception {
+    httpService.stop();
+  }
+
+  @Test
+  public void testExecute() throws Exception {
+    Cancellable cancellable = discoveryService.register(new Discoverable("execute", httpService.getBindAddress()));
+    try {
+      RemoteClient client = new RemoteClient(discoveryService, "execute", new DefaultHttpRequestConfig(false), "/v1");
+      HttpResponse response = client.execute(client.requestBuilder(HttpMethod.GET, "ping").build());
+      Assert.assertEquals(200, response.getResponseCode());
+      Assert.assertEquals("pong", response.getResponseBodyAsString());
+
+      // Requests over the same connections, sync and async
+      List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        HttpRequest request = client.requestBuilder(HttpMethod.POST, "echo").withBody("body" + i).build();
+        if (i % 2 == 0) {
+          Assert.assertEquals("body" + i, client.execute(request).getResponseBodyAsString());
+        } else {
+          futures.add(client.executeAsync(request));
+        }
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        Assert.assertEquals("body" + (i * 2 + 1), futures.get(i).get(10, TimeUnit.SECONDS).getResponseBodyAsString());
+      }
+
+      try {
+        client.execute(client.requestBuilder(HttpMethod.GET, "unavailable").build());
+        Assert.fail("Expected ServiceUnavailableException");
+      } catch (ServiceUnavailableException e) {
+        // expected
+      }
+      try {
+        client.executeAsync(client.requestBuilder(HttpMethod.GET, "unavailable").build()).get(10, TimeUnit.SECONDS);
+        Assert.fail("Expected ServiceUnavailableException");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof ServiceUnavailableException);
+      }
+    } finally {
+      cancellable.cancel();
+    }
+  }
+
+  @Test
+  public void testCircuitBreaker() throws Exception {
+    InetSocketAddress deadAddress;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      deadAddress = new InetSocketAddress(httpService.getBindAddress().getHostName(), socket.getLocalPort());
+    }
+    Cancellable liveCancellable = discoveryService.register(new Discoverable("breaker",
+                                                                             httpService.getBindAddress()));
+    Cancellable deadCancellable = discoveryService.register(new Discoverable("breaker", deadAddress));
+    try {
+      RemoteClient client = new RemoteClient(discoveryService, "breaker", new DefaultHttpRequestConfig(false), "/v1");
+
+      // Both endpoints are picked until the dead one failed enough times
+      int failures = 0;
+      for (int i = 0; i < 1000 && failures < 5; i++) {
+        try {
+          client.execute(client.requestBuilder(HttpMethod.GET, "ping").build());
+        } catch (ServiceUnavailableException e) {
+          failures++;
+        }
+      }
+      Assert.assertEquals(5, failures);
+
+      // Then only the live endpoint is picked
+      for (int i = 0; i < 20; i++) {
+        Assert.assertEquals("pong", client.execute(client.requestBuilder(HttpMethod.GET, "ping").build())
+          .getResponseBodyAsString());
+      }
+    } finally {
+      deadCancellable.cancel();
+      liveCancellable.cancel();
+    }
+  }
+
+  @Test
+  public void testUnavailableResponse() throws Exception {
+    NettyHttpService busyService = NettyHttpService.builder("busy").setHttpHandlers(new BusyHandler()).build();
+    busyService.start();
+    Cancellable liveCancellable = discoveryService.register(new Discoverable("busy", httpService.getBindAddress()));
+    Cancellable busyCancellable = discoveryService.register(new Discoverable("busy", busyService.getBindAddress()));
+    try {
+      RemoteClient client = new RemoteClient(discoveryService, "busy", new DefaultHttpRequestConfig(false), "/v1");
+
+      // A 503 response is an answer of the service, so it doesn't open the circuit breaker of the endpoint
+      int unavailable = 0;
+      for (int i = 0; i < 1000 && unavailable < 10; i++) {
+        try {
+          client.execute(client.requestBuilder(HttpMethod.GET, "ping").build());
+        } catch (ServiceUnavailableException e) {
+          unavailable++;
+        }
+      }
+      Assert.assertEquals(10, unavailable);
+
+      boolean busyPicked = false;
+      for (int i = 0; i < 100 && !busyPicked; i++) {
+        busyPicked = client.resolve("ping").getPort() == busyService.getBindAddress().getPort();
+      }
+      Assert.assertTrue(busyPicked);
+    } finally {
+      busyCancellable.cancel();
+      liveCancellable.cancel();
+      busyService.stop();
+    }
+  }
+
+  @Test
+  public void testCloseIdlePools() throws Exception {
+    Cancellable cancellable = discoveryService.register(new Discoverable("idle", httpService.getBindAddress()));
+    try {
+      RemoteClient client = new RemoteClient(discoveryService, "idle", new DefaultHttpRequestConfig(false), "/v1");
+      Assert.assertEquals("pong", client.execute(client.requestBuilder(HttpMethod.GET, "ping").build())
+        .getResponseBodyAsString());
+
+      NettyHttpClient nettyClient = NettyHttpClient.getInstance();
+      Assert.assertTrue(nettyClient.getPoolCount() > 0);
+      nettyClient.closeIdlePools(0L);
+      Assert.assertEquals(0, nettyClient.getPoolCount());
+
+      // A new pool is created for the next request
+      Assert.assertEquals("pong", client.execute(client.requestBuilder(HttpMethod.GET, "ping").build())
+        .getResponseBodyAsString());
+      Assert.assertEquals(1, nettyClient.getPoolCount());
+    } finally {
+      cancellable.cancel();
+    }
+  }
+
+  /**
+   * Handler for testing.
+   */
+  public static final class TestHandler extends AbstractHttpHandler {
+
+    @GET
+    @Path("/v1/ping")
+    public void ping(io.netty.handler.codec.http.HttpRequest request, HttpResponder responder) {
+      responder.sendString(HttpResponseStatus.OK, "pong");
+    }
+
+    @POST
+    @Path("/v1/echo")
+    public void echo(FullHttpRequest request, HttpResponder responder) {
+      responder.sendString(HttpResponseStatus.OK, request.content().toString(StandardCharsets.UTF_8));
+    }
+
+    @GET
+    @Path("/v1/unavailable")
+    public void unavailable(io.netty.handler.codec.http.HttpRequest request, HttpResponder responder) {
+      responder.sendString(HttpResponseStatus.SERVICE_UNAVAILABLE, "unavailable");
+    }
+  }
+
+  /**
+   * Handler of a service that is too busy to answer.
+   */
+  public static final class BusyHandler extends AbstractHttpHandler {
+
+    @GET
+    @Path("/v1/ping")
+    public void ping(io.netty.handler.codec.http.HttpRequest request, HttpResponder responder) {
+      responder.sendString(HttpResponseStatus.SERVICE_UNAVAILABLE, "busy");
+    }
+  }
+}
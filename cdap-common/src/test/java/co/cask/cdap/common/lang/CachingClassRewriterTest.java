@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.lang;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link CachingClassRewriter}.
+ */
+public class CachingClassRewriterTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testCache() throws IOException {
+    File cacheDir = TEMP_FOLDER.newFolder();
+    AtomicInteger rewrites = new AtomicInteger();
+
+    // Rewrites class "rewrite" by reversing the bytes, returns class "same" unchanged and doesn't rewrite others
+    ClassRewriter rewriter = (className, input) -> {
+      rewrites.incrementAndGet();
+      byte[] bytes = ByteStreams.toByteArray(input);
+      switch (className) {
+        case "rewrite":
+          byte[] result = new byte[bytes.length];
+          for (int i = 0; i < bytes.length; i++) {
+            result[i] = bytes[bytes.length - 1 - i];
+          }
+          return result;
+        case "same":
+          return bytes;
+        default:
+          return null;
+      }
+    };
+
+    // Each process creates its own rewriter. Only the first one should call the actual rewriter.
+    for (int i = 0; i < 2; i++) {
+      ClassRewriter cachingRewriter = new CachingClassRewriter(rewriter, cacheDir);
+      Assert.assertArrayEquals(new byte[] { 3, 2, 1 }, rewrite(cachingRewriter, "rewrite", 1, 2, 3));
+      Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, rewrite(cachingRewriter, "same", 1, 2, 3));
+      Assert.assertNull(rewrite(cachingRewriter, "none", 1, 2, 3));
+      Assert.assertEquals(3, rewrites.get());
+    }
+
+    // A different bytecode of the same class has to be rewritten again
+    ClassRewriter cachingRewriter = new CachingClassRewriter(rewriter, cacheDir);
+    Assert.assertArrayEquals(new byte[] { 5, 4 }, rewrite(cachingRewriter, "rewrite", 4, 5));
+    Assert.assertEquals(4, rewrites.get());
+  }
+
+  private byte[] rewrite(ClassRewriter rewriter, String className, int... bytes) throws IOException {
+    byte[] input = new byte[bytes.length];
+    for (int i = 0; i < bytes.length; i++) {
+      input[i] = (byte) bytes[i];
+    }
+    return rewriter.rewriteClass(className, new ByteArrayInputStream(input));
+  }
+}
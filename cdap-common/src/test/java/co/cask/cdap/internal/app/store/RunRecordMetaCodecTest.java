@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.store;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.common.app.RunIds;
+import co.cask.cdap.proto.ProgramRunCluster;
+import co.cask.cdap.proto.ProgramRunClusterStatus;
+import co.cask.cdap.proto.ProgramRunStatus;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.ProfileId;
+import co.cask.cdap.proto.id.ProgramId;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * Unit tests for {@link RunRecordMetaCodec}.
+ */
+public class RunRecordMetaCodecTest {
+
+  private static final ProgramId PROGRAM_ID = NamespaceId.DEFAULT.app("app").workflow("workflow");
+
+  @Test
+  public void testFullRecord() throws IOException {
+    String runId = RunIds.generate().getId();
+    RunRecordMeta meta = RunRecordMeta.builder()
+      .setProgramRunId(PROGRAM_ID.run(runId))
+      .setRunId(runId)
+      .setStartTime(100L)
+      .setRunTime(110L)
+      .setStopTime(200L)
+      .setSuspendTime(120L)
+      .setResumeTime(130L)
+      .setStatus(ProgramRunStatus.COMPLETED)
+      .setProperties(ImmutableMap.of("runtimeArgs", "{}", "workflowrunid", "abc"))
+      .setCluster(new ProgramRunCluster(ProgramRunClusterStatus.DEPROVISIONED, 210L, 3))
+      .setProfileId(new ProfileId("system", "native"))
+      .setSystemArgs(ImmutableMap.of("key", "value"))
+      .setTwillRunId("twill")
+      .setSourceId(Bytes.toBytes(5L))
+      .setArtifactId(NamespaceId.DEFAULT.artifact("artifact", "1.0.0").toApiArtifactId())
+      .setPrincipal("alice")
+      .build();
+
+    RunRecordMeta decoded = RunRecordMetaCodec.decode(PROGRAM_ID, RunRecordMetaCodec.encode(meta));
+    Assert.assertEquals(meta, decoded);
+    Assert.assertEquals(meta.getSystemArgs(), decoded.getSystemArgs());
+    Assert.assertEquals(meta.getCluster(), decoded.getCluster());
+    Assert.assertEquals(meta.getProfileId(), decoded.getProfileId());
+    Assert.assertEquals(meta.getSuspendTs(), decoded.getSuspendTs());
+  }
+
+  @Test
+  public void testMinimalRecord() throws IOException {
+    String runId = RunIds.generate().getId();
+    RunRecordMeta meta = RunRecordMeta.builder()
+      .setProgramRunId(PROGRAM_ID.run(runId))
+      .setRunId(runId)
+      .setStartTime(100L)
+      .setStatus(ProgramRunStatus.PENDING)
+      .setCluster(new ProgramRunCluster(ProgramRunClusterStatus.PROVISIONING, null, null))
+      .setSourceId(Bytes.toBytes(1L))
+      .build();
+
+    RunRecordMeta decoded = RunRecordMetaCodec.decode(PROGRAM_ID, RunRecordMetaCodec.encode(meta));
+    Assert.assertEquals(meta, decoded);
+    Assert.assertEquals(meta.getCluster(), decoded.getCluster());
+    Assert.assertEquals(meta.getProfileId(), decoded.getProfileId());
+    Assert.assertNull(decoded.getArtifactId());
+    Assert.assertTrue(decoded.getSystemArgs().isEmpty());
+  }
+
+  @Test
+  public void testJsonRecord() throws IOException {
+    String runId = RunIds.generate().getId();
+    RunRecordMeta meta = RunRecordMeta.builder()
+      .setProgramRunId(PROGRAM_ID.run(runId))
+      .setRunId(runId)
+      .setStartTime(100L)
+      .setStatus(ProgramRunStatus.RUNNING)
+      .setSystemArgs(ImmutableMap.of("key", "value"))
+      .setSourceId(Bytes.toBytes(1L))
+      .build();
+
+    // Run records written by earlier versions are JSON
+    RunRecordMeta decoded = RunRecordMetaCodec.decode(PROGRAM_ID, new Gson().toJson(meta));
+    Assert.assertEquals(meta, decoded);
+    Assert.assertEquals(meta.getProgramRunId(), decoded.getProgramRunId());
+    Assert.assertEquals(meta.getSystemArgs(), decoded.getSystemArgs());
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnknownVersion() throws IOException {
+    RunRecordMetaCodec.decode(PROGRAM_ID, Base64.getEncoder().encodeToString(new byte[] { 4 }));
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidData() throws IOException {
+    RunRecordMetaCodec.decode(PROGRAM_ID, "not base64!");
+  }
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.UnsupportedTypeException;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.DatumReader;
+import co.cask.cdap.common.io.Encoder;
+import co.cask.cdap.internal.io.ASMDatumReaderFactory;
+import co.cask.cdap.internal.io.ASMDatumWriterFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.ReflectionDatumReader;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.reflect.TypeToken;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link ASMDatumReaderFactory}.
+ */
+public class ASMDatumReaderTest {
+
+  private static final ASMFieldAccessorFactory FIELD_ACCESSOR_FACTORY = new ASMFieldAccessorFactory();
+  private static final ASMDatumReaderFactory DATUM_READER_FACTORY = new ASMDatumReaderFactory(FIELD_ACCESSOR_FACTORY);
+  private static final ASMDatumWriterFactory DATUM_WRITER_FACTORY = new ASMDatumWriterFactory(FIELD_ACCESSOR_FACTORY);
+
+  /**
+   *
+   */
+  public enum TestEnum {
+    VALUE1, VALUE2, VALUE3
+  }
+
+  /**
+   *
+   */
+  public enum LessEnum {
+    VALUE3, VALUE1
+  }
+
+  @Test
+  public void testSimpleTypes() throws Exception {
+    Assert.assertEquals((short) 3000, (short) encodeAndDecode(new TypeToken<Short>() { }, (short) 3000));
+    Assert.assertEquals(12234234, (int) encodeAndDecode(new TypeToken<Integer>() { }, 12234234));
+    Assert.assertEquals(-10L, (long) encodeAndDecode(new TypeToken<Long>() { }, -10L));
+    Assert.assertEquals(3.14d, encodeAndDecode(new TypeToken<Double>() { }, 3.14d), 0.000001d);
+    Assert.assertEquals('c', (char) encodeAndDecode(new TypeToken<Character>() { }, 'c'));
+    Assert.assertTrue(encodeAndDecode(new TypeToken<Boolean>() { }, true));
+    Assert.assertEquals("Testing message", encodeAndDecode(new TypeToken<String>() { }, "Testing message"));
+
+    UUID uuid = UUID.randomUUID();
+    Assert.assertEquals(uuid, encodeAndDecode(new TypeToken<UUID>() { }, uuid));
+    Assert.assertArrayEquals(new byte[] {1, 2, 3}, encodeAndDecode(new TypeToken<byte[]>() { }, new byte[] {1, 2, 3}));
+    Assert.assertEquals(TestEnum.VALUE3, encodeAndDecode(new TypeToken<TestEnum>() { }, TestEnum.VALUE3));
+    Assert.assertEquals(URI.create("http://www.abc.com"),
+                        encodeAndDecode(new TypeToken<URI>() { }, URI.create("http://www.abc.com")));
+  }
+
+  @Test
+  public void testArrays() throws Exception {
+    int[] ints = {1, 2, 3, 4, -5, -6, -7, -8};
+    Assert.assertArrayEquals(ints, encodeAndDecode(new TypeToken<int[]>() { }, ints));
+
+    String[] strings = {"1", "2", null, "3"};
+    Assert.assertArrayEquals(strings, encodeAndDecode(new TypeToken<String[]>() { }, strings));
+
+    Record[][] records = {{new Record(10, "testing", ImmutableList.of("a", "b"), TestEnum.VALUE2)}, {}};
+    Record[][] decoded = encodeAndDecode(new TypeToken<Record[][]>() { }, records);
+    Assert.assertEquals(Record[][].class, decoded.getClass());
+    Assert.assertArrayEquals(records, decoded);
+  }
+
+  @Test
+  public void testMultiBlockArray() throws Exception {
+    // Encode an array in two blocks, which is valid in the binary encoding
+    TypeToken<long[]> type = new TypeToken<long[]>() { };
+    Schema schema = getSchema(type);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    Encoder encoder = new BinaryEncoder(os);
+    encoder.writeInt(2).writeLong(1L).writeLong(2L);
+    encoder.writeInt(3).writeLong(3L).writeLong(4L).writeLong(5L);
+    encoder.writeInt(0);
+
+    long[] value = DATUM_READER_FACTORY.create(type, schema)
+      .read(new BinaryDecoder(new ByteArrayInputStream(os.toByteArray())), schema);
+    Assert.assertArrayEquals(new long[] {1L, 2L, 3L, 4L, 5L}, value);
+  }
+
+  @Test
+  public void testCollections() throws Exception {
+    List<Long> list = ImmutableList.of(1L, 10L, 100L, 1000L);
+    Assert.assertEquals(list, encodeAndDecode(new TypeToken<List<Long>>() { }, list));
+
+    Map<String, List<String>> map = ImmutableMap.<String, List<String>>of("k1", Lists.newArrayList("v1"),
+                                                                          "k2", Lists.newArrayList("v2", null));
+    Assert.assertEquals(map, encodeAndDecode(new TypeToken<Map<String, List<String>>>() { }, map));
+
+    Set<TestEnum> set = ImmutableSet.of(TestEnum.VALUE1, TestEnum.VALUE3);
+    Assert.assertEquals(set, encodeAndDecode(new TypeToken<Set<TestEnum>>() { }, set));
+  }
+
+  @Test
+  public void testRecord() throws Exception {
+    Record record = new Record(10, "testing", ImmutableList.of("a", "b", "c"), TestEnum.VALUE2);
+    Assert.assertEquals(record, encodeAndDecode(new TypeToken<Record>() { }, record));
+
+    List<Record> records = ImmutableList.of(record, new Record(-1, "", ImmutableList.of(), TestEnum.VALUE1));
+    Assert.assertEquals(records, encodeAndDecode(new TypeToken<List<Record>>() { }, records));
+  }
+
+  @Test
+  public void testTree() throws Exception {
+    Node root = new Node((short) 1,
+                         new Node((short) 2, null, new Node((short) 3, null, null)),
+                         new Node((short) 4, new Node((short) 5, null, null), null));
+    Assert.assertEquals(root, encodeAndDecode(new TypeToken<Node>() { }, root));
+  }
+
+  @Test
+  public void testTypeProject() throws Exception {
+    Record1 r1 = new Record1(10, ImmutableMap.of(1, "Name1", 2, "Name2"), new URL("http://www.yahoo.com"));
+    Schema sourceSchema = getSchema(TypeToken.of(Record1.class));
+    Schema targetSchema = getSchema(TypeToken.of(Record2.class));
+
+    byte[] bytes = encode(TypeToken.of(Record1.class), sourceSchema, r1);
+    Record2 r2 = DATUM_READER_FACTORY.create(TypeToken.of(Record2.class), targetSchema)
+      .read(new BinaryDecoder(new ByteArrayInputStream(bytes)), sourceSchema);
+
+    Assert.assertEquals(10L, r2.i.longValue());
+    Assert.assertEquals(ImmutableMap.of("1", "Name1", "2", "Name2"), r2.properties);
+    Assert.assertNull(r2.name);
+    Assert.assertArrayEquals(new long[] {1L, 2L}, r2.numbers);
+    Assert.assertEquals(URI.create("http://www.yahoo.com"), r2.url);
+    Assert.assertEquals(r1.uuid, r2.uuid);
+    Assert.assertEquals(2.5d, r2.f, 0.000001d);
+    Assert.assertEquals(LessEnum.VALUE3, r2.e);
+
+    // The reflection reader should decode to the same result
+    Record2 expected = new ReflectionDatumReader<>(targetSchema, TypeToken.of(Record2.class))
+      .read(new BinaryDecoder(new ByteArrayInputStream(bytes)), sourceSchema);
+    Assert.assertEquals(expected.i, r2.i);
+    Assert.assertEquals(expected.properties, r2.properties);
+    Assert.assertArrayEquals(expected.numbers, r2.numbers);
+    Assert.assertEquals(expected.url, r2.url);
+    Assert.assertEquals(expected.uuid, r2.uuid);
+    Assert.assertEquals(expected.e, r2.e);
+  }
+
+  @Test
+  public void testReduceProjection() throws Exception {
+    Schema sourceSchema = getSchema(TypeToken.of(MoreFields.class));
+    Schema targetSchema = getSchema(TypeToken.of(LessFields.class));
+
+    MoreFields moreFields = new MoreFields(10, 20.2, "30", ImmutableList.of("1", "2"));
+    byte[] bytes = encode(TypeToken.of(MoreFields.class), sourceSchema, moreFields);
+
+    // Read twice with the same reader to make sure the reader is reusable.
+    DatumReader<LessFields> reader = DATUM_READER_FACTORY.create(TypeToken.of(LessFields.class), targetSchema);
+    for (int i = 0; i < 2; i++) {
+      LessFields lessFields = reader.read(new BinaryDecoder(new ByteArrayInputStream(bytes)), sourceSchema);
+      Assert.assertEquals("30", lessFields.k);
+      Assert.assertEquals(moreFields.inner.b, lessFields.inner.b);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testMissingEnumValue() throws Exception {
+    Schema sourceSchema = getSchema(TypeToken.of(TestEnum.class));
+    byte[] bytes = encode(TypeToken.of(TestEnum.class), sourceSchema, TestEnum.VALUE2);
+    DATUM_READER_FACTORY.create(TypeToken.of(LessEnum.class), getSchema(TypeToken.of(LessEnum.class)))
+      .read(new BinaryDecoder(new ByteArrayInputStream(bytes)), sourceSchema);
+  }
+
+  @Test(expected = IOException.class)
+  public void testIncompatibleSchema() throws Exception {
+    Schema sourceSchema = getSchema(TypeToken.of(String.class));
+    byte[] bytes = encode(TypeToken.of(String.class), sourceSchema, "string");
+    DATUM_READER_FACTORY.create(TypeToken.of(Integer.class), getSchema(TypeToken.of(Integer.class)))
+      .read(new BinaryDecoder(new ByteArrayInputStream(bytes)), sourceSchema);
+  }
+
+  @Ignore
+  @Test
+  public void testSpeed() throws Exception {
+    TypeToken<Node> type = new TypeToken<Node>() { };
+    Schema schema = getSchema(type);
+    Node value = new Node((short) 1, new Node((short) 2, null, new Node((short) 3, null, null)),
+                          new Node((short) 4, new Node((short) 5, null, null), null));
+    byte[] bytes = encode(type, schema, value);
+
+    DatumReader<Node> reader = DATUM_READER_FACTORY.create(type, schema);
+    long startTime = System.nanoTime();
+    for (int i = 0; i < 100000; i++) {
+      reader.read(new BinaryDecoder(new ByteArrayInputStream(bytes)), schema);
+    }
+    long endTime = System.nanoTime();
+    System.out.println("ASM time spent: " + TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+
+    reader = new ReflectionDatumReader<>(schema, type);
+    startTime = System.nanoTime();
+    for (int i = 0; i < 100000; i++) {
+      reader.read(new BinaryDecoder(new ByteArrayInputStream(bytes)), schema);
+    }
+    endTime = System.nanoTime();
+    System.out.println("Reflection time spent: " + TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+  }
+
+  private <T> Schema getSchema(TypeToken<T> type) throws UnsupportedTypeException {
+    return new ReflectionSchemaGenerator().generate(type.getType());
+  }
+
+  private <T> byte[] encode(TypeToken<T> type, Schema schema, T value) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DATUM_WRITER_FACTORY.create(type, schema).encode(value, new BinaryEncoder(os));
+    return os.toByteArray();
+  }
+
+  private <T> T encodeAndDecode(TypeToken<T> type, T value) throws Exception {
+    Schema schema = getSchema(type);
+    byte[] bytes = encode(type, schema, value);
+    return DATUM_READER_FACTORY.create(type, schema).read(new BinaryDecoder(new ByteArrayInputStream(bytes)), schema);
+  }
+
+  private static final class Record {
+    private int i;
+    private String s;
+    private List<String> list;
+    private TestEnum e;
+
+    Record(int i, String s, List<String> list, TestEnum e) {
+      this.i = i;
+      this.s = s;
+      this.list = list;
+      this.e = e;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Record record = (Record) o;
+      return i == record.i && e == record.e && list.equals(record.list) && s.equals(record.s);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(i, s, list, e);
+    }
+  }
+
+  /**
+   *
+   */
+  public static final class Node {
+    public short data;
+    public Short boxedData;
+    public Node left;
+    public Node right;
+
+    public Node(short data, Node left, Node right) {
+      this.data = data;
+      this.boxedData = data;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Node node = (Node) o;
+      return data == node.data && Objects.equals(boxedData, node.boxedData)
+        && Objects.equals(left, node.left) && Objects.equals(right, node.right);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(data, left, right);
+    }
+  }
+
+  private static final class Record1 {
+    private final int i;
+    private final Map<Integer, String> properties;
+    private final int[] numbers;
+    private final URL url;
+    private final UUID uuid;
+    private final String nullStr;
+    private final float f;
+    private final TestEnum e;
+
+    Record1(int i, Map<Integer, String> properties, URL url) {
+      this.i = i;
+      this.properties = properties;
+      this.numbers = new int[] {1, 2};
+      this.url = url;
+      this.uuid = UUID.randomUUID();
+      this.nullStr = null;
+      this.f = 2.5f;
+      this.e = TestEnum.VALUE3;
+    }
+  }
+
+  private static final class Record2 {
+    private Long i;
+    private Map<String, String> properties;
+    private String name;
+    private long[] numbers;
+    private URI url;
+    private UUID uuid;
+    private String nullStr;
+    private double f;
+    private LessEnum e;
+  }
+
+  private static final class MoreFields {
+
+    private static final class Inner {
+      private final Map<String, String> map;
+      private final String b;
+
+      Inner(String b) {
+        this.b = b;
+        this.map = ImmutableMap.of("b", b);
+      }
+    }
+
+    private final int i;
+    private final double d;
+    private final String k;
+    private final List<String> list;
+    private final Inner inner;
+
+    MoreFields(int i, double d, String k, List<String> list) {
+      this.i = i;
+      this.d = d;
+      this.k = k;
+      this.list = list;
+      this.inner = new Inner("inner");
+    }
+  }
+
+  private static final class LessFields {
+
+    private static final class Inner {
+      private String b;
+    }
+
+    private String k;
+    private Inner inner;
+  }
+}
@@ -48,6 +48,7 @@ import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.spi.authentication.AuthenticationContext;
 import com.google.common.base.Objects;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -68,13 +69,20 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 import java.util.jar.JarOutputStream;
 import javax.annotation.Nullable;
 
 /**
- * {@link co.cask.cdap.data2.dataset2.DatasetFramework} implementation that talks to DatasetFramework Service
+ * {@link co.cask.cdap.data2.dataset2.DatasetFramework} implementation that talks to DatasetFramework Service.
+ *
+ * The {@link DatasetMeta} of dataset instances, together with the last {@link DatasetType} created for them, are
+ * cached for {@link Constants.Dataset#CLIENT_CACHE_EXPIRATION_SECONDS}, so that getting a dataset that is already
+ * known requires no call to the dataset service. Instances changed through this framework are invalidated
+ * immediately, while changes made by other processes become visible once the cache entry expires.
  */
 @SuppressWarnings("unchecked")
 public class RemoteDatasetFramework implements DatasetFramework {
@@ -82,7 +90,11 @@ public class RemoteDatasetFramework implements DatasetFramework {
 
   private final CConfiguration cConf;
   private final LoadingCache<NamespaceId, DatasetServiceClient> clientCache;
+  private final Cache<InstanceCacheKey, CachedInstance> instanceCache;
+  // Changes every time instances are invalidated, so that instances fetched before are not cached
+  private final AtomicLong instanceCacheGeneration;
   private final DatasetDefinitionRegistryFactory registryFactory;
+  private final AuthenticationContext authenticationContext;
 
   @Inject
   public RemoteDatasetFramework(final CConfiguration cConf, final DiscoveryServiceClient discoveryClient,
@@ -95,7 +107,13 @@ public class RemoteDatasetFramework implements DatasetFramework {
         return new DatasetServiceClient(discoveryClient, namespace, cConf, authenticationContext);
       }
     });
+    this.instanceCache = CacheBuilder.newBuilder()
+      .expireAfterWrite(cConf.getLong(Constants.Dataset.CLIENT_CACHE_EXPIRATION_SECONDS), TimeUnit.SECONDS)
+      .maximumSize(cConf.getLong(Constants.Dataset.CLIENT_CACHE_SIZE))
+      .build();
+    this.instanceCacheGeneration = new AtomicLong();
     this.registryFactory = registryFactory;
+    this.authenticationContext = authenticationContext;
   }
 
   @Override
@@ -106,6 +124,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
       try {
         clientCache.getUnchecked(moduleId.getParent())
           .addModule(moduleId.getEntityName(), moduleClass.getName(), deploymentJar);
+        invalidate(moduleId.getParent());
       } finally {
         try {
           deploymentJar.delete();
@@ -127,16 +146,19 @@ public class RemoteDatasetFramework implements DatasetFramework {
                         Location jarLocation) throws DatasetManagementException {
     clientCache.getUnchecked(moduleId.getParent())
       .addModule(moduleId.getEntityName(), DatasetModules.getDatasetModuleClass(module).getName(), jarLocation);
+    invalidate(moduleId.getParent());
   }
 
   @Override
   public void deleteModule(DatasetModuleId moduleId) throws DatasetManagementException {
     clientCache.getUnchecked(moduleId.getParent()).deleteModule(moduleId.getEntityName());
+    invalidate(moduleId.getParent());
   }
 
   @Override
   public void deleteAllModules(NamespaceId namespaceId) throws DatasetManagementException {
     clientCache.getUnchecked(namespaceId).deleteModules();
+    invalidate(namespaceId);
   }
 
   @Override
@@ -145,6 +167,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
     throws DatasetManagementException {
     clientCache.getUnchecked(datasetInstanceId.getParent())
       .addInstance(datasetInstanceId.getEntityName(), datasetType, props, ownerPrincipal);
+    invalidate(datasetInstanceId);
   }
 
   @Override
@@ -152,6 +175,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
     throws DatasetManagementException {
     clientCache.getUnchecked(datasetInstanceId.getParent())
       .updateInstance(datasetInstanceId.getEntityName(), props);
+    invalidate(datasetInstanceId);
   }
 
   @Override
@@ -169,15 +193,13 @@ public class RemoteDatasetFramework implements DatasetFramework {
   @Nullable
   @Override
   public DatasetSpecification getDatasetSpec(DatasetId datasetInstanceId) throws DatasetManagementException {
-    DatasetMeta meta = clientCache.getUnchecked(datasetInstanceId.getParent())
-      .getInstance(datasetInstanceId.getEntityName());
-    return meta == null ? null : meta.getSpec();
+    CachedInstance instance = getInstance(datasetInstanceId);
+    return instance == null ? null : instance.getMeta().getSpec();
   }
 
   @Override
   public boolean hasInstance(DatasetId datasetInstanceId) throws DatasetManagementException {
-    return clientCache.getUnchecked(datasetInstanceId.getParent())
-      .getInstance(datasetInstanceId.getEntityName()) != null;
+    return getInstance(datasetInstanceId) != null;
   }
 
   @Override
@@ -197,12 +219,20 @@ public class RemoteDatasetFramework implements DatasetFramework {
 
   @Override
   public void deleteInstance(DatasetId datasetInstanceId) throws DatasetManagementException {
-    clientCache.getUnchecked(datasetInstanceId.getParent()).deleteInstance(datasetInstanceId.getEntityName());
+    try {
+      clientCache.getUnchecked(datasetInstanceId.getParent()).deleteInstance(datasetInstanceId.getEntityName());
+    } finally {
+      invalidate(datasetInstanceId);
+    }
   }
 
   @Override
   public void deleteAllInstances(NamespaceId namespaceId) throws DatasetManagementException {
-    clientCache.getUnchecked(namespaceId).deleteInstances();
+    try {
+      clientCache.getUnchecked(namespaceId).deleteInstances();
+    } finally {
+      invalidate(namespaceId);
+    }
   }
 
   @Override
@@ -217,14 +247,13 @@ public class RemoteDatasetFramework implements DatasetFramework {
                                              @Nullable ClassLoader parentClassLoader,
                                              DatasetClassLoaderProvider classLoaderProvider)
     throws DatasetManagementException, IOException {
-    DatasetMeta instanceInfo = clientCache.getUnchecked(datasetInstanceId.getParent())
-      .getInstance(datasetInstanceId.getEntityName());
-    if (instanceInfo == null) {
+    CachedInstance instance = getInstance(datasetInstanceId);
+    if (instance == null) {
       return null;
     }
 
-    DatasetType type = getType(instanceInfo.getType(), parentClassLoader, classLoaderProvider);
-    return (T) type.getAdmin(DatasetContext.from(datasetInstanceId.getNamespace()), instanceInfo.getSpec());
+    DatasetType type = instance.getType(parentClassLoader, classLoaderProvider);
+    return (T) type.getAdmin(DatasetContext.from(datasetInstanceId.getNamespace()), instance.getMeta().getSpec());
   }
 
   @Nullable
@@ -235,13 +264,13 @@ public class RemoteDatasetFramework implements DatasetFramework {
                                           @Nullable Iterable<? extends EntityId> owners, AccessType accessType)
     throws DatasetManagementException, IOException {
 
-    DatasetMeta datasetMeta = clientCache.getUnchecked(id.getParent()).getInstance(id.getEntityName());
-    if (datasetMeta == null) {
+    CachedInstance instance = getInstance(id);
+    if (instance == null) {
       return null;
     }
 
-    DatasetType type = getType(datasetMeta.getType(), classLoader, classLoaderProvider);
-    return (T) type.getDataset(DatasetContext.from(id.getNamespace()), datasetMeta.getSpec(), arguments);
+    DatasetType type = instance.getType(classLoader, classLoaderProvider);
+    return (T) type.getDataset(DatasetContext.from(id.getNamespace()), instance.getMeta().getSpec(), arguments);
   }
 
   @Override
@@ -249,6 +278,53 @@ public class RemoteDatasetFramework implements DatasetFramework {
     // no-op. The RemoteDatasetFramework doesn't need to do anything. The lineage should be recorded before this point.
   }
 
+  /**
+   * Returns the cached dataset instance, fetching its {@link DatasetMeta} from the dataset service if it is not cached.
+   * Returns {@code null} if the instance does not exist. Missing instances are not cached, so that instances
+   * created by other processes are visible immediately. An instance fetched while the cache is invalidated is
+   * returned but not cached, since it might have been fetched before the change that caused the invalidation.
+   */
+  @Nullable
+  private CachedInstance getInstance(DatasetId datasetInstanceId) throws DatasetManagementException {
+    // the dataset service authorizes the access for the current principal, hence it is part of the key
+    InstanceCacheKey key = new InstanceCacheKey(authenticationContext.getPrincipal().getName(), datasetInstanceId);
+    CachedInstance instance = instanceCache.getIfPresent(key);
+    if (instance != null) {
+      return instance;
+    }
+    long generation = instanceCacheGeneration.get();
+    DatasetMeta meta = clientCache.getUnchecked(datasetInstanceId.getParent())
+      .getInstance(datasetInstanceId.getEntityName());
+    if (meta == null) {
+      return null;
+    }
+    instance = new CachedInstance(meta);
+    if (instanceCacheGeneration.get() == generation) {
+      instanceCache.put(key, instance);
+      // Remove the entry if the cache was invalidated while it was being added
+      if (instanceCacheGeneration.get() != generation) {
+        instanceCache.asMap().remove(key, instance);
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Removes the given dataset instance from the cache.
+   */
+  private void invalidate(DatasetId datasetInstanceId) {
+    instanceCacheGeneration.incrementAndGet();
+    instanceCache.asMap().keySet().removeIf(key -> key.getDatasetId().equals(datasetInstanceId));
+  }
+
+  /**
+   * Removes all dataset instances of the given namespace from the cache.
+   */
+  private void invalidate(NamespaceId namespaceId) {
+    instanceCacheGeneration.incrementAndGet();
+    instanceCache.asMap().keySet().removeIf(key -> key.getDatasetId().getParent().equals(namespaceId));
+  }
+
   private Location createDeploymentJar(Class<?> clz) throws IOException {
     File tempDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
                             cConf.get(Constants.AppFabric.TEMP_DIR)).getAbsoluteFile();
@@ -345,10 +421,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
                                            @Nullable ClassLoader classLoader,
                                            DatasetClassLoaderProvider classLoaderProvider) {
 
-    if (classLoader == null) {
-      classLoader = Objects.firstNonNull(Thread.currentThread().getContextClassLoader(), getClass().getClassLoader());
-    }
-
+    classLoader = getParentClassLoader(classLoader);
     DatasetDefinitionRegistry registry = registryFactory.create();
     for (DatasetModuleMeta moduleMeta : datasetTypeMeta.getModules()) {
       // adding dataset module jar to classloader
@@ -374,4 +447,94 @@ public class RemoteDatasetFramework implements DatasetFramework {
     // for that last module.
     return (T) new DatasetType(registry.get(datasetTypeMeta.getName()), classLoader);
   }
+
+  private ClassLoader getParentClassLoader(@Nullable ClassLoader classLoader) {
+    if (classLoader != null) {
+      return classLoader;
+    }
+    return Objects.firstNonNull(Thread.currentThread().getContextClassLoader(), getClass().getClassLoader());
+  }
+
+  /**
+   * A dataset instance in the cache. Besides the {@link DatasetMeta}, it keeps the {@link DatasetType} created
+   * for the last parent {@link ClassLoader} and {@link DatasetClassLoaderProvider} used to get the dataset,
+   * so that the dataset module classloaders are not recreated if the same ones are used again.
+   */
+  private final class CachedInstance {
+
+    private final DatasetMeta meta;
+    private volatile CachedType cachedType;
+
+    private CachedInstance(DatasetMeta meta) {
+      this.meta = meta;
+    }
+
+    DatasetMeta getMeta() {
+      return meta;
+    }
+
+    DatasetType getType(@Nullable ClassLoader classLoader, DatasetClassLoaderProvider classLoaderProvider) {
+      ClassLoader parentClassLoader = getParentClassLoader(classLoader);
+      CachedType type = cachedType;
+      if (type != null && type.parentClassLoader == parentClassLoader
+        && type.classLoaderProvider == classLoaderProvider) {
+        return type.type;
+      }
+      DatasetType datasetType = RemoteDatasetFramework.this.getType(meta.getType(), parentClassLoader,
+                                                                    classLoaderProvider);
+      cachedType = new CachedType(parentClassLoader, classLoaderProvider, datasetType);
+      return datasetType;
+    }
+  }
+
+  /**
+   * A {@link DatasetType} with the parent {@link ClassLoader} and {@link DatasetClassLoaderProvider} it was
+   * created with.
+   */
+  private static final class CachedType {
+    private final ClassLoader parentClassLoader;
+    private final DatasetClassLoaderProvider classLoaderProvider;
+    private final DatasetType type;
+
+    private CachedType(ClassLoader parentClassLoader, DatasetClassLoaderProvider classLoaderProvider,
+                       DatasetType type) {
+      this.parentClassLoader = parentClassLoader;
+      this.classLoaderProvider = classLoaderProvider;
+      this.type = type;
+    }
+  }
+
+  /**
+   * Key of the dataset instance cache.
+   */
+  private static final class InstanceCacheKey {
+    private final String principal;
+    private final DatasetId datasetId;
+
+    private InstanceCacheKey(String principal, DatasetId datasetId) {
+      this.principal = principal;
+      this.datasetId = datasetId;
+    }
+
+    DatasetId getDatasetId() {
+      return datasetId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      InstanceCacheKey that = (InstanceCacheKey) o;
+      return principal.equals(that.principal) && datasetId.equals(that.datasetId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(principal, datasetId);
+    }
+  }
 }
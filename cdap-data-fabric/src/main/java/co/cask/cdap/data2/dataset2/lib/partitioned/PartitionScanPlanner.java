@@ -0,0 +1,270 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.partitioned;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.PartitionFilter;
+import co.cask.cdap.api.dataset.lib.Partitioning;
+import co.cask.cdap.api.dataset.lib.Partitioning.FieldType;
+import co.cask.cdap.api.dataset.table.Scan;
+import co.cask.cdap.common.utils.ImmutablePair;
+import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
+import com.google.common.annotations.VisibleForTesting;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Plans the scans of the partitions table for a {@link PartitionFilter}.
+ *
+ * A row key of the partitions table is the concatenation of the values of the partitioning fields, separated
+ * by a \0 byte. The planner walks the fields in the order of the {@link Partitioning}:
+ * <ul>
+ *   <li>A single value condition is appended to the row key prefix of every scan.</li>
+ *   <li>A bounded range condition on an {@link FieldType#INT} or {@link FieldType#LONG} field is expanded
+ *   into one row key prefix per value, as long as the total number of scans stays within {@link #MAX_SCANS}.</li>
+ *   <li>Any other range condition ends the prefixes, and is turned into start and stop keys of each scan.</li>
+ * </ul>
+ * Single value conditions on the fields that follow the prefixes are pushed down to the table with a
+ * {@link FuzzyRowFilter}, as long as the position of the field in the row key is known. The scans
+ * may still return rows that do not match the filter, hence the caller must match the partition keys.
+ */
+final class PartitionScanPlanner {
+
+  @VisibleForTesting
+  static final int MAX_SCANS = 100;
+
+  private static final byte[] DELIMITER = { 0 };
+  private static final byte[] PREFIX_END = { 1 };
+
+  private PartitionScanPlanner() {
+  }
+
+  /**
+   * Returns the scans that together cover all partitions matching the given filter, in row key order.
+   */
+  static List<Scan> plan(Partitioning partitioning, @Nullable PartitionFilter filter) {
+    if (filter == null) {
+      return Collections.singletonList(new Scan(null, null));
+    }
+
+    // a null prefix has no fields. It is different from a prefix with an empty string field.
+    List<byte[]> prefixes = Collections.singletonList(null);
+    List<Map.Entry<String, FieldType>> fields = new ArrayList<>(partitioning.getFields().entrySet());
+    int fieldIdx = 0;
+    for (; fieldIdx < fields.size(); fieldIdx++) {
+      String fieldName = fields.get(fieldIdx).getKey();
+      FieldType fieldType = fields.get(fieldIdx).getValue();
+      PartitionFilter.Condition<? extends Comparable> condition = filter.getCondition(fieldName);
+      if (condition == null) {
+        break;
+      }
+      List<byte[]> values;
+      if (condition.isSingleValue()) {
+        values = Collections.singletonList(toBytes(condition.getValue(), fieldName, fieldType, "Value"));
+      } else {
+        values = enumerate(condition, fieldName, fieldType, MAX_SCANS / prefixes.size());
+        if (values == null) {
+          break;
+        }
+      }
+      List<byte[]> newPrefixes = new ArrayList<>(prefixes.size() * values.size());
+      for (byte[] prefix : prefixes) {
+        for (byte[] value : values) {
+          newPrefixes.add(append(prefix, value));
+        }
+      }
+      prefixes = newPrefixes;
+      if (prefixes.isEmpty()) {
+        // an empty range matches no partitions
+        return Collections.emptyList();
+      }
+    }
+
+    // the remaining fields bound the start and stop keys of each prefix
+    byte[] startSuffix = null;
+    byte[] stopSuffix = null;
+    if (fieldIdx < fields.size()) {
+      startSuffix = generateStartSuffix(filter, fields, fieldIdx);
+      stopSuffix = generateStopSuffix(filter, fields, fieldIdx);
+    }
+    List<Scan> scans = new ArrayList<>(prefixes.size());
+    for (byte[] prefix : prefixes) {
+      byte[] startKey = startSuffix == null ? prefix : append(prefix, startSuffix);
+      byte[] stopKey;
+      if (stopSuffix != null) {
+        stopKey = append(prefix, stopSuffix);
+      } else {
+        stopKey = prefix == null ? null : Bytes.concat(prefix, PREFIX_END);
+      }
+      scans.add(new Scan(startKey, stopKey, createFuzzyFilter(filter, fields, fieldIdx, prefix)));
+    }
+    return scans;
+  }
+
+  /**
+   * Returns the encoded values of a range condition, or {@code null} if the range cannot be enumerated
+   * into at most the given number of values.
+   */
+  @Nullable
+  private static List<byte[]> enumerate(PartitionFilter.Condition<? extends Comparable> condition,
+                                        String fieldName, FieldType fieldType, int maxValues) {
+    if (condition.getLower() == null || condition.getUpper() == null
+      || (fieldType != FieldType.INT && fieldType != FieldType.LONG)) {
+      return null;
+    }
+    // validates the bounds
+    toBytes(condition.getLower(), fieldName, fieldType, "Lower bound");
+    toBytes(condition.getUpper(), fieldName, fieldType, "Upper bound");
+
+    long lower = ((Number) condition.getLower()).longValue();
+    long upper = ((Number) condition.getUpper()).longValue();
+    if (upper <= lower) {
+      return Collections.emptyList();
+    }
+    if (upper - lower > maxValues || upper - lower < 0) {
+      return null;
+    }
+    List<byte[]> values = new ArrayList<>((int) (upper - lower));
+    for (long value = lower; value < upper; value++) {
+      values.add(fieldType == FieldType.INT
+                   ? FieldTypes.toBytes((int) value, fieldType) : FieldTypes.toBytes(value, fieldType));
+    }
+    return values;
+  }
+
+  /**
+   * Generates the start key of the fields starting at the given index, from the lower bounds of their conditions.
+   * Returns {@code null} if the first of these fields has no lower bound.
+   */
+  @Nullable
+  private static byte[] generateStartSuffix(PartitionFilter filter, List<Map.Entry<String, FieldType>> fields,
+                                            int fromIdx) {
+    byte[] suffix = null;
+    for (int i = fromIdx; i < fields.size(); i++) {
+      String fieldName = fields.get(i).getKey();
+      PartitionFilter.Condition<? extends Comparable> condition = filter.getCondition(fieldName);
+      if (condition == null || condition.getLower() == null) {
+        break; // this field has no lower bound; we can't include any more fields in the start key
+      }
+      suffix = append(suffix, toBytes(condition.getLower(), fieldName, fields.get(i).getValue(), "Lower bound"));
+    }
+    return suffix;
+  }
+
+  /**
+   * Generates the stop key of the fields starting at the given index, from the upper bound of the first condition.
+   * Returns {@code null} if that condition has no upper bound.
+   */
+  @Nullable
+  private static byte[] generateStopSuffix(PartitionFilter filter, List<Map.Entry<String, FieldType>> fields,
+                                           int fromIdx) {
+    String fieldName = fields.get(fromIdx).getKey();
+    PartitionFilter.Condition<? extends Comparable> condition = filter.getCondition(fieldName);
+    if (condition == null || condition.getUpper() == null) {
+      return null;
+    }
+    // the first field that is not part of the prefixes always has a range condition
+    return toBytes(condition.getUpper(), fieldName, fields.get(fromIdx).getValue(), "Upper bound");
+  }
+
+  /**
+   * Creates a {@link FuzzyRowFilter} for the single value conditions of the fields starting at the given index,
+   * or {@code null} if there is none whose position in the row key is known.
+   */
+  @Nullable
+  private static FuzzyRowFilter createFuzzyFilter(PartitionFilter filter, List<Map.Entry<String, FieldType>> fields,
+                                                  int fromIdx, @Nullable byte[] prefix) {
+    ByteArrayOutputStream key = new ByteArrayOutputStream();
+    ByteArrayOutputStream mask = new ByteArrayOutputStream();
+    if (prefix != null) {
+      key.write(prefix, 0, prefix.length);
+      for (int i = 0; i < prefix.length; i++) {
+        mask.write(0);
+      }
+    }
+    int fixedLength = 0;
+    boolean lastFixed = false;
+    for (int i = fromIdx; i < fields.size(); i++) {
+      if (prefix != null || i > fromIdx) {
+        // the delimiter is always \0. Matching it after a value prevents matching a longer string value.
+        key.write(0);
+        mask.write(0);
+        if (lastFixed) {
+          fixedLength = key.size();
+        }
+      }
+      String fieldName = fields.get(i).getKey();
+      FieldType fieldType = fields.get(i).getValue();
+      PartitionFilter.Condition<? extends Comparable> condition = filter.getCondition(fieldName);
+      if (condition != null && condition.isSingleValue()) {
+        byte[] value = toBytes(condition.getValue(), fieldName, fieldType, "Value");
+        key.write(value, 0, value.length);
+        for (int j = 0; j < value.length; j++) {
+          mask.write(0);
+        }
+        fixedLength = key.size();
+        lastFixed = true;
+        continue;
+      }
+      lastFixed = false;
+      // without a single value, only fixed size fields have a known length
+      int length;
+      if (fieldType == FieldType.INT) {
+        length = Bytes.SIZEOF_INT;
+      } else if (fieldType == FieldType.LONG) {
+        length = Bytes.SIZEOF_LONG;
+      } else {
+        break;
+      }
+      for (int j = 0; j < length; j++) {
+        key.write(0);
+        mask.write(1);
+      }
+    }
+    if (fixedLength == 0) {
+      return null;
+    }
+    byte[] fuzzyKey = new byte[fixedLength];
+    byte[] fuzzyMask = new byte[fixedLength];
+    System.arraycopy(key.toByteArray(), 0, fuzzyKey, 0, fixedLength);
+    System.arraycopy(mask.toByteArray(), 0, fuzzyMask, 0, fixedLength);
+    return new FuzzyRowFilter(Collections.singletonList(ImmutablePair.of(fuzzyKey, fuzzyMask)));
+  }
+
+  private static byte[] toBytes(Comparable value, String fieldName, FieldType fieldType, String bound) {
+    try {
+      fieldType.validate(value);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(String.format(
+        "Invalid partition filter: %s for field '%s' is incompatible with the partitioning: %s",
+        bound, fieldName, e.getMessage()));
+    }
+    return FieldTypes.toBytes(value, fieldType);
+  }
+
+  /**
+   * Appends a field value to a row key prefix, separated by the delimiter unless the prefix has no fields.
+   */
+  private static byte[] append(@Nullable byte[] prefix, byte[] value) {
+    return prefix == null ? value : Bytes.concat(prefix, DELIMITER, value);
+  }
+}
@@ -50,6 +50,7 @@ import co.cask.cdap.api.dataset.lib.Partitioning.FieldType;
 import co.cask.cdap.api.dataset.lib.partitioned.PartitionKeyCodec;
 import co.cask.cdap.api.dataset.table.Put;
 import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scan;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Locations;
@@ -757,41 +758,51 @@ public class PartitionedFileSetDataset extends AbstractDataset
   // if decodeMetadata is false, null is passed as the PartitionMetadata to the PartitionConsumer,
   // for efficiency reasons, since the metadata is not always needed
   protected void getPartitions(@Nullable PartitionFilter filter, PartitionConsumer consumer, boolean decodeMetadata) {
-    byte[] startKey = generateStartKey(filter);
-    byte[] endKey = generateStopKey(filter);
-    getPartitions(filter, consumer, decodeMetadata, startKey, endKey, Long.MAX_VALUE);
+    // the filter is pushed down into the key ranges of the scans, and into a fuzzy row filter where possible
+    getPartitions(filter, consumer, decodeMetadata, PartitionScanPlanner.plan(partitioning, filter), Long.MAX_VALUE);
   }
 
   private void getPartitions(@Nullable PartitionFilter filter, PartitionConsumer consumer, boolean decodeMetadata,
                              @Nullable byte[] startKey, @Nullable byte[] endKey, long limit) {
+    getPartitions(filter, consumer, decodeMetadata, Collections.singletonList(new Scan(startKey, endKey)), limit);
+  }
+
+  private void getPartitions(@Nullable PartitionFilter filter, PartitionConsumer consumer, boolean decodeMetadata,
+                             List<Scan> scans, long limit) {
     long count = 0L;
-    try (Scanner scanner = partitionsTable.scan(startKey, endKey)) {
-      while (count < limit) {
-        Row row = scanner.next();
-        if (row == null) {
-          break;
-        }
-        PartitionKey key;
-        try {
-          key = parseRowKey(row.getRow(), partitioning);
-        } catch (IllegalArgumentException e) {
-          LOG.debug(String.format("Failed to parse row key for partitioned file set '%s': %s",
-                                  getName(), Bytes.toStringBinary(row.getRow())));
-          continue;
-        }
-        if (filter != null && !filter.match(key)) {
-          continue;
-        }
-        byte[] pathBytes = row.get(RELATIVE_PATH);
-        if (pathBytes != null) {
-          consumer.consume(key, Bytes.toString(pathBytes), decodeMetadata ? metadataFromRow(row) : null);
-        }
-        count++;
+    for (Scan scan : scans) {
+      if (count >= limit) {
+        break;
       }
-      if (count == 0) {
-        warnIfInvalidPartitionFilter(filter, partitioning);
+      try (Scanner scanner = partitionsTable.scan(scan)) {
+        while (count < limit) {
+          Row row = scanner.next();
+          if (row == null) {
+            break;
+          }
+          PartitionKey key;
+          try {
+            key = parseRowKey(row.getRow(), partitioning);
+          } catch (IllegalArgumentException e) {
+            LOG.debug(String.format("Failed to parse row key for partitioned file set '%s': %s",
+                                    getName(), Bytes.toStringBinary(row.getRow())));
+            continue;
+          }
+          // the scans may include partitions that don't match the filter
+          if (filter != null && !filter.match(key)) {
+            continue;
+          }
+          byte[] pathBytes = row.get(RELATIVE_PATH);
+          if (pathBytes != null) {
+            consumer.consume(key, Bytes.toString(pathBytes), decodeMetadata ? metadataFromRow(row) : null);
+          }
+          count++;
+        }
       }
     }
+    if (count == 0) {
+      warnIfInvalidPartitionFilter(filter, partitioning);
+    }
   }
 
   private PartitionMetadata metadataFromRow(Row row) {
@@ -1209,103 +1220,6 @@ public class PartitionedFileSetDataset extends AbstractDataset
     return rowKey;
   }
 
-  private byte[] generateStartKey(PartitionFilter filter) {
-    if (null == filter) {
-      return null;
-    }
-    // validate partition filter, convert values, and compute size of output
-    Map<String, FieldType> partitionFields = partitioning.getFields();
-    int totalSize = 0;
-    ArrayList<byte[]> values = Lists.newArrayListWithCapacity(partitionFields.size());
-    for (Map.Entry<String, FieldType> entry : partitionFields.entrySet()) {
-      String fieldName = entry.getKey();
-      FieldType fieldType = entry.getValue();
-      PartitionFilter.Condition<? extends Comparable> condition = filter.getCondition(fieldName);
-      if (condition == null) {
-        break; // this field is not present; we can't include any more fields in the start key
-      }
-      Comparable lowerValue = condition.getLower();
-      if (lowerValue == null) {
-        break; // this field has no lower bound; we can't include any more fields in the start key
-      }
-      try {
-        fieldType.validate(lowerValue);
-      } catch (IllegalArgumentException e) {
-        throw new IllegalArgumentException(String.format(
-          "Invalid partition filter: Lower bound for field '%s' is incompatible with the partitioning: %s",
-          fieldName, e.getMessage()));
-      }
-      byte[] bytes = FieldTypes.toBytes(lowerValue, fieldType);
-      totalSize += bytes.length;
-      values.add(bytes);
-    }
-    if (values.isEmpty()) {
-      return null;
-    }
-    totalSize += values.size() - 1; // one \0 between each of the fields
-    byte[] startKey = new byte[totalSize];
-    int offset = 0;
-    for (byte[] bytes : values) {
-      System.arraycopy(bytes, 0, startKey, offset, bytes.length);
-      offset += bytes.length + 1; // this leaves a \0 byte after the value
-    }
-    return startKey;
-  }
-
-  private byte[] generateStopKey(PartitionFilter filter) {
-    if (null == filter) {
-      return null;
-    }
-    // validate partition filter, convert values, and compute size of output
-    Map<String, FieldType> partitionFields = partitioning.getFields();
-    int totalSize = 0;
-    boolean allSingleValue = true;
-    ArrayList<byte[]> values = Lists.newArrayListWithCapacity(partitionFields.size());
-    for (Map.Entry<String, FieldType> entry : partitionFields.entrySet()) {
-      String fieldName = entry.getKey();
-      FieldType fieldType = entry.getValue();
-      PartitionFilter.Condition<? extends Comparable> condition = filter.getCondition(fieldName);
-      if (condition == null) {
-        break; // this field is not present; we can't include any more fields in the stop key
-      }
-      Comparable upperValue = condition.getUpper();
-      if (upperValue == null) {
-        break; // this field is not present; we can't include any more fields in the stop key
-      }
-      try {
-        fieldType.validate(upperValue);
-      } catch (IllegalArgumentException e) {
-        throw new IllegalArgumentException(String.format(
-          "Invalid partition filter: Upper bound for field '%s' is incompatible with the partitioning: %s",
-          fieldName, e.getMessage()));
-      }
-      byte[] bytes = FieldTypes.toBytes(upperValue, fieldType);
-      totalSize += bytes.length;
-      values.add(bytes);
-      if (!condition.isSingleValue()) {
-        allSingleValue = false;
-        break; // upper bound for this field, following fields don't matter
-      }
-    }
-    if (values.isEmpty()) {
-      return null;
-    }
-    totalSize += values.size() - 1; // one \0 between each of the fields
-    if (allSingleValue) {
-      totalSize++; // in this case the start and stop key are equal, we append one \1 to ensure the scan is not empty
-    }
-    byte[] stopKey = new byte[totalSize];
-    int offset = 0;
-    for (byte[] bytes : values) {
-      System.arraycopy(bytes, 0, stopKey, offset, bytes.length);
-      offset += bytes.length + 1; // this leaves a \0 byte after the value
-      if (allSingleValue && offset == stopKey.length) {
-        stopKey[offset - 1] = 1; // see above - we \1 instead of \0 at the end, to make sure scan is not empty
-      }
-    }
-    return stopKey;
-  }
-
   @VisibleForTesting
   static PartitionKey parseRowKey(byte[] rowKey, Partitioning partitioning) {
     PartitionKey.Builder builder = PartitionKey.builder();
@@ -35,6 +35,7 @@ public final class MetadataMessage {
     FIELD_LINEAGE,
     USAGE,
     WORKFLOW_TOKEN,
+    WORKFLOW_TOKEN_CHANGES,
     WORKFLOW_STATE,
     METADATA_OPERATION,
     DATASET_OPERATION,
@@ -214,6 +214,7 @@ public final class StoreDefinition {
     public static final StructuredTableId APP_DATA_TABLE = new StructuredTableId("app_data");
     public static final StructuredTableId PLUGIN_DATA_TABLE = new StructuredTableId("plugin_data");
     public static final StructuredTableId UNIV_PLUGIN_DATA_TABLE = new StructuredTableId("universal_plugin_data");
+    public static final StructuredTableId CHANGE_MARKER_TABLE = new StructuredTableId("artifact_change_marker");
 
     public static final String NAMESPACE_FIELD = "namespace";
     public static final String ARTIFACT_NAMESPACE_FIELD = "artifact_namespace";
@@ -227,6 +228,7 @@ public final class StoreDefinition {
     public static final String PLUGIN_TYPE_FIELD = "plugin_type";
     public static final String PLUGIN_NAME_FIELD = "plugin_name";
     public static final String PLUGIN_DATA_FIELD = "plugin_data";
+    public static final String CHANGE_ID_FIELD = "change_id";
 
     // Artifact Data table
     public static final StructuredTableSpecification ARTIFACT_DATA_SPEC = new StructuredTableSpecification.Builder()
@@ -283,6 +285,17 @@ public final class StoreDefinition {
                          ARTIFACT_NAMESPACE_FIELD, ARTIFACT_NAME_FIELD, ARTIFACT_VER_FIELD)
         .build();
 
+    // Change Marker table, for the id of the last change made to the plugins of each artifact
+    public static final StructuredTableSpecification CHANGE_MARKER_SPEC =
+      new StructuredTableSpecification.Builder()
+        .withId(CHANGE_MARKER_TABLE)
+        .withFields(Fields.stringType(ARTIFACT_NAMESPACE_FIELD),
+                    Fields.stringType(ARTIFACT_NAME_FIELD),
+                    Fields.stringType(ARTIFACT_VER_FIELD),
+                    Fields.longType(CHANGE_ID_FIELD))
+        .withPrimaryKeys(ARTIFACT_NAMESPACE_FIELD, ARTIFACT_NAME_FIELD, ARTIFACT_VER_FIELD)
+        .build();
+
     public static void createTables(StructuredTableAdmin tableAdmin,
                                     boolean overWrite) throws IOException, TableAlreadyExistsException {
       if (overWrite || tableAdmin.getSpecification(ARTIFACT_DATA_TABLE) == null) {
@@ -297,6 +310,9 @@ public final class StoreDefinition {
       if (overWrite || tableAdmin.getSpecification(UNIV_PLUGIN_DATA_TABLE) == null) {
         tableAdmin.create(UNIV_PLUGIN_DATA_SPEC);
       }
+      if (overWrite || tableAdmin.getSpecification(CHANGE_MARKER_TABLE) == null) {
+        tableAdmin.create(CHANGE_MARKER_SPEC);
+      }
     }
   }
 
@@ -392,7 +408,9 @@ public final class StoreDefinition {
     public static final StructuredTableId APPLICATION_SPECIFICATIONS = new StructuredTableId("application_specs");
     public static final StructuredTableId WORKFLOW_NODE_STATES = new StructuredTableId("workflow_node_states");
     public static final StructuredTableId RUN_RECORDS = new StructuredTableId("run_records");
+    public static final StructuredTableId RUN_RECORDS_TIME_INDEX = new StructuredTableId("run_records_time_index");
     public static final StructuredTableId WORKFLOWS = new StructuredTableId("workflows");
+    public static final StructuredTableId WORKFLOW_TOKEN_DELTAS = new StructuredTableId("workflow_token_deltas");
     public static final StructuredTableId PROGRAM_COUNTS = new StructuredTableId("program_counts");
     // TODO: CDAP-14876 Move this table into it's own store, along with associated methods
     public static final StructuredTableId SUBSCRIBER_STATES = new StructuredTableId("subscriber_state");
@@ -408,8 +426,12 @@ public final class StoreDefinition {
     public static final String NODE_STATE_DATA = "node_state_data";
     public static final String RUN_STATUS = "run_status";
     public static final String RUN_START_TIME = "run_start_time";
+    public static final String RUN_STOP_TIME = "run_stop_time";
+    public static final String TIME_BUCKET = "time_bucket";
     public static final String RUN_RECORD_DATA = "run_record_data";
     public static final String WORKFLOW_DATA = "workflow_data";
+    public static final String WORKFLOW_TOKEN_DELTA_SEQ = "workflow_token_delta_seq";
+    public static final String WORKFLOW_TOKEN_DELTA_COUNT = "workflow_token_delta_count";
     public static final String COUNT_TYPE = "count_type";
     public static final String COUNTS = "counts";
     public static final String SUBSCRIBER_TOPIC = "subscriber_topic";
@@ -458,6 +480,23 @@ public final class StoreDefinition {
                          PROGRAM_FIELD, RUN_START_TIME, RUN_FIELD)
         .build();
 
+    public static final StructuredTableSpecification RUN_RECORDS_TIME_INDEX_SPEC =
+      new StructuredTableSpecification.Builder()
+        .withId(RUN_RECORDS_TIME_INDEX)
+        .withFields(Fields.stringType(RUN_STATUS),
+                    Fields.longType(TIME_BUCKET),
+                    Fields.stringType(NAMESPACE_FIELD),
+                    Fields.stringType(APPLICATION_FIELD),
+                    Fields.stringType(VERSION_FIELD),
+                    Fields.stringType(PROGRAM_TYPE_FIELD),
+                    Fields.stringType(PROGRAM_FIELD),
+                    Fields.stringType(RUN_FIELD),
+                    Fields.longType(RUN_START_TIME),
+                    Fields.longType(RUN_STOP_TIME))
+        .withPrimaryKeys(RUN_STATUS, TIME_BUCKET, NAMESPACE_FIELD, APPLICATION_FIELD, VERSION_FIELD,
+                         PROGRAM_TYPE_FIELD, PROGRAM_FIELD, RUN_FIELD)
+        .build();
+
     public static final StructuredTableSpecification WORKFLOWS_SPEC =
       new StructuredTableSpecification.Builder()
         .withId(WORKFLOWS)
@@ -467,11 +506,28 @@ public final class StoreDefinition {
                     Fields.stringType(PROGRAM_TYPE_FIELD),
                     Fields.stringType(PROGRAM_FIELD),
                     Fields.stringType(RUN_FIELD),
-                    Fields.stringType(WORKFLOW_DATA))
+                    Fields.stringType(WORKFLOW_DATA),
+                    Fields.longType(WORKFLOW_TOKEN_DELTA_COUNT))
         .withPrimaryKeys(
           NAMESPACE_FIELD, APPLICATION_FIELD, VERSION_FIELD, PROGRAM_TYPE_FIELD, PROGRAM_FIELD, RUN_FIELD)
         .build();
 
+    public static final StructuredTableSpecification WORKFLOW_TOKEN_DELTAS_SPEC =
+      new StructuredTableSpecification.Builder()
+        .withId(WORKFLOW_TOKEN_DELTAS)
+        .withFields(Fields.stringType(NAMESPACE_FIELD),
+                    Fields.stringType(APPLICATION_FIELD),
+                    Fields.stringType(VERSION_FIELD),
+                    Fields.stringType(PROGRAM_TYPE_FIELD),
+                    Fields.stringType(PROGRAM_FIELD),
+                    Fields.stringType(RUN_FIELD),
+                    Fields.longType(WORKFLOW_TOKEN_DELTA_SEQ),
+                    Fields.stringType(WORKFLOW_DATA))
+        .withPrimaryKeys(
+          NAMESPACE_FIELD, APPLICATION_FIELD, VERSION_FIELD, PROGRAM_TYPE_FIELD, PROGRAM_FIELD, RUN_FIELD,
+          WORKFLOW_TOKEN_DELTA_SEQ)
+        .build();
+
     public static final StructuredTableSpecification PROGRAM_COUNTS_SPEC =
       new StructuredTableSpecification.Builder()
         .withId(PROGRAM_COUNTS)
@@ -506,9 +562,15 @@ public final class StoreDefinition {
       if (overWrite || tableAdmin.getSpecification(RUN_RECORDS) == null) {
         tableAdmin.create(RUN_RECORDS_SPEC);
       }
+      if (overWrite || tableAdmin.getSpecification(RUN_RECORDS_TIME_INDEX) == null) {
+        tableAdmin.create(RUN_RECORDS_TIME_INDEX_SPEC);
+      }
       if (overWrite || tableAdmin.getSpecification(WORKFLOWS) == null) {
         tableAdmin.create(WORKFLOWS_SPEC);
       }
+      if (overWrite || tableAdmin.getSpecification(WORKFLOW_TOKEN_DELTAS) == null) {
+        tableAdmin.create(WORKFLOW_TOKEN_DELTAS_SPEC);
+      }
       if (overWrite || tableAdmin.getSpecification(PROGRAM_COUNTS) == null) {
         tableAdmin.create(PROGRAM_COUNTS_SPEC);
       }
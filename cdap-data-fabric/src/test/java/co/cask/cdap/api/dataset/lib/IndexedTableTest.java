@@ -33,6 +33,8 @@ import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Test;
 
+import java.util.Collections;
+
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -828,6 +830,174 @@ public class IndexedTableTest {
       dsFrameworkUtil.deleteInstance(incrTabInstance);
     }
   }
+
+  @Test
+  public void testBatchedIndexReads() throws Exception {
+    DatasetId batchedTabInstance = DatasetFrameworkTestUtil.NAMESPACE_ID.dataset("batchedtab");
+    dsFrameworkUtil.createInstance("indexedTable", batchedTabInstance, DatasetProperties.builder()
+      .add(IndexedTable.INDEX_COLUMNS_CONF_KEY, idxColString)
+      .add(IndexedTable.INDEX_FETCH_SIZE_CONF_KEY, "3")
+      .build());
+    final IndexedTable bTable = dsFrameworkUtil.getInstance(batchedTabInstance);
+    try {
+      // an invalid fetch size in the runtime arguments is rejected
+      try {
+        dsFrameworkUtil.getInstance(batchedTabInstance,
+                                    Collections.singletonMap(IndexedTable.INDEX_FETCH_SIZE_CONF_KEY, "ten"));
+        fail("Expected IllegalArgumentException for an invalid fetch size");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+
+      TransactionExecutor tx = dsFrameworkUtil.newTransactionExecutor(bTable);
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          // rows 0 to 9 are indexed by idx1 for even rows and idx2 for odd rows
+          for (int i = 0; i < 10; i++) {
+            bTable.put(new Put(Bytes.toBytes("row" + i)).add(idxCol, i % 2 == 0 ? idx1 : idx2).add(valCol, i));
+          }
+        }
+      });
+
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          // reads span multiple batches, and preserve the index order
+          Scanner scanner = bTable.readByIndex(idxCol, idx1);
+          try {
+            for (int i = 0; i < 10; i += 2) {
+              Row row = scanner.next();
+              assertNotNull(row);
+              assertArrayEquals(Bytes.toBytes("row" + i), row.getRow());
+              TableAssert.assertColumns(row, colIdxVal, new byte[][]{ idx1, Bytes.toBytes(i) });
+            }
+            assertEmpty(scanner);
+          } finally {
+            scanner.close();
+          }
+
+          // reads a subset of the columns
+          scanner = bTable.scanByIndex(idxCol, idx1, null, new byte[][]{ valCol });
+          try {
+            for (int i = 0; i < 10; i++) {
+              Row row = scanner.next();
+              assertNotNull(row);
+              assertEquals(1, row.getColumns().size());
+              assertEquals(i * 2 % 10 + (i < 5 ? 0 : 1), (int) row.getInt(valCol));
+            }
+            assertEmpty(scanner);
+          } finally {
+            scanner.close();
+          }
+        }
+      });
+    } finally {
+      dsFrameworkUtil.deleteInstance(batchedTabInstance);
+    }
+  }
+
+  @Test
+  public void testCoveringColumns() throws Exception {
+    DatasetId coveringTabInstance = DatasetFrameworkTestUtil.NAMESPACE_ID.dataset("coveringtab");
+    dsFrameworkUtil.createInstance("indexedTable", coveringTabInstance, DatasetProperties.builder()
+      .add(IndexedTable.INDEX_COLUMNS_CONF_KEY, idxColString)
+      .add(IndexedTable.COVERING_COLUMNS_CONF_KEY, Bytes.toString(valCol))
+      .build());
+    final IndexedTable cTable = dsFrameworkUtil.getInstance(coveringTabInstance);
+    final byte[] otherCol = Bytes.toBytes("other");
+    final byte[][] coveredCols = { idxCol, valCol };
+    try {
+      TransactionExecutor tx = dsFrameworkUtil.newTransactionExecutor(cTable);
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          cTable.put(new Put(keyA).add(idxCol, idx1).add(valCol, valA).add(otherCol, valAA));
+          cTable.put(new Put(keyB).add(idxCol, idx1).add(valCol, valB));
+        }
+      });
+
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          // covered reads only return the requested columns
+          Scanner scanner = cTable.readByIndex(idxCol, idx1, coveredCols);
+          try {
+            Row row = scanner.next();
+            TableAssert.assertRow(row, keyA, coveredCols, new byte[][]{ idx1, valA });
+            row = scanner.next();
+            TableAssert.assertRow(row, keyB, coveredCols, new byte[][]{ idx1, valB });
+            assertEmpty(scanner);
+          } finally {
+            scanner.close();
+          }
+          // reads of columns that are not covered go to the data table
+          Row row = readFirst(cTable.readByIndex(idxCol, idx1, new byte[][]{ otherCol }));
+          TableAssert.assertRow(row, keyA, new byte[][]{ otherCol }, new byte[][]{ valAA });
+
+          // update only the covering column, and move row b to another index value
+          cTable.put(keyA, valCol, valC);
+          cTable.put(keyB, idxCol, idx2);
+        }
+      });
+
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          Row row = readFirst(cTable.readByIndex(idxCol, idx1, coveredCols));
+          TableAssert.assertRow(row, keyA, coveredCols, new byte[][]{ idx1, valC });
+          row = readFirst(cTable.scanByIndex(idxCol, idx2, null, coveredCols));
+          TableAssert.assertRow(row, keyB, coveredCols, new byte[][]{ idx2, valB });
+
+          // delete the covering column and swap it back in
+          cTable.delete(keyA, valCol);
+          cTable.compareAndSwap(keyB, valCol, valB, valBB);
+        }
+      });
+
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          Row row = readFirst(cTable.readByIndex(idxCol, idx1, coveredCols));
+          TableAssert.assertRow(row, keyA, new byte[][]{ idxCol }, new byte[][]{ idx1 });
+          row = readFirst(cTable.readByIndex(idxCol, idx2, coveredCols));
+          TableAssert.assertRow(row, keyB, coveredCols, new byte[][]{ idx2, valBB });
+
+          // increments of a covering column update the index
+          cTable.incrementAndGet(keyA, valCol, 5L);
+          try {
+            cTable.increment(keyA, valCol, 1L);
+            fail("Expected IllegalArgumentException performing increment on covering column");
+          } catch (IllegalArgumentException iae) {
+            // expected
+          }
+        }
+      });
+
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          Row row = readFirst(cTable.readByIndex(idxCol, idx1, coveredCols));
+          TableAssert.assertRow(row, keyA, coveredCols, new byte[][]{ idx1, Bytes.toBytes(5L) });
+
+          // deleting the row removes its index entries
+          cTable.delete(keyA);
+          cTable.delete(keyB, idxCol);
+        }
+      });
+
+      tx.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          assertEmpty(cTable.readByIndex(idxCol, idx1, coveredCols));
+          assertEmpty(cTable.readByIndex(idxCol, idx2, coveredCols));
+        }
+      });
+    } finally {
+      dsFrameworkUtil.deleteInstance(coveringTabInstance);
+    }
+  }
+
   /**
    * Asserts that the given scanner contains no more rows.
    */
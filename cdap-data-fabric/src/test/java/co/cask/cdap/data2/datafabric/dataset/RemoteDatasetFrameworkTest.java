@@ -17,6 +17,7 @@
 package co.cask.cdap.data2.datafabric.dataset;
 
 import co.cask.cdap.api.dataset.DatasetManagementException;
+import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.common.conf.CConfigurationUtil;
 import co.cask.cdap.common.conf.Constants;
@@ -49,6 +50,7 @@ import co.cask.cdap.data2.transaction.DelegatingTransactionSystemClientService;
 import co.cask.cdap.data2.transaction.TransactionSystemClientService;
 import co.cask.cdap.explore.client.DiscoveryExploreClient;
 import co.cask.cdap.explore.client.ExploreFacade;
+import co.cask.cdap.proto.id.DatasetId;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
@@ -208,6 +210,22 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
     }
   }
 
+  @Test
+  public void testInstanceCacheInvalidation() throws Exception {
+    DatasetFramework framework = getFramework();
+    DatasetId datasetId = NAMESPACE_ID.dataset("cached");
+    framework.addInstance("table", datasetId, DatasetProperties.builder().add("k", "v1").build());
+    Assert.assertEquals("v1", framework.getDatasetSpec(datasetId).getProperty("k"));
+
+    // updates through the framework must not be hidden by the cached meta
+    framework.updateInstance(datasetId, DatasetProperties.builder().add("k", "v2").build());
+    Assert.assertEquals("v2", framework.getDatasetSpec(datasetId).getProperty("k"));
+
+    framework.deleteInstance(datasetId);
+    Assert.assertFalse(framework.hasInstance(datasetId));
+    Assert.assertNull(framework.getDatasetSpec(datasetId));
+  }
+
   @After
   public void after() {
     Futures.getUnchecked(Services.chainStop(service, opExecutorService, txManager));
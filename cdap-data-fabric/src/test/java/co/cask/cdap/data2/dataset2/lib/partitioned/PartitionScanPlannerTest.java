@@ -0,0 +1,209 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.partitioned;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.PartitionFilter;
+import co.cask.cdap.api.dataset.lib.PartitionKey;
+import co.cask.cdap.api.dataset.lib.Partitioning;
+import co.cask.cdap.api.dataset.table.Scan;
+import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link PartitionScanPlanner}.
+ */
+public class PartitionScanPlannerTest {
+
+  private static final Partitioning PARTITIONING = Partitioning.builder()
+    .addIntField("year")
+    .addIntField("month")
+    .addStringField("type")
+    .addLongField("size")
+    .build();
+
+  private static final List<PartitionKey> KEYS = generateKeys();
+
+  @Test
+  public void testNoFilter() {
+    List<Scan> scans = PartitionScanPlanner.plan(PARTITIONING, null);
+    Assert.assertEquals(1, scans.size());
+    Assert.assertNull(scans.get(0).getStartRow());
+    Assert.assertNull(scans.get(0).getStopRow());
+    Assert.assertNull(scans.get(0).getFilter());
+  }
+
+  @Test
+  public void testLeadingValues() {
+    PartitionFilter filter = PartitionFilter.builder()
+      .addValueCondition("year", 2018)
+      .addValueCondition("month", 3)
+      .build();
+    List<Scan> scans = verifyScans(filter);
+    Assert.assertEquals(1, scans.size());
+    Assert.assertNull(scans.get(0).getFilter());
+  }
+
+  @Test
+  public void testRangeExpansion() {
+    // a range on a leading field followed by a value condition is split into one scan per year
+    PartitionFilter filter = PartitionFilter.builder()
+      .addRangeCondition("year", 2016, 2019)
+      .addValueCondition("month", 7)
+      .build();
+    Assert.assertEquals(3, verifyScans(filter).size());
+
+    // a range that is too large is not expanded
+    filter = PartitionFilter.builder()
+      .addRangeCondition("year", 2016, 2019)
+      .addRangeCondition("month", 1, 12)
+      .addValueCondition("type", "x")
+      .build();
+    Assert.assertEquals(33, verifyScans(filter).size());
+    filter = PartitionFilter.builder()
+      .addRangeCondition("year", 0, PartitionScanPlanner.MAX_SCANS + 1)
+      .build();
+    Assert.assertEquals(1, verifyScans(filter).size());
+
+    // an empty range has no scans
+    filter = PartitionFilter.builder()
+      .addRangeCondition("year", 2018, 2018)
+      .build();
+    Assert.assertTrue(PartitionScanPlanner.plan(PARTITIONING, filter).isEmpty());
+  }
+
+  @Test
+  public void testOpenRanges() {
+    verifyScans(PartitionFilter.builder().addRangeCondition("year", 2017, null).build());
+    verifyScans(PartitionFilter.builder().addRangeCondition("year", null, 2017).build());
+    verifyScans(PartitionFilter.builder()
+                  .addValueCondition("year", 2017)
+                  .addRangeCondition("month", 5, null)
+                  .addRangeCondition("type", "b", null)
+                  .build());
+    verifyScans(PartitionFilter.builder()
+                  .addValueCondition("year", 2017)
+                  .addValueCondition("month", 5)
+                  .addRangeCondition("type", "b", "d")
+                  .addValueCondition("size", 2L)
+                  .build());
+    // empty strings are valid values
+    verifyScans(PartitionFilter.builder()
+                  .addValueCondition("year", 2017)
+                  .addValueCondition("month", 5)
+                  .addValueCondition("type", "")
+                  .build());
+    verifyScans(PartitionFilter.builder()
+                  .addValueCondition("year", 2017)
+                  .addValueCondition("month", 5)
+                  .addRangeCondition("type", "", "b")
+                  .addRangeCondition("size", 1L, null)
+                  .build());
+  }
+
+  @Test
+  public void testFuzzyFilter() {
+    // the month is at a known position, after the fixed size year
+    PartitionFilter filter = PartitionFilter.builder().addValueCondition("month", 2).build();
+    List<Scan> scans = verifyScans(filter);
+    Assert.assertEquals(1, scans.size());
+    Assert.assertTrue(scans.get(0).getFilter() instanceof FuzzyRowFilter);
+    assertOnlyMatchesScanned(filter, scans);
+
+    // the type is at a known position, and must be followed by the delimiter
+    filter = PartitionFilter.builder()
+      .addRangeCondition("year", 2016, null)
+      .addValueCondition("type", "a")
+      .build();
+    scans = verifyScans(filter);
+    Assert.assertTrue(scans.get(0).getFilter() instanceof FuzzyRowFilter);
+    assertOnlyMatchesScanned(filter, scans);
+
+    // the size follows a string field without a value, hence its position is not known
+    scans = verifyScans(PartitionFilter.builder().addValueCondition("size", 1L).build());
+    Assert.assertNull(scans.get(0).getFilter());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidFilter() {
+    PartitionScanPlanner.plan(PARTITIONING, PartitionFilter.builder().addValueCondition("year", 2018L).build());
+  }
+
+  /**
+   * Verifies that the scans planned for the filter include all keys that match the filter.
+   */
+  private List<Scan> verifyScans(PartitionFilter filter) {
+    List<Scan> scans = PartitionScanPlanner.plan(PARTITIONING, filter);
+    for (PartitionKey key : KEYS) {
+      byte[] rowKey = PartitionedFileSetDataset.generateRowKey(key, PARTITIONING);
+      boolean scanned = false;
+      for (Scan scan : scans) {
+        scanned = scanned || isScanned(scan, rowKey);
+      }
+      if (filter.match(key)) {
+        Assert.assertTrue("Key " + key + " matches " + filter + " but is not scanned", scanned);
+      }
+    }
+    return scans;
+  }
+
+  private void assertOnlyMatchesScanned(PartitionFilter filter, List<Scan> scans) {
+    for (PartitionKey key : KEYS) {
+      byte[] rowKey = PartitionedFileSetDataset.generateRowKey(key, PARTITIONING);
+      for (Scan scan : scans) {
+        if (isScanned(scan, rowKey)) {
+          Assert.assertTrue("Key " + key + " does not match " + filter + " but is scanned", filter.match(key));
+        }
+      }
+    }
+  }
+
+  private boolean isScanned(Scan scan, byte[] rowKey) {
+    if (scan.getStartRow() != null && Bytes.compareTo(rowKey, scan.getStartRow()) < 0) {
+      return false;
+    }
+    if (scan.getStopRow() != null && Bytes.compareTo(rowKey, scan.getStopRow()) >= 0) {
+      return false;
+    }
+    return scan.getFilter() == null
+      || ((FuzzyRowFilter) scan.getFilter()).filterRow(rowKey) == FuzzyRowFilter.ReturnCode.INCLUDE;
+  }
+
+  private static List<PartitionKey> generateKeys() {
+    List<PartitionKey> keys = new ArrayList<>();
+    for (int year = 2015; year < 2020; year++) {
+      for (int month = 1; month <= 12; month++) {
+        for (String type : ImmutableList.of("", "a", "ab", "b", "c", "d")) {
+          for (long size = 0; size < 3; size++) {
+            keys.add(PartitionKey.builder()
+                       .addIntField("year", year)
+                       .addIntField("month", month)
+                       .addStringField("type", type)
+                       .addLongField("size", size)
+                       .build());
+          }
+        }
+      }
+    }
+    return keys;
+  }
+}
@@ -20,9 +20,14 @@ import co.cask.cdap.api.data.batch.RecordScannable;
 import co.cask.cdap.api.data.batch.RecordScanner;
 import co.cask.cdap.api.data.batch.Split;
 import co.cask.cdap.api.data.batch.Splits;
+import co.cask.cdap.api.dataset.lib.ObjectMappedTable;
+import co.cask.cdap.api.dataset.table.Table;
+import co.cask.cdap.proto.id.DatasetId;
 import com.google.common.base.Throwables;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.Utilities;
+import org.apache.hadoop.hive.ql.plan.TableScanDesc;
 import org.apache.hadoop.hive.shims.ShimLoader;
 import org.apache.hadoop.io.ObjectWritable;
 import org.apache.hadoop.mapred.FileSplit;
@@ -34,17 +39,23 @@ import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
 
 /**
  * Map reduce input format to read from datasets that implement {@link RecordScannable}.
  */
 public class DatasetInputFormat implements InputFormat<Void, ObjectWritable> {
+  private static final Logger LOG = LoggerFactory.getLogger(DatasetInputFormat.class);
+
   @Override
   public InputSplit[] getSplits(JobConf jobConf, int numSplits) throws IOException {
     try (DatasetAccessor datasetAccessor = new DatasetAccessor(jobConf)) {
@@ -58,7 +69,7 @@ public class DatasetInputFormat implements InputFormat<Void, ObjectWritable> {
         JobContext jobContext = ShimLoader.getHadoopShims().newJobContext(job);
         Path[] tablePaths = FileInputFormat.getInputPaths(jobContext);
 
-        List<Split> dsSplits = recordScannable.getSplits();
+        List<Split> dsSplits = getSplits(recordScannable, getRowKeyRange(jobConf, datasetAccessor.getDatasetId()));
 
         InputSplit[] inputSplits = new InputSplit[dsSplits.size()];
         for (int i = 0; i < dsSplits.size(); i++) {
@@ -69,6 +80,46 @@ public class DatasetInputFormat implements InputFormat<Void, ObjectWritable> {
     }
   }
 
+  /**
+   * Returns the {@link RowKeyRange} pushed down by the {@link DatasetStorageHandler} for the given dataset,
+   * or {@code null} if there is none.
+   */
+  @Nullable
+  private RowKeyRange getRowKeyRange(JobConf jobConf, DatasetId datasetId) throws IOException {
+    String serializedRange = jobConf.get(TableScanDesc.FILTER_OBJECT_CONF_STR);
+    if (serializedRange == null) {
+      return null;
+    }
+    RowKeyRange range;
+    try {
+      range = Utilities.deserializeObject(serializedRange, RowKeyRange.class);
+    } catch (Exception e) {
+      // the pushed down predicate is not evaluated by Hive, hence it cannot be ignored
+      throw new IOException("Unable to deserialize the row key range of dataset " + datasetId, e);
+    }
+    // with multiple datasets in the same query, the range may have been pushed down for a different dataset
+    return datasetId.equals(range.getDatasetId()) ? range : null;
+  }
+
+  private List<Split> getSplits(RecordScannable<?> recordScannable,
+                                @Nullable RowKeyRange range) throws IOException {
+    if (range == null) {
+      return recordScannable.getSplits();
+    }
+    LOG.debug("Reading splits of {}", range);
+    if (range.isEmpty()) {
+      return Collections.emptyList();
+    }
+    if (recordScannable instanceof Table) {
+      return ((Table) recordScannable).getSplits(-1, range.getStart(), range.getStop());
+    }
+    if (recordScannable instanceof ObjectMappedTable) {
+      return ((ObjectMappedTable<?>) recordScannable).getSplits(-1, range.getStart(), range.getStop());
+    }
+    throw new IOException("Unable to restrict the splits of dataset " + range.getDatasetId() +
+                            " of type " + recordScannable.getClass().getName() + " to a row key range.");
+  }
+
   @Override
   public RecordReader<Void, ObjectWritable> getRecordReader(final InputSplit split, JobConf jobConf, Reporter reporter)
     throws IOException {
@@ -23,6 +23,8 @@ import co.cask.cdap.api.data.schema.UnsupportedTypeException;
 import co.cask.cdap.api.dataset.Dataset;
 import co.cask.cdap.api.dataset.DatasetManagementException;
 import co.cask.cdap.api.dataset.DatasetSpecification;
+import co.cask.cdap.api.dataset.lib.ObjectMappedTableProperties;
+import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.common.ServiceUnavailableException;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data.dataset.SystemDatasetInstantiator;
@@ -50,6 +52,7 @@ import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Properties;
+import javax.annotation.Nullable;
 
 /**
  * SerDe to serialize Dataset Objects. It MUST implement the deprecated SerDe interface instead of extending the
@@ -63,6 +66,8 @@ public class DatasetSerDe implements SerDe {
   private ObjectDeserializer deserializer;
   private ObjectSerializer serializer;
   private Schema schema;
+  private DatasetId datasetId;
+  private String rowFieldName;
 
   @Override
   public void initialize(Configuration conf, Properties properties) throws SerDeException {
@@ -91,7 +96,7 @@ public class DatasetSerDe implements SerDe {
     // Hive may call initialize a bunch of times... so remember the schema so we don't instantiate the dataset
     // a bunch of times.
     if (schema == null) {
-      DatasetId datasetId = new DatasetId(namespace, datasetName);
+      datasetId = new DatasetId(namespace, datasetName);
       getDatasetSchema(conf, datasetId);
     }
 
@@ -117,6 +122,11 @@ public class DatasetSerDe implements SerDe {
         String schemaStr = datasetSpec.getProperty("schema");
         if (schemaStr != null) {
           schema = Schema.parseJson(schemaStr);
+          // Table and ObjectMappedTable also have the row key field in the dataset properties
+          rowFieldName = datasetSpec.getProperty(Table.PROPERTY_SCHEMA_ROW_FIELD);
+          if (rowFieldName == null) {
+            rowFieldName = datasetSpec.getProperty(ObjectMappedTableProperties.ROW_KEY_EXPLORE_NAME);
+          }
           return;
         }
       } catch (DatasetManagementException | ServiceUnavailableException e) {
@@ -152,6 +162,23 @@ public class DatasetSerDe implements SerDe {
     }
   }
 
+  /**
+   * Returns the dataset of this SerDe, or {@code null} if it is not known.
+   */
+  @Nullable
+  DatasetId getDatasetId() {
+    return datasetId;
+  }
+
+  /**
+   * Returns the field of the dataset schema that holds the row key, or {@code null} if the dataset does not
+   * have a row key field.
+   */
+  @Nullable
+  Schema.Field getRowKeyField() {
+    return schema == null || rowFieldName == null ? null : schema.getField(rowFieldName);
+  }
+
   @Override
   public Class<? extends Writable> getSerializedClass() {
     return Text.class;
@@ -16,15 +16,21 @@
 
 package co.cask.cdap.hive.datasets;
 
+import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.ConfigurationUtil;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.hive.context.CConfCodec;
+import co.cask.cdap.proto.id.DatasetId;
 import com.google.common.base.Throwables;
 import org.apache.hadoop.hive.ql.metadata.DefaultStorageHandler;
+import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
 import org.apache.hadoop.hive.ql.plan.TableDesc;
+import org.apache.hadoop.hive.serde2.Deserializer;
 import org.apache.hadoop.hive.serde2.SerDe;
 import org.apache.hadoop.mapred.InputFormat;
+import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.OutputFormat;
 import org.apache.hadoop.mapred.SequenceFileOutputFormat;
 import org.slf4j.Logger;
@@ -40,8 +46,14 @@ import java.util.Map;
  * Referred to by string rather than {@code Class.getName()} in {@code ExploreServiceUtils.traceExploreDependencies()}
  * because this class extends a Hive class, which isn't present in the {@code ExploreServiceUtils} class loader.
  * </p>
+ *
+ * <p>
+ * Conditions on the row key of a dataset that has one, such as a Table or an ObjectMappedTable with a schema,
+ * are pushed down to the dataset as a {@link RowKeyRange}, which restricts the splits read by the
+ * {@link DatasetInputFormat}. All other conditions are evaluated by Hive.
+ * </p>
  */
-public class DatasetStorageHandler extends DefaultStorageHandler {
+public class DatasetStorageHandler extends DefaultStorageHandler implements HiveStoragePredicateHandler {
   private static final Logger LOG = LoggerFactory.getLogger(DatasetStorageHandler.class);
 
   @SuppressWarnings("unchecked")
@@ -91,6 +103,26 @@ public class DatasetStorageHandler extends DefaultStorageHandler {
     LOG.debug("Got dataset {} in namespace {} for external table {}", datasetName, namespce, tableDesc.getTableName());
   }
 
+  @Override
+  public DecomposedPredicate decomposePredicate(JobConf jobConf, Deserializer deserializer, ExprNodeDesc predicate) {
+    if (!(deserializer instanceof DatasetSerDe)) {
+      return null;
+    }
+    DatasetSerDe datasetSerDe = (DatasetSerDe) deserializer;
+    DatasetId datasetId = datasetSerDe.getDatasetId();
+    Schema.Field rowField = datasetSerDe.getRowKeyField();
+    if (datasetId == null || rowField == null) {
+      return null;
+    }
+    DecomposedPredicate decomposed = RowKeyPredicateDecomposer.decompose(datasetId, rowField, predicate);
+    if (decomposed != null) {
+      LOG.debug("Pushing down predicate {} as {}, residual predicate is {}",
+                decomposed.pushedPredicate.getExprString(), decomposed.pushedPredicateObject,
+                decomposed.residualPredicate == null ? null : decomposed.residualPredicate.getExprString());
+    }
+    return decomposed;
+  }
+
   private boolean writesEnabled() {
     try {
       CConfiguration cConf = ConfigurationUtil.get(getConf(), Constants.Explore.CCONF_KEY, CConfCodec.INSTANCE);
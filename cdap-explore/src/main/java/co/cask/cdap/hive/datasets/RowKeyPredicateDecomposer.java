@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.hive.datasets;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.proto.id.DatasetId;
+import org.apache.hadoop.hive.ql.index.IndexPredicateAnalyzer;
+import org.apache.hadoop.hive.ql.index.IndexSearchCondition;
+import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler.DecomposedPredicate;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualOrGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualOrLessThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPLessThan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import javax.annotation.Nullable;
+
+/**
+ * Decomposes a Hive predicate into conditions on the row key of a dataset, which are turned into a
+ * {@link RowKeyRange}, and a residual predicate that is left for Hive to evaluate.
+ *
+ * Only conditions that translate into an exact row key range are pushed down. Row keys are compared as bytes,
+ * hence range conditions are only pushed down for string and bytes keys. For int and long keys, whose byte
+ * order differs from the numeric order for negative values, only equality conditions are pushed down.
+ */
+final class RowKeyPredicateDecomposer {
+
+  private static final byte[] ZERO = { 0 };
+
+  private RowKeyPredicateDecomposer() {
+  }
+
+  /**
+   * Decomposes the given predicate.
+   *
+   * @param datasetId the dataset being queried
+   * @param rowField the field of the dataset schema that holds the row key
+   * @param predicate the predicate of the query
+   * @return the decomposed predicate, or {@code null} if no condition can be pushed down
+   */
+  @Nullable
+  static DecomposedPredicate decompose(DatasetId datasetId, Schema.Field rowField, ExprNodeDesc predicate) {
+    Schema keySchema = rowField.getSchema();
+    Schema.Type keyType = keySchema.isNullable() ? keySchema.getNonNullable().getType() : keySchema.getType();
+    if (keyType != Schema.Type.STRING && keyType != Schema.Type.BYTES
+      && keyType != Schema.Type.INT && keyType != Schema.Type.LONG) {
+      return null;
+    }
+
+    IndexPredicateAnalyzer analyzer = new IndexPredicateAnalyzer();
+    // Hive column names are always lower case
+    analyzer.allowColumnName(rowField.getName().toLowerCase(Locale.ENGLISH));
+    analyzer.addComparisonOp(GenericUDFOPEqual.class.getName());
+    if (keyType == Schema.Type.STRING || keyType == Schema.Type.BYTES) {
+      analyzer.addComparisonOp(GenericUDFOPGreaterThan.class.getName());
+      analyzer.addComparisonOp(GenericUDFOPEqualOrGreaterThan.class.getName());
+      analyzer.addComparisonOp(GenericUDFOPLessThan.class.getName());
+      analyzer.addComparisonOp(GenericUDFOPEqualOrLessThan.class.getName());
+    }
+
+    List<IndexSearchCondition> conditions = new ArrayList<>();
+    ExprNodeDesc residual = analyzer.analyzePredicate(predicate, conditions);
+    if (conditions.isEmpty()) {
+      return null;
+    }
+    RowKeyRange range = toRange(datasetId, keyType, conditions);
+    if (range == null) {
+      return null;
+    }
+
+    DecomposedPredicate decomposed = new DecomposedPredicate();
+    decomposed.pushedPredicate = analyzer.translateSearchConditions(conditions);
+    decomposed.pushedPredicateObject = range;
+    decomposed.residualPredicate = (ExprNodeGenericFuncDesc) residual;
+    return decomposed;
+  }
+
+  /**
+   * Returns the intersection of the row key ranges of the given conditions, or {@code null} if any of the
+   * conditions cannot be turned into a row key range.
+   */
+  @Nullable
+  private static RowKeyRange toRange(DatasetId datasetId, Schema.Type keyType,
+                                     List<IndexSearchCondition> conditions) {
+    byte[] start = null;
+    byte[] stop = null;
+    for (IndexSearchCondition condition : conditions) {
+      byte[] key = toRowKey(condition.getConstantDesc().getValue(), keyType);
+      if (key == null) {
+        return null;
+      }
+      byte[] lower = null;
+      byte[] upper = null;
+      String op = condition.getComparisonOp();
+      // the smallest row key that is greater than a key is the key followed by a zero byte
+      if (op.equals(GenericUDFOPEqual.class.getName())) {
+        lower = key;
+        upper = Bytes.concat(key, ZERO);
+      } else if (op.equals(GenericUDFOPGreaterThan.class.getName())) {
+        lower = Bytes.concat(key, ZERO);
+      } else if (op.equals(GenericUDFOPEqualOrGreaterThan.class.getName())) {
+        lower = key;
+      } else if (op.equals(GenericUDFOPLessThan.class.getName())) {
+        upper = key;
+      } else if (op.equals(GenericUDFOPEqualOrLessThan.class.getName())) {
+        upper = Bytes.concat(key, ZERO);
+      } else {
+        return null;
+      }
+      if (lower != null && (start == null || Bytes.compareTo(lower, start) > 0)) {
+        start = lower;
+      }
+      if (upper != null && (stop == null || Bytes.compareTo(upper, stop) < 0)) {
+        stop = upper;
+      }
+    }
+    return new RowKeyRange(datasetId, start, stop);
+  }
+
+  /**
+   * Encodes a constant of a condition the same way as the row key is encoded in the dataset,
+   * or returns {@code null} if it is not of the type of the row key.
+   */
+  @Nullable
+  private static byte[] toRowKey(@Nullable Object value, Schema.Type keyType) {
+    switch (keyType) {
+      case STRING:
+        return value instanceof String ? Bytes.toBytes((String) value) : null;
+      case BYTES:
+        return value instanceof byte[] ? (byte[]) value : null;
+      case INT:
+        return value instanceof Integer ? Bytes.toBytes((Integer) value) : null;
+      case LONG:
+        if (value instanceof Long || value instanceof Integer) {
+          return Bytes.toBytes(((Number) value).longValue());
+        }
+        return null;
+      default:
+        return null;
+    }
+  }
+}
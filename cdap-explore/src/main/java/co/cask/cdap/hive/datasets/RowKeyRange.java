@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.hive.datasets;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.proto.id.DatasetId;
+
+import java.io.Serializable;
+import javax.annotation.Nullable;
+
+/**
+ * The range of row keys of a dataset that a Hive query has to read, as derived from the predicates on
+ * the row key column by {@link RowKeyPredicateDecomposer}. It is passed by Hive from the
+ * {@link DatasetStorageHandler} to the {@link DatasetInputFormat} as the pushed predicate object.
+ */
+public final class RowKeyRange implements Serializable {
+
+  private static final long serialVersionUID = 5178426583541873546L;
+
+  private String namespace;
+  private String dataset;
+  private byte[] start;
+  private byte[] stop;
+
+  // for deserialization
+  @SuppressWarnings("unused")
+  public RowKeyRange() {
+  }
+
+  RowKeyRange(DatasetId datasetId, @Nullable byte[] start, @Nullable byte[] stop) {
+    this.namespace = datasetId.getNamespace();
+    this.dataset = datasetId.getDataset();
+    this.start = start;
+    this.stop = stop;
+  }
+
+  /**
+   * Returns the dataset that the range applies to.
+   */
+  public DatasetId getDatasetId() {
+    return new DatasetId(namespace, dataset);
+  }
+
+  /**
+   * Returns the inclusive start row key, or {@code null} to start from the first row.
+   */
+  @Nullable
+  public byte[] getStart() {
+    return start;
+  }
+
+  /**
+   * Returns the exclusive stop row key, or {@code null} to read until the last row.
+   */
+  @Nullable
+  public byte[] getStop() {
+    return stop;
+  }
+
+  /**
+   * Returns {@code true} if no row key can be in this range.
+   */
+  public boolean isEmpty() {
+    return start != null && stop != null && Bytes.compareTo(start, stop) >= 0;
+  }
+
+  @Override
+  public String toString() {
+    return "RowKeyRange{" +
+      "namespace='" + namespace + '\'' +
+      ", dataset='" + dataset + '\'' +
+      ", start=" + (start == null ? null : Bytes.toStringBinary(start)) +
+      ", stop=" + (stop == null ? null : Bytes.toStringBinary(stop)) +
+      '}';
+  }
+}
@@ -229,6 +229,15 @@ public class HiveExploreTableTestRun extends BaseHiveExploreServiceTest {
                  Integer.MAX_VALUE,
                  schema.equals(SCHEMA) ? 3.14 : Bytes.toBytes(3.14D))))
     );
+
+    // a range on the row key is pushed down to the table, conditions on other columns are evaluated by Hive
+    command = String.format("select int_field from %s where string_field >= 'row' and string_field < 'row2' " +
+                              "and int_field > 0", tableToQuery);
+    runCommand(NAMESPACE_ID, command,
+               true,
+               Lists.newArrayList(new ColumnDesc("int_field", "INT", 1, null)),
+               Lists.newArrayList(new QueryResult(Lists.<Object>newArrayList(Integer.MAX_VALUE)))
+    );
   }
 
   @Test
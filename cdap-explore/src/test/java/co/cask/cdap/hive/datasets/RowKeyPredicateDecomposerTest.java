@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.hive.datasets;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.proto.id.DatasetId;
+import co.cask.cdap.proto.id.NamespaceId;
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler.DecomposedPredicate;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPAnd;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualOrGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualOrLessThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPLessThan;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RowKeyPredicateDecomposer}.
+ */
+public class RowKeyPredicateDecomposerTest {
+
+  private static final DatasetId DATASET = NamespaceId.DEFAULT.dataset("ds");
+  private static final Schema.Field STRING_KEY = Schema.Field.of("Key", Schema.of(Schema.Type.STRING));
+  private static final Schema.Field INT_KEY = Schema.Field.of("key", Schema.nullableOf(Schema.of(Schema.Type.INT)));
+
+  @Test
+  public void testEqualityWithResidual() {
+    ExprNodeDesc valueCondition = compare(new GenericUDFOPGreaterThan(), TypeInfoFactory.intTypeInfo, "value", 5);
+    ExprNodeDesc predicate = and(compare(new GenericUDFOPEqual(), TypeInfoFactory.stringTypeInfo, "key", "b"),
+                                 valueCondition);
+
+    DecomposedPredicate decomposed = RowKeyPredicateDecomposer.decompose(DATASET, STRING_KEY, predicate);
+    Assert.assertNotNull(decomposed);
+    RowKeyRange range = (RowKeyRange) decomposed.pushedPredicateObject;
+    Assert.assertEquals(DATASET, range.getDatasetId());
+    Assert.assertArrayEquals(Bytes.toBytes("b"), range.getStart());
+    Assert.assertArrayEquals(Bytes.concat(Bytes.toBytes("b"), new byte[] { 0 }), range.getStop());
+    // the condition on the value is left to Hive
+    Assert.assertEquals(valueCondition.getExprString(), decomposed.residualPredicate.getExprString());
+  }
+
+  @Test
+  public void testRange() {
+    ExprNodeDesc predicate = and(
+      compare(new GenericUDFOPEqualOrGreaterThan(), TypeInfoFactory.stringTypeInfo, "key", "a"),
+      compare(new GenericUDFOPLessThan(), TypeInfoFactory.stringTypeInfo, "key", "c"));
+
+    DecomposedPredicate decomposed = RowKeyPredicateDecomposer.decompose(DATASET, STRING_KEY, predicate);
+    Assert.assertNotNull(decomposed);
+    RowKeyRange range = (RowKeyRange) decomposed.pushedPredicateObject;
+    Assert.assertArrayEquals(Bytes.toBytes("a"), range.getStart());
+    Assert.assertArrayEquals(Bytes.toBytes("c"), range.getStop());
+    Assert.assertFalse(range.isEmpty());
+    Assert.assertNull(decomposed.residualPredicate);
+
+    // exclusive lower and inclusive upper bounds
+    predicate = and(compare(new GenericUDFOPGreaterThan(), TypeInfoFactory.stringTypeInfo, "key", "a"),
+                    compare(new GenericUDFOPEqualOrLessThan(), TypeInfoFactory.stringTypeInfo, "key", "c"));
+    range = (RowKeyRange) RowKeyPredicateDecomposer.decompose(DATASET, STRING_KEY, predicate).pushedPredicateObject;
+    Assert.assertArrayEquals(Bytes.concat(Bytes.toBytes("a"), new byte[] { 0 }), range.getStart());
+    Assert.assertArrayEquals(Bytes.concat(Bytes.toBytes("c"), new byte[] { 0 }), range.getStop());
+
+    // disjoint conditions result in an empty range
+    predicate = and(compare(new GenericUDFOPGreaterThan(), TypeInfoFactory.stringTypeInfo, "key", "c"),
+                    compare(new GenericUDFOPLessThan(), TypeInfoFactory.stringTypeInfo, "key", "a"));
+    range = (RowKeyRange) RowKeyPredicateDecomposer.decompose(DATASET, STRING_KEY, predicate).pushedPredicateObject;
+    Assert.assertTrue(range.isEmpty());
+  }
+
+  @Test
+  public void testNumericKey() {
+    // only equality is pushed down for numeric keys
+    ExprNodeDesc predicate = compare(new GenericUDFOPEqual(), TypeInfoFactory.intTypeInfo, "key", 5);
+    DecomposedPredicate decomposed = RowKeyPredicateDecomposer.decompose(DATASET, INT_KEY, predicate);
+    Assert.assertNotNull(decomposed);
+    Assert.assertArrayEquals(Bytes.toBytes(5), ((RowKeyRange) decomposed.pushedPredicateObject).getStart());
+
+    predicate = compare(new GenericUDFOPGreaterThan(), TypeInfoFactory.intTypeInfo, "key", -5);
+    Assert.assertNull(RowKeyPredicateDecomposer.decompose(DATASET, INT_KEY, predicate));
+  }
+
+  @Test
+  public void testNoRowKeyCondition() {
+    ExprNodeDesc predicate = compare(new GenericUDFOPEqual(), TypeInfoFactory.stringTypeInfo, "value", "b");
+    Assert.assertNull(RowKeyPredicateDecomposer.decompose(DATASET, STRING_KEY, predicate));
+  }
+
+  private ExprNodeDesc compare(GenericUDF udf, TypeInfo typeInfo, String column, Object value) {
+    ExprNodeDesc columnDesc = new ExprNodeColumnDesc(typeInfo, column, "t", false);
+    ExprNodeDesc constantDesc = new ExprNodeConstantDesc(typeInfo, value);
+    return new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo, udf,
+                                       ImmutableList.of(columnDesc, constantDesc));
+  }
+
+  private ExprNodeDesc and(ExprNodeDesc left, ExprNodeDesc right) {
+    return new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo, new GenericUDFOPAnd(),
+                                       ImmutableList.of(left, right));
+  }
+}
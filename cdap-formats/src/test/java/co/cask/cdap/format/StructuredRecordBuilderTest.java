@@ -22,6 +22,10 @@ import co.cask.cdap.api.data.schema.Schema;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -191,6 +195,57 @@ public class StructuredRecordBuilderTest {
     Assert.assertNull(StructuredRecord.builder(schema).setTime("x", null).build().getTime("x"));
   }
 
+  @Test
+  public void testPositionalAccess() {
+    Schema schema = Schema.recordOf("x",
+                                    Schema.Field.of("a", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("b", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+                                    Schema.Field.of("c", Schema.of(Schema.Type.LONG)));
+    Assert.assertEquals(2, schema.getFieldIndex("c"));
+    Assert.assertEquals(-1, schema.getFieldIndex("d"));
+
+    StructuredRecord record = StructuredRecord.builder(schema).set(0, 1).set("c", 3L).build();
+    Assert.assertEquals(1, (int) record.get("a"));
+    Assert.assertNull(record.get(1));
+    Assert.assertEquals(3L, (long) record.get(2));
+    Assert.assertEquals(record, StructuredRecord.builder(schema).set("a", 1).set(2, 3L).build());
+
+    try {
+      StructuredRecord.builder(schema).set(3, 1);
+      Assert.fail("Expected failure when setting a field that is not in the schema");
+    } catch (UnexpectedFormatException e) {
+      // expected
+    }
+    try {
+      StructuredRecord.builder(schema).set(2, null);
+      Assert.fail("Expected failure when setting a non-nullable field to null");
+    } catch (UnexpectedFormatException e) {
+      // expected
+    }
+    try {
+      StructuredRecord.builder(schema).set(0, 1).build();
+      Assert.fail("Expected failure when a non-nullable field is not set");
+    } catch (UnexpectedFormatException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testJavaSerialization() throws Exception {
+    Schema schema = Schema.recordOf("x",
+                                    Schema.Field.of("a", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("b", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    StructuredRecord record = StructuredRecord.builder(schema).set("a", 1).set("b", "str").build();
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeObject(record);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+      Assert.assertEquals(record, ois.readObject());
+    }
+  }
+
   @Test
   public void testGetNonExistentField() {
     Schema schema = Schema.recordOf("record", Schema.Field.of("x", Schema.of(Schema.LogicalType.DATE)));
@@ -16,17 +16,23 @@
 
 package co.cask.cdap.gateway.router;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.ServiceBindException;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.conf.SConfiguration;
+import co.cask.cdap.gateway.router.handlers.AccessTokenCache;
 import co.cask.cdap.gateway.router.handlers.AuditLogHandler;
 import co.cask.cdap.gateway.router.handlers.AuthenticationHandler;
 import co.cask.cdap.gateway.router.handlers.HttpRequestRouter;
 import co.cask.cdap.gateway.router.handlers.HttpStatusRequestHandler;
+import co.cask.cdap.gateway.router.handlers.OutboundConnectionPool;
+import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.auth.AccessTokenTransformer;
 import co.cask.cdap.security.auth.TokenValidator;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
@@ -39,11 +45,17 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.codec.http.HttpServerExpectContinueHandler;
 import io.netty.util.concurrent.Future;
@@ -83,7 +95,12 @@ public class NettyRouter extends AbstractIdleService {
   private final CConfiguration cConf;
   private final boolean sslEnabled;
   private final SSLHandlerFactory sslHandlerFactory;
+  private final boolean nativeTransport;
+  private final MetricsCollectionService metricsCollectionService;
   private InetSocketAddress boundAddress;
+  private OutboundConnectionPool connectionPool;
+  private AccessTokenCache tokenCache;
+  private Cancellable keyChangeCancellable;
 
   private DiscoveryServiceClient discoveryServiceClient;
   private Cancellable serverCancellable;
@@ -92,7 +109,8 @@ public class NettyRouter extends AbstractIdleService {
   public NettyRouter(CConfiguration cConf, SConfiguration sConf, @Named(Constants.Router.ADDRESS) InetAddress hostname,
                      RouterServiceLookup serviceLookup, TokenValidator tokenValidator,
                      AccessTokenTransformer accessTokenTransformer,
-                     DiscoveryServiceClient discoveryServiceClient) {
+                     DiscoveryServiceClient discoveryServiceClient,
+                     MetricsCollectionService metricsCollectionService) {
     this.cConf = cConf;
     this.serverBossThreadPoolSize = cConf.getInt(Constants.Router.SERVER_BOSS_THREADS);
     this.serverWorkerThreadPoolSize = cConf.getInt(Constants.Router.SERVER_WORKER_THREADS);
@@ -103,6 +121,8 @@ public class NettyRouter extends AbstractIdleService {
     this.tokenValidator = tokenValidator;
     this.accessTokenTransformer = accessTokenTransformer;
     this.discoveryServiceClient = discoveryServiceClient;
+    this.metricsCollectionService = metricsCollectionService;
+    this.nativeTransport = cConf.getBoolean(Constants.Router.NATIVE_TRANSPORT_ENABLED) && Epoll.isAvailable();
     this.sslEnabled = cConf.getBoolean(Constants.Security.SSL.EXTERNAL_ENABLED);
     if (sslEnabled) {
       this.port = cConf.getInt(Constants.Router.ROUTER_SSL_PORT);
@@ -136,6 +156,14 @@ public class NettyRouter extends AbstractIdleService {
   @Override
   protected void startUp() throws Exception {
     tokenValidator.startAndWait();
+    MetricsContext metricsContext = metricsCollectionService.getContext(ImmutableMap.of(
+      Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+      Constants.Metrics.Tag.COMPONENT, Constants.Service.GATEWAY));
+    connectionPool = new OutboundConnectionPool(cConf, nativeTransport ? EpollSocketChannel.class
+                                                                       : NioSocketChannel.class, metricsContext);
+    tokenCache = new AccessTokenCache(cConf, metricsContext);
+    // Cached tokens must not outlive the keys that they were validated with
+    keyChangeCancellable = tokenValidator.addKeyChangeListener(tokenCache::invalidateAll);
     ChannelGroup channelGroup = new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE);
     serverCancellable = startServer(createServerBootstrap(channelGroup), channelGroup);
   }
@@ -145,7 +173,10 @@ public class NettyRouter extends AbstractIdleService {
     boundAddress = null;
     LOG.info("Stopping Netty Router...");
 
+    connectionPool.close();
     serverCancellable.cancel();
+    keyChangeCancellable.cancel();
+    tokenCache.invalidateAll();
     tokenValidator.stopAndWait();
 
     LOG.info("Stopped Netty Router.");
@@ -163,7 +194,11 @@ public class NettyRouter extends AbstractIdleService {
 
   private EventLoopGroup createEventLoopGroup(int size, String nameFormat) {
     ThreadFactory threadFactory = new ThreadFactoryBuilder().setDaemon(true).setNameFormat(nameFormat).build();
-    return new NioEventLoopGroup(size, threadFactory);
+    return nativeTransport ? new EpollEventLoopGroup(size, threadFactory) : new NioEventLoopGroup(size, threadFactory);
+  }
+
+  private Class<? extends ServerChannel> getServerChannelClass() {
+    return nativeTransport ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
   }
 
   private ServerBootstrap createServerBootstrap(final ChannelGroup channelGroup) {
@@ -172,7 +207,7 @@ public class NettyRouter extends AbstractIdleService {
 
     return new ServerBootstrap()
       .group(bossGroup, workerGroup)
-      .channel(NioServerSocketChannel.class)
+      .channel(getServerChannelClass())
       .option(ChannelOption.SO_BACKLOG, serverConnectionBacklog)
       .childHandler(new ChannelInitializer<SocketChannel>() {
         @Override
@@ -186,8 +221,8 @@ public class NettyRouter extends AbstractIdleService {
           pipeline.addLast("http-status-request-handler", new HttpStatusRequestHandler());
           if (securityEnabled) {
             pipeline.addLast("access-token-authenticator",
-                             new AuthenticationHandler(cConf, tokenValidator,
-                                                       discoveryServiceClient, accessTokenTransformer));
+                             new AuthenticationHandler(cConf, tokenValidator, discoveryServiceClient,
+                                                       accessTokenTransformer, tokenCache));
           }
           if (cConf.getBoolean(Constants.Router.ROUTER_AUDIT_LOG_ENABLED)) {
             pipeline.addLast("audit-log", new AuditLogHandler());
@@ -195,7 +230,7 @@ public class NettyRouter extends AbstractIdleService {
           // Always let the client to continue sending the request body after the authentication passed
           pipeline.addLast("expect-continue", new HttpServerExpectContinueHandler());
           // for now there's only one hardcoded rule, but if there will be more, we may want it generic and configurable
-          pipeline.addLast("http-request-handler", new HttpRequestRouter(cConf, serviceLookup));
+          pipeline.addLast("http-request-handler", new HttpRequestRouter(serviceLookup, connectionPool));
         }
       });
   }
@@ -204,7 +239,8 @@ public class NettyRouter extends AbstractIdleService {
                                   final ChannelGroup channelGroup) throws Exception {
     // Start listening on ports.
     InetSocketAddress bindAddress = new InetSocketAddress(hostname, port);
-    LOG.info("Starting Netty Router on address {}...", bindAddress);
+    LOG.info("Starting Netty Router on address {} using {} transport...", bindAddress,
+             nativeTransport ? "native epoll" : "NIO");
 
     try {
       Channel channel = serverBootstrap.bind(bindAddress).sync().channel();
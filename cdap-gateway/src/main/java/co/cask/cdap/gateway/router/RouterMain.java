@@ -16,6 +16,7 @@
 
 package co.cask.cdap.gateway.router;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.common.ServiceBindException;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
@@ -24,6 +25,8 @@ import co.cask.cdap.common.guice.IOModule;
 import co.cask.cdap.common.guice.ZKClientModule;
 import co.cask.cdap.common.guice.ZKDiscoveryModule;
 import co.cask.cdap.common.runtime.DaemonMain;
+import co.cask.cdap.messaging.guice.MessagingClientModule;
+import co.cask.cdap.metrics.guice.MetricsClientRuntimeModule;
 import co.cask.cdap.security.guice.SecurityModules;
 import co.cask.cdap.security.impersonation.SecurityUtil;
 import com.google.common.base.Throwables;
@@ -45,6 +48,7 @@ public class RouterMain extends DaemonMain {
 
   private CConfiguration cConf;
   private ZKClientService zkClientService;
+  private MetricsCollectionService metricsCollectionService;
   private NettyRouter router;
 
   public static void main(String[] args) {
@@ -88,6 +92,7 @@ public class RouterMain extends DaemonMain {
 
       Injector injector = createGuiceInjector(cConf);
       zkClientService = injector.getInstance(ZKClientService.class);
+      metricsCollectionService = injector.getInstance(MetricsCollectionService.class);
 
       // Get the Router
       router = injector.getInstance(NettyRouter.class);
@@ -110,6 +115,7 @@ public class RouterMain extends DaemonMain {
                                                                     "ZooKeeper quorum settings are correct in " +
                                                                     "cdap-site.xml. Currently configured as: %s",
                                                                     cConf.get(Constants.Zookeeper.QUORUM)));
+    metricsCollectionService.startAndWait();
     router.startAndWait();
     LOG.info("Router started.");
   }
@@ -117,7 +123,7 @@ public class RouterMain extends DaemonMain {
   @Override
   public void stop() {
     LOG.info("Stopping Router...");
-    Futures.getUnchecked(Services.chainStop(router, zkClientService));
+    Futures.getUnchecked(Services.chainStop(router, metricsCollectionService, zkClientService));
     LOG.info("Router stopped.");
   }
 
@@ -131,6 +137,8 @@ public class RouterMain extends DaemonMain {
       new ConfigModule(cConf),
       new ZKClientModule(),
       new ZKDiscoveryModule(),
+      new MessagingClientModule(),
+      new MetricsClientRuntimeModule().getDistributedModules(),
       new RouterModules().getDistributedModules(),
       new SecurityModules().getDistributedModules(),
       new IOModule()
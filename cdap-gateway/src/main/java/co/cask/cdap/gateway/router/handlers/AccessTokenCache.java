@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router.handlers;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.security.auth.AccessTokenTransformer;
+import co.cask.cdap.security.auth.KeyManager;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * A bounded cache of access tokens that were validated successfully by the router. Entries are keyed by a hash
+ * of the token, so that the raw tokens are not retained in memory. A cached token is only returned until it expires,
+ * and the whole cache is expected to be invalidated whenever the {@link KeyManager} keys change.
+ * A token is only cached if no invalidation happened while it was being validated, see {@link #getGeneration()}.
+ * This class is thread safe.
+ */
+public final class AccessTokenCache {
+
+  private static final HashFunction HASH_FUNCTION = Hashing.sha256();
+
+  private final Cache<HashCode, CachedToken> cache;
+  private final MetricsContext metricsContext;
+  private final AtomicLong generation;
+
+  public AccessTokenCache(CConfiguration cConf, MetricsContext metricsContext) {
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(cConf.getLong(Constants.Security.Router.ACCESS_TOKEN_CACHE_SIZE))
+      .build();
+    this.metricsContext = metricsContext;
+    this.generation = new AtomicLong();
+  }
+
+  /**
+   * Returns the validated token information for the given access token if it is in the cache and not yet expired.
+   *
+   * @param accessToken the access token from the request
+   * @return the {@link AccessTokenTransformer.AccessTokenIdentifierPair} of the token or {@code null} if the token
+   *         is not in the cache and has to be validated.
+   */
+  @Nullable
+  public AccessTokenTransformer.AccessTokenIdentifierPair get(String accessToken) {
+    HashCode key = hash(accessToken);
+    CachedToken token = cache.getIfPresent(key);
+
+    if (token != null && token.getExpireTimestamp() < System.currentTimeMillis()) {
+      cache.invalidate(key);
+      token = null;
+    }
+
+    if (token == null) {
+      metricsContext.increment(Constants.Metrics.Router.TOKEN_CACHE_MISSES, 1L);
+      return null;
+    }
+
+    metricsContext.increment(Constants.Metrics.Router.TOKEN_CACHE_HITS, 1L);
+    metricsContext.increment(Constants.Metrics.Router.TOKEN_VALIDATION_SAVED_MICROS,
+                             TimeUnit.NANOSECONDS.toMicros(token.validationNanos));
+    return token.tokenPair;
+  }
+
+  /**
+   * Returns the current generation of the cache, which changes every time the cache is invalidated.
+   * It must be called before validating a token that is then added with {@link #put}.
+   */
+  public long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Adds a successfully validated access token to the cache. The token is not added if the cache was
+   * invalidated since the given generation, since it might have been validated with keys that are no longer valid.
+   *
+   * @param accessToken the access token from the request
+   * @param tokenPair the {@link AccessTokenTransformer.AccessTokenIdentifierPair} transformed from the token
+   * @param validationNanos the time in nanoseconds it took to validate and transform the token
+   * @param generation the generation returned by {@link #getGeneration()} before the token was validated
+   */
+  public void put(String accessToken, AccessTokenTransformer.AccessTokenIdentifierPair tokenPair,
+                  long validationNanos, long generation) {
+    if (this.generation.get() != generation) {
+      return;
+    }
+    HashCode key = hash(accessToken);
+    cache.put(key, new CachedToken(tokenPair, validationNanos));
+    // Remove the entry if the cache was invalidated while it was being added
+    if (this.generation.get() != generation) {
+      cache.invalidate(key);
+    }
+  }
+
+  /**
+   * Removes all tokens from the cache.
+   */
+  public void invalidateAll() {
+    generation.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  private HashCode hash(String accessToken) {
+    return HASH_FUNCTION.hashString(accessToken, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * A validated token together with the time it took to validate it.
+   */
+  private static final class CachedToken {
+    private final AccessTokenTransformer.AccessTokenIdentifierPair tokenPair;
+    private final long validationNanos;
+
+    CachedToken(AccessTokenTransformer.AccessTokenIdentifierPair tokenPair, long validationNanos) {
+      this.tokenPair = tokenPair;
+      this.validationNanos = validationNanos;
+    }
+
+    long getExpireTimestamp() {
+      return tokenPair.getAccessTokenIdentifierObj().getExpireTimestamp();
+    }
+  }
+}
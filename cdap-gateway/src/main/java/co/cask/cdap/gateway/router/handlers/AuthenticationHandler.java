@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017-2018 Cask Data, Inc.
+ * Copyright © 2017-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -80,10 +80,11 @@ public class AuthenticationHandler extends ChannelInboundHandlerAdapter {
   private final List<String> authServerURLs;
   private final DiscoveryServiceClient discoveryServiceClient;
   private final AccessTokenTransformer tokenTransformer;
+  private final AccessTokenCache tokenCache;
 
   public AuthenticationHandler(CConfiguration cConf, TokenValidator tokenValidator,
                                DiscoveryServiceClient discoveryServiceClient,
-                               AccessTokenTransformer tokenTransformer) {
+                               AccessTokenTransformer tokenTransformer, AccessTokenCache tokenCache) {
     this.cConf = cConf;
     this.realm = cConf.get(Constants.Security.CFG_REALM);
     this.tokenValidator = tokenValidator;
@@ -92,6 +93,7 @@ public class AuthenticationHandler extends ChannelInboundHandlerAdapter {
     this.authServerURLs = getConfiguredAuthServerURLs(cConf);
     this.discoveryServiceClient = discoveryServiceClient;
     this.tokenTransformer = tokenTransformer;
+    this.tokenCache = tokenCache;
   }
 
   @Override
@@ -159,7 +161,8 @@ public class AuthenticationHandler extends ChannelInboundHandlerAdapter {
    * Validates the access token in authorization header.
    *
    * @param request the http request. The request headers will be modified if the validation succeeded to carry
-   *                user information extracted from the token.
+   *                user information extracted from the token. Tokens that were validated before are served
+   *                from the {@link AccessTokenCache} without validating them again.
    * @return the {@link TokenState} indicating the result of the validation.
    */
   private TokenState validateAccessToken(HttpRequest request, Channel channel) {
@@ -180,24 +183,36 @@ public class AuthenticationHandler extends ChannelInboundHandlerAdapter {
 
       accessToken = auth.substring(idx + 1).trim();
     }
-    TokenState state = tokenValidator.validate(accessToken);
+    AccessTokenTransformer.AccessTokenIdentifierPair tokenPair = accessToken == null ? null
+                                                                                 : tokenCache.get(accessToken);
+    TokenState state = TokenState.VALID;
+    if (tokenPair == null) {
+      long startNanos = System.nanoTime();
+      long cacheGeneration = tokenCache.getGeneration();
+      state = tokenValidator.validate(accessToken);
+      if (state.isValid()) {
+        try {
+          tokenPair = tokenTransformer.transform(accessToken);
+        } catch (Exception e) {
+          // This shouldn't happen in normal case, since the token is already validated
+          LOG.debug("Exception raised when getting token information from a validate token", e);
+          return TokenState.INVALID;
+        }
+        if (accessToken != null) {
+          tokenCache.put(accessToken, tokenPair, System.nanoTime() - startNanos, cacheGeneration);
+        }
+      }
+    }
 
     if (state.isValid()) {
-      try {
-        AccessTokenTransformer.AccessTokenIdentifierPair tokenPair = tokenTransformer.transform(accessToken);
-        // Update message header
-        request.headers().set(HttpHeaderNames.AUTHORIZATION,
-                              "CDAP-verified " + tokenPair.getAccessTokenIdentifierStr());
-        request.headers().set(Constants.Security.Headers.USER_ID,
-                              tokenPair.getAccessTokenIdentifierObj().getUsername());
-        String clientIP = Networks.getIP(channel.remoteAddress());
-        if (clientIP != null) {
-          request.headers().set(Constants.Security.Headers.USER_IP, clientIP);
-        }
-      } catch (Exception e) {
-        // This shouldn't happen in normal case, since the token is already validated
-        LOG.debug("Exception raised when getting token information from a validate token", e);
-        return TokenState.INVALID;
+      // Update message header
+      request.headers().set(HttpHeaderNames.AUTHORIZATION,
+                            "CDAP-verified " + tokenPair.getAccessTokenIdentifierStr());
+      request.headers().set(Constants.Security.Headers.USER_ID,
+                            tokenPair.getAccessTokenIdentifierObj().getUsername());
+      String clientIP = Networks.getIP(channel.remoteAddress());
+      if (clientIP != null) {
+        request.headers().set(Constants.Security.Headers.USER_IP, clientIP);
       }
     }
 
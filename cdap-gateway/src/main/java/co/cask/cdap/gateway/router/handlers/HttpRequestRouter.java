@@ -17,40 +17,26 @@
 package co.cask.cdap.gateway.router.handlers;
 
 import co.cask.cdap.common.HandlerException;
-import co.cask.cdap.common.conf.CConfiguration;
-import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.discovery.EndpointStrategy;
-import co.cask.cdap.common.http.Channels;
 import co.cask.cdap.gateway.router.RouterServiceLookup;
-import io.netty.bootstrap.Bootstrap;
-import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandler;
-import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelOption;
-import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpResponse;
-import io.netty.handler.codec.http.HttpClientCodec;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.codec.http.LastHttpContent;
-import io.netty.handler.ssl.SslContext;
-import io.netty.handler.ssl.SslContextBuilder;
-import io.netty.handler.ssl.SslHandler;
-import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
-import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
 import org.apache.twill.discovery.Discoverable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,36 +45,31 @@ import java.io.Closeable;
 import java.io.Flushable;
 import java.nio.channels.ClosedChannelException;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.TimeUnit;
-import javax.annotation.Nullable;
-import javax.net.ssl.SSLException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * A {@link ChannelInboundHandler} for forwarding incoming request to appropriate CDAP service endpoint
  * based on the request. This class doesn't need to be thread safe as Netty will make sure there is no
  * concurrent calls to ChannelHandler and each call always have a happens-before relationship to the previous call.
+ * Connections to the CDAP service endpoints are acquired from the {@link OutboundConnectionPool} for each request
+ * and are released back to the pool once the response is completed.
  */
 public class HttpRequestRouter extends ChannelDuplexHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(HttpRequestRouter.class);
-  private static final byte[] HTTPS_SCHEME_BYTES = Constants.Security.SSL_URI_SCHEME.getBytes();
 
-  private final CConfiguration cConf;
   private final RouterServiceLookup serviceLookup;
-  private final Map<Discoverable, Queue<MessageSender>> messageSenders;
+  private final OutboundConnectionPool connectionPool;
   private int inflightRequests;
   private MessageSender currentMessageSender;
   private ChannelFutureListener failureResponseListener;
 
-  public HttpRequestRouter(CConfiguration cConf, RouterServiceLookup serviceLookup) {
-    this.cConf = cConf;
+  public HttpRequestRouter(RouterServiceLookup serviceLookup, OutboundConnectionPool connectionPool) {
     this.serviceLookup = serviceLookup;
-    this.messageSenders = new HashMap<>();
+    this.connectionPool = connectionPool;
   }
 
   @Override
@@ -130,9 +111,7 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
           }
         };
 
-        currentMessageSender = getMessageSender(
-          inboundChannel, getDiscoverable(request)
-        );
+        currentMessageSender = new MessageSender(connectionPool, inboundChannel, getDiscoverable(request));
       }
 
       if (inflightRequests == 1 && currentMessageSender != null) {
@@ -163,9 +142,10 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
       }
       inflightRequests = 0;
 
-      // Recycle the message sender
+      // Release the outbound connection back to the pool
       if (currentMessageSender != null) {
-        messageSenders.get(currentMessageSender.getDiscoverable()).add(currentMessageSender);
+        currentMessageSender.release();
+        currentMessageSender = null;
       }
     }
   }
@@ -183,11 +163,7 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
   public void channelInactive(ChannelHandlerContext ctx) {
     if (currentMessageSender != null) {
       currentMessageSender.close();
-    }
-    for (Map.Entry<Discoverable, Queue<MessageSender>> entry : messageSenders.entrySet()) {
-      for (MessageSender sender : entry.getValue()) {
-        sender.close();
-      }
+      currentMessageSender = null;
     }
     ctx.fireChannelInactive();
   }
@@ -234,28 +210,6 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
     return discoverable;
   }
 
-  /**
-   * Returns the {@link MessageSender} for writing messages to the endpoint represented by the given
-   * {@link Discoverable}.
-   */
-  private MessageSender getMessageSender(Channel inboundChannel,
-                                         Discoverable discoverable) {
-    Queue<MessageSender> senders = messageSenders.computeIfAbsent(discoverable, k -> new LinkedList<>());
-
-    MessageSender sender = senders.poll();
-
-    // Found a MessageSender to reuse, return it
-    if (sender != null) {
-      LOG.trace("Reuse message sender for {}", discoverable);
-      return sender;
-    }
-
-    // Create new MessageSender
-    sender = new MessageSender(cConf, inboundChannel, discoverable);
-    LOG.trace("Create new message sender for {}", discoverable);
-    return sender;
-  }
-
   private String getRequestLine(HttpRequest request) {
     return request.method() + " " + request.uri() + " " + request.protocolVersion();
   }
@@ -268,6 +222,9 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
   }
 
   private static HttpResponse createErrorResponse(Throwable cause) {
+    if (cause instanceof HandlerException) {
+      return ((HandlerException) cause).createFailureResponse();
+    }
     FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
                                                             HttpResponseStatus.INTERNAL_SERVER_ERROR);
     if (cause.getMessage() != null) {
@@ -279,54 +236,27 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
 
   /**
    * For sending messages to outbound channel while maintaining the order of messages according to
-   * the order that {@link #send(Object, ChannelFutureListener)} method is called.
+   * the order that {@link #send(Object, ChannelFutureListener)} method is called. Each instance is used for
+   * a single request and holds the outbound connection acquired from the {@link OutboundConnectionPool}
+   * until {@link #release()} or {@link #close()} is called.
    */
   private static final class MessageSender implements Flushable, Closeable {
 
+    private final OutboundConnectionPool connectionPool;
+    private final Channel inboundChannel;
     private final Discoverable discoverable;
     private final Queue<OutboundMessage> pendingMessages;
-    private final Bootstrap clientBootstrap;
-    private volatile SslContext sslContext;
     private Channel outboundChannel;
+    private Throwable acquireFailure;
     private boolean closed;
-    private boolean connecting;
+    private boolean released;
+    private boolean acquiring;
 
-    private MessageSender(final CConfiguration cConf, final Channel inboundChannel, final Discoverable discoverable) {
+    private MessageSender(OutboundConnectionPool connectionPool, Channel inboundChannel, Discoverable discoverable) {
+      this.connectionPool = connectionPool;
+      this.inboundChannel = inboundChannel;
       this.discoverable = discoverable;
       this.pendingMessages = new LinkedList<>();
-
-      // A channel listener for resetting the state of this message sender on closing of outbound channel
-      final ChannelFutureListener onCloseResetListener = new ChannelFutureListener() {
-        @Override
-        public void operationComplete(ChannelFuture future) {
-          outboundChannel = null;
-          connecting = false;
-        }
-      };
-
-      // Create a client Bootstrap for connecting to internal services
-      // It must be create using the same EventLoopGroup as the inbound channel to make
-      // sure thread safety between the inbound and outbound channels callbacks.
-      this.clientBootstrap = new Bootstrap()
-        .group(inboundChannel.eventLoop())
-        .channel(NioSocketChannel.class)
-        .option(ChannelOption.SO_KEEPALIVE, true)
-        .handler(new ChannelInitializer<SocketChannel>() {
-          @Override
-          protected void initChannel(SocketChannel ch) throws Exception {
-            ch.closeFuture().addListener(onCloseResetListener);
-            ChannelPipeline pipeline = ch.pipeline();
-
-            SslHandler sslHandler = getSslHandler(discoverable, ch.alloc());
-            if (sslHandler != null) {
-              pipeline.addLast("ssl", sslHandler);
-            }
-            pipeline.addLast("idle-state-handler",
-                             new IdleStateHandler(0, 0, cConf.getInt(Constants.Router.CONNECTION_TIMEOUT_SECS)));
-            pipeline.addLast("codec", new HttpClientCodec());
-            pipeline.addLast("forwarder", new OutboundHandler(inboundChannel));
-          }
-        });
     }
 
     /**
@@ -335,111 +265,128 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
      * @param msg the message to be sent
      * @param writeCompletedListener a {@link ChannelFutureListener} to be notified when the write completed
      */
-    void send(Object msg, ChannelFutureListener writeCompletedListener) {
+    void send(Object msg, ChannelFutureListener writeCompletedListener) throws Exception {
       if (outboundChannel != null) {
         outboundChannel.write(msg).addListener(writeCompletedListener);
         return;
       }
 
-      // If not yet connected or still connecting, just add the message to the pending queue
+      // Always remember the failure even if the connection fail.
+      // This make sure any message received before the inbound channel is closed will not get forwarded
+      if (acquireFailure != null) {
+        ReferenceCountUtil.release(msg);
+        writeCompletedListener.operationComplete(inboundChannel.newFailedFuture(acquireFailure));
+        return;
+      }
+
+      // If not yet acquired or still acquiring, just add the message to the pending queue
       pendingMessages.add(new OutboundMessage(msg, writeCompletedListener));
 
-      // If connecting, we can just return. When the connection completed, it will send all messages in the queue.
-      if (connecting) {
+      // If acquiring, we can just return. When the connection is acquired, it will send all messages in the queue.
+      if (acquiring) {
         return;
       }
 
-      // Make a new connection
-      ChannelFuture connectFuture = clientBootstrap.connect(discoverable.getSocketAddress());
-      connectFuture.addListener(new ChannelFutureListener() {
-        @Override
-        public void operationComplete(ChannelFuture future) throws Exception {
-          // Always remember the outbound channel even if the connection fail.
-          // This make sure any message received before the inbound channel is closed will not get forwarded
-          outboundChannel = future.channel();
-          connecting = false;
-
-          if (future.isSuccess()) {
-            // If this sender is closed (because inbound channel is closed), just close the outbound channel
-            if (closed) {
-              Channels.closeOnFlush(outboundChannel);
-            }
-          }
-          OutboundMessage message = pendingMessages.poll();
-          while (message != null) {
-            processMessage(message, future);
-            message = pendingMessages.poll();
-          }
-          if (future.isSuccess()) {
-            flush();
-          }
-        }
-      });
-
-      connecting = true;
+      // Acquire a connection from the pool. The pool makes sure the listener is called from the inbound event loop.
+      acquiring = true;
+      connectionPool.acquire(inboundChannel.eventLoop(), discoverable).addListener(
+        (GenericFutureListener<Future<Channel>>) this::connectionAcquired);
     }
 
     @Override
     public void flush() {
-      if (outboundChannel != null && !closed) {
+      if (outboundChannel != null && !closed && !released) {
         outboundChannel.flush();
       }
     }
 
-    @Override
-    public void close() {
-      if (!closed) {
-        closed = true;
-        if (outboundChannel != null) {
-          Channels.closeOnFlush(outboundChannel);
-        }
+    /**
+     * Releases the outbound connection back to the pool when the response is completed. The connection is closed
+     * instead of being reused if the exchange was not completed cleanly or the service doesn't support keep-alive.
+     */
+    void release() {
+      if (released || outboundChannel == null) {
+        return;
       }
-    }
+      released = true;
 
-    Discoverable getDiscoverable() {
-      return discoverable;
+      Channel channel = outboundChannel;
+      OutboundHandler handler = channel.pipeline().get(OutboundHandler.class);
+      if (handler != null && handler.isReusable() && channel.isActive()) {
+        handler.setInboundChannel(null);
+        connectionPool.release(channel);
+      } else {
+        // Keep the inbound channel attached so that the OutboundHandler can close it if needed
+        channel.close().addListener(future -> connectionPool.release(channel));
+      }
     }
 
-    /**
-     * Returns the {@link SslContext} to be used for a given discoverable endpoint
-     *
-     * @param discoverable the endpoint to connect to
-     * @return the {@link SslContext} or {@code null} if SSL is not needed
-     */
-    @Nullable
-    private SslHandler getSslHandler(Discoverable discoverable, ByteBufAllocator alloc) throws SSLException {
-      if (!Arrays.equals(HTTPS_SCHEME_BYTES, discoverable.getPayload())) {
-        return null;
-      }
-      SslContext context = sslContext;
-      if (context != null) {
-        return context.newHandler(alloc);
+    @Override
+    public void close() {
+      if (closed) {
+        return;
       }
-      synchronized (this) {
-        context = sslContext;
-        if (context == null) {
-          sslContext = context = SslContextBuilder.forClient()
-                                                  .trustManager(InsecureTrustManagerFactory.INSTANCE).build();
-        }
-        return context.newHandler(alloc);
+      closed = true;
+
+      // The inbound channel is closed while the outbound connection is still in use,
+      // hence the connection cannot be returned to the pool for reuse.
+      if (outboundChannel != null && !released) {
+        released = true;
+        Channel channel = outboundChannel;
+        channel.close().addListener(future -> connectionPool.release(channel));
       }
     }
 
     /**
-     * Process the message by sending to the given channel or have a failure call to the message callback,
-     * depending on the state of this sender.
+     * Called when the outbound connection acquisition completed.
      */
-    private void processMessage(OutboundMessage message, ChannelFuture channelFuture) throws Exception {
-      Channel channel = channelFuture.channel();
+    private void connectionAcquired(Future<Channel> future) throws Exception {
+      acquiring = false;
 
-      if (closed) {
-        message.writeCompletedListener.operationComplete(channel.newFailedFuture(new ClosedChannelException()));
+      if (future.isSuccess()) {
+        Channel channel = future.getNow();
+
+        // If this sender is closed (because inbound channel is closed), nothing has been written to the
+        // connection yet, hence it can be returned to the pool directly
+        if (closed) {
+          connectionPool.release(channel);
+          failPendingMessages(new ClosedChannelException());
+          return;
+        }
+
+        LOG.trace("Acquired connection {} for {}", channel, discoverable);
+        OutboundHandler handler = channel.pipeline().get(OutboundHandler.class);
+        handler.setInboundChannel(inboundChannel);
+        outboundChannel = channel;
+
+        OutboundMessage message = pendingMessages.poll();
+        while (message != null) {
+          message.write(channel);
+          message = pendingMessages.poll();
+        }
+        flush();
         return;
       }
-      if (channelFuture.isSuccess()) {
-        message.write(channelFuture.channel());
-      } else {
-        message.writeCompletedListener.operationComplete(channelFuture);
+
+      Throwable cause = future.cause();
+      if (cause instanceof TimeoutException || cause instanceof IllegalStateException) {
+        // The pool failed the acquisition because the maximum number of connections and pending requests is reached
+        cause = new HandlerException(HttpResponseStatus.SERVICE_UNAVAILABLE,
+                                     "Service " + discoverable.getName() + " is busy, please retry later", cause);
+      }
+      acquireFailure = cause;
+      failPendingMessages(closed ? new ClosedChannelException() : cause);
+    }
+
+    /**
+     * Fails all pending messages with the given cause.
+     */
+    private void failPendingMessages(Throwable cause) throws Exception {
+      OutboundMessage message = pendingMessages.poll();
+      while (message != null) {
+        ReferenceCountUtil.release(message.message);
+        message.writeCompletedListener.operationComplete(inboundChannel.newFailedFuture(cause));
+        message = pendingMessages.poll();
       }
     }
   }
@@ -0,0 +1,294 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router.handlers;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.ChannelPoolHandler;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.apache.twill.discovery.Discoverable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.net.ssl.SSLException;
+
+/**
+ * A pool of keep-alive connections from the router to internal CDAP services, shared by all inbound channels.
+ * Connections are pooled per {@link EventLoop} and per {@link Discoverable}, so that an outbound channel is always
+ * served by the same thread as the inbound channel that is currently using it. This keeps the thread safety
+ * guarantee that {@link HttpRequestRouter} relies on, without any locking between the inbound and outbound channels.
+ *
+ * Idle connections are closed by the {@link OutboundHandler} after the configured idle timeout. The number
+ * of connections to each endpoint is bounded; requests beyond the limit wait until a connection is released.
+ * The pool of an endpoint that has not been used for the idle timeout, such as an endpoint that has left
+ * discovery, is removed.
+ */
+public final class OutboundConnectionPool implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OutboundConnectionPool.class);
+  private static final byte[] HTTPS_SCHEME_BYTES = Constants.Security.SSL_URI_SCHEME.getBytes();
+  private static final AttributeKey<EndpointPool> ENDPOINT_POOL = AttributeKey.valueOf("router.endpoint.pool");
+
+  private final Class<? extends Channel> channelClass;
+  private final MetricsContext metricsContext;
+  private final int idleTimeoutSecs;
+  private final int maxConnections;
+  private final int maxPendingAcquires;
+  private final long acquireTimeoutMillis;
+  private final ConcurrentMap<EventLoop, EventLoopPools> pools;
+  private volatile SslContext sslContext;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param cConf the CDAP configuration
+   * @param channelClass the type of {@link Channel} to create for outbound connections. It must be compatible with
+   *                     the {@link EventLoop} type used by the router
+   * @param metricsContext the {@link MetricsContext} for emitting pool metrics
+   */
+  public OutboundConnectionPool(CConfiguration cConf, Class<? extends Channel> channelClass,
+                                MetricsContext metricsContext) {
+    this.channelClass = channelClass;
+    this.metricsContext = metricsContext;
+    this.idleTimeoutSecs = cConf.getInt(Constants.Router.CONNECTION_TIMEOUT_SECS);
+    this.maxConnections = cConf.getInt(Constants.Router.CLIENT_MAX_CONNECTIONS_PER_HOST);
+    this.maxPendingAcquires = cConf.getInt(Constants.Router.CLIENT_MAX_PENDING_ACQUIRES);
+    this.acquireTimeoutMillis = cConf.getLong(Constants.Router.CLIENT_ACQUIRE_TIMEOUT_MILLIS);
+    this.pools = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Acquires a connection to the given endpoint. This method must be called from the given {@link EventLoop}.
+   * The returned {@link Channel} is registered to the same {@link EventLoop}, and it must be returned to the pool
+   * by calling {@link #release(Channel)} once the request and response exchange is completed.
+   *
+   * @param eventLoop the {@link EventLoop} of the inbound channel that uses the connection
+   * @param discoverable the endpoint to connect to
+   * @return a {@link Future} that will be completed with the connected {@link Channel}
+   */
+  public Future<Channel> acquire(EventLoop eventLoop, Discoverable discoverable) {
+    return pools.computeIfAbsent(eventLoop, EventLoopPools::new).getPool(discoverable).acquire();
+  }
+
+  /**
+   * Returns a connection acquired through {@link #acquire(EventLoop, Discoverable)} back to the pool.
+   * If the channel is already closed, it is removed from the pool.
+   */
+  public void release(Channel channel) {
+    EndpointPool pool = channel.attr(ENDPOINT_POOL).get();
+    if (pool == null) {
+      LOG.trace("Closing channel {} that was not acquired from the pool", channel);
+      channel.close();
+      return;
+    }
+    pool.release(channel);
+  }
+
+  @Override
+  public void close() {
+    for (EventLoopPools eventLoopPools : pools.values()) {
+      eventLoopPools.close();
+    }
+    pools.clear();
+  }
+
+  /**
+   * Returns the {@link SslHandler} to be used for a given discoverable endpoint
+   *
+   * @param discoverable the endpoint to connect to
+   * @return the {@link SslHandler} or {@code null} if SSL is not needed
+   */
+  @Nullable
+  private SslHandler getSslHandler(Discoverable discoverable, ByteBufAllocator alloc) throws SSLException {
+    if (!Arrays.equals(HTTPS_SCHEME_BYTES, discoverable.getPayload())) {
+      return null;
+    }
+    SslContext context = sslContext;
+    if (context != null) {
+      return context.newHandler(alloc);
+    }
+    synchronized (this) {
+      context = sslContext;
+      if (context == null) {
+        sslContext = context = SslContextBuilder.forClient()
+                                                .trustManager(InsecureTrustManagerFactory.INSTANCE).build();
+      }
+      return context.newHandler(alloc);
+    }
+  }
+
+  /**
+   * The connection pools of all endpoints on a single {@link EventLoop}. Pools are only accessed from the
+   * {@link EventLoop} thread, except when the {@link OutboundConnectionPool} is closed.
+   */
+  private final class EventLoopPools {
+
+    private final EventLoop eventLoop;
+    private final Map<Discoverable, EndpointPool> endpointPools;
+    private final ScheduledFuture<?> evictFuture;
+
+    EventLoopPools(EventLoop eventLoop) {
+      this.eventLoop = eventLoop;
+      this.endpointPools = new HashMap<>();
+      this.evictFuture = eventLoop.scheduleAtFixedRate(this::evictIdlePools, idleTimeoutSecs, idleTimeoutSecs,
+                                                       TimeUnit.SECONDS);
+    }
+
+    EndpointPool getPool(Discoverable discoverable) {
+      return endpointPools.computeIfAbsent(discoverable, d -> new EndpointPool(eventLoop, d));
+    }
+
+    /**
+     * Removes the pools that have no leased connections and were not used for the idle timeout. All of their
+     * connections have been closed by the {@link IdleStateHandler} by then.
+     */
+    private void evictIdlePools() {
+      long evictBefore = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(idleTimeoutSecs);
+      Iterator<EndpointPool> iterator = endpointPools.values().iterator();
+      while (iterator.hasNext()) {
+        EndpointPool pool = iterator.next();
+        if (pool.isIdleSince(evictBefore)) {
+          LOG.debug("Removing idle connection pool for {}", pool.discoverable);
+          iterator.remove();
+          pool.close();
+        }
+      }
+    }
+
+    void close() {
+      evictFuture.cancel(false);
+      if (eventLoop.inEventLoop()) {
+        closePools();
+      } else {
+        eventLoop.execute(this::closePools);
+      }
+    }
+
+    private void closePools() {
+      for (EndpointPool pool : endpointPools.values()) {
+        pool.close();
+      }
+      endpointPools.clear();
+    }
+  }
+
+  /**
+   * The connection pool for a single endpoint on a single {@link EventLoop}. All methods of this class are
+   * called from the {@link EventLoop} thread, hence there is no need for synchronization.
+   */
+  private final class EndpointPool implements ChannelPoolHandler {
+
+    private final Discoverable discoverable;
+    private final FixedChannelPool pool;
+    private int leased;
+    private long lastUsedTime;
+
+    EndpointPool(EventLoop eventLoop, Discoverable discoverable) {
+      this.discoverable = discoverable;
+      Bootstrap bootstrap = new Bootstrap()
+        .group(eventLoop)
+        .channel(channelClass)
+        .option(ChannelOption.SO_KEEPALIVE, true)
+        .remoteAddress(discoverable.getSocketAddress());
+      this.pool = new FixedChannelPool(bootstrap, this, ChannelHealthChecker.ACTIVE,
+                                       FixedChannelPool.AcquireTimeoutAction.FAIL, acquireTimeoutMillis,
+                                       maxConnections, maxPendingAcquires);
+    }
+
+    Future<Channel> acquire() {
+      if (leased >= maxConnections) {
+        LOG.trace("Maximum number of connections reached for {}. Queuing the request.", discoverable);
+        metricsContext.increment(Constants.Metrics.Router.POOL_QUEUED, 1L);
+      }
+      leased++;
+      lastUsedTime = System.currentTimeMillis();
+      return pool.acquire().addListener(future -> {
+        if (!future.isSuccess()) {
+          leased--;
+        }
+      });
+    }
+
+    void release(Channel channel) {
+      leased--;
+      lastUsedTime = System.currentTimeMillis();
+      pool.release(channel);
+    }
+
+    boolean isIdleSince(long time) {
+      return leased <= 0 && lastUsedTime < time;
+    }
+
+    void close() {
+      pool.close();
+    }
+
+    @Override
+    public void channelCreated(Channel ch) throws Exception {
+      LOG.trace("Create new connection to {}", discoverable);
+      metricsContext.increment(Constants.Metrics.Router.POOL_CONNECTS, 1L);
+
+      ch.attr(ENDPOINT_POOL).set(this);
+      ChannelPipeline pipeline = ch.pipeline();
+
+      SslHandler sslHandler = getSslHandler(discoverable, ch.alloc());
+      if (sslHandler != null) {
+        pipeline.addLast("ssl", sslHandler);
+      }
+      pipeline.addLast("idle-state-handler", new IdleStateHandler(0, 0, idleTimeoutSecs));
+      pipeline.addLast("codec", new HttpClientCodec());
+      pipeline.addLast("forwarder", new OutboundHandler());
+    }
+
+    @Override
+    public void channelAcquired(Channel ch) {
+      LOG.trace("Reuse connection to {}", discoverable);
+      metricsContext.increment(Constants.Metrics.Router.POOL_HITS, 1L);
+    }
+
+    @Override
+    public void channelReleased(Channel ch) {
+      // no-op
+    }
+  }
+}
@@ -27,42 +27,71 @@ import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 /**
  * A {@link ChannelDuplexHandler} for forwarding requests/responses between the router and the internal service.
- * It also handle idle state event for closing idled internal connections.
+ * It also handle idle state event for closing idled internal connections. Since internal connections are pooled
+ * and shared across inbound channels, the inbound channel is attached when the connection is acquired for a request
+ * and detached when it is released back to the {@link OutboundConnectionPool}.
  */
 public class OutboundHandler extends ChannelDuplexHandler {
   private static final Logger LOG = LoggerFactory.getLogger(OutboundHandler.class);
 
-  private final Channel inboundChannel;
+  private Channel inboundChannel;
   private boolean requestInProgress;
+  private boolean requestCompleted;
   private boolean keepAlive;
 
-  public OutboundHandler(Channel inboundChannel) {
+  /**
+   * Sets the inbound channel that responses are forwarded to.
+   *
+   * @param inboundChannel the inbound channel or {@code null} to detach the current inbound channel
+   */
+  void setInboundChannel(@Nullable Channel inboundChannel) {
     this.inboundChannel = inboundChannel;
   }
 
+  /**
+   * Returns {@code true} if the last request and response exchange was completed and the connection can be
+   * reused for another request.
+   */
+  boolean isReusable() {
+    return !requestInProgress && requestCompleted && keepAlive;
+  }
+
   @Override
   public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-    // One receiving messages from the internal service, forward it to the inbound channel
-    inboundChannel.write(msg);
-
     if (msg instanceof HttpResponse) {
       keepAlive = HttpUtil.isKeepAlive((HttpResponse) msg);
     }
 
-    // A response is completed by receiving the last http content
+    // A response is completed by receiving the last http content. The state needs to be updated before forwarding,
+    // since forwarding the last content can trigger the release of this connection back to the pool.
     if (msg instanceof LastHttpContent) {
       requestInProgress = false;
     }
+
+    Channel inboundChannel = this.inboundChannel;
+    if (inboundChannel == null) {
+      LOG.trace("Discard message from channel {} as there is no inbound channel attached", ctx.channel());
+      ReferenceCountUtil.release(msg);
+      return;
+    }
+
+    // One receiving messages from the internal service, forward it to the inbound channel
+    inboundChannel.write(msg);
   }
 
   @Override
   public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
-    inboundChannel.flush();
+    if (inboundChannel != null) {
+      inboundChannel.flush();
+    }
   }
 
   @Override
@@ -70,14 +99,19 @@ public class OutboundHandler extends ChannelDuplexHandler {
     // A request starts with a HttpRequest
     if (msg instanceof HttpRequest) {
       requestInProgress = true;
+      requestCompleted = false;
       keepAlive = HttpUtil.isKeepAlive((HttpRequest) msg);
     }
+    if (msg instanceof LastHttpContent) {
+      requestCompleted = true;
+    }
     ctx.write(msg, promise);
   }
 
   @Override
   public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
-    if (requestInProgress) {
+    if (requestInProgress && inboundChannel != null) {
+      final Channel inboundChannel = this.inboundChannel;
       final Channel channel = ctx.channel();
       ctx.executor().execute(() -> {
         // If outboundChannel is not saturated anymore, continue accepting
@@ -98,7 +132,7 @@ public class OutboundHandler extends ChannelDuplexHandler {
   @Override
   public void channelInactive(ChannelHandlerContext ctx) throws Exception {
     // Close the inbound channel if there is request in progress, or the last request/response has keep-alive == false
-    if (requestInProgress || !keepAlive) {
+    if (inboundChannel != null && (requestInProgress || !keepAlive)) {
       Channels.closeOnFlush(inboundChannel);
     }
     ctx.fireChannelInactive();
@@ -26,6 +26,7 @@ import ch.qos.logback.core.status.StatusManager;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.conf.SConfiguration;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
 import co.cask.cdap.common.security.AuditDetail;
 import co.cask.cdap.common.security.AuditPolicy;
 import com.google.common.collect.Iterators;
@@ -96,7 +97,8 @@ public class AuditLogTest {
     RouterServiceLookup serviceLookup = new RouterServiceLookup(cConf, discoveryService, new RouterPathLookup());
 
     router = new NettyRouter(cConf, sConf, InetAddress.getLoopbackAddress(), serviceLookup, new SuccessTokenValidator(),
-                             new MockAccessTokenTransfomer(), discoveryService);
+                             new MockAccessTokenTransfomer(), discoveryService,
+                             new NoOpMetricsCollectionService());
     router.startAndWait();
 
     httpService = NettyHttpService.builder("test").setHttpHandlers(new TestHandler()).build();
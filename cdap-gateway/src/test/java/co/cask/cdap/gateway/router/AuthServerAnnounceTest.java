@@ -21,6 +21,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.conf.SConfiguration;
 import co.cask.cdap.common.guice.InMemoryDiscoveryModule;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
 import co.cask.cdap.internal.guava.reflect.TypeToken;
 import co.cask.cdap.internal.guice.AppFabricTestModule;
 import co.cask.cdap.security.auth.AccessTokenTransformer;
@@ -130,7 +131,8 @@ public class AuthServerAnnounceTest {
         new NettyRouter(cConf, sConfiguration, InetAddresses.forString(hostname),
                         new RouterServiceLookup(cConf, (DiscoveryServiceClient) discoveryService,
                                                 new RouterPathLookup()),
-                        new MissingTokenValidator(), accessTokenTransformer, discoveryServiceClient);
+                        new MissingTokenValidator(), accessTokenTransformer, discoveryServiceClient,
+                        new NoOpMetricsCollectionService());
       router.startAndWait();
     }
 
@@ -20,6 +20,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.conf.SConfiguration;
 import co.cask.cdap.common.guice.InMemoryDiscoveryModule;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
 import co.cask.cdap.internal.guice.AppFabricTestModule;
 import co.cask.cdap.security.auth.AccessTokenTransformer;
 import co.cask.cdap.security.guice.SecurityModules;
@@ -86,7 +87,8 @@ public class NettyRouterHttpTest extends NettyRouterTestBase {
         new NettyRouter(cConf, sConfiguration, InetAddresses.forString(hostname),
                         new RouterServiceLookup(cConf, (DiscoveryServiceClient) discoveryService,
                                                 new RouterPathLookup()),
-                        new SuccessTokenValidator(), accessTokenTransformer, discoveryServiceClient);
+                        new SuccessTokenValidator(), accessTokenTransformer, discoveryServiceClient,
+                        new NoOpMetricsCollectionService());
       router.startAndWait();
     }
 
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.gateway.router;
 
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.discovery.RandomEndpointStrategy;
 import co.cask.cdap.common.discovery.ResolvingDiscoverable;
@@ -352,6 +353,31 @@ public abstract class NettyRouterTestBase {
     Assert.assertEquals(1, defaultServer1.getNumConnectionsClosed());
   }
 
+  @Test
+  public void testConnectionPoolSharedAcrossClients() throws Exception {
+    // Only use server1
+    defaultServer2.cancelRegistration();
+
+    String path = "/v2/ping";
+    URI uri = new URI(resolveURI(path));
+
+    // Make each request on a new client connection
+    int numClients = 50;
+    for (int i = 0; i < numClients; i++) {
+      try (Socket socket = getSocketFactory().createSocket(uri.getHost(), uri.getPort())) {
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        String firstLine = makeRequest(uri, out, socket.getInputStream());
+        Assert.assertEquals("HTTP/1.1 200 OK", firstLine);
+      }
+    }
+
+    // Connections to the server are pooled per router worker thread and shared across client connections,
+    // hence there shouldn't be more server side connections than the number of worker threads
+    int workerThreads = CConfiguration.create().getInt(Constants.Router.SERVER_WORKER_THREADS);
+    Assert.assertEquals(numClients, defaultServer1.getNumRequests());
+    Assert.assertTrue(defaultServer1.getNumConnectionsOpened() <= workerThreads);
+  }
+
   private String makeRequest(URI uri, PrintWriter out, InputStream inputStream) throws IOException {
     //Send request
     out.print("GET " + uri.getPath() + " HTTP/1.1\r\n" +
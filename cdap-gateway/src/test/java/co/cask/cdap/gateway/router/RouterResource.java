@@ -20,6 +20,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.conf.SConfiguration;
 import co.cask.cdap.common.guice.InMemoryDiscoveryModule;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
 import co.cask.cdap.internal.guice.AppFabricTestModule;
 import co.cask.cdap.security.auth.AccessTokenTransformer;
 import co.cask.cdap.security.guice.SecurityModules;
@@ -69,7 +70,8 @@ class RouterResource extends ExternalResource {
       new NettyRouter(cConf, sConf, InetAddresses.forString(hostname),
                       new RouterServiceLookup(cConf, (DiscoveryServiceClient) discoveryService,
                                               new RouterPathLookup()),
-                      new MockTokenValidator("failme"), accessTokenTransformer, discoveryServiceClient);
+                      new MockTokenValidator("failme"), accessTokenTransformer, discoveryServiceClient,
+                      new NoOpMetricsCollectionService());
     router.startAndWait();
   }
 
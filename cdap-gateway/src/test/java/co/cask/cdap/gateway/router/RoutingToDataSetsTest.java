@@ -20,6 +20,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.conf.SConfiguration;
 import co.cask.cdap.common.guice.InMemoryDiscoveryModule;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
 import co.cask.cdap.common.utils.Networks;
 import co.cask.cdap.internal.guice.AppFabricTestModule;
 import co.cask.cdap.security.auth.AccessTokenTransformer;
@@ -76,7 +77,8 @@ public class RoutingToDataSetsTest {
     cConf.setInt(Constants.Router.ROUTER_PORT, port);
     nettyRouter = new NettyRouter(cConf, sConf, InetAddresses.forString("127.0.0.1"),
                                   new RouterServiceLookup(cConf, discoveryServiceClient, new RouterPathLookup()),
-                                  new SuccessTokenValidator(), accessTokenTransformer, discoveryServiceClient);
+                                  new SuccessTokenValidator(), accessTokenTransformer, discoveryServiceClient,
+                                  new NoOpMetricsCollectionService());
     nettyRouter.startAndWait();
 
     // Starting mock DataSet service
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router.handlers;
+
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.security.auth.AccessTokenIdentifier;
+import co.cask.cdap.security.auth.AccessTokenTransformer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+/**
+ * Unit tests for {@link AccessTokenCache}.
+ */
+public class AccessTokenCacheTest {
+
+  private static final AccessTokenTransformer TRANSFORMER = new AccessTokenTransformer(null, null);
+
+  @Test
+  public void testCacheAndInvalidate() {
+    AccessTokenCache cache = new AccessTokenCache(CConfiguration.create(), new NoopMetricsContext());
+    Assert.assertNull(cache.get("token"));
+
+    AccessTokenTransformer.AccessTokenIdentifierPair pair = createPair("user", System.currentTimeMillis() + 60000);
+    cache.put("token", pair, 1000L, cache.getGeneration());
+    Assert.assertSame(pair, cache.get("token"));
+    Assert.assertNull(cache.get("other"));
+
+    // Simulate a key rotation
+    cache.invalidateAll();
+    Assert.assertNull(cache.get("token"));
+  }
+
+  @Test
+  public void testInvalidateDuringValidation() {
+    AccessTokenCache cache = new AccessTokenCache(CConfiguration.create(), new NoopMetricsContext());
+
+    // A token validated before a key change must not be cached after the change
+    long generation = cache.getGeneration();
+    cache.invalidateAll();
+    cache.put("token", createPair("user", System.currentTimeMillis() + 60000), 1000L, generation);
+    Assert.assertNull(cache.get("token"));
+
+    cache.put("token", createPair("user", System.currentTimeMillis() + 60000), 1000L, cache.getGeneration());
+    Assert.assertNotNull(cache.get("token"));
+  }
+
+  @Test
+  public void testExpiredToken() {
+    AccessTokenCache cache = new AccessTokenCache(CConfiguration.create(), new NoopMetricsContext());
+    cache.put("token", createPair("user", System.currentTimeMillis() - 1000), 1000L, cache.getGeneration());
+    Assert.assertNull(cache.get("token"));
+  }
+
+  @Test
+  public void testDisabled() {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.setInt(Constants.Security.Router.ACCESS_TOKEN_CACHE_SIZE, 0);
+    AccessTokenCache cache = new AccessTokenCache(cConf, new NoopMetricsContext());
+    cache.put("token", createPair("user", System.currentTimeMillis() + 60000), 1000L, cache.getGeneration());
+    Assert.assertNull(cache.get("token"));
+  }
+
+  private AccessTokenTransformer.AccessTokenIdentifierPair createPair(String user, long expireTime) {
+    AccessTokenIdentifier identifier = new AccessTokenIdentifier(user, Collections.emptyList(),
+                                                                 System.currentTimeMillis(), expireTime);
+    return TRANSFORMER.new AccessTokenIdentifierPair(user, identifier);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.proto;
+
+import co.cask.cdap.proto.id.ProgramId;
+
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * Result for the program status, if there is an exception about the status, the status will be null, and the
+ * exception is contained
+ */
+public class ProgramStatusResult {
+  private final ProgramId programId;
+  private final ProgramStatus status;
+  private final Exception exception;
+
+  public ProgramStatusResult(ProgramId programId, @Nullable ProgramStatus status, @Nullable Exception exception) {
+    this.programId = programId;
+    this.status = status;
+    this.exception = exception;
+  }
+
+  public ProgramId getProgramId() {
+    return programId;
+  }
+
+  @Nullable
+  public ProgramStatus getStatus() {
+    return status;
+  }
+
+  @Nullable
+  public Exception getException() {
+    return exception;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    ProgramStatusResult that = (ProgramStatusResult) o;
+    return Objects.equals(programId, that.programId) &&
+      status == that.status &&
+      Objects.equals(exception, that.exception);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(programId, status, exception);
+  }
+}
@@ -20,6 +20,7 @@ import co.cask.cdap.common.io.Codec;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.inject.Inject;
 import org.apache.commons.codec.binary.Base64;
+import org.apache.twill.common.Cancellable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -72,4 +73,9 @@ public class AccessTokenValidator extends AbstractIdleService implements TokenVa
     }
     return state;
   }
+
+  @Override
+  public Cancellable addKeyChangeListener(Runnable listener) {
+    return tokenManager.addKeyChangeListener(listener);
+  }
 }
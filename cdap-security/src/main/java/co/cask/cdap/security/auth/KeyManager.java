@@ -18,6 +18,7 @@ package co.cask.cdap.security.auth;
 
 import co.cask.cdap.common.io.Codec;
 import com.google.common.util.concurrent.Service;
+import org.apache.twill.common.Cancellable;
 
 import java.security.InvalidKeyException;
 
@@ -64,4 +65,12 @@ public interface KeyManager extends Service {
   <T> void validateMAC(Codec<T> codec, Signed<T> signedMessage)
     throws InvalidDigestException, InvalidKeyException;
 
+  /**
+   * Adds a listener to be invoked whenever the set of secret keys changes, such as when a new key is rotated in
+   * or an old key is removed. Listeners can use it to invalidate any state derived from previously validated digests.
+   * @param listener The listener to invoke on key changes.
+   * @return A {@link Cancellable} for removing the listener.
+   */
+  Cancellable addKeyChangeListener(Runnable listener);
+
 }
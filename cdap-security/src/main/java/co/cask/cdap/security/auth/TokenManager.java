@@ -20,6 +20,7 @@ import co.cask.cdap.common.io.Codec;
 import com.google.common.base.Throwables;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.inject.Inject;
+import org.apache.twill.common.Cancellable;
 
 import java.io.IOException;
 import java.security.InvalidKeyException;
@@ -64,6 +65,14 @@ public class TokenManager extends AbstractIdleService {
     }
   }
 
+  /**
+   * Adds a listener to be invoked whenever the secret keys used for signing and validating tokens change.
+   * @see KeyManager#addKeyChangeListener(Runnable)
+   */
+  public Cancellable addKeyChangeListener(Runnable listener) {
+    return keyManager.addKeyChangeListener(listener);
+  }
+
   /**
    * Given an {@link AccessToken} instance, checks that the token has not yet expired and that the digest matches
    * the expected value. To validate the token digest, we recompute the digest value, based on the asserted identity
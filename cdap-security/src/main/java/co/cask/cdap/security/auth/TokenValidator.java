@@ -17,6 +17,7 @@
 package co.cask.cdap.security.auth;
 
 import com.google.common.util.concurrent.Service;
+import org.apache.twill.common.Cancellable;
 
 /**
  * Interface TokenValidator to validate the access token.
@@ -30,4 +31,16 @@ public interface TokenValidator extends Service {
    * @return The state after validation.
    */
   TokenState validate(String token);
+
+  /**
+   * Adds a listener to be invoked whenever the secret keys used for validating tokens change. Tokens that were
+   * previously validated may no longer be valid after the change. By default, the validator is not backed by
+   * any secret keys and the listener is never invoked.
+   *
+   * @param listener The listener to invoke on key changes.
+   * @return A {@link Cancellable} for removing the listener.
+   */
+  default Cancellable addKeyChangeListener(Runnable listener) {
+    return () -> { };
+  }
 }
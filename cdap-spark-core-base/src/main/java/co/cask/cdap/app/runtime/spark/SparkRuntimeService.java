@@ -44,6 +44,7 @@ import co.cask.cdap.internal.app.runtime.MetricsFieldSetter;
 import co.cask.cdap.internal.app.runtime.ProgramRunners;
 import co.cask.cdap.internal.app.runtime.SystemArguments;
 import co.cask.cdap.internal.app.runtime.batch.distributed.ContainerLauncherGenerator;
+import co.cask.cdap.internal.app.runtime.distributed.LaunchResourceCache;
 import co.cask.cdap.internal.app.runtime.distributed.LocalizeResource;
 import co.cask.cdap.internal.app.runtime.workflow.WorkflowProgramInfo;
 import co.cask.cdap.internal.lang.Fields;
@@ -72,6 +73,7 @@ import org.apache.spark.deploy.SparkSubmit;
 import org.apache.twill.api.Configs;
 import org.apache.twill.api.RunId;
 import org.apache.twill.api.TwillRunnable;
+import org.apache.twill.filesystem.Location;
 import org.apache.twill.filesystem.LocationFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -82,6 +84,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -100,13 +103,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 import javax.annotation.Nullable;
 
@@ -233,6 +236,21 @@ final class SparkRuntimeService extends AbstractExecutionThreadService {
         // Localize all user requested files in distributed mode
         distributedUserResources(context.getLocalizeResources(), localizeResources);
 
+        // Jars and archives that are identical across runs are reused from the launch cache
+        LaunchResourceCache launchCache = LaunchResourceCache.create(cConfCopy, locationFactory,
+                                                                     runtimeContext.getRunId().getId(),
+                                                                     runtimeContext.getProgramMetrics());
+        if (launchCache != null) {
+          Runnable cleanup = cleanupTask;
+          cleanupTask = () -> {
+            try {
+              launchCache.close();
+            } finally {
+              cleanup.run();
+            }
+          };
+        }
+
         // Localize program jar and the expanding program jar
         File programJar = Locations.linkOrCopy(runtimeContext.getProgram().getJarLocation(),
                                                new File(tempDir, SparkRuntimeContextProvider.PROGRAM_JAR_NAME));
@@ -240,15 +258,15 @@ final class SparkRuntimeService extends AbstractExecutionThreadService {
                                                        new File(tempDir,
                                                                 SparkRuntimeContextProvider.PROGRAM_JAR_EXPANDED_NAME));
         // Localize both the unexpanded and expanded program jar
-        localizeResources.add(new LocalizeResource(programJar));
-        localizeResources.add(new LocalizeResource(expandedProgramJar, true));
+        localizeResources.add(createLocalizeResource(programJar, false, launchCache));
+        localizeResources.add(createLocalizeResource(expandedProgramJar, true, launchCache));
 
         if (pluginArchive != null) {
-          localizeResources.add(new LocalizeResource(pluginArchive, true));
+          localizeResources.add(createLocalizeResource(pluginArchive, true, launchCache));
         }
 
         // Create and localize the launcher jar, which is for setting up services and classloader for spark containers
-        localizeResources.add(new LocalizeResource(createLauncherJar(tempDir)));
+        localizeResources.add(createLocalizeResource(createLauncherJar(tempDir), false, launchCache));
 
         // Create metrics conf file in the current directory since
         // the same value for the "spark.metrics.conf" config needs to be used for both driver and executor processes
@@ -270,14 +288,14 @@ final class SparkRuntimeService extends AbstractExecutionThreadService {
         Joiner joiner = Joiner.on(File.pathSeparator).skipNulls();
 
         // Localize the spark.jar archive, which contains all CDAP and dependency jars
-        File sparkJar = new File(tempDir, CDAP_SPARK_JAR);
-        classpath = joiner.join(Iterables.transform(buildDependencyJar(sparkJar), new Function<String, String>() {
+        Map<String, File> dependencyJars = getDependencyJars();
+        classpath = joiner.join(Iterables.transform(dependencyJars.keySet(), new Function<String, String>() {
           @Override
           public String apply(String name) {
             return Paths.get("$PWD", CDAP_SPARK_JAR, name).toString();
           }
         }));
-        localizeResources.add(new LocalizeResource(sparkJar, true));
+        localizeResources.add(createDependencyJar(dependencyJars, tempDir, launchCache));
 
         // Localize logback if there is one. It is placed at the beginning of the classpath
         File logbackJar = ProgramRunners.createLogbackJar(new File(tempDir, "logback.xml.jar"));
@@ -606,37 +624,83 @@ final class SparkRuntimeService extends AbstractExecutionThreadService {
   }
 
   /**
-   * Packages all the dependencies of the Spark job. It contains all CDAP classes that are needed to run the
+   * Returns all the dependencies of the Spark job. It contains all CDAP classes that are needed to run the
    * user spark program.
    *
-   * @param targetFile the target file for the jar created
-   * @return list of jar file name that contains all dependency jars in sorted order
+   * @return a map from jar file name to jar file for all dependency jars, in sorted order of the names
+   */
+  private Map<String, File> getDependencyJars() throws IOException, URISyntaxException {
+    Map<String, File> jars = new TreeMap<>();
+    // All the jar files under the same directory that contains the jar for this class and twill class.
+    // Those are the directory created by TWILL that contains all dependency jars for this container
+    for (String className : Arrays.asList(getClass().getName(), TwillRunnable.class.getName())) {
+      Enumeration<URL> resources = getClass().getClassLoader().getResources(className.replace('.', '/') + ".class");
+      while (resources.hasMoreElements()) {
+        URL classURL = resources.nextElement();
+        File libDir = new File(ClassLoaders.getClassPathURL(className, classURL).toURI()).getParentFile();
+
+        for (File file : DirUtils.listFiles(libDir, "jar")) {
+          jars.putIfAbsent(file.getName(), file);
+        }
+      }
+    }
+    return jars;
+  }
+
+  /**
+   * Packages all the dependencies of the Spark job into the spark.jar archive. If there is a launch cache,
+   * the archive is only built if the cache doesn't have it yet. The cached archive is identified by the names,
+   * sizes and CRC32 checksums of the dependency jars, which is much cheaper than building the archive.
+   * Modification times are not used, since the jars are localized to every container with new modification times.
+   *
+   * @param dependencyJars the dependency jars as returned by {@link #getDependencyJars()}
+   * @param tempDir the temporary directory for the archive if there is no launch cache
+   * @param launchCache the cache to reuse the archive from, or {@code null} to always build it
+   * @return the {@link LocalizeResource} of the archive
    * @throws IOException if failed to package the jar
    */
-  private Iterable<String> buildDependencyJar(File targetFile) throws IOException, URISyntaxException {
-    Set<String> classpath = new TreeSet<>();
-    try (JarOutputStream jarOut = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(targetFile)))) {
-      jarOut.setLevel(Deflater.NO_COMPRESSION);
+  private LocalizeResource createDependencyJar(Map<String, File> dependencyJars, File tempDir,
+                                               @Nullable LaunchResourceCache launchCache) throws IOException {
+    if (launchCache == null) {
+      File sparkJar = new File(tempDir, CDAP_SPARK_JAR);
+      try (OutputStream output = new FileOutputStream(sparkJar)) {
+        writeDependencyJar(dependencyJars, output);
+      }
+      return new LocalizeResource(sparkJar, true);
+    }
 
-      // Zip all the jar files under the same directory that contains the jar for this class and twill class.
-      // Those are the directory created by TWILL that contains all dependency jars for this container
-      for (String className : Arrays.asList(getClass().getName(), TwillRunnable.class.getName())) {
-        Enumeration<URL> resources = getClass().getClassLoader().getResources(className.replace('.', '/') + ".class");
-        while (resources.hasMoreElements()) {
-          URL classURL = resources.nextElement();
-          File libDir = new File(ClassLoaders.getClassPathURL(className, classURL).toURI()).getParentFile();
-
-          for (File file : DirUtils.listFiles(libDir, "jar")) {
-            if (classpath.add(file.getName())) {
-              jarOut.putNextEntry(new JarEntry(file.getName()));
-              Files.copy(file, jarOut);
-              jarOut.closeEntry();
-            }
-          }
-        }
+    StringBuilder fingerprint = new StringBuilder();
+    for (Map.Entry<String, File> entry : dependencyJars.entrySet()) {
+      File file = entry.getValue();
+      fingerprint.append(entry.getKey()).append(':').append(file.length()).append(':')
+        .append(Files.getChecksum(file, new CRC32())).append('\n');
+    }
+    Location sparkJar = launchCache.cache(CDAP_SPARK_JAR, fingerprint.toString(),
+                                          output -> writeDependencyJar(dependencyJars, output));
+    return new LocalizeResource(sparkJar.toURI(), true);
+  }
+
+  private void writeDependencyJar(Map<String, File> dependencyJars, OutputStream output) throws IOException {
+    try (JarOutputStream jarOut = new JarOutputStream(new BufferedOutputStream(output))) {
+      jarOut.setLevel(Deflater.NO_COMPRESSION);
+      for (Map.Entry<String, File> entry : dependencyJars.entrySet()) {
+        jarOut.putNextEntry(new JarEntry(entry.getKey()));
+        Files.copy(entry.getValue(), jarOut);
+        jarOut.closeEntry();
       }
     }
-    return classpath;
+  }
+
+  /**
+   * Creates a {@link LocalizeResource} for the given file, which refers to the cached copy of the file if
+   * there is a launch cache.
+   */
+  private LocalizeResource createLocalizeResource(File file, boolean archive,
+                                                  @Nullable LaunchResourceCache launchCache) throws IOException {
+    if (launchCache == null) {
+      return new LocalizeResource(file, archive);
+    }
+    return new LocalizeResource(launchCache.cache(file).toURI(), archive);
   }
 
   /**
@@ -21,6 +21,7 @@ import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.app.program.Program;
 import co.cask.cdap.app.runtime.spark.SparkPackageUtils;
 import co.cask.cdap.app.runtime.spark.SparkRuntimeEnv;
+import co.cask.cdap.common.lang.CachingClassRewriter;
 import co.cask.cdap.common.lang.ClassRewriter;
 import co.cask.cdap.common.logging.RedirectedPrintStream;
 import co.cask.cdap.internal.asm.Classes;
@@ -122,6 +123,16 @@ public class SparkClassRewriter implements ClassRewriter {
     new Method("touch", NETTY_REFERENCE_COUNTED_TYPE, new Type[] { Type.getType(Object.class) })
   );
 
+  // Classes that are rewritten by their exact names
+  private static final Set<String> REWRITE_CLASSES = ImmutableSet.of(
+    SPARK_CONTEXT_TYPE.getClassName(), SPARK_STREAMING_CONTEXT_TYPE.getClassName(), SPARK_CONF_TYPE.getClassName(),
+    SPARK_PYTHON_RUNNER_TYPE.getClassName(), SPARK_PYTHON_RUNNER_COMPANION_TYPE.getClassName(),
+    SPARK_PYTHON_WORKER_FACTORY_TYPE.getClassName(), SPARK_PYTHON_WORKER_MONITOR_THREAD_TYPE.getClassName(),
+    SPARK_DSTREAM_GRAPH_TYPE.getClassName(), SPARK_BATCHED_WRITE_AHEAD_LOG_TYPE.getClassName(),
+    RATE_CONTROLLER_TYPE.getClassName(), SPARK_EXECUTOR_CLASSLOADER_TYPE.getClassName(),
+    AKKA_REMOTING_TYPE.getClassName(), YARN_SPARK_HADOOP_UTIL_TYPE.getClassName(), KRYO_TYPE.getClassName(),
+    SPARK_DISK_STORE.getClassName());
+
   // File name of the Spark conf directory as defined by the Spark framework
   // This is for the Hack to workaround CDAP-5019 (SPARK-13441)
   private static final String LOCALIZED_CONF_DIR = SparkPackageUtils.LOCALIZED_CONF_DIR;
@@ -138,6 +149,25 @@ public class SparkClassRewriter implements ClassRewriter {
     this.distributed = Boolean.parseBoolean(System.getenv("SPARK_YARN_MODE"));
   }
 
+  /**
+   * Returns the name of this rewriter for {@link CachingClassRewriter}, which differs for rewriters that produce
+   * different results for the same class.
+   */
+  public String getName() {
+    return "spark-" + (rewriteYarnClient ? "yarn-client-" : "") + (distributed ? "distributed" : "local");
+  }
+
+  /**
+   * Returns {@code true} if the given class may be rewritten by the {@link #rewriteClass(String, InputStream)} method.
+   * This must be kept in sync with the {@link #rewriteClass(String, InputStream)} method.
+   */
+  public boolean needRewrite(String className) {
+    return REWRITE_CLASSES.contains(className)
+      || className.startsWith(SPARK_SUBMIT_TYPE.getClassName())
+      || className.startsWith("org.apache.spark.network.")
+      || (className.equals(SPARK_YARN_CLIENT_TYPE.getClassName()) && rewriteYarnClient);
+  }
+
   @Nullable
   @Override
   public byte[] rewriteClass(String className, InputStream input) throws IOException {
@@ -17,7 +17,9 @@
 package co.cask.cdap.app.runtime.spark.classloader;
 
 import co.cask.cdap.common.app.MainClassLoader;
+import co.cask.cdap.common.lang.CachingClassRewriter;
 import co.cask.cdap.common.lang.ClassLoaders;
+import co.cask.cdap.common.lang.ClassRewriter;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -31,6 +33,7 @@ import javax.annotation.Nullable;
 public class SparkContainerClassLoader extends MainClassLoader {
 
   private final SparkClassRewriter sparkClassRewriter;
+  private final ClassRewriter cachingRewriter;
 
   /**
    * Creates a new instance for the following set of {@link URL}.
@@ -41,6 +44,7 @@ public class SparkContainerClassLoader extends MainClassLoader {
   public SparkContainerClassLoader(URL[] urls, ClassLoader parent) {
     super(urls, parent);
     this.sparkClassRewriter = new SparkClassRewriter(name -> ClassLoaders.openResource(this, name), false);
+    this.cachingRewriter = CachingClassRewriter.wrap(sparkClassRewriter, sparkClassRewriter.getName());
   }
 
   @Override
@@ -53,13 +57,13 @@ public class SparkContainerClassLoader extends MainClassLoader {
   public byte[] rewriteClass(String className, InputStream input) throws IOException {
     byte[] rewrittenCode = super.rewriteClass(className, input);
 
-    if (!needRewrite(className)) {
+    if (!needRewrite(className) || !sparkClassRewriter.needRewrite(className)) {
       return rewrittenCode;
     }
 
     // Otherwise rewrite it using the SparkClassRewriter
-    return sparkClassRewriter.rewriteClass(className,
-                                           rewrittenCode == null ? input : new ByteArrayInputStream(rewrittenCode));
+    return cachingRewriter.rewriteClass(className,
+                                        rewrittenCode == null ? input : new ByteArrayInputStream(rewrittenCode));
   }
 
   /**
@@ -18,8 +18,10 @@ package co.cask.cdap.app.runtime.spark.classloader;
 
 import co.cask.cdap.api.spark.Spark;
 import co.cask.cdap.common.internal.guava.ClassPath;
+import co.cask.cdap.common.lang.CachingClassRewriter;
 import co.cask.cdap.common.lang.ClassLoaders;
 import co.cask.cdap.common.lang.ClassPathResources;
+import co.cask.cdap.common.lang.ClassRewriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,7 +66,8 @@ public final class SparkRunnerClassLoader extends URLClassLoader {
   // A closeables for keeping track of streams opened via getResourceAsStream
   private final Map<Closeable, Void> closeables;
   private final Lock closeablesLock;
-  private final SparkClassRewriter rewriter;
+  private final SparkClassRewriter sparkClassRewriter;
+  private final ClassRewriter rewriter;
 
   static {
     Set<String> apiClasses = Collections.emptySet();
@@ -87,7 +90,8 @@ public final class SparkRunnerClassLoader extends URLClassLoader {
     // Copy from URLClassLoader, which also uses WeakHashMap
     this.closeables = new WeakHashMap<>();
     this.closeablesLock = new ReentrantLock();
-    this.rewriter = new SparkClassRewriter(name -> ClassLoaders.openResource(this, name), rewriteYarnClient);
+    this.sparkClassRewriter = new SparkClassRewriter(name -> ClassLoaders.openResource(this, name), rewriteYarnClient);
+    this.rewriter = CachingClassRewriter.wrap(sparkClassRewriter, sparkClassRewriter.getName());
   }
 
   @Override
@@ -183,7 +187,14 @@ public final class SparkRunnerClassLoader extends URLClassLoader {
         return cls;
       }
 
-      // Define the class with this ClassLoader
+      // Define the class with this ClassLoader. Only classes that may be rewritten are read for rewriting.
+      if (!sparkClassRewriter.needRewrite(name)) {
+        cls = findClass(name);
+        if (resolve) {
+          resolveClass(cls);
+        }
+        return cls;
+      }
       try (InputStream is = ClassLoaders.openResource(this, name.replace('.', '/') + ".class")) {
         if (is == null) {
           throw new ClassNotFoundException("Failed to find resource for class " + name);
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2017 Cask Data, Inc.
+ * Copyright © 2017-2019 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -18,6 +18,7 @@ package co.cask.cdap.app.runtime.spark.serializer;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.SchemaHash;
 import co.cask.cdap.format.io.StructuredRecordDatumReader;
 import co.cask.cdap.format.io.StructuredRecordDatumWriter;
 import com.esotericsoftware.kryo.Kryo;
@@ -25,21 +26,75 @@ import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * A Kryo {@link Serializer} for {@link StructuredRecord}.
+ *
+ * The schema of a record is written in full, together with its {@link SchemaHash}, the first time it appears
+ * in a stream. Subsequent records with the same schema written to the same stream only carry the schema hash.
+ * Records are self-contained, meaning that they always carry the full schema, when they are written to a
+ * standalone buffer, which has no underlying stream, or to a stream whose records Spark relocates one by one.
+ * The latter is the case for the serialized shuffle, which sorts the serialized bytes of each record
+ * by partition, so that records written to the same stream can end up in different partitions.
+ *
+ * The encoded and parsed schemas are shared by all serializers in the same JVM, keyed by the schema hash,
+ * so that each schema is only encoded and parsed once per executor instead of once per record.
  */
 public class StructuredRecordSerializer extends Serializer<StructuredRecord> {
 
   private static final StructuredRecordDatumWriter DATUM_WRITER = new StructuredRecordDatumWriter();
   private static final StructuredRecordDatumReader DATUM_READER = new StructuredRecordDatumReader();
 
+  // Markers written before the schema hash
+  private static final byte FULL_SCHEMA = 0;
+  private static final byte SCHEMA_REF = 1;
+  private static final int SCHEMA_HASH_SIZE = 16;
+
+  // The buffer that the serialized shuffle writes each record to, before relocating the record's bytes
+  private static final String RELOCATING_STREAM_CLASS =
+    "org.apache.spark.shuffle.sort.UnsafeShuffleWriter$MyByteArrayOutputStream";
+
+  // Schemas encoded and parsed in this JVM
+  private static final Cache<SchemaHash, byte[]> ENCODED_SCHEMA_CACHE =
+    CacheBuilder.newBuilder().maximumSize(1000).build();
+  private static final Cache<SchemaHash, Schema> SCHEMA_CACHE = CacheBuilder.newBuilder().maximumSize(1000).build();
+
+  // Kryo instance, hence its serializers, are never used concurrently. The state below tracks the schemas
+  // written to or read from the stream that was last used with this serializer.
+  private WeakReference<OutputStream> lastOutputStream = new WeakReference<>(null);
+  private boolean relocating;
+  private final Set<SchemaHash> writtenSchemas = new HashSet<>();
+  private WeakReference<InputStream> lastInputStream = new WeakReference<>(null);
+  private final Map<SchemaHash, Schema> readSchemas = new HashMap<>();
+
+  /**
+   * Removes all schemas cached in this JVM.
+   */
+  @VisibleForTesting
+  static void invalidateSchemaCache() {
+    ENCODED_SCHEMA_CACHE.invalidateAll();
+    SCHEMA_CACHE.invalidateAll();
+  }
+
   @Override
   public void write(Kryo kryo, Output output, StructuredRecord record) {
     // First write out the schema
-    kryo.writeObject(output, record.getSchema());
+    writeSchema(output, record.getSchema());
     // Then write out the data
     try {
       DATUM_WRITER.encode(record, new KryoEncoder(output));
@@ -51,11 +106,87 @@ public class StructuredRecordSerializer extends Serializer<StructuredRecord> {
   @Override
   public StructuredRecord read(Kryo kryo, Input input, Class<StructuredRecord> type) {
     // Read the schema
-    Schema schema = kryo.readObject(input, Schema.class);
+    Schema schema = readSchema(input);
     try {
       return DATUM_READER.read(new KryoDecoder(input), schema);
     } catch (IOException e) {
       throw new KryoException("Failed to decode StructuredRecord " + schema.getRecordName(), e);
     }
   }
+
+  private void writeSchema(Output output, Schema schema) {
+    SchemaHash schemaHash = schema.getSchemaHash();
+    if (isSchemaWritten(output.getOutputStream(), schemaHash)) {
+      output.writeByte(SCHEMA_REF);
+      output.writeBytes(schemaHash.toByteArray());
+      return;
+    }
+
+    byte[] schemaBytes = ENCODED_SCHEMA_CACHE.getIfPresent(schemaHash);
+    if (schemaBytes == null) {
+      schemaBytes = schema.toString().getBytes(StandardCharsets.UTF_8);
+      ENCODED_SCHEMA_CACHE.put(schemaHash, schemaBytes);
+    }
+    output.writeByte(FULL_SCHEMA);
+    output.writeBytes(schemaHash.toByteArray());
+    output.writeInt(schemaBytes.length, true);
+    output.writeBytes(schemaBytes);
+  }
+
+  private Schema readSchema(Input input) {
+    byte marker = input.readByte();
+    SchemaHash schemaHash = new SchemaHash(ByteBuffer.wrap(input.readBytes(SCHEMA_HASH_SIZE)));
+    Map<SchemaHash, Schema> streamSchemas = getReadSchemas(input.getInputStream());
+
+    if (marker == SCHEMA_REF) {
+      Schema schema = streamSchemas.get(schemaHash);
+      if (schema == null) {
+        throw new KryoException("Schema with hash " + schemaHash + " was not written before in the stream");
+      }
+      return schema;
+    }
+
+    int length = input.readInt(true);
+    // Skip the schema if it was already parsed
+    Schema schema = SCHEMA_CACHE.getIfPresent(schemaHash);
+    if (schema != null) {
+      input.skip(length);
+    } else {
+      try {
+        schema = Schema.parseJson(new String(input.readBytes(length), StandardCharsets.UTF_8));
+      } catch (IOException e) {
+        throw new KryoException("Fail to deserialize Schema", e);
+      }
+      SCHEMA_CACHE.put(schemaHash, schema);
+    }
+    streamSchemas.put(schemaHash, schema);
+    return schema;
+  }
+
+  /**
+   * Returns whether the given schema was already written to the given stream, and records it as written if not.
+   */
+  private boolean isSchemaWritten(@Nullable OutputStream outputStream, SchemaHash schemaHash) {
+    // Without an underlying stream, the output is a standalone buffer that can be read on its own
+    if (outputStream == null) {
+      return false;
+    }
+    if (lastOutputStream.get() != outputStream) {
+      lastOutputStream = new WeakReference<>(outputStream);
+      relocating = RELOCATING_STREAM_CLASS.equals(outputStream.getClass().getName());
+      writtenSchemas.clear();
+    }
+    return !relocating && !writtenSchemas.add(schemaHash);
+  }
+
+  /**
+   * Returns the schemas that were read from the given stream.
+   */
+  private Map<SchemaHash, Schema> getReadSchemas(@Nullable InputStream inputStream) {
+    if (inputStream == null || lastInputStream.get() != inputStream) {
+      lastInputStream = new WeakReference<>(inputStream);
+      readSchemas.clear();
+    }
+    return readSchemas;
+  }
 }
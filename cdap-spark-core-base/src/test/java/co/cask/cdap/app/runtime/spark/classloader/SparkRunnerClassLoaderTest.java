@@ -16,10 +16,14 @@
 
 package co.cask.cdap.app.runtime.spark.classloader;
 
+import co.cask.cdap.common.lang.CachingClassRewriter;
 import co.cask.cdap.common.lang.ClassLoaders;
 import com.google.common.io.Closeables;
 import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Ignore;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -32,6 +36,7 @@ import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -39,6 +44,9 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public class SparkRunnerClassLoaderTest {
 
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
   @Test
   public void testConcurrentLoadClose() throws Exception {
     // This is for testing CDAP-5822, which apparently is a JDK bug.
@@ -138,4 +146,41 @@ public class SparkRunnerClassLoaderTest {
     Closeables.closeQuietly(cl);
     is.read();
   }
+
+  @Ignore
+  @Test
+  public void testRewriteCacheSpeed() throws Exception {
+    // Loads the classes that are rewritten when starting a local Spark program,
+    // without the rewrite cache, with an empty cache and with a populated cache
+    String cacheDir = TEMP_FOLDER.newFolder().getAbsolutePath();
+    String[] names = new String[] { "no cache", "cold cache", "warm cache" };
+    String[] cacheDirs = new String[] { "", cacheDir, cacheDir };
+
+    List<URL> urls = ClassLoaders.getClassLoaderURLs(getClass().getClassLoader(), new ArrayList<URL>());
+    URL[] urlArray = urls.toArray(new URL[urls.size()]);
+    String oldCacheDir = System.getProperty(CachingClassRewriter.CACHE_DIR_PROPERTY);
+    try {
+      for (int i = 0; i < names.length; i++) {
+        System.setProperty(CachingClassRewriter.CACHE_DIR_PROPERTY, cacheDirs[i]);
+        long startTime = System.nanoTime();
+        try (SparkRunnerClassLoader cl = new SparkRunnerClassLoader(urlArray, getClass().getClassLoader(), false)) {
+          for (String className : new String[] {
+            "org.apache.spark.SparkContext", "org.apache.spark.SparkConf",
+            "org.apache.spark.streaming.StreamingContext", "org.apache.spark.deploy.SparkSubmit$",
+            "org.apache.spark.network.TransportContext", "org.apache.spark.network.server.TransportServer",
+            "org.apache.spark.network.client.TransportClientFactory", "com.esotericsoftware.kryo.Kryo" }) {
+            cl.loadClass(className);
+          }
+        }
+        long endTime = System.nanoTime();
+        System.out.println(names[i] + " time spent: " + TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+      }
+    } finally {
+      if (oldCacheDir == null) {
+        System.clearProperty(CachingClassRewriter.CACHE_DIR_PROPERTY);
+      } else {
+        System.setProperty(CachingClassRewriter.CACHE_DIR_PROPERTY, oldCacheDir);
+      }
+    }
+  }
 }
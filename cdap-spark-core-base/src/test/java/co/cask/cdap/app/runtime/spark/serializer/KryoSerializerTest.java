@@ -19,16 +19,24 @@ package co.cask.cdap.app.runtime.spark.serializer;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.format.StructuredRecordStringConverter;
+import co.cask.cdap.format.io.StructuredRecordDatumReader;
+import co.cask.cdap.format.io.StructuredRecordDatumWriter;
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.google.common.collect.ImmutableMap;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Unit tests for various Kryo serializers in CDAP.
@@ -87,6 +95,113 @@ public class KryoSerializerTest {
                         StructuredRecordStringConverter.toJsonString(newRecord));
   }
 
+  @Test
+  public void testStructuredRecordStream() throws IOException {
+    Schema schema = createSchema();
+    Kryo kryo = createKryo(StructuredRecordSerializer.class);
+
+    // Write a single record to a standalone buffer, which always carries the full schema
+    Output bufferOutput = new Output(1024, -1);
+    kryo.writeObject(bufferOutput, createRecord(schema, 0));
+    byte[] bufferBytes = bufferOutput.toBytes();
+
+    // Write multiple records to the same stream. Only the first one should carry the full schema.
+    byte[] streamBytes = writeRecords(kryo, schema, 10);
+    Assert.assertTrue(streamBytes.length < bufferBytes.length * 10 / 2);
+
+    // Read it back with a new Kryo instance and no parsed schema in the JVM
+    StructuredRecordSerializer.invalidateSchemaCache();
+    kryo = createKryo(StructuredRecordSerializer.class);
+    try (Input input = new Input(new ByteArrayInputStream(streamBytes))) {
+      for (int i = 0; i < 10; i++) {
+        StructuredRecord record = kryo.readObject(input, StructuredRecord.class);
+        Assert.assertEquals(StructuredRecordStringConverter.toJsonString(createRecord(schema, i)),
+                            StructuredRecordStringConverter.toJsonString(record));
+      }
+    }
+
+    // The standalone buffer can be read on its own, as another executor would
+    StructuredRecordSerializer.invalidateSchemaCache();
+    StructuredRecord record = kryo.readObject(new Input(bufferBytes), StructuredRecord.class);
+    Assert.assertEquals(StructuredRecordStringConverter.toJsonString(createRecord(schema, 0)),
+                        StructuredRecordStringConverter.toJsonString(record));
+  }
+
+  @Test
+  public void testStructuredRecordSize() throws IOException {
+    Schema schema = createSchema();
+    int records = 1000;
+    byte[] baselineBytes = writeRecords(createKryo(SchemaPerRecordSerializer.class), schema, records);
+    byte[] streamBytes = writeRecords(createKryo(StructuredRecordSerializer.class), schema, records);
+
+    // The schema is much larger than the record data, so carrying only the hash should make
+    // the stream several times smaller
+    Assert.assertTrue("Stream of " + streamBytes.length + " bytes is not smaller than a third of "
+                        + baselineBytes.length + " bytes", streamBytes.length < baselineBytes.length / 3);
+  }
+
+  @Ignore
+  @Test
+  public void testStructuredRecordPerformance() throws IOException {
+    Schema schema = createSchema();
+    int records = 200000;
+
+    // Warm up both, then measure
+    for (int round = 0; round < 2; round++) {
+      for (Class<? extends Serializer> serializerClass : Arrays.asList(SchemaPerRecordSerializer.class,
+                                                                       StructuredRecordSerializer.class)) {
+        long startTime = System.nanoTime();
+        byte[] bytes = writeRecords(createKryo(serializerClass), schema, records);
+        long writeTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+        startTime = System.nanoTime();
+        Kryo kryo = createKryo(serializerClass);
+        try (Input input = new Input(new ByteArrayInputStream(bytes))) {
+          for (int i = 0; i < records; i++) {
+            kryo.readObject(input, StructuredRecord.class);
+          }
+        }
+        long readTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        if (round > 0) {
+          System.out.println(serializerClass.getSimpleName() + ": " + records + " records in " + bytes.length
+                               + " bytes, written in " + writeTime + " ms, read in " + readTime + " ms");
+        }
+      }
+    }
+  }
+
+  private Kryo createKryo(Class<? extends Serializer> recordSerializerClass) {
+    Kryo kryo = new Kryo();
+    kryo.addDefaultSerializer(Schema.class, SchemaSerializer.class);
+    kryo.addDefaultSerializer(StructuredRecord.class, recordSerializerClass);
+    return kryo;
+  }
+
+  private byte[] writeRecords(Kryo kryo, Schema schema, int records) {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (Output output = new Output(bos)) {
+      for (int i = 0; i < records; i++) {
+        kryo.writeObject(output, createRecord(schema, i));
+      }
+    }
+    return bos.toByteArray();
+  }
+
+  private StructuredRecord createRecord(Schema schema, int i) {
+    return StructuredRecord.builder(schema)
+      .set("boolean", i % 2 == 0)
+      .set("int", i)
+      .set("long", 1L + Integer.MAX_VALUE)
+      .set("float", 1.5f)
+      .set("double", 2.25d)
+      .set("string", "Hello World " + i)
+      .set("bytes", "Hello Bytes".getBytes(StandardCharsets.UTF_8))
+      .set("enum", "a")
+      .set("array", new int[]{1, 2, i})
+      .set("map", ImmutableMap.of("1", 1, "2", 2, "3", i))
+      .set("union", null).build();
+  }
+
   private Schema createSchema() {
     return Schema.recordOf("record",
       Schema.Field.of("boolean", Schema.of(Schema.Type.BOOLEAN)),
@@ -102,4 +217,34 @@ public class KryoSerializerTest {
       Schema.Field.of("union", Schema.unionOf(Schema.of(Schema.Type.NULL), Schema.of(Schema.Type.STRING)))
     );
   }
+
+  /**
+   * The serializer for {@link StructuredRecord} before schemas were written once per stream,
+   * which writes the full schema with every record.
+   */
+  public static final class SchemaPerRecordSerializer extends Serializer<StructuredRecord> {
+
+    private static final StructuredRecordDatumWriter DATUM_WRITER = new StructuredRecordDatumWriter();
+    private static final StructuredRecordDatumReader DATUM_READER = new StructuredRecordDatumReader();
+
+    @Override
+    public void write(Kryo kryo, Output output, StructuredRecord record) {
+      kryo.writeObject(output, record.getSchema());
+      try {
+        DATUM_WRITER.encode(record, new KryoEncoder(output));
+      } catch (IOException e) {
+        throw new KryoException(e);
+      }
+    }
+
+    @Override
+    public StructuredRecord read(Kryo kryo, Input input, Class<StructuredRecord> type) {
+      Schema schema = kryo.readObject(input, Schema.class);
+      try {
+        return DATUM_READER.read(new KryoDecoder(input), schema);
+      } catch (IOException e) {
+        throw new KryoException(e);
+      }
+    }
+  }
 }
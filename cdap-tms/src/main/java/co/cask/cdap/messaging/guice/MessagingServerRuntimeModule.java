@@ -37,6 +37,7 @@ import co.cask.cdap.messaging.store.cache.DefaultMessageTableCacheProvider;
 import co.cask.cdap.messaging.store.cache.MessageTableCacheProvider;
 import co.cask.cdap.messaging.store.hbase.HBaseTableFactory;
 import co.cask.cdap.messaging.store.leveldb.LevelDBTableFactory;
+import co.cask.cdap.messaging.store.log.LogTableFactory;
 import co.cask.cdap.proto.id.TopicId;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Binder;
@@ -121,7 +122,7 @@ public class MessagingServerRuntimeModule extends RuntimeModule {
         }
       });
 
-      bind(TableFactory.class).to(LevelDBTableFactory.class).in(Scopes.SINGLETON);
+      bind(TableFactory.class).toProvider(LocalTableFactoryProvider.class).in(Scopes.SINGLETON);
       bind(MessagingService.class).to(CoreMessagingService.class).in(Scopes.SINGLETON);
       expose(MessagingService.class);
 
@@ -157,4 +158,31 @@ public class MessagingServerRuntimeModule extends RuntimeModule {
       return hBaseTableUtilFactory.get();
     }
   }
+
+  /**
+   * A Guice {@link Provider} for the {@link TableFactory} used in local mode, based on the
+   * {@link Constants.MessagingSystem#LOCAL_TABLE_STORE} setting.
+   */
+  private static final class LocalTableFactoryProvider implements Provider<TableFactory> {
+
+    private final CConfiguration cConf;
+
+    @Inject
+    LocalTableFactoryProvider(CConfiguration cConf) {
+      this.cConf = cConf;
+    }
+
+    @Override
+    public TableFactory get() {
+      String store = cConf.get(Constants.MessagingSystem.LOCAL_TABLE_STORE, "leveldb");
+      if ("log".equalsIgnoreCase(store)) {
+        return new LogTableFactory(cConf);
+      }
+      if (!"leveldb".equalsIgnoreCase(store)) {
+        throw new IllegalArgumentException("Unsupported value '" + store + "' for "
+                                             + Constants.MessagingSystem.LOCAL_TABLE_STORE);
+      }
+      return new LevelDBTableFactory(cConf);
+    }
+  }
 }
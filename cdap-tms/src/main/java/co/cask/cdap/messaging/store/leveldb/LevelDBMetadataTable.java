@@ -43,7 +43,7 @@ import javax.annotation.Nullable;
 /**
  * LevelDB implementation of {@link MetadataTable}.
  */
-final class LevelDBMetadataTable implements MetadataTable {
+public final class LevelDBMetadataTable implements MetadataTable {
 
   private static final Gson GSON = new Gson();
   private static final Type MAP_TYPE = new TypeToken<Map<String, String>>() { }.getType();
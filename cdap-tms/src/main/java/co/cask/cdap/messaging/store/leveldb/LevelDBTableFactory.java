@@ -69,11 +69,7 @@ public final class LevelDBTableFactory implements TableFactory {
   @Inject
   public LevelDBTableFactory(CConfiguration cConf) {
     this.baseDir = new File(cConf.get(Constants.MessagingSystem.LOCAL_DATA_DIR));
-    this.dbOptions = new Options()
-      .blockSize(cConf.getInt(Constants.CFG_DATA_LEVELDB_BLOCKSIZE, Constants.DEFAULT_DATA_LEVELDB_BLOCKSIZE))
-      .cacheSize(cConf.getLong(Constants.CFG_DATA_LEVELDB_CACHESIZE, Constants.DEFAULT_DATA_LEVELDB_CACHESIZE))
-      .errorIfExists(false)
-      .createIfMissing(true);
+    this.dbOptions = createDBOptions(cConf);
     ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
       Threads.createDaemonThreadFactory("leveldb-tms-data-cleanup"));
     executor.scheduleAtFixedRate(new DataCleanup(), 0L,
@@ -92,12 +88,35 @@ public final class LevelDBTableFactory implements TableFactory {
       return metadataTable;
     }
 
-    File dbPath = getMetadataDBPath(metadataTableName);
-    metadataTable = new LevelDBMetadataTable(LEVEL_DB_FACTORY.open(dbPath, dbOptions));
+    metadataTable = openMetadataTable(baseDir, metadataTableName, dbOptions);
+    return metadataTable;
+  }
+
+  /**
+   * Opens the LevelDB {@link MetadataTable} of the messaging system, without creating a factory for the other
+   * tables. It is for table factories that store messages and payloads differently.
+   */
+  public static LevelDBMetadataTable openMetadataTable(CConfiguration cConf) throws IOException {
+    return openMetadataTable(new File(cConf.get(Constants.MessagingSystem.LOCAL_DATA_DIR)),
+                             cConf.get(Constants.MessagingSystem.METADATA_TABLE_NAME), createDBOptions(cConf));
+  }
+
+  private static LevelDBMetadataTable openMetadataTable(File baseDir, String tableName,
+                                                        Options dbOptions) throws IOException {
+    File dbPath = ensureDirExists(new File(baseDir, String.format("%s.%s", NamespaceId.SYSTEM, tableName)));
+    LevelDBMetadataTable metadataTable = new LevelDBMetadataTable(LEVEL_DB_FACTORY.open(dbPath, dbOptions));
     LOG.info("Messaging metadata table created at {}", dbPath);
     return metadataTable;
   }
 
+  private static Options createDBOptions(CConfiguration cConf) {
+    return new Options()
+      .blockSize(cConf.getInt(Constants.CFG_DATA_LEVELDB_BLOCKSIZE, Constants.DEFAULT_DATA_LEVELDB_BLOCKSIZE))
+      .cacheSize(cConf.getLong(Constants.CFG_DATA_LEVELDB_CACHESIZE, Constants.DEFAULT_DATA_LEVELDB_CACHESIZE))
+      .errorIfExists(false)
+      .createIfMissing(true);
+  }
+
   @Override
   public MessageTable createMessageTable(TopicMetadata topicMetadata) throws IOException {
     return new LevelDBMessageTable(getLevelDB(topicMetadata, messageTableName), topicMetadata);
@@ -139,12 +158,7 @@ public final class LevelDBTableFactory implements TableFactory {
     return new File(baseDir, fileName);
   }
 
-  private File getMetadataDBPath(String tableName) throws IOException {
-    String fileName = String.format("%s.%s", NamespaceId.SYSTEM, tableName);
-    return ensureDirExists(new File(baseDir, fileName));
-  }
-
-  private File ensureDirExists(File dir) throws IOException {
+  private static File ensureDirExists(File dir) throws IOException {
     if (!DirUtils.mkdirs(dir)) {
       throw new IOException("Failed to create local directory " + dir + " for the messaging system.");
     }
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store.log;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.AbstractCloseableIterator;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.messaging.store.AbstractMessageTable;
+import co.cask.cdap.messaging.store.MessageTable;
+import co.cask.cdap.messaging.store.RawMessageTableEntry;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import javax.annotation.Nullable;
+
+/**
+ * {@link MessageTable} implementation that stores messages in a {@link SegmentedLog}.
+ */
+final class LogMessageTable extends AbstractMessageTable {
+
+  private static final byte NON_TRANSACTIONAL = 0;
+  private static final byte TRANSACTIONAL = 1;
+  private static final byte PAYLOAD_REFERENCE = 2;
+
+  private final SegmentedLog log;
+
+  LogMessageTable(SegmentedLog log) {
+    this.log = log;
+  }
+
+  @Override
+  protected void persist(Iterator<RawMessageTableEntry> entries) throws IOException {
+    while (entries.hasNext()) {
+      RawMessageTableEntry entry = entries.next();
+      byte[] key = entry.getKey();
+      log.append(key, encodeValue(entry.getTxPtr(), entry.getPayload()), getPublishTimestamp(key));
+    }
+    log.sync();
+  }
+
+  @Override
+  protected void rollback(byte[] startKey, byte[] stopKey, byte[] txWritePointer) throws IOException {
+    try (CloseableIterator<LogRecord> records = log.scan(startKey, stopKey)) {
+      while (records.hasNext()) {
+        LogRecord record = records.next();
+        // Non-transactional message has no transaction write pointer to update
+        if (record.getValue()[0] != NON_TRANSACTIONAL) {
+          log.overwrite(record, 1, txWritePointer);
+        }
+      }
+    }
+    log.sync();
+  }
+
+  @Override
+  protected CloseableIterator<RawMessageTableEntry> read(byte[] startRow, byte[] stopRow) {
+    CloseableIterator<LogRecord> records = log.scan(startRow, stopRow);
+    RawMessageTableEntry tableEntry = new RawMessageTableEntry();
+    return new AbstractCloseableIterator<RawMessageTableEntry>() {
+      private boolean closed;
+
+      @Override
+      protected RawMessageTableEntry computeNext() {
+        if (closed || !records.hasNext()) {
+          return endOfData();
+        }
+        LogRecord record = records.next();
+        byte[] value = record.getValue();
+        byte[] txPtr = null;
+        byte[] payload = null;
+        if (value[0] == NON_TRANSACTIONAL) {
+          payload = Arrays.copyOfRange(value, 1, value.length);
+        } else {
+          txPtr = Arrays.copyOfRange(value, 1, 1 + Bytes.SIZEOF_LONG);
+          if (value[0] == TRANSACTIONAL) {
+            payload = Arrays.copyOfRange(value, 1 + Bytes.SIZEOF_LONG, value.length);
+          }
+        }
+        return tableEntry.set(record.getKey(), txPtr, payload);
+      }
+
+      @Override
+      public void close() {
+        try {
+          records.close();
+        } finally {
+          endOfData();
+          closed = true;
+        }
+      }
+    };
+  }
+
+  @Override
+  public void close() {
+    // No-op since the log is shared by all tables of the same topic
+  }
+
+  /**
+   * Returns the publish timestamp encoded in the given row key, which ends with the publish timestamp
+   * and the sequence id.
+   */
+  static long getPublishTimestamp(byte[] rowKey) {
+    return Bytes.toLong(rowKey, rowKey.length - Bytes.SIZEOF_SHORT - Bytes.SIZEOF_LONG);
+  }
+
+  /**
+   * Encodes the value the same way as the LevelDB message table. The first byte is the type, followed by
+   * the transaction write pointer for transactional messages, and then the payload if the message is not
+   * a reference to the payload table.
+   */
+  private byte[] encodeValue(@Nullable byte[] txWritePtr, @Nullable byte[] payload) {
+    if (txWritePtr == null) {
+      Preconditions.checkArgument(payload != null, "Payload cannot be null for non-transactional message");
+      byte[] result = new byte[1 + payload.length];
+      result[0] = NON_TRANSACTIONAL;
+      Bytes.putBytes(result, 1, payload, 0, payload.length);
+      return result;
+    }
+
+    byte[] result = new byte[1 + Bytes.SIZEOF_LONG + (payload == null ? 0 : payload.length)];
+    result[0] = payload == null ? PAYLOAD_REFERENCE : TRANSACTIONAL;
+    Bytes.putBytes(result, 1, txWritePtr, 0, txWritePtr.length);
+    if (payload != null) {
+      Bytes.putBytes(result, 1 + Bytes.SIZEOF_LONG, payload, 0, payload.length);
+    }
+    return result;
+  }
+}
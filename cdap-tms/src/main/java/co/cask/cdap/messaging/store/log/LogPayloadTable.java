@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store.log;
+
+import co.cask.cdap.api.dataset.lib.AbstractCloseableIterator;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.messaging.store.AbstractPayloadTable;
+import co.cask.cdap.messaging.store.PayloadTable;
+import co.cask.cdap.messaging.store.RawPayloadTableEntry;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * {@link PayloadTable} implementation that stores payloads in a {@link SegmentedLog}.
+ */
+final class LogPayloadTable extends AbstractPayloadTable {
+
+  private final SegmentedLog log;
+
+  LogPayloadTable(SegmentedLog log) {
+    this.log = log;
+  }
+
+  @Override
+  protected void persist(Iterator<RawPayloadTableEntry> entries) throws IOException {
+    while (entries.hasNext()) {
+      RawPayloadTableEntry entry = entries.next();
+      byte[] key = entry.getKey();
+      // The row key ends with the payload write timestamp and the sequence id, same as the message table
+      log.append(key, entry.getValue(), LogMessageTable.getPublishTimestamp(key));
+    }
+    log.sync();
+  }
+
+  @Override
+  protected CloseableIterator<RawPayloadTableEntry> read(byte[] startRow, byte[] stopRow,
+                                                         int limit) throws IOException {
+    CloseableIterator<LogRecord> records = log.scan(startRow, stopRow);
+    RawPayloadTableEntry tableEntry = new RawPayloadTableEntry();
+    return new AbstractCloseableIterator<RawPayloadTableEntry>() {
+      private boolean closed;
+      private int maxLimit = limit;
+
+      @Override
+      protected RawPayloadTableEntry computeNext() {
+        if (closed || maxLimit <= 0 || !records.hasNext()) {
+          return endOfData();
+        }
+        LogRecord record = records.next();
+        maxLimit--;
+        return tableEntry.set(record.getKey(), record.getValue());
+      }
+
+      @Override
+      public void close() {
+        try {
+          records.close();
+        } finally {
+          endOfData();
+          closed = true;
+        }
+      }
+    };
+  }
+
+  @Override
+  public void close() {
+    // No-op since the log is shared by all tables of the same topic
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store.log;
+
+/**
+ * A record read from a {@link SegmentedLog}. Instances are reused while scanning.
+ */
+final class LogRecord {
+
+  private LogSegment segment;
+  private int position;
+  private byte[] key;
+  private byte[] value;
+  private long timestamp;
+
+  LogRecord set(LogSegment segment, int position, byte[] key, byte[] value, long timestamp) {
+    this.segment = segment;
+    this.position = position;
+    this.key = key;
+    this.value = value;
+    this.timestamp = timestamp;
+    return this;
+  }
+
+  LogSegment getSegment() {
+    return segment;
+  }
+
+  int getPosition() {
+    return position;
+  }
+
+  byte[] getKey() {
+    return key;
+  }
+
+  byte[] getValue() {
+    return value;
+  }
+
+  long getTimestamp() {
+    return timestamp;
+  }
+}
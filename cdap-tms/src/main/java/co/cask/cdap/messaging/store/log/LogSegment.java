@@ -0,0 +1,389 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store.log;
+
+import co.cask.cdap.api.common.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+
+/**
+ * A segment of a {@link SegmentedLog}, which is a memory mapped file with records appended one after another.
+ * Each record is written as
+ *
+ * <pre>
+ *   [checksum (int)][key length (int)][value length (int)][timestamp (long)][key][value]
+ * </pre>
+ *
+ * The checksum covers everything after it, so that a record partially written before a crash is detected
+ * when the segment is opened. Only the records at the end of the segment are truncated. A record with a checksum
+ * mismatch that is followed by a complete record was torn by an in-place {@link #overwrite}, and is skipped by
+ * readers instead. A sparse index from record key to file offset is kept in memory, with one entry
+ * for every {@code indexInterval} bytes written. The index is only used for seeking when records are appended
+ * in key order, which is the case for the messages of a topic.
+ */
+final class LogSegment {
+
+  static final String FILE_EXTENSION = "seg";
+
+  private static final Logger LOG = LoggerFactory.getLogger(LogSegment.class);
+
+  private static final int HEADER_SIZE = 3 * Bytes.SIZEOF_INT + Bytes.SIZEOF_LONG;
+
+  private final File file;
+  private final long id;
+  private final MappedByteBuffer buffer;
+  private final ByteBuffer writeBuffer;
+  private final int indexInterval;
+  private final List<IndexEntry> index;
+  private final Object syncLock;
+  private final CRC32 crc;
+  // Positions of the records torn by an overwrite, which are only set when the segment is opened
+  private final Set<Integer> tornRecords;
+
+  // The end of the last complete record. Readers only read records before it.
+  private volatile int size;
+  private int syncedSize;
+  private int lastIndexedPosition;
+  private byte[] minKey;
+  private byte[] maxKey;
+  private boolean sorted;
+  private long maxTimestamp;
+
+  /**
+   * Creates a new segment file with the given capacity.
+   */
+  static LogSegment create(File dir, long id, int capacity, int indexInterval) throws IOException {
+    File file = new File(dir, String.format("%020d.%s", id, FILE_EXTENSION));
+    if (file.exists()) {
+      throw new IOException("Log segment file " + file + " already exists");
+    }
+    return new LogSegment(file, id, capacity, indexInterval);
+  }
+
+  /**
+   * Opens an existing segment file. Records after the last complete record are discarded.
+   */
+  static LogSegment open(File file, int indexInterval) throws IOException {
+    String name = file.getName();
+    long id = Long.parseLong(name.substring(0, name.length() - FILE_EXTENSION.length() - 1));
+    LogSegment segment = new LogSegment(file, id, (int) file.length(), indexInterval);
+    segment.recover();
+    return segment;
+  }
+
+  private LogSegment(File file, long id, int capacity, int indexInterval) throws IOException {
+    this.file = file;
+    this.id = id;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      // The mapping stays valid after the file is closed, hence no file descriptor is held by the segment
+      this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+    this.writeBuffer = buffer.duplicate();
+    this.indexInterval = indexInterval;
+    this.index = new ArrayList<>();
+    this.syncLock = new Object();
+    this.crc = new CRC32();
+    this.tornRecords = new HashSet<>();
+    this.sorted = true;
+    this.maxTimestamp = -1L;
+  }
+
+  long getId() {
+    return id;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  int getSize() {
+    return size;
+  }
+
+  synchronized long getMaxTimestamp() {
+    return maxTimestamp;
+  }
+
+  /**
+   * Returns {@code true} if the given record can be appended to this segment.
+   */
+  boolean hasRoom(byte[] key, byte[] value) {
+    return size + recordSize(key, value) <= buffer.capacity();
+  }
+
+  /**
+   * Returns the number of bytes needed to store a record with the given key and value.
+   */
+  static int recordSize(byte[] key, byte[] value) {
+    return HEADER_SIZE + key.length + value.length;
+  }
+
+  /**
+   * Appends a record to this segment. Only one thread can be appending at a time, which is guaranteed by the
+   * {@link SegmentedLog}. The caller must make sure there is enough room by calling {@link #hasRoom}.
+   *
+   * @return the end position of the record
+   */
+  int append(byte[] key, byte[] value, long timestamp) {
+    int position = size;
+    writeRecord(position, key, value, timestamp);
+    addToIndex(key.clone(), position, timestamp);
+    size = position + recordSize(key, value);
+    return size;
+  }
+
+  /**
+   * Replaces part of the value of the record at the given position with the given bytes. The value size
+   * cannot be changed.
+   */
+  void overwrite(int position, int valueOffset, byte[] bytes) {
+    synchronized (crc) {
+      ByteBuffer buf = buffer.duplicate();
+      int keyLength = buf.getInt(position + Bytes.SIZEOF_INT);
+      int valueLength = buf.getInt(position + 2 * Bytes.SIZEOF_INT);
+      if (valueOffset + bytes.length > valueLength) {
+        throw new IllegalArgumentException("Cannot write beyond the value of the log record");
+      }
+      buf.position(position + HEADER_SIZE + keyLength + valueOffset);
+      buf.put(bytes);
+      buf.putInt(position, checksum(buf, position, keyLength + valueLength));
+    }
+    // Make sure the next sync flushes the change
+    synchronized (syncLock) {
+      syncedSize = Math.min(syncedSize, position);
+    }
+  }
+
+  /**
+   * Flushes the content of this segment up to the given position to disk. If another thread already flushed
+   * past the given position while this thread was waiting, this method returns without flushing, hence
+   * concurrent writers share the cost of one flush.
+   */
+  void sync(int position) {
+    synchronized (syncLock) {
+      if (syncedSize >= position) {
+        return;
+      }
+      int target = size;
+      buffer.force();
+      syncedSize = target;
+    }
+  }
+
+  /**
+   * Returns the position to start reading for records with keys greater than or equal to the given key,
+   * or {@code -1} if this segment has no record in the given key range.
+   */
+  synchronized int seek(@Nullable byte[] startKey, @Nullable byte[] stopKey) {
+    if (minKey == null) {
+      return -1;
+    }
+    if (startKey != null && Bytes.compareTo(maxKey, startKey) < 0) {
+      return -1;
+    }
+    if (stopKey != null && Bytes.compareTo(minKey, stopKey) >= 0) {
+      return -1;
+    }
+    if (!sorted || startKey == null) {
+      return 0;
+    }
+
+    // Binary search for the last index entry with key smaller than or equal to the start key
+    int low = 0;
+    int high = index.size() - 1;
+    int result = 0;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (Bytes.compareTo(index.get(mid).key, startKey) <= 0) {
+        result = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return index.get(result).position;
+  }
+
+  /**
+   * Returns {@code true} if all records in this segment were appended in key order.
+   */
+  synchronized boolean isSorted() {
+    return sorted;
+  }
+
+  /**
+   * Reads the record at the given position into the given {@link LogRecord}. Torn records at the position are
+   * skipped, and the record after them is read instead.
+   *
+   * @param buf a duplicate of the segment buffer owned by the caller
+   * @return the position of the next record
+   */
+  int read(ByteBuffer buf, int position, LogRecord record) {
+    // A torn record is always followed by a complete one, hence this never goes beyond the segment size
+    while (!tornRecords.isEmpty() && tornRecords.contains(position)) {
+      position += HEADER_SIZE + buf.getInt(position + Bytes.SIZEOF_INT) + buf.getInt(position + 2 * Bytes.SIZEOF_INT);
+    }
+    int keyLength = buf.getInt(position + Bytes.SIZEOF_INT);
+    int valueLength = buf.getInt(position + 2 * Bytes.SIZEOF_INT);
+    long timestamp = buf.getLong(position + 3 * Bytes.SIZEOF_INT);
+    byte[] key = new byte[keyLength];
+    byte[] value = new byte[valueLength];
+    buf.position(position + HEADER_SIZE);
+    buf.get(key);
+    buf.get(value);
+    record.set(this, position, key, value, timestamp);
+    return position + HEADER_SIZE + keyLength + valueLength;
+  }
+
+  /**
+   * Returns a new view of the segment content for reading.
+   */
+  ByteBuffer newReadBuffer() {
+    return buffer.duplicate();
+  }
+
+  /**
+   * Deletes the segment file. The memory mapped content stays readable until it is garbage collected.
+   */
+  boolean delete() {
+    return file.delete();
+  }
+
+  /**
+   * Updates the key range, the sparse index and the max timestamp with a record at the given position.
+   */
+  private synchronized void addToIndex(byte[] key, int position, long timestamp) {
+    if (minKey == null || Bytes.compareTo(key, minKey) < 0) {
+      minKey = key;
+    }
+    if (maxKey == null || Bytes.compareTo(key, maxKey) > 0) {
+      maxKey = key;
+    } else {
+      sorted = false;
+    }
+    maxTimestamp = Math.max(maxTimestamp, timestamp);
+    if (index.isEmpty() || position - lastIndexedPosition >= indexInterval) {
+      index.add(new IndexEntry(key, position));
+      lastIndexedPosition = position;
+    }
+  }
+
+  private void writeRecord(int position, byte[] key, byte[] value, long timestamp) {
+    writeBuffer.position(position + Bytes.SIZEOF_INT);
+    writeBuffer.putInt(key.length);
+    writeBuffer.putInt(value.length);
+    writeBuffer.putLong(timestamp);
+    writeBuffer.put(key);
+    writeBuffer.put(value);
+    synchronized (crc) {
+      writeBuffer.putInt(position, checksum(writeBuffer, position, key.length + value.length));
+    }
+  }
+
+  /**
+   * Computes the checksum of the record at the given position. Must be called while holding the lock on
+   * {@link #crc}.
+   */
+  private int checksum(ByteBuffer buf, int position, int dataLength) {
+    ByteBuffer slice = buf.duplicate();
+    slice.position(position + Bytes.SIZEOF_INT);
+    slice.limit(position + HEADER_SIZE + dataLength);
+    crc.reset();
+    crc.update(slice);
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Finds the end of the last complete record and rebuilds the in memory states from the records.
+   */
+  private void recover() {
+    ByteBuffer buf = buffer.duplicate();
+    int capacity = buf.capacity();
+    int position = 0;
+    // Records with a checksum mismatch since the last complete record. They are torn records if a complete record
+    // follows them, otherwise they are the partially written tail.
+    List<Integer> mismatched = new ArrayList<>();
+    while (position + HEADER_SIZE <= capacity) {
+      int keyLength = buf.getInt(position + Bytes.SIZEOF_INT);
+      int valueLength = buf.getInt(position + 2 * Bytes.SIZEOF_INT);
+      if (keyLength <= 0 || valueLength < 0
+        || (long) position + HEADER_SIZE + keyLength + valueLength > capacity) {
+        break;
+      }
+      int checksum;
+      synchronized (crc) {
+        checksum = checksum(buf, position, keyLength + valueLength);
+      }
+      if (checksum != buf.getInt(position)) {
+        mismatched.add(position);
+      } else {
+        tornRecords.addAll(mismatched);
+        mismatched.clear();
+        byte[] key = new byte[keyLength];
+        buf.position(position + HEADER_SIZE);
+        buf.get(key);
+        addToIndex(key, position, buf.getLong(position + 3 * Bytes.SIZEOF_INT));
+        size = position + HEADER_SIZE + keyLength + valueLength;
+      }
+      position += HEADER_SIZE + keyLength + valueLength;
+    }
+    if (!tornRecords.isEmpty()) {
+      LOG.warn("Skipping {} records with checksum mismatch in log segment {}, which were being overwritten "
+                 + "when the process stopped", tornRecords.size(), file);
+    }
+
+    // Clear the partially written records after the last complete record, if any, so that they won't be mistaken
+    // as records after new appends. Beyond them, the file has never been written.
+    long end = position;
+    if (position + HEADER_SIZE <= capacity) {
+      int keyLength = buf.getInt(position + Bytes.SIZEOF_INT);
+      int valueLength = buf.getInt(position + 2 * Bytes.SIZEOF_INT);
+      end = (long) position + HEADER_SIZE + Math.max(0, keyLength) + Math.max(0, valueLength);
+      end = end < position || end > capacity ? capacity : end;
+    }
+    for (int i = size; i < end; i++) {
+      buf.put(i, (byte) 0);
+    }
+    syncedSize = size;
+  }
+
+  /**
+   * An entry in the sparse index.
+   */
+  private static final class IndexEntry {
+    private final byte[] key;
+    private final int position;
+
+    IndexEntry(byte[] key, int position) {
+      this.key = key;
+      this.position = position;
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store.log;
+
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.messaging.store.MessageTable;
+import co.cask.cdap.messaging.store.MetadataTable;
+import co.cask.cdap.messaging.store.PayloadTable;
+import co.cask.cdap.messaging.store.TableFactory;
+import co.cask.cdap.messaging.store.leveldb.LevelDBMetadataTable;
+import co.cask.cdap.messaging.store.leveldb.LevelDBTableFactory;
+import co.cask.cdap.proto.id.TopicId;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.inject.Inject;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TableFactory} for creating tables used by the messaging system in local mode, which stores messages
+ * and payloads of each topic generation in a {@link SegmentedLog}. Messages are removed by TTL one segment at
+ * a time. The {@link MetadataTable} is stored in LevelDB.
+ */
+public final class LogTableFactory implements TableFactory {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LogTableFactory.class);
+
+  private final CConfiguration cConf;
+  private final File baseDir;
+  private final int segmentSize;
+  private final int indexInterval;
+  private final String messageTableName;
+  private final String payloadTableName;
+  private final ConcurrentMap<File, SegmentedLog> logs;
+
+  private volatile LevelDBMetadataTable metadataTable;
+
+  @VisibleForTesting
+  @Inject
+  public LogTableFactory(CConfiguration cConf) {
+    this.cConf = cConf;
+    this.baseDir = new File(cConf.get(Constants.MessagingSystem.LOCAL_DATA_DIR), "log");
+    this.segmentSize = cConf.getInt(Constants.MessagingSystem.LOCAL_LOG_SEGMENT_SIZE_BYTES);
+    this.indexInterval = cConf.getInt(Constants.MessagingSystem.LOCAL_LOG_INDEX_INTERVAL_BYTES);
+    this.messageTableName = cConf.get(Constants.MessagingSystem.MESSAGE_TABLE_NAME);
+    this.payloadTableName = cConf.get(Constants.MessagingSystem.PAYLOAD_TABLE_NAME);
+    this.logs = new ConcurrentHashMap<>();
+
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+      Threads.createDaemonThreadFactory("log-tms-data-cleanup"));
+    executor.scheduleAtFixedRate(new DataCleanup(), 0L,
+                                 Long.parseLong(cConf.get(Constants.MessagingSystem.LOCAL_DATA_CLEANUP_FREQUENCY)),
+                                 TimeUnit.SECONDS);
+  }
+
+  @Override
+  public synchronized MetadataTable createMetadataTable() throws IOException {
+    if (metadataTable == null) {
+      metadataTable = LevelDBTableFactory.openMetadataTable(cConf);
+    }
+    return metadataTable;
+  }
+
+  @Override
+  public MessageTable createMessageTable(TopicMetadata topicMetadata) throws IOException {
+    return new LogMessageTable(getLog(topicMetadata, messageTableName));
+  }
+
+  @Override
+  public PayloadTable createPayloadTable(TopicMetadata topicMetadata) throws IOException {
+    return new LogPayloadTable(getLog(topicMetadata, payloadTableName));
+  }
+
+  /**
+   * Returns the {@link SegmentedLog} for the given table of the given {@link TopicMetadata}.
+   */
+  private SegmentedLog getLog(TopicMetadata topicMetadata, String tableName) throws IOException {
+    File dir = getLogDir(tableName, topicMetadata.getTopicId(), topicMetadata.getGeneration());
+
+    SegmentedLog log = logs.get(dir);
+    if (log != null) {
+      return log;
+    }
+
+    synchronized (this) {
+      // Check again to make sure no new instance was being created while this thread is acquiring the lock
+      log = logs.get(dir);
+      if (log != null) {
+        return log;
+      }
+      log = new SegmentedLog(dir, segmentSize, indexInterval);
+      logs.put(dir, log);
+    }
+
+    LOG.debug("Messaging log table created at {}", dir);
+    return log;
+  }
+
+  private File getLogDir(String tableName, TopicId topicId, int generation) {
+    String fileName = String.format("%s.%s.%s.%d", topicId.getNamespace(), tableName, topicId.getTopic(), generation);
+    return new File(baseDir, fileName);
+  }
+
+  /**
+   * Deletes the logs of older generations of each topic, and the expired segments of the current generation.
+   */
+  private class DataCleanup implements Runnable {
+
+    @Override
+    public void run() {
+      LevelDBMetadataTable metadataTable = LogTableFactory.this.metadataTable;
+      if (metadataTable == null) {
+        return;
+      }
+
+      long now = System.currentTimeMillis();
+      try (CloseableIterator<TopicMetadata> metadataIterator = metadataTable.scanTopics()) {
+        while (metadataIterator.hasNext()) {
+          TopicMetadata metadata = metadataIterator.next();
+          int currGeneration = metadata.getGeneration();
+
+          // We can safely remove all generations that are less than `cleanOlderThan`.
+          int cleanOlderThan = currGeneration < 0 ? currGeneration * -1 + 1 : currGeneration;
+          for (int olderGeneration = cleanOlderThan - 1; olderGeneration > 0; olderGeneration--) {
+            boolean deleted = deleteLog(getLogDir(messageTableName, metadata.getTopicId(), olderGeneration));
+            deleted = deleteLog(getLogDir(payloadTableName, metadata.getTopicId(), olderGeneration)) || deleted;
+            if (!deleted) {
+              break;
+            }
+          }
+
+          // Drop the expired segments of the current generation
+          long expireBefore = now - TimeUnit.SECONDS.toMillis(metadata.getTTL());
+          for (String tableName : new String[] { messageTableName, payloadTableName }) {
+            SegmentedLog log = logs.get(getLogDir(tableName, metadata.getTopicId(), currGeneration));
+            if (log != null) {
+              log.deleteSegmentsBefore(expireBefore);
+            }
+          }
+        }
+      } catch (IOException ex) {
+        LOG.debug("Unable to perform data cleanup in TMS log tables", ex);
+      }
+    }
+
+    /**
+     * Deletes the log in the given directory.
+     *
+     * @return {@code true} if the log existed
+     */
+    private boolean deleteLog(File dir) throws IOException {
+      if (!dir.exists()) {
+        return false;
+      }
+      // No one should be accessing older generations anymore. Readers still holding the log can finish reading
+      // since segment content is memory mapped.
+      logs.remove(dir);
+      LOG.info("Deleting directory: {}", dir);
+      DirUtils.deleteDirectoryContents(dir);
+      return true;
+    }
+  }
+}
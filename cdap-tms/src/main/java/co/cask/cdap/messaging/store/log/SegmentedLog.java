@@ -0,0 +1,212 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store.log;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.AbstractCloseableIterator;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.common.utils.DirUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * An append-only log of key value records, stored as a list of {@link LogSegment} files in a directory.
+ * Records are appended to the last segment, and a new segment is started once it is full. Records are
+ * removed by deleting whole segments.
+ *
+ * Scanning returns the records of a key range in the order they were appended. For the tables of a topic,
+ * which have a single writer with increasing keys, that is the same as the key order.
+ */
+final class SegmentedLog {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SegmentedLog.class);
+
+  private final File dir;
+  private final int segmentSize;
+  private final int indexInterval;
+
+  // Immutable list of segments, in the order they were created. It is replaced when segments are added or deleted.
+  private volatile List<LogSegment> segments;
+  private long nextSegmentId;
+
+  /**
+   * Opens the log in the given directory, creating the directory if it doesn't exist.
+   *
+   * @param dir the directory for the segment files
+   * @param segmentSize the size in bytes of each segment file
+   * @param indexInterval number of bytes between two entries in the sparse index of a segment
+   */
+  SegmentedLog(File dir, int segmentSize, int indexInterval) throws IOException {
+    if (!DirUtils.mkdirs(dir)) {
+      throw new IOException("Failed to create local directory " + dir + " for the messaging system.");
+    }
+    this.dir = dir;
+    this.segmentSize = segmentSize;
+    this.indexInterval = indexInterval;
+
+    List<LogSegment> segments = new ArrayList<>();
+    for (File file : DirUtils.listFiles(dir, LogSegment.FILE_EXTENSION)) {
+      segments.add(LogSegment.open(file, indexInterval));
+    }
+    segments.sort(Comparator.comparingLong(LogSegment::getId));
+    this.segments = Collections.unmodifiableList(segments);
+    this.nextSegmentId = segments.isEmpty() ? 0L : segments.get(segments.size() - 1).getId() + 1;
+  }
+
+  File getDir() {
+    return dir;
+  }
+
+  /**
+   * Appends a record to the log. The record is readable once this method returns, but it is only durable
+   * after {@link #sync()} is called.
+   *
+   * @param key the record key
+   * @param value the record value
+   * @param timestamp the time of the record, for deleting segments with {@link #deleteSegmentsBefore(long)}
+   */
+  synchronized void append(byte[] key, byte[] value, long timestamp) throws IOException {
+    List<LogSegment> segments = this.segments;
+    LogSegment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    if (segment == null || !segment.hasRoom(key, value)) {
+      if (segment != null) {
+        // Make sure the full segment is durable before moving on
+        segment.sync(segment.getSize());
+      }
+      int capacity = Math.max(segmentSize, LogSegment.recordSize(key, value));
+      segment = LogSegment.create(dir, nextSegmentId++, capacity, indexInterval);
+      List<LogSegment> newSegments = new ArrayList<>(segments);
+      newSegments.add(segment);
+      this.segments = Collections.unmodifiableList(newSegments);
+    }
+    segment.append(key, value, timestamp);
+  }
+
+  /**
+   * Replaces part of the value of a record returned by {@link #scan(byte[], byte[])}. The change is only durable
+   * after {@link #sync()} is called.
+   *
+   * @param record the record to update
+   * @param valueOffset the offset in the value to start replacing
+   * @param bytes the bytes to write
+   */
+  void overwrite(LogRecord record, int valueOffset, byte[] bytes) {
+    record.getSegment().overwrite(record.getPosition(), valueOffset, bytes);
+  }
+
+  /**
+   * Flushes all appended and overwritten records to disk. Concurrent calls are combined into one flush.
+   */
+  void sync() {
+    for (LogSegment segment : segments) {
+      segment.sync(segment.getSize());
+    }
+  }
+
+  /**
+   * Scans the records with keys in the given range.
+   *
+   * @param startKey the start key (inclusive) or {@code null} to start from the first record
+   * @param stopKey the stop key (exclusive) or {@code null} to scan to the end
+   * @return a {@link CloseableIterator} of {@link LogRecord}. The same {@link LogRecord} instance is returned
+   *         on each call to {@link Iterator#next()}
+   */
+  CloseableIterator<LogRecord> scan(@Nullable byte[] startKey, @Nullable byte[] stopKey) {
+    Iterator<LogSegment> segmentIterator = segments.iterator();
+    return new AbstractCloseableIterator<LogRecord>() {
+
+      private final LogRecord record = new LogRecord();
+      private LogSegment segment;
+      private ByteBuffer buffer;
+      private boolean sorted;
+      private int position;
+      private int limit;
+
+      @Override
+      protected LogRecord computeNext() {
+        while (true) {
+          while (segment == null || position >= limit) {
+            if (!segmentIterator.hasNext()) {
+              return endOfData();
+            }
+            segment = segmentIterator.next();
+            position = segment.seek(startKey, stopKey);
+            if (position < 0) {
+              segment = null;
+              continue;
+            }
+            // Get the limit after seeking, so that the position from the index is always before it
+            limit = segment.getSize();
+            sorted = segment.isSorted();
+            buffer = segment.newReadBuffer();
+          }
+
+          position = segment.read(buffer, position, record);
+          byte[] key = record.getKey();
+          if (startKey != null && Bytes.compareTo(key, startKey) < 0) {
+            continue;
+          }
+          if (stopKey != null && Bytes.compareTo(key, stopKey) >= 0) {
+            if (sorted) {
+              // No more record in the range from this segment
+              position = limit;
+            }
+            continue;
+          }
+          return record;
+        }
+      }
+
+      @Override
+      public void close() {
+        // The mapped segments are shared. Nothing to release.
+      }
+    };
+  }
+
+  /**
+   * Deletes the segments that only have records older than the given timestamp.
+   */
+  synchronized void deleteSegmentsBefore(long timestamp) {
+    List<LogSegment> segments = this.segments;
+    List<LogSegment> retained = new ArrayList<>(segments.size());
+    for (LogSegment segment : segments) {
+      if (segment.getSize() == 0 || segment.getMaxTimestamp() >= timestamp) {
+        retained.add(segment);
+        continue;
+      }
+      LOG.debug("Deleting expired log segment {}", segment.getFile());
+      if (!segment.delete()) {
+        LOG.warn("Failed to delete expired log segment {}", segment.getFile());
+        retained.add(segment);
+      }
+    }
+    if (retained.size() != segments.size()) {
+      this.segments = Collections.unmodifiableList(retained);
+    }
+  }
+}
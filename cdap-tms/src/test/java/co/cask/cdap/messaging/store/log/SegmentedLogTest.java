@@ -0,0 +1,312 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store.log;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.messaging.data.MessageId;
+import co.cask.cdap.messaging.store.MessageTable;
+import co.cask.cdap.messaging.store.MetadataTable;
+import co.cask.cdap.messaging.store.TableFactory;
+import co.cask.cdap.messaging.store.leveldb.LevelDBTableFactory;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.TopicId;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Unit tests for {@link SegmentedLog}.
+ */
+public class SegmentedLogTest {
+
+  @ClassRule
+  public static TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testScan() throws Exception {
+    SegmentedLog log = new SegmentedLog(tmpFolder.newFolder(), 1024, 64);
+    for (int i = 0; i < 100; i++) {
+      log.append(Bytes.toBytes(i), Bytes.toBytes("value" + i), i);
+    }
+    log.sync();
+
+    Assert.assertTrue(DirUtils.listFiles(log.getDir(), LogSegment.FILE_EXTENSION).size() > 1);
+    Assert.assertEquals(100, scan(log, null, null).size());
+    Assert.assertEquals(rangeOf(10, 90), scan(log, Bytes.toBytes(10), Bytes.toBytes(90)));
+    Assert.assertEquals(rangeOf(99, 100), scan(log, Bytes.toBytes(99), null));
+    Assert.assertTrue(scan(log, Bytes.toBytes(100), null).isEmpty());
+
+    // Appending out of key order, the records in the range are returned in append order
+    log.append(Bytes.toBytes(50), Bytes.toBytes("value50"), 100);
+    List<Integer> expected = rangeOf(40, 60);
+    expected.add(50);
+    Assert.assertEquals(expected, scan(log, Bytes.toBytes(40), Bytes.toBytes(60)));
+  }
+
+  @Test
+  public void testOverwriteAndRecovery() throws Exception {
+    File dir = tmpFolder.newFolder();
+    SegmentedLog log = new SegmentedLog(dir, 1024, 64);
+    for (int i = 0; i < 100; i++) {
+      log.append(Bytes.toBytes(i), Bytes.toBytes("value" + i), i);
+    }
+    try (CloseableIterator<LogRecord> records = log.scan(Bytes.toBytes(20), Bytes.toBytes(30))) {
+      while (records.hasNext()) {
+        log.overwrite(records.next(), 0, Bytes.toBytes("VALUE"));
+      }
+    }
+    log.sync();
+
+    // Corrupt the last record, which should be dropped when the log is opened again
+    List<File> files = new ArrayList<>(DirUtils.listFiles(dir, LogSegment.FILE_EXTENSION));
+    files.sort(null);
+    LogSegment lastSegment = LogSegment.open(files.get(files.size() - 1), 64);
+    try (RandomAccessFile file = new RandomAccessFile(lastSegment.getFile(), "rw")) {
+      file.seek(lastSegment.getSize() - 1);
+      file.write('X');
+    }
+
+    log = new SegmentedLog(dir, 1024, 64);
+    List<LogRecord> records = new ArrayList<>();
+    try (CloseableIterator<LogRecord> iterator = log.scan(null, null)) {
+      while (iterator.hasNext()) {
+        LogRecord record = iterator.next();
+        records.add(new LogRecord().set(record.getSegment(), record.getPosition(),
+                                        record.getKey(), record.getValue(), record.getTimestamp()));
+      }
+    }
+    Assert.assertEquals(99, records.size());
+    for (int i = 0; i < records.size(); i++) {
+      String expected = i >= 20 && i < 30 ? "VALUE" + i : "value" + i;
+      Assert.assertEquals(i, Bytes.toInt(records.get(i).getKey()));
+      Assert.assertEquals(expected, Bytes.toString(records.get(i).getValue()));
+    }
+
+    // Append after recovery
+    log.append(Bytes.toBytes(99), Bytes.toBytes("value99"), 99);
+    log.sync();
+    Assert.assertEquals(rangeOf(98, 100), scan(new SegmentedLog(dir, 1024, 64), Bytes.toBytes(98), null));
+  }
+
+  @Test
+  public void testTornOverwriteRecovery() throws Exception {
+    File dir = tmpFolder.newFolder();
+    SegmentedLog log = new SegmentedLog(dir, 1 << 16, 64);
+    for (int i = 0; i < 100; i++) {
+      log.append(Bytes.toBytes(i), Bytes.toBytes("value" + i), i);
+    }
+    log.sync();
+    int position;
+    try (CloseableIterator<LogRecord> records = log.scan(Bytes.toBytes(50), null)) {
+      position = records.next().getPosition();
+    }
+    List<File> files = new ArrayList<>(DirUtils.listFiles(dir, LogSegment.FILE_EXTENSION));
+    Assert.assertEquals(1, files.size());
+
+    // Change the value of a record in the middle without updating its checksum, as if the process stopped
+    // while overwriting it. Only that record should be skipped, and the records after it kept.
+    try (RandomAccessFile file = new RandomAccessFile(files.get(0), "rw")) {
+      file.seek(position + 3 * Bytes.SIZEOF_INT + Bytes.SIZEOF_LONG + Bytes.SIZEOF_INT);
+      file.write('X');
+    }
+    log = new SegmentedLog(dir, 1 << 16, 64);
+    List<Integer> expected = rangeOf(0, 100);
+    expected.remove(Integer.valueOf(50));
+    Assert.assertEquals(expected, scan(log, null, null));
+    Assert.assertEquals(rangeOf(51, 60), scan(log, Bytes.toBytes(50), Bytes.toBytes(60)));
+
+    // Append after recovery, the torn record stays skipped
+    log.append(Bytes.toBytes(100), Bytes.toBytes("value100"), 100);
+    log.sync();
+    expected.add(100);
+    Assert.assertEquals(expected, scan(new SegmentedLog(dir, 1 << 16, 64), null, null));
+  }
+
+  @Test
+  public void testDeleteSegments() throws Exception {
+    SegmentedLog log = new SegmentedLog(tmpFolder.newFolder(), 1024, 64);
+    for (int i = 0; i < 100; i++) {
+      log.append(Bytes.toBytes(i), Bytes.toBytes("value" + i), i);
+    }
+    int segments = DirUtils.listFiles(log.getDir(), LogSegment.FILE_EXTENSION).size();
+
+    // Nothing is older than 0
+    log.deleteSegmentsBefore(0);
+    Assert.assertEquals(100, scan(log, null, null).size());
+
+    // Segments with records older than 50 are deleted
+    log.deleteSegmentsBefore(50);
+    List<Integer> keys = scan(log, null, null);
+    Assert.assertTrue(keys.get(0) > 0 && keys.get(0) <= 50);
+    Assert.assertEquals(rangeOf(keys.get(0), 100), keys);
+    Assert.assertTrue(DirUtils.listFiles(log.getDir(), LogSegment.FILE_EXTENSION).size() < segments);
+
+    // Delete all segments, then append again
+    log.deleteSegmentsBefore(Long.MAX_VALUE);
+    Assert.assertTrue(scan(log, null, null).isEmpty());
+    Assert.assertTrue(DirUtils.listFiles(log.getDir(), LogSegment.FILE_EXTENSION).isEmpty());
+    log.append(Bytes.toBytes(100), Bytes.toBytes("value100"), 100);
+    Assert.assertEquals(rangeOf(100, 101), scan(log, null, null));
+  }
+
+  @Ignore
+  @Test
+  public void testPerformance() throws Exception {
+    int messages = 200000;
+    int batchSize = 100;
+    byte[] payload = new byte[128];
+    TopicId topicId = NamespaceId.DEFAULT.topic("perf");
+    TopicMetadata metadata = new TopicMetadata(topicId, ImmutableMap.of(TopicMetadata.TTL_KEY, "10000",
+                                                                        TopicMetadata.GENERATION_KEY, "1"));
+
+    for (String store : new String[] { "leveldb", "log" }) {
+      CConfiguration cConf = CConfiguration.create();
+      cConf.set(Constants.CFG_LOCAL_DATA_DIR, tmpFolder.newFolder().getAbsolutePath());
+      TableFactory tableFactory = "log".equals(store) ? new LogTableFactory(cConf) : new LevelDBTableFactory(cConf);
+      try (MetadataTable metadataTable = tableFactory.createMetadataTable()) {
+        metadataTable.createTopic(metadata);
+      }
+
+      MessageTable table = tableFactory.createMessageTable(metadata);
+      long timestamp = System.currentTimeMillis();
+      long startTime = System.nanoTime();
+      for (int i = 0; i < messages; i += batchSize) {
+        List<MessageTable.Entry> entries = new ArrayList<>(batchSize);
+        for (int j = 0; j < batchSize; j++) {
+          entries.add(new TestMessageEntry(topicId, timestamp + i, j, payload));
+        }
+        table.store(entries.iterator());
+      }
+      long endTime = System.nanoTime();
+      System.out.println(store + " publish time spent: " + TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+
+      startTime = System.nanoTime();
+      int count = 0;
+      byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
+      MessageId.putRawId(0L, (short) 0, 0L, (short) 0, rawId, 0);
+      MessageId messageId = new MessageId(rawId);
+      boolean inclusive = true;
+      while (count < messages) {
+        try (CloseableIterator<MessageTable.Entry> iterator = table.fetch(metadata, messageId, inclusive, 1000, null)) {
+          while (iterator.hasNext()) {
+            MessageTable.Entry entry = iterator.next();
+            MessageId.putRawId(entry.getPublishTimestamp(), entry.getSequenceId(), 0L, (short) 0, rawId, 0);
+            count++;
+          }
+        }
+        messageId = new MessageId(rawId);
+        inclusive = false;
+      }
+      endTime = System.nanoTime();
+      System.out.println(store + " fetch time spent: " + TimeUnit.NANOSECONDS.toMillis(endTime - startTime));
+    }
+  }
+
+  private List<Integer> scan(SegmentedLog log, @Nullable byte[] startKey, @Nullable byte[] stopKey) {
+    List<Integer> keys = new ArrayList<>();
+    try (CloseableIterator<LogRecord> records = log.scan(startKey, stopKey)) {
+      while (records.hasNext()) {
+        LogRecord record = records.next();
+        int key = Bytes.toInt(record.getKey());
+        Assert.assertEquals("value" + key, Bytes.toString(record.getValue()));
+        keys.add(key);
+      }
+    }
+    return keys;
+  }
+
+  private List<Integer> rangeOf(int start, int end) {
+    List<Integer> result = new ArrayList<>();
+    for (int i = start; i < end; i++) {
+      result.add(i);
+    }
+    return result;
+  }
+
+  /**
+   * A non-transactional {@link MessageTable.Entry} for testing.
+   */
+  private static final class TestMessageEntry implements MessageTable.Entry {
+
+    private final TopicId topicId;
+    private final long publishTimestamp;
+    private final short sequenceId;
+    private final byte[] payload;
+
+    TestMessageEntry(TopicId topicId, long publishTimestamp, int sequenceId, byte[] payload) {
+      this.topicId = topicId;
+      this.publishTimestamp = publishTimestamp;
+      this.sequenceId = (short) sequenceId;
+      this.payload = payload;
+    }
+
+    @Override
+    public TopicId getTopicId() {
+      return topicId;
+    }
+
+    @Override
+    public int getGeneration() {
+      return 1;
+    }
+
+    @Override
+    public boolean isPayloadReference() {
+      return false;
+    }
+
+    @Override
+    public boolean isTransactional() {
+      return false;
+    }
+
+    @Override
+    public long getTransactionWritePointer() {
+      return -1L;
+    }
+
+    @Override
+    public byte[] getPayload() {
+      return payload;
+    }
+
+    @Override
+    public long getPublishTimestamp() {
+      return publishTimestamp;
+    }
+
+    @Override
+    public short getSequenceId() {
+      return sequenceId;
+    }
+  }
+}
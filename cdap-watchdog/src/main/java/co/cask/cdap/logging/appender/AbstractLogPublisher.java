@@ -16,36 +16,127 @@
 
 package co.cask.cdap.logging.appender;
 
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.service.AbstractRetryableScheduledService;
 import co.cask.cdap.common.service.RetryStrategy;
+import co.cask.cdap.logging.context.LoggingContextHelper;
+import org.apache.twill.common.Threads;
+import org.apache.twill.internal.ServiceListenerAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
 
 /**
  * A class that continuously serializes logs from a queue and publishes them.
  *
+ * Log messages are added to a lock-free in-memory queue, so that logging threads don't contend with each other
+ * or with the publishing thread. What happens when the queue is full is decided by the {@link LogOverflowPolicy}.
+ * Messages spilled to local disk are published after the in-memory queue drains, hence may be published out of
+ * order with respect to messages logged after them. The number of messages published, dropped and spilled are
+ * emitted as metrics if a {@link MetricsContext} is set.
+ *
  * @param <MESSAGE> the type of message used in the in-memory buffer, before publishing
  */
 public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableScheduledService {
   private static final Logger LOG = LoggerFactory.getLogger(AbstractLogPublisher.class);
 
+  // Maximum time for a logging thread blocked on a full queue to wait for a signal before checking the queue again.
+  // The publishing thread releases queue slots with lazy writes, which a logging thread may not see right away.
+  private static final long FULL_QUEUE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  // Maximum time for the publishing thread to wait for messages
+  private static final long EMPTY_QUEUE_WAIT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
   private final int queueSize;
-  private final BlockingQueue<LogMessage> messageQueue;
+  private final LogMessageRingBuffer<LogMessage> messageQueue;
   private final List<MESSAGE> buffer;
+  private final LogOverflowPolicy overflowPolicy;
+  private final Level retainLevel;
+  private final int sampleRate;
+  private final File spillDir;
+  private final long spillMaxBytes;
+  private final AtomicLong publishedCount;
+  private final AtomicLong droppedCount;
+  private final AtomicLong spilledCount;
+  private final AtomicLong overflowCount;
+  private final Lock fullQueueLock;
+  private final Condition notFull;
+  private final AtomicInteger blockedThreads;
+  private volatile MetricsContext metricsContext;
+  // Counts emitted as metrics so far, only accessed by the publishing thread
+  private long emittedPublished;
+  private long emittedDropped;
+  private long emittedSpilled;
+  private volatile LogSpillBuffer spillBuffer;
   private volatile boolean failed;
   private volatile Thread publishThread;
 
+  /**
+   * Creates a publisher that blocks the logging threads when the queue is full.
+   */
   public AbstractLogPublisher(int queueSize, RetryStrategy retryStrategy) {
+    this(queueSize, retryStrategy, LogOverflowPolicy.BLOCK, Level.ALL, 1, null, 0L);
+  }
+
+  /**
+   * Creates a publisher with the {@link LogOverflowPolicy} from the given configuration.
+   */
+  public AbstractLogPublisher(CConfiguration cConf, int queueSize, RetryStrategy retryStrategy) {
+    this(queueSize, retryStrategy,
+         LogOverflowPolicy.valueOf(cConf.get(Constants.Logging.APPENDER_OVERFLOW_POLICY).toUpperCase()),
+         Level.toLevel(cConf.get(Constants.Logging.APPENDER_OVERFLOW_RETAIN_LEVEL), Level.WARN),
+         cConf.getInt(Constants.Logging.APPENDER_OVERFLOW_SAMPLE_RATE),
+         new File(cConf.get(Constants.Logging.APPENDER_SPILL_DIR)),
+         cConf.getLong(Constants.Logging.APPENDER_SPILL_MAX_BYTES));
+  }
+
+  private AbstractLogPublisher(int queueSize, RetryStrategy retryStrategy, LogOverflowPolicy overflowPolicy,
+                               Level retainLevel, int sampleRate, @Nullable File spillDir, long spillMaxBytes) {
     super(retryStrategy);
+    if (sampleRate <= 0) {
+      throw new IllegalArgumentException("Log overflow sample rate must be positive: " + sampleRate);
+    }
     this.queueSize = queueSize;
-    this.messageQueue = new ArrayBlockingQueue<>(queueSize);
+    this.messageQueue = new LogMessageRingBuffer<>(queueSize);
     this.buffer = new ArrayList<>(queueSize);
+    this.overflowPolicy = overflowPolicy;
+    this.retainLevel = retainLevel;
+    this.sampleRate = sampleRate;
+    this.spillDir = spillDir;
+    this.spillMaxBytes = spillMaxBytes;
+    this.publishedCount = new AtomicLong();
+    this.droppedCount = new AtomicLong();
+    this.spilledCount = new AtomicLong();
+    this.overflowCount = new AtomicLong();
+    this.fullQueueLock = new ReentrantLock();
+    this.notFull = fullQueueLock.newCondition();
+    this.blockedThreads = new AtomicInteger();
+
+    // Wake up the publishing thread when stopping, so that it doesn't wait for messages before shutting down
+    addListener(new ServiceListenerAdapter() {
+      @Override
+      public void stopping(State from) {
+        Thread thread = publishThread;
+        if (thread != null) {
+          LockSupport.unpark(thread);
+        }
+      }
+    }, Threads.SAME_THREAD_EXECUTOR);
   }
 
   /**
@@ -65,12 +156,49 @@ public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableSch
   protected abstract void publish(List<MESSAGE> logMessages) throws Exception;
 
   /**
-   * Adds a log message for publishing.
+   * Adds a log message for publishing. If the queue is full, the message is handled according to
+   * the {@link LogOverflowPolicy} of this publisher.
    *
    * @param logMessage the log message to add for publishing
+   * @throws InterruptedException if the thread is interrupted while waiting for room in the queue
    */
   public final void addMessage(LogMessage logMessage) throws InterruptedException {
-    messageQueue.put(logMessage);
+    if (!messageQueue.offer(logMessage) && !handleOverflow(logMessage)) {
+      return;
+    }
+    // Wake up the publishing thread if it is waiting for messages
+    Thread thread = publishThread;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  /**
+   * Sets the {@link MetricsContext} for emitting the number of log messages published, dropped and spilled.
+   */
+  public void setMetricsContext(MetricsContext metricsContext) {
+    this.metricsContext = metricsContext;
+  }
+
+  /**
+   * Returns the number of log messages published so far.
+   */
+  public long getPublishedCount() {
+    return publishedCount.get();
+  }
+
+  /**
+   * Returns the number of log messages dropped so far because the queue was full.
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * Returns the number of log messages spilled to local disk so far because the queue was full.
+   */
+  public long getSpilledCount() {
+    return spilledCount.get();
   }
 
   @Override
@@ -80,6 +208,7 @@ public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableSch
     // We only clear the buffer once the messages are successfully published
     buffer.clear();
     failed = false;
+    emitMetrics();
     return 0;
   }
 
@@ -95,6 +224,19 @@ public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableSch
     return super.shouldRetry(ex);
   }
 
+  @Override
+  protected void doStartUp() throws Exception {
+    super.doStartUp();
+    if (overflowPolicy == LogOverflowPolicy.SPILL) {
+      // Creating the spill buffer takes over the events spilled by a process that stopped before publishing them
+      try {
+        getSpillBuffer();
+      } catch (IOException e) {
+        logError("Failed to create log spill buffer in " + spillDir + " by " + getServiceName(), e);
+      }
+    }
+  }
+
   @Override
   protected void doShutdown() throws Exception {
     // Interrupt the run thread first
@@ -107,7 +249,7 @@ public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableSch
     Thread.interrupted();
 
     // Publish all remaining messages.
-    while (!messageQueue.isEmpty() || !buffer.isEmpty()) {
+    while (!messageQueue.isEmpty() || !buffer.isEmpty() || hasSpilledMessages()) {
       try {
         publishMessages(buffer, false);
       } catch (Exception e) {
@@ -116,6 +258,12 @@ public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableSch
       // Ignore those that cannot be publish since we are already in shutdown sequence
       buffer.clear();
     }
+    emitMetrics();
+
+    LogSpillBuffer spillBuffer = this.spillBuffer;
+    if (spillBuffer != null) {
+      spillBuffer.close();
+    }
   }
 
   /**
@@ -129,44 +277,213 @@ public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableSch
   }
 
   /**
-   * Publishes messages from the message queue.
+   * Publishes messages from the message queue, followed by messages spilled to local disk.
    *
    * @param buffer a buffer for storing {@link MESSAGE} for publishing
    * @param blockForMessage whether to block for message
-   * @throws InterruptedException if the thread is interrupted
    */
   private void publishMessages(List<MESSAGE> buffer,
                                boolean blockForMessage) throws Exception {
-    int maxBufferSize = queueSize;
-
     if (blockForMessage) {
-      publishThread = Thread.currentThread();
+      awaitMessage();
+    }
+
+    LogMessage message;
+    while (buffer.size() < queueSize && (message = messageQueue.poll()) != null) {
+      buffer.add(createMessage(message));
+    }
+    signalNotFull();
+    while (buffer.size() < queueSize && (message = pollSpilledMessage()) != null) {
+      buffer.add(createMessage(message));
+    }
+
+    // Publish all messages
+    publish(buffer);
+    publishedCount.addAndGet(buffer.size());
+  }
+
+  /**
+   * Waits until there is a message to publish, the wait timed out, or this publisher is stopping.
+   */
+  private void awaitMessage() {
+    publishThread = Thread.currentThread();
+    try {
+      long deadline = System.nanoTime() + EMPTY_QUEUE_WAIT_NANOS;
+      long waitNanos = EMPTY_QUEUE_WAIT_NANOS;
+      // Check the queue after setting the publishThread, so that a message added concurrently always unparks it
+      while (waitNanos > 0 && isRunning() && messageQueue.isEmpty() && !hasSpilledMessages()) {
+        LockSupport.parkNanos(this, waitNanos);
+        if (Thread.interrupted()) {
+          // This happen when this publisher is getting shutdown, but we still want to publish all pending messages.
+          break;
+        }
+        waitNanos = deadline - System.nanoTime();
+      }
+    } finally {
+      publishThread = null;
+    }
+  }
+
+  /**
+   * Handles a log message that doesn't fit in the queue.
+   *
+   * @return {@code true} if the message is added to the queue or spilled, {@code false} if it is dropped
+   */
+  private boolean handleOverflow(LogMessage logMessage) throws InterruptedException {
+    boolean retain = logMessage.getLevel().isGreaterOrEqual(retainLevel);
+    switch (overflowPolicy) {
+      case DROP:
+        if (!retain) {
+          droppedCount.incrementAndGet();
+          return false;
+        }
+        break;
+      case SAMPLE:
+        if (!retain && overflowCount.incrementAndGet() % sampleRate != 0) {
+          droppedCount.incrementAndGet();
+          return false;
+        }
+        break;
+      case SPILL:
+        if (spill(logMessage)) {
+          spilledCount.incrementAndGet();
+          return true;
+        }
+        if (!retain) {
+          droppedCount.incrementAndGet();
+          return false;
+        }
+        break;
+      default:
+        // Wait for room in the queue
+        break;
+    }
+
+    awaitOffer(logMessage);
+    return true;
+  }
+
+  /**
+   * Waits until the given log message is added to the queue. The publishing thread signals the waiting threads
+   * after taking messages out of the queue.
+   */
+  private void awaitOffer(LogMessage logMessage) throws InterruptedException {
+    fullQueueLock.lockInterruptibly();
+    try {
+      // Register as blocked before retrying, so that the publishing thread either sees this thread as blocked
+      // after it takes messages out of the queue, or this thread sees the room it made
+      blockedThreads.incrementAndGet();
       try {
-        if (isRunning()) {
-          LogMessage logMessage = messageQueue.poll(10, TimeUnit.SECONDS);
-          if (logMessage != null) {
-            buffer.add(createMessage(logMessage));
-            maxBufferSize--;
-          }
+        while (!messageQueue.offer(logMessage)) {
+          notFull.awaitNanos(FULL_QUEUE_WAIT_NANOS);
         }
-      } catch (InterruptedException e) {
-        // just ignore and keep going. This happen when this publisher is getting shutdown, but we still want
-        // to publish all pending messages.
       } finally {
-        publishThread = null;
+        blockedThreads.decrementAndGet();
       }
+    } finally {
+      fullQueueLock.unlock();
     }
+  }
 
-    while (buffer.size() < maxBufferSize) {
-      // Poll for more messages
-      LogMessage message = messageQueue.poll();
-      if (message == null) {
-        break;
+  /**
+   * Wakes up the logging threads blocked on a full queue, if there is any.
+   */
+  private void signalNotFull() {
+    if (blockedThreads.get() == 0) {
+      return;
+    }
+    fullQueueLock.lock();
+    try {
+      notFull.signalAll();
+    } finally {
+      fullQueueLock.unlock();
+    }
+  }
+
+  /**
+   * Emits the number of log messages published, dropped and spilled since the last call.
+   */
+  private void emitMetrics() {
+    MetricsContext metricsContext = this.metricsContext;
+    if (metricsContext == null) {
+      return;
+    }
+    long published = publishedCount.get();
+    long dropped = droppedCount.get();
+    long spilled = spilledCount.get();
+    if (published > emittedPublished) {
+      metricsContext.increment(Constants.Metrics.Name.Log.APPENDER_PUBLISHED, published - emittedPublished);
+    }
+    if (dropped > emittedDropped) {
+      metricsContext.increment(Constants.Metrics.Name.Log.APPENDER_DROPPED, dropped - emittedDropped);
+    }
+    if (spilled > emittedSpilled) {
+      metricsContext.increment(Constants.Metrics.Name.Log.APPENDER_SPILLED, spilled - emittedSpilled);
+    }
+    emittedPublished = published;
+    emittedDropped = dropped;
+    emittedSpilled = spilled;
+  }
+
+  /**
+   * Writes a log message to the local disk buffer.
+   *
+   * @return {@code true} if the message is written, {@code false} if the disk buffer is full or failed to write
+   */
+  private boolean spill(LogMessage logMessage) {
+    try {
+      return getSpillBuffer().write(logMessage);
+    } catch (IOException e) {
+      logError("Failed to spill log message to " + spillDir + " by " + getServiceName(), e);
+      return false;
+    }
+  }
+
+  private LogSpillBuffer getSpillBuffer() throws IOException {
+    LogSpillBuffer spillBuffer = this.spillBuffer;
+    if (spillBuffer != null) {
+      return spillBuffer;
+    }
+    synchronized (this) {
+      if (this.spillBuffer == null) {
+        this.spillBuffer = new LogSpillBuffer(spillDir, spillMaxBytes);
       }
-      buffer.add(createMessage(message));
+      return this.spillBuffer;
     }
+  }
 
-    // Publish all messages
-    publish(buffer);
+  private boolean hasSpilledMessages() {
+    LogSpillBuffer spillBuffer = this.spillBuffer;
+    return spillBuffer != null && spillBuffer.hasPending();
+  }
+
+  /**
+   * Reads the next message spilled to local disk, restoring its logging context from the system tags in the MDC.
+   *
+   * @return the next spilled message or {@code null} if there is none
+   */
+  @Nullable
+  private LogMessage pollSpilledMessage() {
+    LogSpillBuffer spillBuffer = this.spillBuffer;
+    if (spillBuffer == null) {
+      return null;
+    }
+    while (true) {
+      ILoggingEvent event;
+      try {
+        event = spillBuffer.read();
+      } catch (IOException e) {
+        logError("Failed to read log messages spilled to " + spillDir + " by " + getServiceName(), e);
+        return null;
+      }
+      if (event == null) {
+        return null;
+      }
+      try {
+        return new LogMessage(event, LoggingContextHelper.getLoggingContext(event.getMDCPropertyMap()));
+      } catch (IllegalArgumentException e) {
+        droppedCount.incrementAndGet();
+      }
+    }
   }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.appender;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
+
+/**
+ * A bounded, lock-free queue for many producer threads and a single consumer thread.
+ *
+ * Each slot of the ring has a sequence number. A producer claims a slot by advancing the tail with a CAS,
+ * then publishes the element by setting the slot sequence to one past the claimed position. The consumer
+ * takes the element once it sees that sequence, and releases the slot for the next lap by setting the sequence
+ * to the position plus the capacity.
+ *
+ * @param <T> type of element in the queue
+ */
+final class LogMessageRingBuffer<T> {
+
+  private final int capacity;
+  private final int mask;
+  private final AtomicLongArray sequences;
+  private final AtomicReferenceArray<T> elements;
+  private final AtomicLong tail;
+  // Only accessed by the consumer thread
+  private long head;
+
+  /**
+   * Creates a ring buffer that holds at least the given number of elements. The actual capacity is rounded up
+   * to the next power of two.
+   */
+  LogMessageRingBuffer(int minCapacity) {
+    Preconditions.checkArgument(minCapacity > 0, "Capacity must be positive: %s", minCapacity);
+    Preconditions.checkArgument(minCapacity <= 1 << 30, "Capacity is too large: %s", minCapacity);
+    this.capacity = minCapacity == 1 ? 1 : Integer.highestOneBit(minCapacity - 1) << 1;
+    this.mask = capacity - 1;
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+    this.elements = new AtomicReferenceArray<>(capacity);
+    this.tail = new AtomicLong();
+  }
+
+  int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Adds an element to the queue without blocking. This method can be called from any thread.
+   *
+   * @return {@code true} if the element was added, or {@code false} if the queue is full
+   */
+  boolean offer(T element) {
+    Preconditions.checkNotNull(element);
+    while (true) {
+      long position = tail.get();
+      int index = (int) position & mask;
+      long diff = sequences.get(index) - position;
+      if (diff == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          elements.lazySet(index, element);
+          // A volatile write, so that a consumer parked after seeing an empty queue is always noticed afterwards
+          sequences.set(index, position + 1);
+          return true;
+        }
+      } else if (diff < 0) {
+        // The slot from the previous lap is not yet consumed
+        return false;
+      }
+      // Otherwise another producer claimed the slot, retry with the new tail
+    }
+  }
+
+  /**
+   * Removes the element at the head of the queue. This method must only be called from the consumer thread.
+   *
+   * @return the element or {@code null} if the queue is empty
+   */
+  @Nullable
+  T poll() {
+    long position = head;
+    int index = (int) position & mask;
+    if (sequences.get(index) != position + 1) {
+      return null;
+    }
+    T element = elements.get(index);
+    elements.lazySet(index, null);
+    sequences.lazySet(index, position + capacity);
+    head = position + 1;
+    return element;
+  }
+
+  /**
+   * Returns whether the queue is empty. This method must only be called from the consumer thread.
+   */
+  boolean isEmpty() {
+    return sequences.get((int) head & mask) != head + 1;
+  }
+}
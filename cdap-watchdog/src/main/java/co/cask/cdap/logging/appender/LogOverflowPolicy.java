@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.appender;
+
+/**
+ * What {@link AbstractLogPublisher} does with a log message when its in-memory queue is full.
+ */
+public enum LogOverflowPolicy {
+
+  /**
+   * Blocks the logging thread until there is room in the queue.
+   */
+  BLOCK,
+
+  /**
+   * Drops messages below the retain level. Messages at or above the retain level wait for room in the queue.
+   */
+  DROP,
+
+  /**
+   * Keeps one in every N messages below the retain level and drops the rest. Kept messages and messages at or
+   * above the retain level wait for room in the queue.
+   */
+  SAMPLE,
+
+  /**
+   * Writes messages to a local disk buffer, which is published after the queue drains.
+   */
+  SPILL
+}
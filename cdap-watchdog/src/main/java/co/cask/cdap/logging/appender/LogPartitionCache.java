@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.appender;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A bounded LRU cache of the partition computed from a log partition key. The number of distinct partition keys
+ * is small compared to the number of log messages, so this saves computing the hash of the key for every
+ * log message.
+ */
+@NotThreadSafe
+public final class LogPartitionCache {
+
+  private static final int MAX_SIZE = 1000;
+
+  private final ToIntFunction<String> partitioner;
+  private final Map<String, Integer> cache;
+
+  public LogPartitionCache(ToIntFunction<String> partitioner) {
+    this.partitioner = partitioner;
+    this.cache = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+        return size() > MAX_SIZE;
+      }
+    };
+  }
+
+  /**
+   * Returns the partition for the given partition key, computing it if it is not cached.
+   */
+  public int getPartition(String partitionKey) {
+    return cache.computeIfAbsent(partitionKey, partitioner::applyAsInt);
+  }
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.appender;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.logging.serialize.LoggingEventSerializer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+/**
+ * A local disk buffer for log events that don't fit in the in-memory queue of {@link AbstractLogPublisher}.
+ *
+ * Events are appended to a spill file by the logging threads. The publisher thread replays them by renaming
+ * the spill file to a replay file, so that new events can keep being spilled while the replay file is read.
+ * Each event is stored as its serialized length followed by the bytes from {@link LoggingEventSerializer}.
+ *
+ * Each buffer holds a lock on its own lock file while it is open. Spill and replay files left behind by a process
+ * that stopped before publishing them have no lock holder. They are taken over when a buffer is created in the
+ * same directory, and replayed before the events spilled by this buffer.
+ */
+final class LogSpillBuffer implements Closeable {
+
+  private static final String FILE_PREFIX = "log-";
+  private static final String SPILL_SUFFIX = ".spill";
+  private static final String REPLAY_SUFFIX = ".replay";
+  private static final String LOCK_SUFFIX = ".lock";
+
+  private final File spillFile;
+  private final File replayFile;
+  private final File lockFile;
+  private final FileLock lock;
+  private final long maxBytes;
+  // Only used for writing, guarded by this
+  private final LoggingEventSerializer writeSerializer;
+  // Only used by the replaying thread
+  private final LoggingEventSerializer readSerializer;
+
+  // Files left behind by other buffers, to replay before the spill file. Guarded by this
+  private final Deque<OrphanFiles> orphans;
+
+  // Guarded by this
+  private DataOutputStream output;
+  private long spilledBytes;
+  private long replayBytes;
+  private long orphanBytes;
+
+  private volatile boolean hasPending;
+  private DataInputStream input;
+
+  LogSpillBuffer(File dir, long maxBytes) throws IOException {
+    if (!DirUtils.mkdirs(dir)) {
+      throw new IOException("Failed to create directory " + dir + " for spilling log events");
+    }
+    String name = FILE_PREFIX + UUID.randomUUID();
+    this.spillFile = new File(dir, name + SPILL_SUFFIX);
+    this.replayFile = new File(dir, name + REPLAY_SUFFIX);
+    this.lockFile = new File(dir, name + LOCK_SUFFIX);
+    FileLock lock = tryLock(lockFile);
+    if (lock == null) {
+      throw new IOException("Failed to lock log spill lock file " + lockFile);
+    }
+    this.lock = lock;
+    this.maxBytes = maxBytes;
+    this.writeSerializer = new LoggingEventSerializer();
+    this.readSerializer = new LoggingEventSerializer();
+    try {
+      this.orphans = findOrphans(dir, name);
+    } catch (IOException e) {
+      lockFile.delete();
+      lock.channel().close();
+      throw e;
+    }
+    for (OrphanFiles orphan : orphans) {
+      for (File file : orphan.files) {
+        orphanBytes += file.length();
+      }
+    }
+    this.hasPending = !orphans.isEmpty();
+  }
+
+  /**
+   * Writes a log event to the spill file.
+   *
+   * @return {@code true} if the event was written, or {@code false} if the buffer is full
+   * @throws IOException if failed to write
+   */
+  synchronized boolean write(ILoggingEvent event) throws IOException {
+    byte[] bytes = writeSerializer.toBytes(event);
+    if (spilledBytes + replayBytes + orphanBytes + bytes.length + Integer.BYTES > maxBytes) {
+      return false;
+    }
+    if (output == null) {
+      output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+    }
+    output.writeInt(bytes.length);
+    output.write(bytes);
+    spilledBytes += bytes.length + Integer.BYTES;
+    hasPending = true;
+    return true;
+  }
+
+  /**
+   * Returns whether there are spilled events that are not yet replayed.
+   */
+  boolean hasPending() {
+    return hasPending;
+  }
+
+  /**
+   * Reads the next spilled event. This method must only be called from a single replaying thread.
+   *
+   * @return the next event or {@code null} if no event is pending
+   * @throws IOException if failed to read
+   */
+  @Nullable
+  ILoggingEvent read() throws IOException {
+    if (input == null && !startReplay()) {
+      return null;
+    }
+    try {
+      int length = input.readInt();
+      byte[] bytes = new byte[length];
+      input.readFully(bytes);
+      return readSerializer.fromBytes(ByteBuffer.wrap(bytes));
+    } catch (EOFException e) {
+      // All events in the replay file are read
+      finishReplay();
+      return read();
+    } catch (IOException e) {
+      // The rest of the replay file cannot be read
+      finishReplay();
+      throw e;
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      if (output != null) {
+        output.close();
+      }
+      if (input != null) {
+        input.close();
+      }
+    } finally {
+      output = null;
+      input = null;
+      hasPending = false;
+      spillFile.delete();
+      replayFile.delete();
+      // Orphan files that are not replayed are left for the next buffer to take over
+      for (OrphanFiles orphan : orphans) {
+        orphan.release();
+      }
+      orphans.clear();
+      lockFile.delete();
+      lock.channel().close();
+    }
+  }
+
+  /**
+   * Moves the spill file to the replay file and opens it for reading.
+   *
+   * @return {@code true} if there are events to replay
+   */
+  private synchronized boolean startReplay() throws IOException {
+    OrphanFiles orphan = orphans.peek();
+    if (orphan != null) {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(orphan.files.peek())));
+      return true;
+    }
+    if (output == null) {
+      hasPending = false;
+      return false;
+    }
+    output.close();
+    output = null;
+    long bytes = spilledBytes;
+    spilledBytes = 0L;
+    if (!spillFile.renameTo(replayFile)) {
+      // Discard the spilled events so that new events can still be spilled
+      hasPending = false;
+      spillFile.delete();
+      throw new IOException("Failed to rename log spill file " + spillFile + " to " + replayFile);
+    }
+    replayBytes = bytes;
+    input = new DataInputStream(new BufferedInputStream(new FileInputStream(replayFile)));
+    return true;
+  }
+
+  private synchronized void finishReplay() throws IOException {
+    try {
+      input.close();
+    } finally {
+      input = null;
+      OrphanFiles orphan = orphans.peek();
+      if (orphan != null) {
+        File file = orphan.files.poll();
+        orphanBytes -= file.length();
+        file.delete();
+        if (orphan.files.isEmpty()) {
+          orphans.poll();
+          orphan.release();
+        }
+      } else {
+        replayBytes = 0L;
+        replayFile.delete();
+      }
+    }
+  }
+
+  /**
+   * Finds the spill and replay files in the given directory whose buffer is no longer open, and locks them.
+   *
+   * @param dir the directory to look in
+   * @param ownName the name of the files of this buffer
+   */
+  private static Deque<OrphanFiles> findOrphans(File dir, String ownName) throws IOException {
+    Set<String> names = new LinkedHashSet<>();
+    for (File file : DirUtils.listFiles(dir, (d, fileName) -> fileName.startsWith(FILE_PREFIX))) {
+      String fileName = file.getName();
+      if (fileName.endsWith(SPILL_SUFFIX)) {
+        names.add(fileName.substring(0, fileName.length() - SPILL_SUFFIX.length()));
+      } else if (fileName.endsWith(REPLAY_SUFFIX)) {
+        names.add(fileName.substring(0, fileName.length() - REPLAY_SUFFIX.length()));
+      } else if (fileName.endsWith(LOCK_SUFFIX)) {
+        names.add(fileName.substring(0, fileName.length() - LOCK_SUFFIX.length()));
+      }
+    }
+    names.remove(ownName);
+
+    Deque<OrphanFiles> orphans = new ArrayDeque<>();
+    for (String name : names) {
+      File lockFile = new File(dir, name + LOCK_SUFFIX);
+      FileLock lock = tryLock(lockFile);
+      if (lock == null) {
+        // The buffer of the files is still open
+        continue;
+      }
+      // The replay file has the events spilled before the ones in the spill file
+      OrphanFiles orphan = new OrphanFiles(lockFile, lock);
+      for (File file : Arrays.asList(new File(dir, name + REPLAY_SUFFIX), new File(dir, name + SPILL_SUFFIX))) {
+        if (file.isFile()) {
+          orphan.files.add(file);
+        }
+      }
+      if (orphan.files.isEmpty()) {
+        // Only the lock file is left, or the files were replayed by another buffer in the meantime
+        orphan.release();
+      } else {
+        orphans.add(orphan);
+      }
+    }
+    return orphans;
+  }
+
+  /**
+   * Tries to lock the given lock file, creating it if it doesn't exist.
+   *
+   * @return the lock, or {@code null} if the file is locked by another buffer
+   */
+  @Nullable
+  private static FileLock tryLock(File lockFile) throws IOException {
+    FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    try {
+      FileLock lock = channel.tryLock();
+      if (lock != null) {
+        return lock;
+      }
+    } catch (OverlappingFileLockException e) {
+      // Locked by another buffer in this process
+    }
+    channel.close();
+    return null;
+  }
+
+  /**
+   * The spill and replay files left behind by another buffer, and the lock on its lock file.
+   */
+  private static final class OrphanFiles {
+    private final File lockFile;
+    private final FileLock lock;
+    private final Deque<File> files;
+
+    OrphanFiles(File lockFile, FileLock lock) {
+      this.lockFile = lockFile;
+      this.lock = lock;
+      this.files = new ArrayDeque<>();
+    }
+
+    /**
+     * Deletes the lock file if all files are replayed, and releases the lock.
+     */
+    void release() throws IOException {
+      if (files.isEmpty()) {
+        lockFile.delete();
+      }
+      lock.channel().close();
+    }
+  }
+}
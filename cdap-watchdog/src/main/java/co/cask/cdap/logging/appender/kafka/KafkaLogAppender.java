@@ -16,6 +16,7 @@
 
 package co.cask.cdap.logging.appender.kafka;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.service.RetryStrategies;
@@ -23,9 +24,11 @@ import co.cask.cdap.logging.appender.AbstractLogPublisher;
 import co.cask.cdap.logging.appender.LogAppender;
 import co.cask.cdap.logging.appender.LogMessage;
 import co.cask.cdap.logging.serialize.LoggingEventSerializer;
+import co.cask.cdap.proto.id.NamespaceId;
 import com.google.inject.Inject;
 import kafka.producer.KeyedMessage;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -33,8 +36,6 @@ import java.util.List;
  */
 public final class KafkaLogAppender extends LogAppender {
 
-  private static final int QUEUE_SIZE = 512;
-
   private static final String APPENDER_NAME = "KafkaLogAppender";
 
   private final KafkaLogPublisher kafkaLogPublisher;
@@ -45,6 +46,16 @@ public final class KafkaLogAppender extends LogAppender {
     this.kafkaLogPublisher = new KafkaLogPublisher(cConf);
   }
 
+  /**
+   * Optional guice injection for the {@link MetricsCollectionService} used to emit the number of log messages
+   * published, dropped and spilled. It is optional because not every process that logs collects metrics.
+   */
+  @Inject(optional = true)
+  void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    kafkaLogPublisher.setMetricsContext(metricsCollectionService.getContext(
+      Collections.singletonMap(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace())));
+  }
+
   @Override
   public void start() {
     kafkaLogPublisher.startAndWait();
@@ -55,6 +66,9 @@ public final class KafkaLogAppender extends LogAppender {
   @Override
   public void stop() {
     kafkaLogPublisher.stopAndWait();
+    addInfo(String.format("Successfully stopped %s. Published %d, dropped %d and spilled %d log messages.",
+                          APPENDER_NAME, kafkaLogPublisher.getPublishedCount(), kafkaLogPublisher.getDroppedCount(),
+                          kafkaLogPublisher.getSpilledCount()));
     super.stop();
   }
 
@@ -82,7 +96,8 @@ public final class KafkaLogAppender extends LogAppender {
     private SimpleKafkaProducer producer;
 
     private KafkaLogPublisher(CConfiguration cConf) {
-      super(QUEUE_SIZE, RetryStrategies.fromConfiguration(cConf, "system.log.process."));
+      super(cConf, cConf.getInt(Constants.Logging.APPENDER_QUEUE_SIZE),
+            RetryStrategies.fromConfiguration(cConf, "system.log.process."));
       this.cConf = cConf;
       this.topic = cConf.get(Constants.Logging.KAFKA_TOPIC);
       this.loggingEventSerializer = new LoggingEventSerializer();
@@ -17,6 +17,7 @@
 package co.cask.cdap.logging.appender.remote;
 
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.http.DefaultHttpRequestConfig;
@@ -25,8 +26,10 @@ import co.cask.cdap.common.service.RetryStrategies;
 import co.cask.cdap.logging.appender.AbstractLogPublisher;
 import co.cask.cdap.logging.appender.LogAppender;
 import co.cask.cdap.logging.appender.LogMessage;
+import co.cask.cdap.logging.appender.LogPartitionCache;
 import co.cask.cdap.logging.appender.kafka.LogPartitionType;
 import co.cask.cdap.logging.serialize.LoggingEventSerializer;
+import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.hash.Hashing;
 import com.google.common.net.HttpHeaders;
 import com.google.inject.Inject;
@@ -47,6 +50,7 @@ import java.net.HttpURLConnection;
 import java.nio.ByteBuffer;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -64,6 +68,16 @@ public class RemoteLogAppender extends LogAppender {
     this.publisher = new RemoteLogPublisher(cConf, discoveryServiceClient);
   }
 
+  /**
+   * Optional guice injection for the {@link MetricsCollectionService} used to emit the number of log messages
+   * published, dropped and spilled. It is optional because not every process that logs collects metrics.
+   */
+  @Inject(optional = true)
+  void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    publisher.setMetricsContext(metricsCollectionService.getContext(
+      Collections.singletonMap(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace())));
+  }
+
   @Override
   public void start() {
     publisher.startAndWait();
@@ -74,7 +88,9 @@ public class RemoteLogAppender extends LogAppender {
   @Override
   public void stop() {
     publisher.stopAndWait();
-    addInfo("Successfully stopped " + APPENDER_NAME);
+    addInfo(String.format("Successfully stopped %s. Published %d, dropped %d and spilled %d log messages.",
+                          APPENDER_NAME, publisher.getPublishedCount(), publisher.getDroppedCount(),
+                          publisher.getSpilledCount()));
     super.stop();
   }
 
@@ -96,19 +112,20 @@ public class RemoteLogAppender extends LogAppender {
    */
   private final class RemoteLogPublisher extends AbstractLogPublisher<Map.Entry<Integer, ByteBuffer>> {
 
-    private final int numPartitions;
     private final ThreadLocal<LoggingEventSerializer> loggingEventSerializer;
     private final LogPartitionType logPartitionType;
+    private final LogPartitionCache partitionCache;
     private final DatumWriter<List<ByteBuffer>> datumWriter;
     private final RemoteClient remoteClient;
 
     private RemoteLogPublisher(CConfiguration cConf, DiscoveryServiceClient discoveryServiceClient) {
-      super(cConf.getInt(Constants.Logging.APPENDER_QUEUE_SIZE, 512),
+      super(cConf, cConf.getInt(Constants.Logging.APPENDER_QUEUE_SIZE, 512),
             RetryStrategies.fromConfiguration(cConf, "system.log.process."));
-      this.numPartitions = cConf.getInt(Constants.Logging.NUM_PARTITIONS);
+      int numPartitions = cConf.getInt(Constants.Logging.NUM_PARTITIONS);
       this.loggingEventSerializer = ThreadLocal.withInitial(LoggingEventSerializer::new);
       this.logPartitionType =
         LogPartitionType.valueOf(cConf.get(Constants.Logging.LOG_PUBLISH_PARTITION_KEY).toUpperCase());
+      this.partitionCache = new LogPartitionCache(partitionKey -> partition(partitionKey, numPartitions));
       // DatumWriter stores schema in non final variable. However, this schem will not change per thread. So we are
       // not using ThreadLocal for datumWriter
       this.datumWriter = new GenericDatumWriter<>(Schema.createArray(Schema.create(Schema.Type.BYTES)));
@@ -118,8 +135,7 @@ public class RemoteLogAppender extends LogAppender {
 
     @Override
     protected Map.Entry<Integer, ByteBuffer> createMessage(LogMessage logMessage) {
-      String partitionKey = logPartitionType.getPartitionKey(logMessage.getLoggingContext());
-      int partition = partition(partitionKey, numPartitions);
+      int partition = partitionCache.getPartition(logPartitionType.getPartitionKey(logMessage.getLoggingContext()));
       return new AbstractMap.SimpleEntry<>(partition,
                                            ByteBuffer.wrap(loggingEventSerializer.get().toBytes(logMessage)));
     }
@@ -19,12 +19,14 @@ package co.cask.cdap.logging.appender.tms;
 import co.cask.cdap.api.messaging.MessagePublisher;
 import co.cask.cdap.api.messaging.MessagingContext;
 import co.cask.cdap.api.messaging.TopicNotFoundException;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.service.RetryStrategies;
 import co.cask.cdap.logging.appender.AbstractLogPublisher;
 import co.cask.cdap.logging.appender.LogAppender;
 import co.cask.cdap.logging.appender.LogMessage;
+import co.cask.cdap.logging.appender.LogPartitionCache;
 import co.cask.cdap.logging.appender.kafka.LogPartitionType;
 import co.cask.cdap.logging.serialize.LoggingEventSerializer;
 import co.cask.cdap.messaging.MessagingService;
@@ -37,6 +39,7 @@ import com.google.inject.Inject;
 import java.io.IOException;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -57,6 +60,16 @@ public final class TMSLogAppender extends LogAppender {
     this.tmsLogPublisher = new TMSLogPublisher(cConf, messagingService, queueSize);
   }
 
+  /**
+   * Optional guice injection for the {@link MetricsCollectionService} used to emit the number of log messages
+   * published, dropped and spilled. It is optional because not every process that logs collects metrics.
+   */
+  @Inject(optional = true)
+  void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    tmsLogPublisher.setMetricsContext(metricsCollectionService.getContext(
+      Collections.singletonMap(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace())));
+  }
+
   @Override
   public void start() {
     tmsLogPublisher.startAndWait();
@@ -67,7 +80,9 @@ public final class TMSLogAppender extends LogAppender {
   @Override
   public void stop() {
     tmsLogPublisher.stopAndWait();
-    addInfo("Successfully stopped " + APPENDER_NAME);
+    addInfo(String.format("Successfully stopped %s. Published %d, dropped %d and spilled %d log messages.",
+                          APPENDER_NAME, tmsLogPublisher.getPublishedCount(), tmsLogPublisher.getDroppedCount(),
+                          tmsLogPublisher.getSpilledCount()));
     super.stop();
   }
 
@@ -96,25 +111,25 @@ public final class TMSLogAppender extends LogAppender {
   private final class TMSLogPublisher extends AbstractLogPublisher<Map.Entry<Integer, byte[]>> {
 
     private final String topicPrefix;
-    private final int numPartitions;
     private final LoggingEventSerializer loggingEventSerializer;
     private final MessagingContext messagingContext;
     private final LogPartitionType logPartitionType;
+    private final LogPartitionCache partitionCache;
 
     private TMSLogPublisher(CConfiguration cConf, MessagingService messagingService, int queueSize) {
-      super(queueSize, RetryStrategies.fromConfiguration(cConf, "system.log.process."));
+      super(cConf, queueSize, RetryStrategies.fromConfiguration(cConf, "system.log.process."));
       this.topicPrefix = cConf.get(Constants.Logging.TMS_TOPIC_PREFIX);
-      this.numPartitions = cConf.getInt(Constants.Logging.NUM_PARTITIONS);
+      int numPartitions = cConf.getInt(Constants.Logging.NUM_PARTITIONS);
       this.loggingEventSerializer = new LoggingEventSerializer();
       this.logPartitionType =
               LogPartitionType.valueOf(cConf.get(Constants.Logging.LOG_PUBLISH_PARTITION_KEY).toUpperCase());
+      this.partitionCache = new LogPartitionCache(partitionKey -> partition(partitionKey, numPartitions));
       this.messagingContext = new MultiThreadMessagingContext(messagingService);
     }
 
     @Override
     protected Map.Entry<Integer, byte[]> createMessage(LogMessage logMessage) {
-      String partitionKey = logPartitionType.getPartitionKey(logMessage.getLoggingContext());
-      int partition = partition(partitionKey, numPartitions);
+      int partition = partitionCache.getPartition(logPartitionType.getPartitionKey(logMessage.getLoggingContext()));
       return new AbstractMap.SimpleEntry<>(partition, loggingEventSerializer.toBytes(logMessage));
     }
 
@@ -18,6 +18,7 @@ package co.cask.cdap.logging.gateway.handlers.store;
 
 import co.cask.cdap.common.app.RunIds;
 import co.cask.cdap.internal.app.store.RunRecordMeta;
+import co.cask.cdap.internal.app.store.RunRecordMetaCodec;
 import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.proto.id.ApplicationId;
 import co.cask.cdap.proto.id.ProgramId;
@@ -26,7 +27,6 @@ import co.cask.cdap.spi.data.StructuredTable;
 import co.cask.cdap.spi.data.table.field.Field;
 import co.cask.cdap.spi.data.table.field.Fields;
 import co.cask.cdap.store.StoreDefinition;
-import com.google.gson.Gson;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -41,7 +41,6 @@ import javax.annotation.Nullable;
  */
 public class AppMetadataStore {
 
-  private static final Gson GSON = new Gson();
   private static final String TYPE_RUN_RECORD_ACTIVE = "runRecordActive";
   private static final String TYPE_RUN_RECORD_COMPLETED = "runRecordCompleted";
 
@@ -82,15 +81,9 @@ public class AppMetadataStore {
     return deserializeRunRecordMeta(row.get());
   }
 
-  private static RunRecordMeta deserializeRunRecordMeta(StructuredRow row) {
-    RunRecordMeta existing =
-      GSON.fromJson(row.getString(StoreDefinition.AppMetadataStore.RUN_RECORD_DATA), RunRecordMeta.class);
-    RunRecordMeta newMeta =
-      RunRecordMeta.builder(existing)
-        .setProgramRunId(
-          getProgramIdFromRunRecordsPrimaryKeys(new ArrayList(row.getPrimaryKeys())).run(existing.getPid()))
-        .build();
-    return newMeta;
+  private static RunRecordMeta deserializeRunRecordMeta(StructuredRow row) throws IOException {
+    return RunRecordMetaCodec.decode(getProgramIdFromRunRecordsPrimaryKeys(new ArrayList(row.getPrimaryKeys())),
+                                     row.getString(StoreDefinition.AppMetadataStore.RUN_RECORD_DATA));
   }
 
   private static ProgramId getProgramIdFromRunRecordsPrimaryKeys(List<Field<?>> primaryKeys) {
@@ -85,6 +85,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private final Map<String, String> metricsContextMap;
   private final int fetcherLimit;
   private final long maxDelayMillis;
+  private final long aggregationWindowMillis;
   private final int queueSize;
   private final BlockingDeque<MetricValues> metricsFromAllTopics;
   private final ConcurrentMap<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap;
@@ -94,8 +95,11 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private final long metricsProcessIntervalMillis;
   private final List<ProcessMetricsThread> processMetricsThreads;
   private final String processMetricName;
+  private final String aggregationInputMetricName;
+  private final String aggregationOutputMetricName;
   private final String metricsPrefixForDelayMetrics;
   private long metricsProcessedCount;
+  private volatile long lastPersistTime;
 
   private MetricsConsumerMetaTable metaTable;
 
@@ -145,6 +149,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     this.metricStore = metricStore;
     this.metricStore.setMetricsContext(metricsContext);
     this.maxDelayMillis = cConf.getLong(Constants.Metrics.PROCESSOR_MAX_DELAY_MS);
+    this.aggregationWindowMillis = cConf.getLong(Constants.Metrics.PROCESSOR_AGGREGATION_WINDOW_MS);
     this.queueSize = cConf.getInt(Constants.Metrics.QUEUE_SIZE);
     this.fetcherLimit = Math.max(1, queueSize / topicNumbers.size()); // fetcherLimit is at least one
     this.metricsContextMap = metricsContext.getTags();
@@ -156,6 +161,8 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     this.metricsProcessIntervalMillis = metricsProcessIntervalMillis < Constants.Metrics.PROCESS_INTERVAL_MILLIS ?
       metricsProcessIntervalMillis : Constants.Metrics.PROCESS_INTERVAL_MILLIS;
     this.processMetricName = String.format("metrics.%s.process.count", instanceId);
+    this.aggregationInputMetricName = String.format("metrics.%s.process.aggregation.input.count", instanceId);
+    this.aggregationOutputMetricName = String.format("metrics.%s.process.aggregation.output.count", instanceId);
   }
 
   private MetricsConsumerMetaTable getMetaTable() {
@@ -264,7 +271,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   }
 
   /**
-   * Persist metrics into metric store
+   * Persist metrics into metric store, after merging the metrics with the same tags, name and timestamp.
    *
    * @param metricValues a non-empty deque of {@link MetricValues}
    */
@@ -284,14 +291,24 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       topicLevelDelays.add(new MetricValue(topicProcessMeta.getLatestMetricsTimestampMetricName(),
                                            MetricType.GAUGE, delay));
     }
+    MetricValuesAggregator aggregator = new MetricValuesAggregator();
+    metricValues.forEach(aggregator::add);
+    List<MetricValues> aggregatedValues = aggregator.getAggregated();
+
     List<MetricValue> processorMetrics = new ArrayList<>(topicLevelDelays);
     processorMetrics.add(new MetricValue(processMetricName, MetricType.COUNTER, metricValues.size()));
-
-    metricValues.add(new MetricValues(metricsContextMap, TimeUnit.MILLISECONDS.toSeconds(now), processorMetrics));
-    metricStore.add(metricValues);
+    processorMetrics.add(new MetricValue(aggregationInputMetricName, MetricType.COUNTER,
+                                         aggregator.getInputCount()));
+    processorMetrics.add(new MetricValue(aggregationOutputMetricName, MetricType.COUNTER,
+                                         aggregator.getOutputCount()));
+
+    aggregatedValues.add(new MetricValues(metricsContextMap, TimeUnit.MILLISECONDS.toSeconds(now),
+                                          processorMetrics));
+    metricStore.add(aggregatedValues);
     metricsProcessedCount += metricValues.size();
-    PROGRESS_LOG.debug("{} metrics persisted. Last metric's timestamp: {}",
-                       metricsProcessedCount, lastMetricTime);
+    PROGRESS_LOG.debug("{} metrics persisted. Last metric's timestamp: {}. Merged {} metric values into {}.",
+                       metricsProcessedCount, lastMetricTime, aggregator.getInputCount(),
+                       aggregator.getOutputCount());
   }
 
   private class ProcessMetricsThread extends Thread {
@@ -431,6 +448,14 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
         return;
       }
       try {
+        // Keep collecting metrics in the queue until the aggregation window has passed, unless the queue is full,
+        // so that more metrics can be merged before persisting. The message ids are only persisted together with
+        // the metrics, hence the metrics in the queue will be fetched again if the process stops.
+        long now = System.currentTimeMillis();
+        if (now - lastPersistTime < aggregationWindowMillis && metricsFromAllTopics.remainingCapacity() > 0) {
+          return;
+        }
+        lastPersistTime = now;
         // Make a copy of topicProcessMetaMap before copying metrics from metricsFromAllTopics to ensure that
         // topicMessageIdsCopy will not contain new MessageId's in metricsFromAllTopics but not in metricsCopy.
         // This guarantees the metrics corresponding to last persisted MessageId's of each topic are persisted.
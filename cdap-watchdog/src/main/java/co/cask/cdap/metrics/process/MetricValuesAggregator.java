@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.process;
+
+import co.cask.cdap.api.metrics.MetricStore;
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.api.metrics.MetricValue;
+import co.cask.cdap.api.metrics.MetricValues;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges {@link MetricValues} that have the same tags and timestamp. The values of a counter are summed, and only
+ * the last value of a gauge is kept. This is how the {@link MetricStore} combines the values of a metric in the
+ * same second, hence persisting the merged metrics gives the same result with fewer writes.
+ */
+final class MetricValuesAggregator {
+
+  private final Map<TagsAndTimestamp, Metrics> metrics = new LinkedHashMap<>();
+  private int inputCount;
+  private int outputCount;
+
+  /**
+   * Adds the given {@link MetricValues} to the aggregation.
+   */
+  void add(MetricValues metricValues) {
+    Metrics aggregated = metrics.computeIfAbsent(new TagsAndTimestamp(metricValues.getTags(),
+                                                                      metricValues.getTimestamp()),
+                                                 key -> new Metrics());
+    for (MetricValue metricValue : metricValues.getMetrics()) {
+      Map<String, long[]> values = metricValue.getType() == MetricType.COUNTER ? aggregated.counters
+                                                                                : aggregated.gauges;
+      long[] value = values.get(metricValue.getName());
+      if (value == null) {
+        values.put(metricValue.getName(), new long[] { metricValue.getValue() });
+        outputCount++;
+      } else if (metricValue.getType() == MetricType.COUNTER) {
+        value[0] += metricValue.getValue();
+      } else {
+        value[0] = metricValue.getValue();
+      }
+      inputCount++;
+    }
+  }
+
+  /**
+   * Returns the number of {@link MetricValue} added.
+   */
+  int getInputCount() {
+    return inputCount;
+  }
+
+  /**
+   * Returns the number of {@link MetricValue} after merging.
+   */
+  int getOutputCount() {
+    return outputCount;
+  }
+
+  /**
+   * Returns the merged {@link MetricValues}, in the order their tags and timestamp were first added.
+   */
+  List<MetricValues> getAggregated() {
+    List<MetricValues> result = new ArrayList<>(metrics.size());
+    for (Map.Entry<TagsAndTimestamp, Metrics> entry : metrics.entrySet()) {
+      Metrics aggregated = entry.getValue();
+      List<MetricValue> values = new ArrayList<>(aggregated.counters.size() + aggregated.gauges.size());
+      aggregated.counters.forEach((name, value) -> values.add(new MetricValue(name, MetricType.COUNTER, value[0])));
+      aggregated.gauges.forEach((name, value) -> values.add(new MetricValue(name, MetricType.GAUGE, value[0])));
+      result.add(new MetricValues(entry.getKey().tags, entry.getKey().timestamp, values));
+    }
+    return result;
+  }
+
+  /**
+   * The values of the counters and gauges with the same tags and timestamp, by metric name.
+   */
+  private static final class Metrics {
+    private final Map<String, long[]> counters = new LinkedHashMap<>();
+    private final Map<String, long[]> gauges = new LinkedHashMap<>();
+  }
+
+  /**
+   * The key to merge {@link MetricValues} by.
+   */
+  private static final class TagsAndTimestamp {
+    private final Map<String, String> tags;
+    private final long timestamp;
+    private final int hashCode;
+
+    TagsAndTimestamp(Map<String, String> tags, long timestamp) {
+      this.tags = tags;
+      this.timestamp = timestamp;
+      this.hashCode = 31 * tags.hashCode() + Long.hashCode(timestamp);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      TagsAndTimestamp other = (TagsAndTimestamp) o;
+      return timestamp == other.timestamp && tags.equals(other.tags);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.appender;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.logging.LoggingContext;
+import co.cask.cdap.common.service.RetryStrategies;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.logging.context.WorkerLoggingContext;
+import co.cask.cdap.logging.serialize.LoggingEventSerializer;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the overflow handling of {@link AbstractLogPublisher}.
+ */
+public class AbstractLogPublisherTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static final LoggingContext LOGGING_CONTEXT =
+    new WorkerLoggingContext("default", "app1", "worker1", "run1", "instance1");
+
+  @Test
+  public void testDrop() throws Exception {
+    TestLogPublisher publisher = new TestLogPublisher(createCConf(LogOverflowPolicy.DROP), 4);
+    TestMetricsContext metricsContext = new TestMetricsContext();
+    publisher.setMetricsContext(metricsContext);
+
+    // Without the publisher running, messages below the retain level are dropped once the queue is full
+    for (int i = 0; i < 10; i++) {
+      publisher.addMessage(createLogMessage(Level.INFO, "info" + i));
+    }
+    Assert.assertEquals(6, publisher.getDroppedCount());
+
+    // Messages at the retain level wait for room in the queue
+    Thread thread = new Thread(() -> {
+      try {
+        publisher.addMessage(createLogMessage(Level.ERROR, "error"));
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    thread.start();
+    thread.join(200);
+    Assert.assertTrue(thread.isAlive());
+
+    // The blocked thread is signalled as soon as the publisher takes messages out of the queue
+    publisher.startAndWait();
+    thread.join(TimeUnit.SECONDS.toMillis(5));
+    Assert.assertFalse(thread.isAlive());
+    publisher.stopAndWait();
+
+    Assert.assertEquals(5, publisher.getPublishedCount());
+    Assert.assertEquals(6, publisher.getDroppedCount());
+    Assert.assertEquals(0, publisher.getSpilledCount());
+    Assert.assertEquals("error", publisher.getPublished().get(4).getFormattedMessage());
+
+    // The counts are emitted as metrics
+    Assert.assertEquals(5L, metricsContext.getCount(Constants.Metrics.Name.Log.APPENDER_PUBLISHED));
+    Assert.assertEquals(6L, metricsContext.getCount(Constants.Metrics.Name.Log.APPENDER_DROPPED));
+    Assert.assertEquals(0L, metricsContext.getCount(Constants.Metrics.Name.Log.APPENDER_SPILLED));
+  }
+
+  @Test
+  public void testSample() throws Exception {
+    CConfiguration cConf = createCConf(LogOverflowPolicy.SAMPLE);
+    cConf.setInt(Constants.Logging.APPENDER_OVERFLOW_SAMPLE_RATE, 5);
+    TestLogPublisher publisher = new TestLogPublisher(cConf, 4);
+
+    // The first four messages fill the queue, the next four overflowing messages are dropped
+    for (int i = 0; i < 8; i++) {
+      publisher.addMessage(createLogMessage(Level.INFO, "info" + i));
+    }
+    Assert.assertEquals(4, publisher.getDroppedCount());
+
+    // The fifth overflowing message is kept and waits for room in the queue
+    Thread thread = new Thread(() -> {
+      try {
+        publisher.addMessage(createLogMessage(Level.INFO, "sampled"));
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    thread.start();
+    publisher.startAndWait();
+    thread.join();
+    publisher.stopAndWait();
+
+    Assert.assertEquals(5, publisher.getPublishedCount());
+    Assert.assertEquals(4, publisher.getDroppedCount());
+    Assert.assertEquals("sampled", publisher.getPublished().get(4).getFormattedMessage());
+  }
+
+  @Test
+  public void testSpill() throws Exception {
+    CConfiguration cConf = createCConf(LogOverflowPolicy.SPILL);
+    cConf.set(Constants.Logging.APPENDER_SPILL_DIR, TEMP_FOLDER.newFolder().getAbsolutePath());
+    TestLogPublisher publisher = new TestLogPublisher(cConf, 4);
+    TestMetricsContext metricsContext = new TestMetricsContext();
+    publisher.setMetricsContext(metricsContext);
+
+    for (int i = 0; i < 20; i++) {
+      publisher.addMessage(createLogMessage(Level.DEBUG, "debug" + i));
+    }
+    Assert.assertEquals(16, publisher.getSpilledCount());
+    Assert.assertEquals(0, publisher.getDroppedCount());
+
+    publisher.startAndWait();
+    publisher.stopAndWait();
+
+    // Spilled messages are published after the queued ones, with the logging context restored
+    List<LogMessage> published = publisher.getPublished();
+    Assert.assertEquals(20, publisher.getPublishedCount());
+    Assert.assertEquals(20, published.size());
+    for (int i = 0; i < published.size(); i++) {
+      LogMessage message = published.get(i);
+      Assert.assertEquals("debug" + i, message.getFormattedMessage());
+      Assert.assertEquals(Level.DEBUG, message.getLevel());
+      Assert.assertEquals(LOGGING_CONTEXT.getLogPartition(), message.getLoggingContext().getLogPartition());
+    }
+    Assert.assertEquals(20L, metricsContext.getCount(Constants.Metrics.Name.Log.APPENDER_PUBLISHED));
+    Assert.assertEquals(16L, metricsContext.getCount(Constants.Metrics.Name.Log.APPENDER_SPILLED));
+  }
+
+  @Test
+  public void testReplayOrphanSpillFiles() throws Exception {
+    File spillDir = TEMP_FOLDER.newFolder();
+    CConfiguration cConf = createCConf(LogOverflowPolicy.SPILL);
+    cConf.set(Constants.Logging.APPENDER_SPILL_DIR, spillDir.getAbsolutePath());
+
+    // Files left behind by a process that stopped before replaying them
+    LoggingEventSerializer serializer = new LoggingEventSerializer();
+    try (DataOutputStream output = new DataOutputStream(new FileOutputStream(new File(spillDir, "log-old.replay")))) {
+      for (int i = 0; i < 5; i++) {
+        byte[] bytes = serializer.toBytes(createLogMessage(Level.DEBUG, "debug" + i));
+        output.writeInt(bytes.length);
+        output.write(bytes);
+      }
+    }
+    try (DataOutputStream output = new DataOutputStream(new FileOutputStream(new File(spillDir, "log-old.spill")))) {
+      for (int i = 5; i < 10; i++) {
+        byte[] bytes = serializer.toBytes(createLogMessage(Level.DEBUG, "debug" + i));
+        output.writeInt(bytes.length);
+        output.write(bytes);
+      }
+    }
+    Assert.assertTrue(new File(spillDir, "log-empty.lock").createNewFile());
+
+    TestLogPublisher publisher = new TestLogPublisher(cConf, 4);
+    publisher.startAndWait();
+    publisher.stopAndWait();
+
+    List<LogMessage> published = publisher.getPublished();
+    Assert.assertEquals(10, published.size());
+    for (int i = 0; i < published.size(); i++) {
+      Assert.assertEquals("debug" + i, published.get(i).getFormattedMessage());
+      Assert.assertEquals(LOGGING_CONTEXT.getLogPartition(), published.get(i).getLoggingContext().getLogPartition());
+    }
+    Assert.assertTrue(DirUtils.listFiles(spillDir).isEmpty());
+  }
+
+  @Test
+  public void testConcurrentProducers() throws Exception {
+    TestLogPublisher publisher = new TestLogPublisher(createCConf(LogOverflowPolicy.BLOCK), 16);
+    publisher.startAndWait();
+
+    int threads = 4;
+    int messages = 5000;
+    List<Thread> producers = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      String prefix = "thread" + i + ".";
+      Thread producer = new Thread(() -> {
+        try {
+          for (int j = 0; j < messages; j++) {
+            publisher.addMessage(createLogMessage(Level.INFO, prefix + j));
+          }
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      });
+      producer.start();
+      producers.add(producer);
+    }
+    for (Thread producer : producers) {
+      producer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+    publisher.stopAndWait();
+
+    Assert.assertEquals(threads * messages, publisher.getPublishedCount());
+    Assert.assertEquals(0, publisher.getDroppedCount());
+
+    // Messages from each thread are published in the order they were added
+    int[] next = new int[threads];
+    for (LogMessage message : publisher.getPublished()) {
+      String[] parts = message.getFormattedMessage().substring("thread".length()).split("\\.");
+      int thread = Integer.parseInt(parts[0]);
+      Assert.assertEquals(next[thread]++, Integer.parseInt(parts[1]));
+    }
+  }
+
+  private CConfiguration createCConf(LogOverflowPolicy policy) {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.Logging.APPENDER_OVERFLOW_POLICY, policy.name().toLowerCase());
+    cConf.set(Constants.Logging.APPENDER_OVERFLOW_RETAIN_LEVEL, "WARN");
+    return cConf;
+  }
+
+  private LogMessage createLogMessage(Level level, String message) {
+    LoggingEvent event = new LoggingEvent();
+    event.setLevel(level);
+    event.setLoggerName("test.logger");
+    event.setMessage(message);
+    event.setTimeStamp(System.currentTimeMillis());
+    return new LogMessage(event, LOGGING_CONTEXT);
+  }
+
+  /**
+   * A {@link MetricsContext} that sums up the increments of each metric.
+   */
+  private static final class TestMetricsContext implements MetricsContext {
+
+    private final Map<String, Long> counts = new ConcurrentHashMap<>();
+
+    long getCount(String metricName) {
+      return counts.getOrDefault(metricName, 0L);
+    }
+
+    @Override
+    public void increment(String metricName, long value) {
+      counts.merge(metricName, value, Long::sum);
+    }
+
+    @Override
+    public void gauge(String metricName, long value) {
+      counts.put(metricName, value);
+    }
+
+    @Override
+    public MetricsContext childContext(Map<String, String> tags) {
+      return this;
+    }
+
+    @Override
+    public MetricsContext childContext(String tagName, String tagValue) {
+      return this;
+    }
+
+    @Override
+    public Map<String, String> getTags() {
+      return Collections.emptyMap();
+    }
+  }
+
+  /**
+   * A {@link AbstractLogPublisher} that collects the published messages.
+   */
+  private static final class TestLogPublisher extends AbstractLogPublisher<LogMessage> {
+
+    private final List<LogMessage> published = new CopyOnWriteArrayList<>();
+
+    TestLogPublisher(CConfiguration cConf, int queueSize) {
+      super(cConf, queueSize, RetryStrategies.noRetry());
+    }
+
+    List<LogMessage> getPublished() {
+      return published;
+    }
+
+    @Override
+    protected LogMessage createMessage(LogMessage logMessage) {
+      return logMessage;
+    }
+
+    @Override
+    protected void publish(List<LogMessage> logMessages) {
+      published.addAll(logMessages);
+    }
+  }
+}
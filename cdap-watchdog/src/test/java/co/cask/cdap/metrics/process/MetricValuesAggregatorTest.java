@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.process;
+
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.api.metrics.MetricValue;
+import co.cask.cdap.api.metrics.MetricValues;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link MetricValuesAggregator}.
+ */
+public class MetricValuesAggregatorTest {
+
+  @Test
+  public void testAggregate() {
+    Map<String, String> tags1 = ImmutableMap.of("ns", "ns1", "app", "app1");
+    // Same tags in a different map instance
+    Map<String, String> tags2 = new HashMap<>(tags1);
+    Map<String, String> otherTags = ImmutableMap.of("ns", "ns2");
+
+    MetricValuesAggregator aggregator = new MetricValuesAggregator();
+    aggregator.add(new MetricValues(tags1, 10L, ImmutableList.of(new MetricValue("count", MetricType.COUNTER, 1),
+                                                                 new MetricValue("size", MetricType.GAUGE, 5))));
+    aggregator.add(new MetricValues(tags2, 10L, ImmutableList.of(new MetricValue("count", MetricType.COUNTER, 2),
+                                                                 new MetricValue("size", MetricType.GAUGE, 3))));
+    aggregator.add(new MetricValues(tags1, "count", 11L, 4, MetricType.COUNTER));
+    aggregator.add(new MetricValues(otherTags, "count", 10L, 8, MetricType.COUNTER));
+    aggregator.add(new MetricValues(tags1, "count", 10L, 16, MetricType.COUNTER));
+
+    Assert.assertEquals(7, aggregator.getInputCount());
+    Assert.assertEquals(4, aggregator.getOutputCount());
+
+    List<MetricValues> aggregated = aggregator.getAggregated();
+    Assert.assertEquals(3, aggregated.size());
+    assertMetricValues(tags1, 10L, ImmutableMap.of("count", 19L, "size", 3L), aggregated.get(0));
+    assertMetricValues(tags1, 11L, ImmutableMap.of("count", 4L), aggregated.get(1));
+    assertMetricValues(otherTags, 10L, ImmutableMap.of("count", 8L), aggregated.get(2));
+  }
+
+  private void assertMetricValues(Map<String, String> expectedTags, long expectedTimestamp,
+                                  Map<String, Long> expectedValues, MetricValues actual) {
+    Assert.assertEquals(expectedTags, actual.getTags());
+    Assert.assertEquals(expectedTimestamp, actual.getTimestamp());
+    Map<String, Long> actualValues = new HashMap<>();
+    for (MetricValue value : actual.getMetrics()) {
+      actualValues.put(value.getName(), value.getValue());
+    }
+    Assert.assertEquals(expectedValues, actualValues);
+  }
+}